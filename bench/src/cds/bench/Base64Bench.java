@@ -0,0 +1,148 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.bench;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cds.aladin.MyInputStream;
+import cds.savot.binary.Base64InputStream;
+import cds.savot.binary.ColumnBatch;
+import cds.savot.binary2.DataBinary2Reader;
+import cds.savot.model.FieldSet;
+import cds.savot.model.SavotField;
+import cds.xml.TableParser;
+
+/**
+ * Dbit du dcodage des STREAMs BASE64 BINARY2 : dcodage BASE64 seul (Base64InputStream),
+ * lecture SAVOT par blocs de colonnes (DataBinary2Reader) et analyse complte par TableParser.
+ * La VOTable est crite sur disque ; sa taille (en Mo) est un paramtre : 64 Mo par dfaut,
+ * la mesure de rfrence sur 1 Go s'obtient par "ant bench.run -Dbench.args='Base64Bench -p sizeMB=1024'".
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=1)
+@Measurement(iterations=3)
+@Fork(1)
+public class Base64Bench {
+
+   @Param({ "64" })
+   public int sizeMB;
+
+   static private final int ROWSIZE = 46;    // Taille moyenne d'une ligne en BASE64 (octets)
+
+   private File dir;
+   private File votable;      // VOTable complte
+   private File stream;       // Contenu BASE64 du STREAM seul
+   private long nbRows;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      dir = SyntheticData.tmpDir("base64bench");
+      nbRows = (long)sizeMB*1024*1024/ROWSIZE;
+      votable = new File(dir,"table.xml");
+      SyntheticData.writeVotableBinary2(votable,nbRows,1L);
+      stream = new File(dir,"stream.b64");
+      try( OutputStream out = new FileOutputStream(stream) ) {
+         SyntheticData.writeBinary2Stream(out,nbRows,1L);
+      }
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() { SyntheticData.rmDir(dir); }
+
+   @Benchmark
+   public long base64Decode() throws Exception {
+      long n=0;
+      byte [] buf = new byte[1<<16];
+      try( InputStream in = new Base64InputStream( new FileInputStream(stream) ) ) {
+         for( int k; (k=in.read(buf))>0; ) n+=k;
+      }
+      return n;
+   }
+
+   @Benchmark
+   public double savotColumnBatch() throws Exception {
+      DataBinary2Reader reader = new DataBinary2Reader( new BufferedInputStream(new FileInputStream(stream),1<<16),
+            "base64", fields() );
+      try {
+         ColumnBatch batch = reader.createBatch(4096);
+         double sum=0;
+         long rows=0;
+         for( int n; (n=reader.nextBatch(batch))>0; ) {
+            double [] ra = batch.getDoubles(0);
+            for( int i=0; i<n; i++ ) sum+=ra[i];
+            rows+=n;
+         }
+         if( rows!=nbRows ) throw new Exception("Decoding error: "+rows+"/"+nbRows+" rows");
+         return sum;
+      } finally { reader.close(); }
+   }
+
+   @Benchmark
+   public long tableParser() throws Exception {
+      TableParserBench.Counter c = new TableParserBench.Counter();
+      TableParser tp = new TableParser(null,c);
+      try( MyInputStream in = new MyInputStream( new BufferedInputStream(new FileInputStream(votable),1<<16) ) ) {
+         if( !tp.parse(in) ) throw new Exception(tp.getError());
+      }
+      if( c.nbRecords!=nbRows ) throw new Exception("Parsing error: "+c.nbRecords+"/"+nbRows+" records");
+      return c.nbChars;
+   }
+
+   // Description des champs de la VOTable (cf. SyntheticData)
+   static private FieldSet fields() {
+      FieldSet fs = new FieldSet();
+      String [][] def = { { "ra","double","" }, { "dec","double","" }, { "mag","float","" }, { "id","char","*" } };
+      for( String [] d : def ) {
+         SavotField f = new SavotField();
+         f.setName(d[0]);
+         f.setDataType(d[1]);
+         f.setArraySize(d[2]);
+         fs.addItem(f);
+      }
+      return fs;
+   }
+}
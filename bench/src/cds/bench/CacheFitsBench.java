@@ -0,0 +1,104 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+
+package cds.bench;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cds.fits.CacheFits;
+import cds.fits.Fits;
+
+/**
+ * Accs concurrents au cache CacheFits : plusieurs threads demandent alatoirement des
+ * images parmi un lot plus volumineux que la mmoire alloue au cache, ce qui provoque
+ * des victions comme lors d'une gnration HiPS.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+@Threads(4)
+public class CacheFitsBench {
+
+   @Param({ "64" })
+   public int nbFiles;
+
+   @Param({ "512" })
+   public int imageSize;
+
+   /** Mmoire du cache, en pourcentage du volume total des images */
+   @Param({ "25", "100" })
+   public int memPercent;
+
+   private File dir;
+   private String [] files;
+   private CacheFits cache;
+
+   /** Gnrateur propre  chaque thread */
+   @State(Scope.Thread)
+   public static class ThreadRandom {
+      Random r = new Random(Thread.currentThread().getId());
+   }
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      dir = SyntheticData.tmpDir("cachebench");
+      files = new String[nbFiles];
+      for( int i=0; i<nbFiles; i++ ) {
+         File f = new File(dir,"img"+i+".fits");
+         SyntheticData.writeFitsImage(f,imageSize,imageSize,-32,10+i*0.1,20,1/3600.,i);
+         files[i] = f.getAbsolutePath();
+      }
+      long total = (long)nbFiles*imageSize*imageSize*4;
+      cache = new CacheFits( total*memPercent/100 );
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() { SyntheticData.rmDir(dir); }
+
+   @Benchmark
+   public Fits getFits(ThreadRandom tr) throws Exception {
+      return cache.getFits( files[ tr.r.nextInt(files.length) ] );
+   }
+}
@@ -0,0 +1,119 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.bench;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cds.fits.Fits;
+import cds.fits.PixelAccess;
+
+/**
+ * Accs aux pixels FITS : Fits.getPixValDouble() (squentiel et alatoire) et son
+ * quivalent spcialis PixelAccess, pour chaque codage.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class FitsBench {
+
+   @Param({ "16", "32", "-32", "-64" })
+   public int bitpix;
+
+   @Param({ "2048" })
+   public int size;
+
+   private File dir;
+   private Fits fits;
+   private PixelAccess access;
+   private int [] randomIndex;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      dir = SyntheticData.tmpDir("fitsbench");
+      File f = new File(dir,"img.fits");
+      SyntheticData.writeFitsImage(f,size,size,bitpix,10,20,1/3600.,1L);
+      fits = new Fits();
+      fits.loadFITS(f.getAbsolutePath());
+      access = PixelAccess.create(fits.pixels,fits.bitpix,0,0,0,fits.width,fits.height);
+
+      Random r = new Random(2);
+      randomIndex = new int[1<<20];
+      for( int i=0; i<randomIndex.length; i++ ) randomIndex[i] = r.nextInt(size*size);
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() { SyntheticData.rmDir(dir); }
+
+   @Benchmark
+   public double getPixValDoubleSequential() {
+      byte [] pixels = fits.pixels;
+      double sum=0;
+      int n = fits.width*fits.height;
+      for( int i=0; i<n; i++ ) sum += fits.getPixValDouble(pixels,bitpix,i);
+      return sum;
+   }
+
+   @Benchmark
+   public double getPixValDoubleRandom() {
+      byte [] pixels = fits.pixels;
+      double sum=0;
+      for( int i : randomIndex ) sum += fits.getPixValDouble(pixels,bitpix,i);
+      return sum;
+   }
+
+   @Benchmark
+   public double pixelAccessSequential() {
+      double sum=0;
+      int n = fits.width*fits.height;
+      for( int i=0; i<n; i++ ) sum += access.get(i);
+      return sum;
+   }
+
+   @Benchmark
+   public double pixelAccessRandom() {
+      double sum=0;
+      for( int i : randomIndex ) sum += access.get(i);
+      return sum;
+   }
+}
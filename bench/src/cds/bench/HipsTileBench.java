@@ -0,0 +1,126 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+
+
+package cds.bench;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cds.allsky.Context;
+import cds.astro.Astrocoo;
+import cds.astro.Astroframe;
+import cds.fits.Fits;
+import cds.tools.pixtools.CDSHealpix;
+
+/**
+ * R-chantillonnage d'une tuile HiPS depuis une image source (coeur de
+ * ThreadBuilderTile.buildHealpix1), mesur tuile par tuile : l'ancien noyau pixel par pixel
+ * est compar au noyau actuel ligne par ligne (cf. TileKernels), en repre ICRS et galactique.
+ * La tuile est choisie au centre de l'image, avec des pixels HEALPix de taille voisine de
+ * celle des pixels de l'image.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.1 - oct 2026 - mesure directe des noyaux, par tuile
+ * @version 1.0 - oct 2026 - cration
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class HipsTileBench {
+
+   @Param({ "512", "1024" })
+   public int tileWidth;
+
+   @Param({ "ICRS", "GALACTIC" })
+   public String frame;
+
+   @Param({ "2048" })
+   public int imageSize;
+
+   static private final int ORDERPIX = 18;     // Pixels HEALPix de ~0.8 arcsec
+   static private final double RA=150, DEC=2;   // Centre de l'image
+
+   private File dir;
+   private Fits fits;
+   private int [] xy2hpx;
+   private int orderPix;
+   private long min;
+   private boolean gal2ICRS;
+   private double [] out;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      dir = SyntheticData.tmpDir("tilebench");
+      File f = new File(dir,"img.fits");
+      SyntheticData.writeFitsImage(f,imageSize,imageSize,16,RA,DEC,1/3600.,1L);
+      fits = new Fits();
+      fits.loadFITS(f.getAbsolutePath());
+
+      int tileOrder = Integer.numberOfTrailingZeros(tileWidth);
+      Context context = new Context();
+      context.createHealpixOrder(tileOrder);
+      xy2hpx = context.xy2hpx;
+
+      // Tuile contenant le centre de l'image, dans le repre demand
+      gal2ICRS = frame.equals("GALACTIC");
+      Astrocoo c = new Astrocoo( Astroframe.create("ICRS"), RA, DEC );
+      if( gal2ICRS ) c.convertTo( Astroframe.create("GALACTIC") );
+      orderPix = ORDERPIX;
+      int order = orderPix-tileOrder;
+      long npix = CDSHealpix.ang2pix_nest(order, Math.toRadians(90-c.getLat()), Math.toRadians(c.getLon()));
+      min = npix * tileWidth * tileWidth;
+      out = new double[tileWidth*tileWidth];
+   }
+
+   @TearDown(Level.Trial)
+   public void tearDown() { SyntheticData.rmDir(dir); }
+
+   @Benchmark
+   public double[] tilePerPixel() {
+      TileKernels.perPixel(fits,orderPix,min,xy2hpx,tileWidth,gal2ICRS,out);
+      return out;
+   }
+
+   @Benchmark
+   public double[] tilePerRow() {
+      TileKernels.perRow(fits,orderPix,min,xy2hpx,tileWidth,gal2ICRS,out);
+      return out;
+   }
+}
@@ -0,0 +1,108 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+
+package cds.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cds.aladin.MyProperties;
+import cds.moc.SMoc;
+import cds.mocmulti.MultiMoc;
+
+/**
+ * Interrogation d'un MultiMoc (serveur MocServer) peupl de MOCs alatoires :
+ * requte spatiale seule, requte par proprits seule, et requte combine.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class MultiMocBench {
+
+   @Param({ "5000" })
+   public int nbMocs;
+
+   @Param({ "8" })
+   public int mocOrder;
+
+   static private final String [] TYPES = { "image", "catalog", "cube" };
+   static private final String [] REGIMES = { "optical", "infrared", "radio", "x-ray", "uv" };
+
+   private MultiMoc mm;
+   private SMoc region;
+   private HashMap<String,String[]> filter;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      Random r = new Random(1L);
+      mm = new MultiMoc();
+      for( int i=0; i<nbMocs; i++ ) {
+         String id = "BENCH/"+(i%3==0?"P":"C")+"/survey"+i;
+         MyProperties prop = new MyProperties();
+         prop.put("ID",id);
+         prop.put("obs_title","Synthetic collection "+i);
+         prop.put("dataproduct_type",TYPES[ r.nextInt(TYPES.length) ]);
+         prop.put("obs_regime",REGIMES[ r.nextInt(REGIMES.length) ]);
+         prop.put("nb_rows",""+r.nextInt(1000000));
+         SMoc moc = SyntheticData.randomMoc(mocOrder,50+r.nextInt(2000),i);
+         mm.add(id,moc,prop,0L,0L);
+      }
+      region = SyntheticData.randomMoc(mocOrder,500,-1L);
+      filter = new HashMap<>();
+      filter.put("obs_regime",new String[] { "optical" });
+   }
+
+   @Benchmark
+   public ArrayList<String> scanMoc() { return mm.scan(region); }
+
+   @Benchmark
+   public ArrayList<String> scanFilter() { return mm.scan(filter); }
+
+   @Benchmark
+   public ArrayList<String> scanMocFilter() { return mm.scan(region,filter,true,-1,MultiMoc.OVERLAPS); }
+
+   @Benchmark
+   public ArrayList<String> scanMocExpr() throws Exception {
+      return mm.scan(region,"obs_regime=optical && dataproduct_type=image",true,-1,MultiMoc.OVERLAPS);
+   }
+}
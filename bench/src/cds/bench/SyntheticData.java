@@ -0,0 +1,243 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.bench;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Base64;
+import java.util.Random;
+
+import cds.moc.SMoc;
+
+/**
+ * Gnrateurs de donnes synthtiques pour les benchmarks : images FITS avec WCS,
+ * flux VOTable (TABLEDATA et BINARY2) et MOCs alatoires.
+ * Toutes les gnrations sont dterministes pour une graine donne.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+public final class SyntheticData {
+
+   private SyntheticData() { }
+
+   /** Ecriture d'une image FITS alatoire munie d'une calibration TAN
+    * @param file le fichier  crer
+    * @param width,height taille de l'image
+    * @param bitpix codage des pixels (8, 16, 32, -32 ou -64)
+    * @param ra,dec centre de l'image (degrs)
+    * @param pixSize taille d'un pixel (degrs)
+    * @param seed graine du gnrateur
+    */
+   static public void writeFitsImage(File file,int width,int height,int bitpix,
+         double ra,double dec,double pixSize,long seed) throws IOException {
+      Random r = new Random(seed);
+      StringBuilder h = new StringBuilder();
+      card(h,"SIMPLE","T");
+      card(h,"BITPIX",""+bitpix);
+      card(h,"NAXIS","2");
+      card(h,"NAXIS1",""+width);
+      card(h,"NAXIS2",""+height);
+      card(h,"CTYPE1","'RA---TAN'");
+      card(h,"CTYPE2","'DEC--TAN'");
+      card(h,"CRPIX1",""+(width/2.+0.5));
+      card(h,"CRPIX2",""+(height/2.+0.5));
+      card(h,"CRVAL1",""+ra);
+      card(h,"CRVAL2",""+dec);
+      card(h,"CDELT1",""+(-pixSize));
+      card(h,"CDELT2",""+pixSize);
+      card(h,"RADESYS","'ICRS'");
+      card(h,"EQUINOX","2000.0");
+      h.append(pad("END",80));
+      while( h.length()%2880!=0 ) h.append(' ');
+
+      try( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))) ) {
+         out.write(h.toString().getBytes("US-ASCII"));
+         long n = (long)width*height;
+         for( long i=0; i<n; i++ ) {
+            double v = 1000 + 100*r.nextGaussian();
+            switch( bitpix ) {
+               case   8: out.writeByte( (int)(v/8) & 0xFF ); break;
+               case  16: out.writeShort( (int)v );          break;
+               case  32: out.writeInt( (int)v );            break;
+               case -32: out.writeFloat( (float)v );        break;
+               case -64: out.writeDouble( v );              break;
+               default: throw new IOException("Unsupported bitpix "+bitpix);
+            }
+         }
+         long size = n*(Math.abs(bitpix)/8);
+         for( long i=size; i%2880!=0; i++ ) out.writeByte(0);
+      }
+   }
+
+   // Ajout d'une carte FITS de 80 caractres
+   static private void card(StringBuilder h,String key,String value) {
+      h.append( pad( pad(key,8)+"= "+value, 80) );
+   }
+
+   static private String pad(String s,int n) {
+      StringBuilder b = new StringBuilder(s);
+      while( b.length()<n ) b.append(' ');
+      return b.toString();
+   }
+
+   /** Gnration d'une VOTable de n lignes (ra, dec, mag, id) sous forme TABLEDATA */
+   static public byte [] votableTabledata(int n,long seed) throws IOException {
+      Random r = new Random(seed);
+      StringBuilder s = new StringBuilder();
+      votableHead(s);
+      s.append("<DATA><TABLEDATA>\n");
+      for( int i=0; i<n; i++ ) {
+         s.append("<TR><TD>").append(r.nextDouble()*360)
+          .append("</TD><TD>").append(r.nextDouble()*180-90)
+          .append("</TD><TD>").append((float)(10+10*r.nextDouble()))
+          .append("</TD><TD>SRC").append(i)
+          .append("</TD></TR>\n");
+      }
+      s.append("</TABLEDATA></DATA>\n");
+      votableTail(s);
+      return s.toString().getBytes("UTF-8");
+   }
+
+   /** Gnration d'une VOTable de n lignes (ra, dec, mag, id) sous forme BINARY2 */
+   static public byte [] votableBinary2(int n,long seed) throws IOException {
+      Random r = new Random(seed);
+      ByteArrayOutputStream bin = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bin);
+      for( int i=0; i<n; i++ ) {
+         out.writeByte(0);         // Masque des valeurs nulles (4 champs => 1 octet)
+         out.writeDouble(r.nextDouble()*360);
+         out.writeDouble(r.nextDouble()*180-90);
+         out.writeFloat((float)(10+10*r.nextDouble()));
+         byte [] id = ("SRC"+i).getBytes("US-ASCII");
+         out.writeInt(id.length);
+         out.write(id);
+      }
+      out.flush();
+
+      StringBuilder s = new StringBuilder();
+      votableHead(s);
+      s.append("<DATA><BINARY2><STREAM encoding=\"base64\">\n");
+      s.append( Base64.getMimeEncoder().encodeToString(bin.toByteArray()) );
+      s.append("\n</STREAM></BINARY2></DATA>\n");
+      votableTail(s);
+      return s.toString().getBytes("UTF-8");
+   }
+
+   /** Ecriture d'une VOTable BINARY2 de n lignes (ra, dec, mag, id) dans un fichier, sans passer
+    * par la mmoire (pour les trs gros volumes) */
+   static public void writeVotableBinary2(File file,long n,long seed) throws IOException {
+      try( OutputStream out = new BufferedOutputStream(new FileOutputStream(file),1<<16) ) {
+         StringBuilder s = new StringBuilder();
+         votableHead(s);
+         s.append("<DATA><BINARY2><STREAM encoding=\"base64\">\n");
+         out.write( s.toString().getBytes("UTF-8") );
+         writeBinary2Stream(out,n,seed);
+         s = new StringBuilder("\n</STREAM></BINARY2></DATA>\n");
+         votableTail(s);
+         out.write( s.toString().getBytes("UTF-8") );
+      }
+   }
+
+   /** Ecriture du seul contenu BASE64 (lignes de 76 caractres) du STREAM BINARY2 de n lignes
+    * (mmes donnes que writeVotableBinary2()) */
+   static public void writeBinary2Stream(OutputStream os,long n,long seed) throws IOException {
+      Random r = new Random(seed);
+      OutputStream b64 = Base64.getMimeEncoder().wrap( new NoClose(os) );
+      DataOutputStream out = new DataOutputStream( new BufferedOutputStream(b64,1<<16) );
+      for( long i=0; i<n; i++ ) {
+         out.writeByte(0);         // Masque des valeurs nulles (4 champs => 1 octet)
+         out.writeDouble(r.nextDouble()*360);
+         out.writeDouble(r.nextDouble()*180-90);
+         out.writeFloat((float)(10+10*r.nextDouble()));
+         byte [] id = ("SRC"+i).getBytes("US-ASCII");
+         out.writeInt(id.length);
+         out.write(id);
+      }
+      out.close();     // Termine le codage BASE64 (bourrage) sans fermer le flux sous-jacent
+   }
+
+   // Flux dont la fermeture n'est pas propage
+   static private final class NoClose extends FilterOutputStream {
+      NoClose(OutputStream out) { super(out); }
+      public void write(byte [] b,int off,int len) throws IOException { out.write(b,off,len); }
+      public void close() throws IOException { flush(); }
+   }
+
+   static private void votableHead(StringBuilder s) {
+      s.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+       .append("<VOTABLE version=\"1.3\" xmlns=\"http://www.ivoa.net/xml/VOTable/v1.3\">\n")
+       .append("<RESOURCE><TABLE name=\"bench\">\n")
+       .append("<FIELD name=\"ra\" datatype=\"double\" ucd=\"pos.eq.ra;meta.main\" unit=\"deg\"/>\n")
+       .append("<FIELD name=\"dec\" datatype=\"double\" ucd=\"pos.eq.dec;meta.main\" unit=\"deg\"/>\n")
+       .append("<FIELD name=\"mag\" datatype=\"float\" ucd=\"phot.mag\"/>\n")
+       .append("<FIELD name=\"id\" datatype=\"char\" arraysize=\"*\" ucd=\"meta.id;meta.main\"/>\n");
+   }
+
+   static private void votableTail(StringBuilder s) {
+      s.append("</TABLE></RESOURCE>\n</VOTABLE>\n");
+   }
+
+   /** Gnration d'un MOC spatial alatoire : nbCells cellules de l'ordre indiqu,
+    * regroupes autour de quelques centres pour ressembler  des couvertures relles */
+   static public SMoc randomMoc(int order,int nbCells,long seed) throws Exception {
+      Random r = new Random(seed);
+      long nside = 1L<<order;
+      long max = 12*nside*nside;
+      SMoc moc = new SMoc(order);
+      moc.bufferOn();
+      long center = (long)(r.nextDouble()*max);
+      for( int i=0; i<nbCells; i++ ) {
+         if( r.nextInt(100)==0 ) center = (long)(r.nextDouble()*max);
+         long npix = center + (long)(r.nextGaussian()*nbCells);
+         if( npix<0 || npix>=max ) continue;
+         moc.add(order,npix);
+      }
+      moc.bufferOff();
+      return moc;
+   }
+
+   /** Cration d'un rpertoire temporaire qui sera supprim  la fin de la JVM */
+   static public File tmpDir(String prefix) throws IOException {
+      File dir = File.createTempFile(prefix,"");
+      dir.delete();
+      dir.mkdirs();
+      dir.deleteOnExit();
+      return dir;
+   }
+
+   /** Suppression rcursive d'un rpertoire */
+   static public void rmDir(File dir) {
+      File [] list = dir.listFiles();
+      if( list!=null ) for( File f : list ) {
+         if( f.isDirectory() ) rmDir(f);
+         else f.delete();
+      }
+      dir.delete();
+   }
+}
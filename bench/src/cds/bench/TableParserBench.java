@@ -0,0 +1,109 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+
+package cds.bench;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cds.aladin.MyInputStream;
+import cds.xml.Field;
+import cds.xml.TableParser;
+import cds.xml.TableParserConsumer;
+
+/**
+ * Analyse de VOTables par TableParser.parse(), sous forme TABLEDATA et BINARY2.
+ * Le consommateur se contente de compter les enregistrements et les caractres reus
+ * afin de mesurer le cot du seul parsing.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations=3, time=2)
+@Measurement(iterations=5, time=2)
+@Fork(1)
+public class TableParserBench {
+
+   @Param({ "TABLEDATA", "BINARY2" })
+   public String serialization;
+
+   @Param({ "100000" })
+   public int nbRows;
+
+   private byte [] votable;
+
+   @Setup(Level.Trial)
+   public void setup() throws Exception {
+      votable = serialization.equals("BINARY2") ? SyntheticData.votableBinary2(nbRows,1L)
+            : SyntheticData.votableTabledata(nbRows,1L);
+   }
+
+   @Benchmark
+   public long parse() throws Exception {
+      Counter c = new Counter();
+      TableParser tp = new TableParser(null,c);
+      if( !tp.parse( new MyInputStream( new ByteArrayInputStream(votable) ) ) ) {
+         throw new Exception(tp.getError());
+      }
+      if( c.nbRecords!=nbRows ) throw new Exception("Parsing error: "+c.nbRecords+"/"+nbRows+" records");
+      return c.nbChars;
+   }
+
+   /** Consommateur minimal (galement utilis par Base64Bench) */
+   static final class Counter implements TableParserConsumer {
+      int nbRecords;
+      long nbChars;
+
+      public void setRecord(double ra,double dec,double jdtime,String [] field) {
+         nbRecords++;
+         for( String s : field ) if( s!=null ) nbChars+=s.length();
+      }
+      public void startResource(String ID) { }
+      public void setResourceInfo(String name,String contain) { }
+      public void endResource() { }
+      public void startTable(String ID) { }
+      public void setTableInfo(String name,String value) { }
+      public void endTable() { }
+      public void setTableRaDecXYIndex(int nRa,int nDec,int nPmRa,int nPmDec,int nX,int nY,boolean badDetection) { }
+      public void setField(Field f) { }
+      public void setTarget(String target) { }
+      public void tableParserWarning(String msg) { }
+      public void tableParserInfo(String msg) { }
+      public void setFilter(String filter) { }
+   }
+}
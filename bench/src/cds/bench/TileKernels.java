@@ -0,0 +1,186 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+
+package cds.bench;
+
+import cds.aladin.Calib;
+import cds.aladin.Coord;
+import cds.astro.Astrocoo;
+import cds.astro.Astroframe;
+import cds.fits.Fits;
+import cds.fits.PixelAccess;
+import cds.healpix.Healpix;
+import cds.healpix.HealpixNestedFast;
+
+/**
+ * Noyaux de r-chantillonnage d'une tuile HiPS depuis une image source, extraits de
+ * ThreadBuilderTile.buildHealpix1() pour une seule image, sans co-addition :
+ * - perPixel() : copie de l'ancien noyau pixel par pixel (changement de repre par clonage
+ *   d'un Astrocoo, projection par Calib.GetXY(Coord), accs par Fits.getPixelDouble()) ;
+ * - perRow() : noyau actuel ligne par ligne (changement de repre et projection de la
+ *   ligne entire dans des tableaux primitifs, accs par PixelAccess).
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class TileKernels {
+
+   static private final double toDeg = 180./Math.PI;
+
+   static private final Astrocoo COO_GAL = new Astrocoo( Astroframe.create("GALACTIC") );
+   static private final Astrocoo COO_EQU = new Astrocoo( Astroframe.create("ICRS") );
+   static private final Astroframe AF_ICRS1 = Astroframe.create("ICRS");
+
+   private TileKernels() { }
+
+   /** Ancien noyau, pixel par pixel
+    * @param f image source (pixels en mmoire) munie d'une calibration
+    * @param orderPix ordre HEALPix des pixels de la tuile
+    * @param min premier indice HEALPix de la tuile
+    * @param xy2hpx correspondance indice XY => indice HEALPix dans la tuile
+    * @param width largeur de la tuile
+    * @param gal2ICRS true si la tuile est en repre galactique
+    * @param out valeurs des pixels de la tuile (NaN si hors image)
+    */
+   static void perPixel(Fits f,int orderPix,long min,int [] xy2hpx,int width,boolean gal2ICRS,double [] out) {
+      final HealpixNestedFast hn = Healpix.getNestedFast(orderPix);
+      Calib calib = f.getCalib();
+      double radec[] = new double[2];
+      Coord coo = new Coord();
+      for( int y=0; y<width; y++ ) {
+         for( int x=0; x<width; x++ ) {
+            long index = min + xy2hpx[y * width + x];
+            hn.center(index,radec);
+            if( gal2ICRS ) {
+               radec[0] *= toDeg;
+               radec[1] *= toDeg;
+               radec = gal2ICRS(radec);
+               coo.al = radec[0];
+               coo.del = radec[1];
+            } else {
+               coo.al = radec[0]*toDeg;
+               coo.del = radec[1]*toDeg;
+            }
+            out[y*width+x] = Double.NaN;
+            try {
+               calib.GetXY(coo,false);
+            } catch( Exception e ) { continue; }
+
+            // Inversion ordonne et ajustement pour le calcul bilinaire
+            coo.y = f.height-coo.y-1;
+            coo.x -=1;
+            out[y*width+x] = getBilinearPixel(f,null,coo.x,coo.y);
+         }
+      }
+   }
+
+   /** Noyau actuel, ligne par ligne (mmes paramtres que perPixel()) */
+   static void perRow(Fits f,int orderPix,long min,int [] xy2hpx,int width,boolean gal2ICRS,double [] out) {
+      final HealpixNestedFast hn = Healpix.getNestedFast(orderPix);
+      Calib calib = f.getCalib();
+      PixelAccess pa = f.getPixelAccess();
+      double radec[] = new double[2];
+      double [] rowAl  = new double[width];
+      double [] rowDel = new double[width];
+      double [] rowX = new double[width];
+      double [] rowY = new double[width];
+      Astrocoo src = (Astrocoo) COO_GAL.clone();
+      Astrocoo dst = (Astrocoo) COO_EQU.clone();
+      for( int y=0; y<width; y++ ) {
+         for( int x=0; x<width; x++ ) {
+            long index = min + xy2hpx[y * width + x];
+            hn.center(index,radec);
+            rowAl[x]  = radec[0]*toDeg;
+            rowDel[x] = radec[1]*toDeg;
+         }
+         if( gal2ICRS ) {
+            for( int x=0; x<width; x++ ) {
+               src.set(rowAl[x],rowDel[x]);
+               Astrocoo.convert(src,dst);
+               rowAl[x]  = dst.getLon();
+               rowDel[x] = dst.getLat();
+            }
+         }
+         calib.GetXY(rowAl,rowDel,rowX,rowY,0,width,false);
+         for( int x=0; x<width; x++ ) {
+            if( Double.isNaN(rowX[x]) || Double.isNaN(rowY[x]) ) { out[y*width+x] = Double.NaN; continue; }
+            out[y*width+x] = getBilinearPixel(f,pa,rowX[x]-1,f.height-rowY[x]-1);
+         }
+      }
+   }
+
+   // Conversion galactique => ICRS d'une position (ancienne mthode, un clone par appel)
+   static private double [] gal2ICRS(double [] aldel) {
+      Astrocoo coo = (Astrocoo) COO_GAL.clone();
+      coo.set(aldel[0],aldel[1]);
+      coo.convertTo(AF_ICRS1);
+      aldel[0] = coo.getLon();
+      aldel[1] = coo.getLat();
+      return aldel;
+   }
+
+   // Interpolation bilinaire (cf. ThreadBuilderTile.getBilinearPixel(), sans la marge ni le blank)
+   // via PixelAccess si fourni, sinon via Fits.getPixelDouble()
+   static private double getBilinearPixel(Fits f,PixelAccess pa,double x,double y) {
+      int x1 = (int)x;
+      int y1 = (int)y;
+      int x2=x1+1;
+      int y2=y1+1;
+      int ox1= x1;
+      int oy1= y1;
+      int ox2= x2;
+      int oy2= y2;
+
+      if( x<-1 || y<-1 || x2<f.xCell || y2<f.yCell ||
+            x1>=f.xCell+f.widthCell || y1>=f.yCell+f.heightCell ) return Double.NaN;
+
+      // Sur le bord, on ddouble le dernier pixel
+      if( ox1==f.xCell-1 ) ox1++;
+      if( oy1==f.yCell-1 ) oy1++;
+      if( ox2==f.xCell+f.widthCell ) ox2--;
+      if( oy2==f.yCell+f.heightCell ) oy2--;
+
+      double a0,a1,a2,a3;
+      if( pa!=null ) {
+         a0 = pa.get(ox1,oy1,0);
+         a1 = pa.get(ox2,oy1,0);
+         a2 = pa.get(ox1,oy2,0);
+         a3 = pa.get(ox2,oy2,0);
+      } else {
+         a0 = f.getPixelDouble(ox1,oy1,0);
+         a1 = f.getPixelDouble(ox2,oy1,0);
+         a2 = f.getPixelDouble(ox1,oy2,0);
+         a3 = f.getPixelDouble(ox2,oy2,0);
+      }
+
+      double d0,d1,d2,d3,pA,pB;
+      if( x==x1 ) { d0=1; d1=0; }
+      else if( x==x2 ) { d0=0; d1=1; }
+      else { d0 = 1./(x-x1); d1 = 1./(x2-x); }
+      if( y==y1 ) { d2=1; d3=0; }
+      else if( y==y2 ) { d2=0; d3=1; }
+      else { d2 = 1./(y-y1); d3 = 1./(y2-y); }
+      pA = (a0*d0+a1*d1)/(d0+d1);
+      pB = (a2*d0+a3*d1)/(d0+d1);
+      return (pA*d2+pB*d3)/(d2+d3);
+   }
+}
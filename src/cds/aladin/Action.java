@@ -32,6 +32,7 @@ import java.awt.Toolkit;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
@@ -130,6 +131,9 @@ public class Action {
 	// parsers used for the LINE function
 	Parser lineRa1Parser, lineDec1Parser, lineRa2Parser, lineDec2Parser;
 
+	// compiled versions of the size and color parsers (vectorized evaluation, cf. ColumnEvaluator)
+	private ColumnEvaluator sizeEval, redEval, greenEval, blueEval, rainbowEval, saturationEval;
+
 	boolean colorIsVariable = false; // true if the RGB color of this action is variable
 	boolean userDefinedMinMax = false; // true if min and max values were given by the user (4th and 5th optional parameters of circle)
 	boolean rainbowColorIsVariable = false; // true if the RAINBOW color of this action is variable
@@ -734,6 +738,7 @@ public class Action {
 
         try {
             saturationParser = UCDFilter.createParser(st.nextToken(),a);
+            saturationEval = new ColumnEvaluator(saturationParser);
         }
         catch(ParserException e) {Aladin.error(ERR12,1);badSyntax=true;return;}
 
@@ -782,6 +787,7 @@ public class Action {
 
     	try {
 			rainbowParser = UCDFilter.createParser(st.nextToken(),a);
+			rainbowEval = new ColumnEvaluator(rainbowParser);
 		}
     	catch(ParserException e) {Aladin.error(ERR12,1);badSyntax=true;return;}
 
@@ -847,6 +853,9 @@ public class Action {
 			redParser = UCDFilter.createParser(st.nextToken(),a);
 			greenParser = UCDFilter.createParser(st.nextToken(),a);
 			blueParser = UCDFilter.createParser(st.nextToken(),a);
+			redEval = new ColumnEvaluator(redParser);
+			greenEval = new ColumnEvaluator(greenParser);
+			blueEval = new ColumnEvaluator(blueParser);
 		}
     	catch(ParserException e) {Aladin.error(ERR15,1);badSyntax=true;return;}
 
@@ -896,11 +905,9 @@ public class Action {
             mustComputeSaturationMinMax = false;
         }
 
-        if( !setAllVariables(saturationParser, s, false) ) return null;
-
-        val = saturationParser.eval();
+        val = saturationEval.eval(s);
 
-        if(val==99.9) return null;
+        if(Double.isNaN(val) || val==99.9) return null;
 
 	    Color orgColor = s.plan.c;
 	    float[] hsbVals = new float[3];
@@ -927,11 +934,9 @@ public class Action {
 			mustComputeRainbowMinMax = false;
 		}
 
-		if( !setAllVariables(rainbowParser, s, false) ) return null;
+		val = rainbowEval.eval(s);
 
-		val = rainbowParser.eval();
-
-		if(val==99.9) return null;
+		if(Double.isNaN(val) || val==99.9) return null;
 
 
 		hue = (float)( (val-rainbowMinValue)/(rainbowMaxValue-rainbowMinValue) );
@@ -968,13 +973,10 @@ public class Action {
 			mustComputeRGBMinMax = false;
 		}
 
-		if( ! setAllVariables(redParser, s, false) ) return null;
-		if( ! setAllVariables(blueParser, s, false) ) return null;
-		if( ! setAllVariables(greenParser, s, false) ) return null;
-
-		redVal = redParser.eval();
-		greenVal = greenParser.eval();
-		blueVal = blueParser.eval();
+		redVal = redEval.eval(s);
+		greenVal = greenEval.eval(s);
+		blueVal = blueEval.eval(s);
+		if( Double.isNaN(redVal) || Double.isNaN(greenVal) || Double.isNaN(blueVal) ) return null;
 
 		// Probleme du 99.9 dans les magnitudes
 		if(redVal==99.9 || greenVal==99.9 || blueVal==99.9) return null;
@@ -1094,6 +1096,7 @@ public class Action {
     	    	// creation of the sizeParser
     	    	try {
     	    	    this.sizeParser = UCDFilter.createParser(st.nextToken(),a);
+    	    	    this.sizeEval = new ColumnEvaluator(sizeParser);
     	    	}
     	    	catch(ParserException e) {Aladin.error(ERR19,1);badSyntax=true;}
 
@@ -1233,25 +1236,63 @@ public class Action {
         minValue = Double.POSITIVE_INFINITY;
         maxValue = Double.NEGATIVE_INFINITY;
 
-        Source s;
+        double [] value = new double[sources.length];
+        boolean [] ok = new boolean[sources.length];
+        sizeEval.eval(sources,value,ok);
 
-        double value;
-
-        // loop on all plans and selection of catalogs which are active
         for( int i=sources.length-1; i>=0; i-- ) {
-            s = sources[i];
-
-            if( ! setAllVariables(sizeParser, s, false) ) continue;
-            value = sizeParser.eval();
+            if( !ok[i] ) continue;
             // reserved value in FITS to indicate a problem
-            if(Math.abs(value)!=99.9) {
-                if(value>maxValue) maxValue = value;
-                if(value<minValue) minValue = value;
+            if(Math.abs(value[i])!=99.9) {
+                if(value[i]>maxValue) maxValue = value[i];
+                if(value[i]<minValue) minValue = value[i];
             }
         }
         //System.out.println(minValue+" "+maxValue);
     }
 
+    /** Retourne les sources des plans catalogue concerns par le filtre, dans l'ordre de parcours
+     * des calculs d'extrema (plans du dernier au premier) */
+    private Source[] getConcernedSources() {
+        ArrayList<Source> list = new ArrayList<>();
+        Plan[] plans = pf.getConcernedPlans();
+        for( int i=plans.length-1; i>=0; i-- ) {
+            if( !plans[i].isCatalog() ) continue;
+            Iterator<Obj> it = plans[i].iterator();
+            while( it.hasNext() ) {
+                Obj o = it.next();
+                if( o!=null && o.asSource() ) list.add( (Source)o );
+            }
+        }
+        return list.toArray( new Source[ list.size() ] );
+    }
+
+    /** Calcul vectoris des extrema d'une expression sur un ensemble de sources
+     * (les valeurs +/-99.9, rserves en FITS pour signaler un problme, sont ignores)
+     * @param eval l'expression compile
+     * @param sources les sources
+     * @param minMax en retour, min puis max (+/-Infinity si aucune valeur)
+     * @return la dernire valeur calcule dans l'ordre de parcours des sources, +Infinity si aucune
+     */
+    static private double computeMinMax(ColumnEvaluator eval, Source[] sources, double[] minMax) {
+        double [] value = new double[sources.length];
+        boolean [] ok = new boolean[sources.length];
+        eval.eval(sources,value,ok);
+
+        double last = Double.POSITIVE_INFINITY;
+        minMax[0] = Double.POSITIVE_INFINITY;
+        minMax[1] = Double.NEGATIVE_INFINITY;
+        for( int i=0; i<sources.length; i++ ) {
+            if( !ok[i] ) continue;
+            last = value[i];
+            if( Math.abs(last)!=99.9 ) {
+                if( last>minMax[1] ) minMax[1] = last;
+                if( last<minMax[0] ) minMax[0] = last;
+            }
+        }
+        return last;
+    }
+
     /** set maxValue, minValue */
     /*
     private void computeMinMax() {
@@ -1302,43 +1343,10 @@ public class Action {
 
     /** compute saturation{Min,Max}Value */
     private void computeSaturationMinMax() {
-        // initialization
-        saturationMinValue = Double.POSITIVE_INFINITY;
-        saturationMaxValue = Double.NEGATIVE_INFINITY;
-
-        int i,j;
-
-        Plan p = null;
-        Plan[] plans = pf.getConcernedPlans();
-        double value = Double.POSITIVE_INFINITY;
-
-        // loop on all plans and selection of catalogs which are active
-        for( i=plans.length-1; i>=0; i-- ) {
-            p = plans[i];
-            if( !p.isCatalog() ) continue;
-            Iterator<Obj> it = ((PlanCatalog)plans[i]).iterator();
-            for( j=0; it.hasNext(); j++ ) {
-               Obj o = it.next();
-//               if( !(o instanceof Source) ) continue;
-               if( !o.asSource() ) continue;
-               Source s = (Source)o;
-
-                if( s!=null) {
-
-                    if( !setAllVariables(saturationParser, s, false)  ) {
-                        continue;
-                    }
-
-                    value = saturationParser.eval();
-                    // reserved value in FITS to indicate a problem
-                    if( Math.abs(value)!=99.9) {
-                        if(value>saturationMaxValue) saturationMaxValue = value;
-                        if(value<saturationMinValue) saturationMinValue = value;
-                    }
-
-                }
-            }
-        }
+        double[] minMax = new double[2];
+        double value = computeMinMax(saturationEval, getConcernedSources(), minMax);
+        saturationMinValue = minMax[0];
+        saturationMaxValue = minMax[1];
 
         if( value == saturationMaxValue ) {saturationMinValue = 0;}
 
@@ -1346,43 +1354,10 @@ public class Action {
 
 	/** compute rainbow{Min,Max}Value */
 	private void computeRainbowMinMax() {
-		// initialization
-		rainbowMinValue = Double.POSITIVE_INFINITY;
-		rainbowMaxValue = Double.NEGATIVE_INFINITY;
-
-		int i,j;
-
-    	Plan p = null;
-        Plan[] plans = pf.getConcernedPlans();
-		double hue = Double.POSITIVE_INFINITY;
-
-    	// loop on all plans and selection of catalogs which are active
-    	for( i=plans.length-1; i>=0; i-- ) {
-    	    p = plans[i];
-    	    if( !p.isCatalog() ) continue;
-    	    Iterator<Obj> it = p.iterator();
-    	    for( j=0; it.hasNext(); j++ ) {
-    	         Obj o = it.next();
-//    	         if( !(o instanceof Source) ) continue;
-    	         if( !o.asSource() ) continue;
-    	         Source s = (Source)o;
-
-    	   	    if( s!=null) {
-
-					if( !setAllVariables(rainbowParser, s, false)  ) {
-						continue;
-                    }
-
-					hue = rainbowParser.eval();
-					// reserved value in FITS to indicate a problem
-					if( Math.abs(hue)!=99.9) {
-    	    	    	if(hue>rainbowMaxValue) rainbowMaxValue = hue;
-    	    	    	if(hue<rainbowMinValue) rainbowMinValue = hue;
-					}
-
-    	    	}
-    	    }
-    	}
+		double[] minMax = new double[2];
+		double hue = computeMinMax(rainbowEval, getConcernedSources(), minMax);
+		rainbowMinValue = minMax[0];
+		rainbowMaxValue = minMax[1];
 
 		if( hue == rainbowMaxValue ) {rainbowMinValue = 0;}
 
@@ -1393,49 +1368,35 @@ public class Action {
 		// initialization
 		redMinValue = greenMinValue = blueMinValue = Double.POSITIVE_INFINITY;
 		redMaxValue = greenMaxValue = blueMaxValue = Double.NEGATIVE_INFINITY;
-		int i,j;
-
-    	Plan p = null;
-        Plan[] plans = pf.getConcernedPlans();
-		double redValue,greenValue,blueValue;
 
-    	// loop on all plans and selection of catalogs which are active
-    	for( i=plans.length-1; i>=0; i-- ) {
-    	    p = plans[i];
-    	    if( !p.isCatalog() ) continue;
-    	    Iterator<Obj> it = ((PlanCatalog)p).iterator();
-    	    for( j=0; it.hasNext(); j++ ) {
-    	         Obj o = it.next();
-//    	         if( !(o instanceof Source) ) continue;
-                 if( !o.asSource() ) continue;
-    	         Source s = (Source)o;
-
-    	        if( s!=null) {
-
-					if( !setAllVariables(redParser, s, false) ||
-					!setAllVariables(greenParser, s, false) ||
-					!setAllVariables(blueParser, s, false) ) continue;
-    	        	redValue = redParser.eval();
-					greenValue = greenParser.eval();
-					blueValue = blueParser.eval();
-					// reserved value in FITS to indicate a problem
-					if( Math.abs(redValue)!=99.9) {
-    	        		if(redValue>redMaxValue) redMaxValue = redValue;
-    	        		if(redValue<redMinValue) redMinValue = redValue;
-					}
+		Source[] sources = getConcernedSources();
+		int n = sources.length;
+		double[] redValue = new double[n], greenValue = new double[n], blueValue = new double[n];
+		boolean[] redOk = new boolean[n], greenOk = new boolean[n], blueOk = new boolean[n];
+		redEval.eval(sources, redValue, redOk);
+		greenEval.eval(sources, greenValue, greenOk);
+		blueEval.eval(sources, blueValue, blueOk);
+
+		for( int i=0; i<n; i++ ) {
+			// the 3 components are needed
+			if( !redOk[i] || !greenOk[i] || !blueOk[i] ) continue;
+
+			// reserved value in FITS to indicate a problem
+			if( Math.abs(redValue[i])!=99.9) {
+				if(redValue[i]>redMaxValue) redMaxValue = redValue[i];
+				if(redValue[i]<redMinValue) redMinValue = redValue[i];
+			}
 
-					if( Math.abs(greenValue)!=99.9 ) {
-    	        		if(greenValue>greenMaxValue) greenMaxValue = greenValue;
-    	        		if(greenValue<greenMinValue) greenMinValue = greenValue;
-					}
+			if( Math.abs(greenValue[i])!=99.9 ) {
+				if(greenValue[i]>greenMaxValue) greenMaxValue = greenValue[i];
+				if(greenValue[i]<greenMinValue) greenMinValue = greenValue[i];
+			}
 
-					if( Math.abs(blueValue)!=99.9 ) {
-    	        		if(blueValue>blueMaxValue) blueMaxValue = blueValue;
-    	        		if(blueValue<blueMinValue) blueMinValue = blueValue;
-					}
-    	        }
-    	    }
-    	}
+			if( Math.abs(blueValue[i])!=99.9 ) {
+				if(blueValue[i]>blueMaxValue) blueMaxValue = blueValue[i];
+				if(blueValue[i]<blueMinValue) blueMinValue = blueValue[i];
+			}
+		}
 
 		if( redMinValue == redMaxValue ) {redMinValue = 0;}
 		if( greenMinValue == greenMaxValue ) {greenMinValue = 0;}
@@ -2140,26 +2101,31 @@ public class Action {
         */
     }
 
-    private void finalComputeSize(Source s, int numero, int index) {
+    private void finalComputeSize(Source[] sources, int numero, int index) {
         //System.out.println("dans finalComputeSize");
-        double value;
+        double [] value = new double[sources.length];
+        boolean [] ok = new boolean[sources.length];
+        sizeEval.eval(sources,value,ok);
+
+        for( int i=0; i<sources.length; i++ ) {
+            if( !ok[i] ) continue;
+            Source s = sources[i];
+
+            // if the value is constant
+            if( sizeParser.isConstant() ) {
+                s.values[numero][index][0] = value[i];
+                continue;
+            }
 
-        if( ! setAllVariables(sizeParser, s, false) ) return;
-        value = sizeParser.eval();
+            // ce genre de situtations peut se produire lorsque {min,max}Value ont ete fixes par l'utilisateur
+            // dans ce cas, on fixe la taille  la valeur de l'extremum
+            double v = value[i];
+            if( v>maxValue ) v = maxValue;
+            else if( v<minValue ) v=minValue;
+            s.values[numero][index][0] = minRadius+(v-minValue)*(maxRadius-minRadius)/(maxValue-minValue);
 
-        // if the value is constant
-        if( sizeParser.isConstant() ) {
-            s.values[numero][index][0] = value;
-            return;
+            //System.out.println("Mag : "+v+"\tValeur : "+s.values[index][0]);
         }
-
-        // ce genre de situtations peut se produire lorsque {min,max}Value ont ete fixes par l'utilisateur
-        // dans ce cas, on fixe la taille  la valeur de l'extremum
-        if( value>maxValue ) value = maxValue;
-        else if( value<minValue ) value=minValue;
-        s.values[numero][index][0] = minRadius+(value-minValue)*(maxRadius-minRadius)/(maxValue-minValue);
-
-        //System.out.println("Mag : "+value+"\tValeur : "+s.values[index][0]);
     }
 
     /**
@@ -2208,14 +2174,15 @@ public class Action {
 		}
     }
 
-    /** compute at the end some values which will be stored in the source object
-     *  @param s - the source
+    /** compute at the end some values which will be stored in the source objects
+     *  (vectorized evaluation on all the selected sources)
+     *  @param sources - the sources selected for this action
      *  @param numero - numero du filtre
      *  @param index - index of the current action in s.actions array
      */
-    protected void finalcomputeValues(Source s, int numero, int index) {
+    protected void finalcomputeValues(Source[] sources, int numero, int index) {
         if( shape.equals(SIZE) || shape.equals(FILLSIZE) || shape.equals(FIXEDCIRCLE) ) {
-            finalComputeSize(s, numero, index);
+            finalComputeSize(sources, numero, index);
         }
     }
 
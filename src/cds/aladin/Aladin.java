@@ -7377,7 +7377,7 @@ DropTargetListener, DragSourceListener, DragGestureListener
       Legende leg = o.getLeg();
 
       // On "mange" le triangle (premier lment de la ligne info
-      StringTokenizer st = new StringTokenizer(o.info,"\t");
+      StringTokenizer st = new StringTokenizer(o.getFullInfo(),"\t");
       String tableName = st.nextToken();
       
       // On rcupre le nom de la table depuis la lgende
@@ -7487,7 +7487,7 @@ DropTargetListener, DragSourceListener, DragGestureListener
     */
    private void writeVOTableData(OutputStream s,Source o,boolean writeOID,boolean addCoo, boolean addXY)
          throws IOException {
-      StringTokenizer st = new StringTokenizer(o.info,"\t");
+      StringTokenizer st = new StringTokenizer(o.getFullInfo(),"\t");
       st.nextElement();     // On saute le triangle
 
       // Ajout colonnes X et Y
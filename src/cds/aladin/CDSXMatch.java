@@ -155,7 +155,10 @@ public final class CDSXMatch /*implements XMatchInterface*/ {
         double beginXmatch = System.currentTimeMillis();
         Aladin.trace(3, "Total time for extracting coordinates : "+(beginXmatch-begin));
         // TODO : ajouter la possibilit d'interrompre un xmatch en cours en effaant le plan rsultat
-        XMatchResult[] result = LocalXMatch.xMatch(array1, array2, ignoreFlag1, ignoreFlag2, seuils, method);
+        // Grandes tables => cross-match index par HEALPix et paralllis
+        XMatchResult[] result = array1.length+array2.length>=HealpixXMatch.MINSIZE ?
+              HealpixXMatch.xMatch(array1, array2, ignoreFlag1, ignoreFlag2, seuils, method) :
+              LocalXMatch.xMatch(array1, array2, ignoreFlag1, ignoreFlag2, seuils, method);
         double end = System.currentTimeMillis();
         Aladin.trace(3, "Total time for xmatch : "+(end-beginXmatch));
         fillResultPlane(pc, result, p1, p2, coordTab1, array1, POSXMATCH);
@@ -223,7 +226,10 @@ public final class CDSXMatch /*implements XMatchInterface*/ {
         double beginXmatch = System.currentTimeMillis();
         Aladin.trace(3, "Total time for extracting coordinates : "+(beginXmatch-begin));
         // TODO : faut il permettre de passer le minimum pour nbSigma ?
-        XMatchResult[] result = LocalXMatch.xMatchEllipse(array1, array2, maj1, min1, pa1, maj2, min2, pa2, ignoreFlag1, ignoreFlag2, new double[] {nbSigmaMin,nbSigmaMax}, method);
+        double [] seuilsEll = new double[] {nbSigmaMin,nbSigmaMax};
+        XMatchResult[] result = array1.length+array2.length>=HealpixXMatch.MINSIZE ?
+              HealpixXMatch.xMatchEllipse(array1, array2, maj1, min1, pa1, maj2, min2, pa2, ignoreFlag1, ignoreFlag2, seuilsEll, method) :
+              LocalXMatch.xMatchEllipse(array1, array2, maj1, min1, pa1, maj2, min2, pa2, ignoreFlag1, ignoreFlag2, seuilsEll, method);
         double end = System.currentTimeMillis();
         Aladin.trace(3, "Total time for ellipses xmatch : "+(end-beginXmatch));
         fillResultPlane(pc, result, p1, p2, coordTab1, array1, POSXMATCH_ELLIPSES);
@@ -564,9 +570,10 @@ public final class CDSXMatch /*implements XMatchInterface*/ {
 
 	private String getOnlyInfo(Source s, boolean tab1) {
 		String ret;
-		int idx = s.info.indexOf('\t');
-		if( idx>=0 ) ret = s.info.substring(idx+1);
-		else ret = s.info;
+		String info = s.getFullInfo();
+		int idx = info.indexOf('\t');
+		if( idx>=0 ) ret = info.substring(idx+1);
+		else ret = info;
 
 
 		if( colFilter!=null ) {
@@ -29,6 +29,7 @@ import java.util.Vector;
 
 import cds.astro.Astrocoo;
 import cds.astro.Astroframe;
+import cds.astro.Coo;
 import cds.fits.HeaderFits;
 //import cds.healpix.Projection ;
 import  cds.healpix.Healpix;
@@ -2743,6 +2744,185 @@ public final class Calib  implements Cloneable {
       }
    }
 
+   /** Indique si les versions tableaux de GetXY() et GetCoord() peuvent utiliser le calcul
+    * matriciel direct (projections znithales sans polynmes, systme hors FK4). Dans le cas
+    * contraire, elles se rabattent sur le calcul point par point */
+   protected boolean isBatchable() {
+      if( aladin==1 || aladin==2 || system==FK4 ) return false;
+      switch(proj) {
+         case TAN: return aladin>3 || xyapoly[1]==0 || xyapoly[1]==1;
+         case SIN: return xydpoly[1]==0 || xydpoly[2]==0;
+         case STG:
+         case ZEA:
+         case ARC: return true;
+         default:  return false;
+      }
+   }
+
+   /** Matrice 3x3 (ligne par ligne) de la rotation ralise par Astroframe.fromICRS() (from=true)
+    * ou Astroframe.toICRS() (from=false), obtenue en appliquant la conversion aux vecteurs de base.
+    * Ne doit pas tre utilise pour FK4 (E-terms) */
+   static protected double [] getRotation(Astroframe af,boolean from) {
+      double [] m = new double[9];
+      for( int j=0; j<3; j++ ) {
+         Coo u = new Coo(j==0?1:0, j==1?1:0, j==2?1:0);
+         if( from ) af.fromICRS(u);
+         else af.toICRS(u);
+         m[j]=u.x; m[3+j]=u.y; m[6+j]=u.z;
+      }
+      return m;
+   }
+
+   /** Produit de deux matrices 3x3, l'une ou l'autre pouvant tre null (identit) */
+   static private double [] mult(double [] a,double [] b) {
+      if( a==null ) return b;
+      if( b==null ) return a;
+      double [] m = new double[9];
+      for( int i=0; i<3; i++ ) {
+         for( int j=0; j<3; j++ ) m[i*3+j] = a[i*3]*b[j] + a[i*3+1]*b[3+j] + a[i*3+2]*b[6+j];
+      }
+      return m;
+   }
+
+   /** Matrice de passage du repre ICRS vers le repre local de la projection (axe Z sur le
+    * centre de projection, X vers l'est, Y vers le nord) */
+   private double [] getLocalRotation() {
+      double a = alphai*deg_to_rad, d = deltai*deg_to_rad;
+      double sa = Math.sin(a), ca = Math.cos(a), sd = Math.sin(d), cd = Math.cos(d);
+      double [] r = { -sa, ca, 0, -sd*ca, -sd*sa, cd, cd*ca, cd*sa, sd };
+      if( system==ICRS || system==XYLINEAR ) return r;
+      Astroframe af = system==FK5           ? Astroframe.create("FK5("+equinox+")"):
+                      system==GALACTIC      ? AF_GAL :
+                      system==SUPERGALACTIC ? AF_SGAL:
+                      system==ECLIPTIC      ? AF_ECL : null;
+      return af==null ? null : mult(r,getRotation(af,true));
+   }
+
+   /** Inverse de getLocalRotation() (repre local => ICRS) */
+   private double [] getLocalRotationInv() {
+      double a = alphai*deg_to_rad, d = deltai*deg_to_rad;
+      double sa = Math.sin(a), ca = Math.cos(a), sd = Math.sin(d), cd = Math.cos(d);
+      double [] r = { -sa, -sd*ca, cd*ca, ca, -sd*sa, cd*sa, 0, cd, sd };
+      Astroframe af = system==FK5           ? AF_FK5 :
+                      system==GALACTIC      ? AF_GAL :
+                      system==SUPERGALACTIC ? AF_SGAL:
+                      system==ECLIPTIC      ? AF_ECL : null;
+      return af==null ? r : mult(getRotation(af,false),r);
+   }
+
+   /** Version tableaux de GetXY(Coord,boolean) : calcule les positions (x[i],y[i]) des
+    * coordonnes ICRS (al[i],del[i]) pour deb<=i<fin. Les positions hors projection sont
+    * mises  NaN. La mthode n'utilise pas d'objet partag et peut tre appele
+    * simultanment sur des tranches diffrentes par plusieurs threads */
+   public void GetXY(double [] al,double [] del,double [] x,double [] y,int deb,int fin,boolean withTest) {
+      GetXY(null,al,del,x,y,deb,fin,withTest);
+   }
+
+   /** Idem, les coordonnes tant pralablement tournes par la matrice pre (null si aucune)
+    * - cf. Projection.getXY(double[]...) */
+   protected void GetXY(double [] pre,double [] al,double [] del,double [] x,double [] y,int deb,int fin,boolean withTest) {
+      double [] m = isBatchable() ? getLocalRotation() : null;
+
+      // Calcul point par point
+      if( m==null ) {
+         Coord c = new Coord();
+         for( int i=deb; i<fin; i++ ) {
+            c.al=al[i]; c.del=del[i];
+            if( pre!=null ) rotate(pre,c);
+            try { GetXY(c,withTest); x[i]=c.x; y[i]=c.y; }
+            catch( Exception e ) { x[i]=y[i]=Double.NaN; }
+         }
+         return;
+      }
+
+      m = mult(m,pre);
+      double id00=ID[0][0], id01=ID[0][1], id10=ID[1][0], id11=ID[1][1];
+      double y0 = ynpix-Ycen;
+      for( int i=deb; i<fin; i++ ) {
+         double a = al[i]*deg_to_rad, d = del[i]*deg_to_rad;
+         double cd = cos(d);
+         double ux = cd*cos(a), uy = cd*sin(a), uz = sin(d);
+         double vx = m[0]*ux + m[1]*uy + m[2]*uz;
+         double vy = m[3]*ux + m[4]*uy + m[5]*uz;
+         double vz = m[6]*ux + m[7]*uy + m[8]*uz;
+         double k;
+         switch(proj) {
+            case TAN: k = withTest && vz<0 ? Double.NaN : 1/vz;  break;
+            case SIN: k = withTest && vz<0 ? Double.NaN : 1;     break;
+            case STG: k = 2/(1+vz);                              break;
+            case ZEA: k = Math.sqrt(2/(1+vz));                   break;
+            default:  // ARC
+               double r = Math.sqrt(vx*vx+vy*vy);
+               k = r==0 ? 1 : Math.atan2(r,vz)/r;
+         }
+         double xs = k*vx*rad_to_deg, ys = k*vy*rad_to_deg;
+         x[i] = id00*xs + id01*ys + Xcen;
+         y[i] = -(id10*xs + id11*ys) + y0;
+      }
+   }
+
+   /** Version tableaux de GetCoord(Coord) : calcule les coordonnes ICRS (al[i],del[i])
+    * des positions (x[i],y[i]) pour deb<=i<fin, NaN si impossible. Mme remarque que
+    * pour GetXY(double[]...) concernant l'usage multi-threads */
+   public void GetCoord(double [] x,double [] y,double [] al,double [] del,int deb,int fin) {
+      GetCoord(null,x,y,al,del,deb,fin);
+   }
+
+   /** Idem, les coordonnes rsultantes tant ensuite tournes par la matrice post (null si aucune)
+    * - cf. Projection.getCoord(double[]...) */
+   protected void GetCoord(double [] post,double [] x,double [] y,double [] al,double [] del,int deb,int fin) {
+
+      // Calcul point par point
+      if( !isBatchable() ) {
+         Coord c = new Coord();
+         for( int i=deb; i<fin; i++ ) {
+            c.x=x[i]; c.y=y[i];
+            try {
+               GetCoord(c);
+               if( post!=null ) rotate(post,c);
+               al[i]=c.al; del[i]=c.del;
+            } catch( Exception e ) { al[i]=del[i]=Double.NaN; }
+         }
+         return;
+      }
+
+      double [] m = mult(post,getLocalRotationInv());
+      double cd00=CD[0][0], cd01=CD[0][1], cd10=CD[1][0], cd11=CD[1][1];
+      double y0 = ynpix-Ycen;
+      for( int i=deb; i<fin; i++ ) {
+         double xo = x[i]-Xcen, yo = y0-y[i];
+         double xs = (cd00*xo + cd01*yo)*deg_to_rad;
+         double ys = (cd10*xo + cd11*yo)*deg_to_rad;
+         double r2 = xs*xs + ys*ys;
+         double k,vz;
+         switch(proj) {
+            case TAN: k=1; vz=1; break;
+            case SIN: k=1; vz = r2>1 ? Double.NaN : Math.sqrt(1-r2); break;
+            case STG: k = 1/(1+r2/4); vz = (1-r2/4)*k; break;
+            case ZEA: k = r2>4 ? Double.NaN : Math.sqrt(1-r2/4); vz = 1-r2/2; break;
+            default:  // ARC
+               double r = Math.sqrt(r2);
+               k = r==0 ? 1 : Math.sin(r)/r;
+               vz = Math.cos(r);
+         }
+         double vx = k*xs, vy = k*ys;
+         double wx = m[0]*vx + m[1]*vy + m[2]*vz;
+         double wy = m[3]*vx + m[4]*vy + m[5]*vz;
+         double wz = m[6]*vx + m[7]*vy + m[8]*vz;
+         double a = Math.atan2(wy,wx)*rad_to_deg;
+         al[i]  = a<0 ? a+360 : a;
+         del[i] = Math.atan2(wz,Math.sqrt(wx*wx+wy*wy))*rad_to_deg;
+      }
+   }
+
+   /** Applique la rotation m aux coordonnes (c.al,c.del) */
+   static protected void rotate(double [] m,Coord c) {
+      Coo u = new Coo(c.al,c.del);
+      u.rotate(m);
+      c.al=u.getLon();
+      c.del=u.getLat();
+   }
+
    protected boolean TheSame(Calib cal) {
 
       if (aladin == 1) return false ;
@@ -2024,7 +2024,7 @@ public class Calque extends JPanel implements Runnable {
    /** Cr (ou modifie) un plan resamp
     * @param porig Le plan original (ou dj resampl)
     * @param p Le plan dont on utilise l'astronomie
-    * @param methode PPV ou BIL
+    * @param methode PPV, BIL ou LANCZOS
     * @param fullPixel true si on travaille sur les vrais pixels
     * @param keepOrig true si on doit garder l'image d'origine (si non dj rsample)
     */
@@ -3407,7 +3407,7 @@ public class Calque extends JPanel implements Runnable {
 //            if( !(o instanceof Source) ) continue;
             if( !o.asSource() ) continue;
             s = (Source)o;
-            p.pcat.setObjetFast(newSource = new Source(p, s.raj, s.dej, s.jdtime, s.id, s.info));
+            p.pcat.setObjetFast(newSource = new Source(p, s.raj, s.dej, s.jdtime, s.id, s.getFullInfo()));
             newSource.isSelected = s.isSelected;
             newSource.values = s.values;
             newSource.actions = s.actions;
@@ -3476,13 +3476,14 @@ public class Calque extends JPanel implements Runnable {
    // (remettre les valeurs dans les bonnes colonnes)
    private String createInfo(Source s,Legende leg) {
       String [] v = new String[leg.getSize()];
-      int offset=s.info.indexOf('\t');          // On passe le premier champ <&_nom du cata...>
+      String sInfo = s.getFullInfo();
+      int offset=sInfo.indexOf('\t');          // On passe le premier champ <&_nom du cata...>
       int start=offset+1;
       for( int i=0; offset!=-1; i++ ) {
-         offset = s.info.indexOf('\t',start);
+         offset = sInfo.indexOf('\t',start);
          int j = leg.find(s.getLeg().field[i]);
          if( j==-1 ) continue;
-         v[j] = offset!=-1 ? s.info.substring(start,offset) : s.info.substring(start);
+         v[j] = offset!=-1 ? sInfo.substring(start,offset) : sInfo.substring(start);
          start=offset+1;
       }
 
@@ -172,23 +172,15 @@ public class ColumnCalculator {
             myFields[i].computeColumnSize();
         }
         
-        Source s;
-        Expression parser;
-        String value;
+        String[] values;
         //double start, end;
         //start = System.currentTimeMillis();
         
-        // boucle sur toutes les sources
-        for( int i=0; i<sources.length; i++ ) {
-            s = sources[i];
-            // boucle sur chaque parser
-            for( int j=0; j<parsers.length; j++ ) {
-                parser = parsers[j];
-                //value = "";
-                value = parser.eval(s, nbDec);
-                //if( Action.setAllVariables(parser, s, false) ) value = Double.toString(parser.eval());
-                addCol(myFields[j], value, s);
-            }
+        // boucle sur chaque parser : valuation vectorise sur toutes les sources, puis ajout
+        // de la colonne (une expression peut ainsi utiliser les colonnes calcules prcdemment)
+        for( int j=0; j<parsers.length; j++ ) {
+            values = parsers[j].eval(sources, nbDec);
+            for( int i=0; i<sources.length; i++ ) addCol(myFields[j], values[i], sources[i]);
         }
         //end = System.currentTimeMillis();
         //System.out.println("Total time : "+(end-start));
@@ -230,7 +222,7 @@ public class ColumnCalculator {
         }
         
         // ajout de la nouvelle valeur
-        s.info = new String(s.info+"\t"+value);
+        s.info = new String(s.getFullInfo()+"\t"+value);
         
         // pb des colonnes vide qui engendrent un dcalage
         s.fixInfo();
@@ -301,6 +293,7 @@ public class ColumnCalculator {
         UCDFilter condFilter;
         boolean conditional = false;
         Parser parser1, parser2;
+        ColumnEvaluator eval1, eval2;   // versions compiles de parser1 et parser2
         
         Expression(String s) {
             this.s = s;
@@ -318,6 +311,7 @@ public class ColumnCalculator {
             if( !conditional ) {
                 try {
                     parser1 = UCDFilter.createParser(s.replace('$', ' ').trim(),a);
+                    eval1 = new ColumnEvaluator(parser1);
                 }
                 catch(ParserException e) {
                     error = "Incorrect syntax for expression "+s;
@@ -342,6 +336,7 @@ public class ColumnCalculator {
                 
                 try {
                     parser1 = UCDFilter.createParser(parser1Str.replace('$', ' ').trim(),a);
+                    eval1 = new ColumnEvaluator(parser1);
                 }
                 catch(ParserException e) {
                     error = "Incorrect syntax for expression "+parser1Str;
@@ -350,6 +345,7 @@ public class ColumnCalculator {
                 
                 try {
                     parser2 = UCDFilter.createParser(parser2Str.replace('$', ' ').trim(),a);
+                    eval2 = new ColumnEvaluator(parser2);
                 }
                 catch(ParserException e) {
                     error = "Incorrect syntax for expression "+parser2Str;
@@ -375,6 +371,33 @@ public class ColumnCalculator {
             }
             return value;
         }
+        
+        /** Evaluation vectorise pour un ensemble de sources
+         * @return la valeur formate pour chaque source, "" si elle n'a pu tre calcule
+         */
+        String[] eval(Source[] sources, int nbDec) {
+            int n = sources.length;
+            String[] value = new String[n];
+            double[] res1 = new double[n];
+            boolean[] ok1 = new boolean[n];
+            eval1.eval(sources, res1, ok1);
+            
+            boolean[] cond = null;
+            double[] res2 = null;
+            boolean[] ok2 = null;
+            if( conditional ) {
+                cond = condFilter.verifyValueConstraints(sources, 0);
+                res2 = new double[n];
+                ok2 = new boolean[n];
+                eval2.eval(sources, res2, ok2);
+            }
+            
+            for( int i=0; i<n; i++ ) {
+                if( cond==null || cond[i] ) value[i] = ok1[i] ? format(res1[i], nbDec) : "";
+                else value[i] = ok2[i] ? format(res2[i], nbDec) : "";
+            }
+            return value;
+        }
     }
            
 }
@@ -0,0 +1,172 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.aladin;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import cds.tools.parser.CompiledExpr;
+import cds.tools.parser.Parser;
+
+/**
+ * Evaluation d'une expression (Parser) sur des Sources  partir de sa version compile
+ * (cf. CompiledExpr) : les variables ${colonne} ou [UCD] ne sont rsolues en indices de
+ * colonne qu'une fois par lgende, les valeurs sont lues directement en double
+ * (cf. Source.getDoubleValue()) et l'expression est value colonne par colonne, par
+ * tranches de sources traites en parallle.
+ *
+ * Mme smantique que Action.setAllVariables(parser,s,false) suivi de parser.eval() :
+ * une source pour laquelle une variable est absente ou non numrique n'a pas de rsultat.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class ColumnEvaluator {
+
+   static private final int GRAIN = 4096;       // Nombre de sources par tche
+
+   private CompiledExpr expr;                   // L'expression compile
+   private String [] key;                       // Nom de colonne ou UCD (en majuscules) de chaque variable
+   private boolean [] isUcd;                    // true si la variable est un UCD, false si c'est un nom de colonne
+
+   // Pour l'valuation source par source (cf. eval(Source))
+   private Legende lastLeg;
+   private int [] lastPos;
+   private double [] val,stack;
+
+   ColumnEvaluator(Parser parser) {
+      expr = parser.compile();
+      String [] vars = expr.getVariables();
+      key = new String[vars.length];
+      isUcd = new boolean[vars.length];
+      for( int i=0; i<vars.length; i++ ) {
+         String v = vars[i];
+         isUcd[i] = v.startsWith("[");
+         key[i] = v.substring(1,v.length()-1);
+         if( isUcd[i] ) key[i] = key[i].toUpperCase();
+      }
+      val = new double[vars.length];
+      stack = new double[ expr.getStackSize() ];
+   }
+
+   /** Retourne la position de chaque variable dans les champs de la source, null si l'une d'elles est absente */
+   int [] getPositions(Source s) {
+      int [] pos = new int[key.length];
+      for( int i=0; i<key.length; i++ ) {
+         pos[i] = isUcd[i] ? s.findUCD(key[i]) : s.findColumn(key[i]);
+         if( pos[i]<0 ) return null;
+      }
+      return pos;
+   }
+
+   // Lecture de la valeur d'une variable pour une source, false si elle n'est pas numrique
+   static private boolean load(Source s,int pos,double [] col,int row) {
+      double d = s.getDoubleValue(pos,Double.NaN);
+      if( Double.isNaN(d) && !isNaN(s,pos) ) return false;
+      col[row] = d;
+      return true;
+   }
+
+   // Retourne true si le champ contient explicitement la valeur numrique NaN
+   static private boolean isNaN(Source s,int pos) {
+      String v = s.getValue(pos);
+      if( v==null || v.length()==0 ) return false;
+      try { return Double.isNaN( Double.parseDouble(v) ); }
+      catch( Exception e ) { return false; }
+   }
+
+   // Lecture des valeurs des variables pour une source, false si l'une d'elles n'est pas numrique
+   static private boolean load(Source s,int [] pos,double [][] col,int row) {
+      for( int i=0; i<pos.length; i++ ) {
+         if( !load(s,pos[i],col[i],row) ) return false;
+      }
+      return true;
+   }
+
+   /** Evaluation pour une seule source
+    * @return le rsultat, ou Double.NaN si une variable est absente ou non numrique
+    */
+   synchronized double eval(Source s) {
+      Legende leg = s.getLeg();
+      if( leg!=lastLeg || lastLeg==null ) { lastPos=getPositions(s); lastLeg=leg; }
+      if( lastPos==null ) return Double.NaN;
+      for( int i=0; i<lastPos.length; i++ ) {
+         if( !load(s,lastPos[i],val,i) ) return Double.NaN;
+      }
+      return expr.eval(val,stack);
+   }
+
+   /** Evaluation pour un ensemble de sources (en parallle par tranches de GRAIN sources)
+    * @param sources les sources
+    * @param out en retour, le rsultat pour chaque source
+    * @param ok en retour, true si le rsultat a pu tre calcul (toutes les variables prsentes et numriques)
+    * @return le nombre de sources pour lesquelles le rsultat a pu tre calcul
+    */
+   int eval(Source [] sources,double [] out,boolean [] ok) {
+      int n = sources.length;
+      if( n<=GRAIN ) eval(sources,0,n,out,ok);
+      else ForkJoinPool.commonPool().invoke( new EvalTask(sources,out,ok,0,n) );
+      int nb=0;
+      for( int i=0; i<n; i++ ) if( ok[i] ) nb++;
+      return nb;
+   }
+
+   // Evaluation pour l'intervalle de sources [deb,fin[ : chargement des colonnes puis calcul vectoris
+   private void eval(Source [] sources,int deb,int fin,double [] out,boolean [] ok) {
+      int n = fin-deb;
+      double [][] col = new double[key.length][n];
+      Legende leg=null;
+      int [] pos=null;
+      for( int r=0; r<n; r++ ) {
+         Source s = sources[deb+r];
+         if( s.getLeg()!=leg || leg==null ) { leg=s.getLeg(); pos=getPositions(s); }
+         ok[deb+r] = pos!=null && load(s,pos,col,r);
+      }
+      double [] res = new double[n];
+      expr.eval(col,0,n,res);
+      System.arraycopy(res,0,out,deb,n);
+   }
+
+   // Tche ForkJoin sur un intervalle de sources [deb,fin[, dcoup par dichotomie
+   private class EvalTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      final Source [] sources;
+      final double [] out;
+      final boolean [] ok;
+      final int deb,fin;
+
+      EvalTask(Source [] sources,double [] out,boolean [] ok,int deb,int fin) {
+         this.sources=sources;
+         this.out=out;
+         this.ok=ok;
+         this.deb=deb;
+         this.fin=fin;
+      }
+
+      protected void compute() {
+         if( fin-deb<=GRAIN ) { eval(sources,deb,fin,out,ok); return; }
+         int m = (deb+fin)>>>1;
+         invokeAll( new EvalTask(sources,out,ok,deb,m), new EvalTask(sources,out,ok,m,fin) );
+      }
+   }
+}
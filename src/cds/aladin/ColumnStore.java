@@ -0,0 +1,286 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.aladin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Stockage colonnaire des mesures d'une table catalogue.
+ *
+ * Plutt que de conserver pour chaque Source la ligne complte sous la forme d'une
+ * chane "info" dont les champs sont spars par des TABs, les valeurs sont ranges
+ * colonne par colonne :
+ *  - colonnes numriques dcimales : mantisse entire (long) + nombre de dcimales,
+ *    ce qui permet de restituer exactement la chane d'origine ("1.20" reste "1.20")
+ *    tout en offrant un accs direct en double pour les parcours de colonne ;
+ *  - autres colonnes : encodage par dictionnaire (chaque valeur distincte n'est
+ *    mmorise qu'une fois).
+ * Les Sources concernes ne gardent que la rfrence au store et leur numro de ligne
+ * (cf. Source.getFullInfo(), Source.getCodedValue()). Toute modification d'une Source
+ * (setValue, ajout de colonne...) la fait revenir  la forme "info" classique.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class ColumnStore {
+
+   /** Nombre de lignes minimal pour qu'une table soit compacte */
+   static final int MINROWS = 100;
+
+   /** Nombre maximal de valeurs non numriques distinctes tolres dans une colonne dcimale */
+   static final int MAXEXCEPT = 64;
+
+   static final private long [] POW10 = new long[19];
+   static {
+      POW10[0]=1;
+      for( int i=1; i<POW10.length; i++ ) POW10[i]=POW10[i-1]*10;
+   }
+
+   private final Column [] col;     // Les colonnes (la colonne 0 est le "triangle" GLU)
+   private final int nbRows;        // Nombre de lignes
+
+   private ColumnStore(Column [] col,int nbRows) {
+      this.col=col;
+      this.nbRows=nbRows;
+   }
+
+   /** Nombre de colonnes (y compris la premire colonne GLU) */
+   int getNbCol() { return col.length; }
+
+   /** Nombre de lignes */
+   int getNbRows() { return nbRows; }
+
+   /** Valeur code (telle qu'elle figurait dans la chane info) de la colonne c de la ligne row */
+   String get(int row,int c) { return col[c].get(row); }
+
+   /** Valeur numrique de la colonne c de la ligne row, NaN si non numrique */
+   double getDouble(int row,int c) { return col[c].getDouble(row); }
+
+   /** Retourne true si la valeur de la colonne c de la ligne row est stocke sous forme numrique */
+   boolean isNumeric(int row,int c) { return col[c].isNumeric(row); }
+
+   /** Reconstitution de la chane info complte (champs spars par des TABs) */
+   String getInfo(int row) {
+      StringBuilder s = new StringBuilder();
+      for( int c=0; c<col.length; c++ ) {
+         if( c>0 ) s.append('\t');
+         s.append( col[c].get(row) );
+      }
+      return s.toString();
+   }
+
+   /** Retourne les champs non vides de la ligne, dans l'ordre,  l'instar
+    * d'un StringTokenizer(info,"\t") */
+   String [] getTokens(int row) {
+      ArrayList<String> v = new ArrayList<>(col.length);
+      for( int c=0; c<col.length; c++ ) {
+         String s = col[c].get(row);
+         if( s.length()>0 ) v.add(s);
+      }
+      return v.toArray(new String[v.size()]);
+   }
+
+   /** Compactage des Sources de o[deb..fin[ partageant la lgende de la premire Source
+    * de cet intervalle. Seules les Sources "de base" (pas les sous-classes) dont le
+    * nombre de champs est celui de la lgende sont concernes.
+    * @return le store cr, null si rien n'a t compact
+    */
+   static ColumnStore compact(Obj [] o,int deb,int fin) {
+      Legende leg=null;
+      for( int i=deb; i<fin && leg==null; i++ ) {
+         if( o[i]!=null && o[i].getClass()==Source.class ) leg = ((Source)o[i]).getLeg();
+      }
+      if( leg==null || leg.field==null ) return null;
+      int nbCol = leg.field.length+1;
+
+      // Slection des sources ligibles
+      Source [] src = new Source[fin-deb];
+      int n=0;
+      for( int i=deb; i<fin; i++ ) {
+         if( o[i]==null || o[i].getClass()!=Source.class ) continue;
+         Source s = (Source)o[i];
+         if( s.getLeg()!=leg || s.info==null || countFields(s.info)!=nbCol ) continue;
+         src[n++]=s;
+      }
+      if( n<MINROWS ) return null;
+
+      // Construction colonne par colonne en avanant un curseur dans chaque chane info
+      int [] pos = new int[n];
+      String [] val = new String[n];
+      Column [] col = new Column[nbCol];
+      for( int c=0; c<nbCol; c++ ) {
+         for( int r=0; r<n; r++ ) {
+            String info = src[r].info;
+            int p = pos[r];
+            int q = info.indexOf('\t',p);
+            if( q<0 ) q=info.length();
+            val[r] = info.substring(p,q);
+            pos[r] = q+1;
+         }
+         col[c] = DecimalColumn.create(val,n);
+         if( col[c]==null ) col[c] = new DictColumn(val,n);
+      }
+
+      ColumnStore store = new ColumnStore(col,n);
+      for( int r=0; r<n; r++ ) src[r].setStore(store,r);
+      return store;
+   }
+
+   // Nombre de champs (vides compris) de la chane info
+   static private int countFields(String info) {
+      int n=1;
+      for( int i=info.indexOf('\t'); i>=0; i=info.indexOf('\t',i+1) ) n++;
+      return n;
+   }
+
+   /** Une colonne du store */
+   static abstract private class Column {
+      abstract String get(int row);
+      boolean isNumeric(int row) { return false; }
+      double getDouble(int row) { return parseDouble( get(row) ); }
+   }
+
+   static private double parseDouble(String s) {
+      try { return Double.parseDouble(s.trim()); }
+      catch( Exception e ) { return Double.NaN; }
+   }
+
+   /** Colonne encode par dictionnaire */
+   static final private class DictColumn extends Column {
+      private final String [] dict;
+      private final int [] code;
+
+      DictColumn(String [] val,int n) {
+         HashMap<String,Integer> map = new HashMap<>();
+         ArrayList<String> v = new ArrayList<>();
+         code = new int[n];
+         for( int r=0; r<n; r++ ) {
+            Integer k = map.get(val[r]);
+            if( k==null ) {
+               k = v.size();
+               map.put(val[r],k);
+               v.add(val[r]);
+            }
+            code[r]=k;
+         }
+         dict = v.toArray(new String[v.size()]);
+      }
+
+      String get(int row) { return dict[ code[row] ]; }
+   }
+
+   /** Colonne dcimale : mantisse + nombre de dcimales. Les quelques valeurs non
+    * numriques (vides, blancs, NaN...) sont codes par un nombre de dcimales ngatif
+    * renvoyant dans une petite table d'exceptions */
+   static final private class DecimalColumn extends Column {
+      private final long [] mant;
+      private final byte [] scale;
+      private final String [] except;
+
+      private DecimalColumn(long [] mant,byte [] scale,String [] except) {
+         this.mant=mant;
+         this.scale=scale;
+         this.except=except;
+      }
+
+      /** Tentative d'encodage dcimal, null si la colonne ne s'y prte pas */
+      static DecimalColumn create(String [] val,int n) {
+         long [] mant = new long[n];
+         byte [] scale = new byte[n];
+         ArrayList<String> except = new ArrayList<>();
+         int nbNum=0;
+         for( int r=0; r<n; r++ ) {
+            String s = val[r];
+            int sc = parse(s,mant,r);
+            if( sc<0 ) {
+               int k = except.indexOf(s);
+               if( k<0 ) {
+                  if( except.size()>=MAXEXCEPT ) return null;
+                  k = except.size();
+                  except.add(s);
+               }
+               sc = -k-1;
+            } else nbNum++;
+            scale[r]=(byte)sc;
+         }
+         if( nbNum==0 ) return null;
+         return new DecimalColumn(mant,scale,except.toArray(new String[except.size()]));
+      }
+
+      /** Analyse d'une valeur de la forme [-]ddd[.ddd], sans zro superflu en tte,
+       * afin de garantir une restitution  l'identique.
+       * @return le nombre de dcimales, -1 si non encodable */
+      static private int parse(String s,long [] mant,int r) {
+         int n = s.length();
+         int i=0;
+         boolean neg=false;
+         if( n>0 && s.charAt(0)=='-' ) { neg=true; i++; }
+         int deb=i;
+         long m=0;
+         int nbDigit=0, sc=-1;
+         for( ; i<n; i++ ) {
+            char ch = s.charAt(i);
+            if( ch=='.' ) {
+               if( sc>=0 || i==deb || i==n-1 ) return -1;
+               sc=0;
+               continue;
+            }
+            if( ch<'0' || ch>'9' ) return -1;
+            if( ++nbDigit>18 ) return -1;
+            m = m*10 + (ch-'0');
+            if( sc>=0 ) sc++;
+         }
+         if( nbDigit==0 ) return -1;
+
+         // Pas de zro en tte (sauf "0" ou "0.xxx"), pas de "-0"
+         if( s.charAt(deb)=='0' && deb+1<n && s.charAt(deb+1)!='.' ) return -1;
+         if( neg && m==0 ) return -1;
+
+         mant[r] = neg ? -m : m;
+         return sc<0 ? 0 : sc;
+      }
+
+      String get(int row) {
+         int sc = scale[row];
+         if( sc<0 ) return except[-sc-1];
+         long m = mant[row];
+         if( sc==0 ) return Long.toString(m);
+         String s = Long.toString( Math.abs(m) );
+         StringBuilder b = new StringBuilder(s.length()+3);
+         if( m<0 ) b.append('-');
+         for( int i=s.length(); i<=sc; i++ ) b.append('0');
+         int k = b.length()+s.length()-sc;
+         b.append(s);
+         b.insert(k,'.');
+         return b.toString();
+      }
+
+      boolean isNumeric(int row) { return scale[row]>=0; }
+
+      double getDouble(int row) {
+         int sc = scale[row];
+         if( sc<0 ) return parseDouble( except[-sc-1] );
+         return (double)mant[row] / POW10[sc];
+      }
+   }
+}
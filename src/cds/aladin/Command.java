@@ -156,7 +156,7 @@ public final class Command implements Runnable {
          "untag", "xmatch", "moreonxmatch", "zoom", "+", "-", "*", "/", "=", };
    
    // Liste des commandes scripts additionnelles (non documentes)
-   static final String CMDPLUS[] = { "goto", "scale", "unstick", "stick" };
+   static final String CMDPLUS[] = { "goto", "scale", "unstick", "stick", "cutout" };
 
    // Liste des commandes qui ne requierent pas un sync() avant d'tre excute
    static final private String NOSYNCCMD[] = { "call", "collapse", "demo", "expand", "function", "=", "get", "grid", "help",
@@ -2878,6 +2878,71 @@ public final class Command implements Runnable {
       return pi;
    }
 
+   /**
+    * Extraction d'une image FITS (projection TAN) d'un HiPS, indpendamment de la vue courante
+    * Syntaxe: cutout [x] [target] WxH [pixelSize]   (pixelSize en arcsec par dfaut, rsolution du HiPS si absente)
+    * Ex: cutout DSS2 M1 2000x2000 1"
+    */
+   protected Plan execCutoutCmd(String param, String label) {
+      String[] p = param.trim().split("\\s+");
+
+      // reprage de la taille wxh
+      int k;
+      for( k = 0; k < p.length && !p[k].matches("\\d+x\\d+"); k++ )
+         ;
+      if( k == p.length ) {
+         printConsole("!!! cutout error: image size (WxH) required");
+         return null;
+      }
+      int j = p[k].indexOf('x');
+      int w = Integer.parseInt(p[k].substring(0, j));
+      int h = Integer.parseInt(p[k].substring(j + 1));
+      double res = k + 1 < p.length ? Server.getAngleInArcmin(p[k + 1], Server.RADIUSs) / 60. : 0;
+
+      // Le HiPS concern (premier paramtre, sinon le plan de rfrence)
+      int i = 0;
+      Plan pref = k > 0 ? getPlanFromParam(p[0]) : null;
+      if( pref instanceof PlanBG ) i++;
+      else pref = a.calque.getPlanBase();
+      if( !(pref instanceof PlanBG) ) {
+         printConsole("!!! cutout error: no HiPS plane");
+         return null;
+      }
+
+      // La position centrale (centre de la vue courante si non prcise)
+      StringBuilder target = new StringBuilder();
+      for( ; i < k; i++ ) {
+         if( target.length() > 0 ) target.append(' ');
+         target.append(p[i]);
+      }
+      Coord c = null;
+      try {
+         if( target.length() == 0 ) c = a.view.getCurrentView().getCooCentre();
+         else {
+            String t = a.localisation.getICRSCoord(target.toString());
+            c = Localisation.notCoord(t) ? a.view.sesame(t) : new Coord(t);
+         }
+         if( c == null ) throw new Exception("\"" + target + "\": " + a.chaine.getString("OBJUNKNOWN"));
+      } catch( Exception e ) {
+         printConsole("!!! cutout error: " + e.getMessage());
+         return null;
+      }
+
+      a.trace(4, "Command.cutout: on " + pref.label + " param=[" + param + "] label=" + label + " " + c + " " + w + "x" + h
+            + (res > 0 ? " " + res * 3600 + "\"/pix" : ""));
+
+      try {
+         Plan pi = ((PlanBG) pref).cutout(c, w, h, res, label);
+         setSyncNeedRepaint(true);
+         a.view.repaintAll();
+         return pi;
+      } catch( Exception e ) {
+         printConsole("!!! cutout error: " + e.getMessage());
+         if( a.levelTrace >= 3 ) e.printStackTrace();
+      }
+      return null;
+   }
+
    protected void setDrawMode(int mode) {
       drawMode = mode;
    }
@@ -3600,6 +3665,7 @@ public final class Command implements Runnable {
       else if( cmd.equalsIgnoreCase("goto") ) gotoAnimation(param);
       else if( cmd.equalsIgnoreCase("browse") ) browse(param);
       else if( cmd.equalsIgnoreCase("crop") ) execCropCmd(param, label);
+      else if( cmd.equalsIgnoreCase("cutout") ) execCutoutCmd(param, label);
       else if( cmd.equalsIgnoreCase("match") ) execMatchCmd(param);
       else if( cmd.equalsIgnoreCase("stick") ) execViewCmd(param, STICKVIEW);
       else if( cmd.equalsIgnoreCase("unstick") ) execViewCmd(param, UNSTICKVIEW);
@@ -3721,6 +3787,7 @@ public final class Command implements Runnable {
                if( c == 'F' || c == 'f' ) fullPixel = true;
                if( c == 'C' || c == 'c' ) methode = PlanImageResamp.PPV;
                if( c == 'B' || c == 'b' ) methode = PlanImageResamp.BILINEAIRE;
+               if( c == 'L' || c == 'l' ) methode = PlanImageResamp.LANCZOS;
             }
             a.calque.newPlanImageResamp(p1, p2, label, methode, fullPixel, true);
             setSyncNeedRepaint(true);
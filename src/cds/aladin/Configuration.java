@@ -165,6 +165,8 @@ implements Runnable, ActionListener, ItemListener, ChangeListener  {
    protected static String CDSMESSAGE = "CDSMessage";
    protected static String CACHE      = "HpxCacheSize";
    protected static String MAXCACHE   = "HpxMaxCacheSize";
+   protected static String HPXFETCHERS= "HpxFetchers";
+   protected static String DIRMOCORDER= "DirectoryMocOrder";
    protected static String LOG        = "Log";
    protected static String LOOKANDFEEL= "LookAndFeel";
    protected static String HELP       = "Wizard";
@@ -651,6 +653,13 @@ implements Runnable, ActionListener, ItemListener, ChangeListener  {
       return true;
    }
 
+   /** Retourne l'ordre de dgradation des MOCs de couverture conservs localement pour
+    * le filtrage spatial de l'arbre des collections (cf. DirectoryMocCache) */
+   protected int getDirectoryMocOrder() {
+      try { return Integer.parseInt( get(DIRMOCORDER).trim() ); }
+      catch( Exception e ) { return DirectoryMocCache.DEFAULTORDER; }
+   }
+
    /** Retourne le mode video par dfaut pour le background */
    protected int getBkgVideo() {
       String s = aladin.BKGDEFAULT==null ? get(BKG) : aladin.BKGDEFAULT;
@@ -1680,12 +1680,13 @@ public class Directory extends JPanel implements Iterable<MocItem>, GrabItFrame
       ArrayList<String> ids = multiProp.scan((Moc) null, expr, false, -1, -1);
 
       // Filtrage spatial
-      ArrayList<String> ids1 = filtrageSpatial(moc, intersect);
+      ArrayList<String> ids1 = filtrageSpatial(moc, intersect, ids);
 
       // Positionnement des flags isHidden() en fonction du filtrage
+      HashSet<String> set1 = ids1 == null ? null : new HashSet<>(ids1);
       HashSet<String> set = new HashSet<>(ids.size());
       for( String s : ids ) {
-         if( ids1 != null && !ids1.contains(s) ) continue;
+         if( set1 != null && !set1.contains(s) ) continue;
          set.add(s);
       }
       int nbHidden=0;
@@ -1696,6 +1697,17 @@ public class Directory extends JPanel implements Iterable<MocItem>, GrabItFrame
       }
    }
 
+   private DirectoryMocCache mocCache = null;   // MOCs de couverture locaux (cf. getMocCache())
+
+   /** Retourne le cache des MOCs de couverture locaux (charg depuis le cache d'Aladin au premier appel) */
+   private synchronized DirectoryMocCache getMocCache() {
+      if( mocCache==null ) {
+         mocCache = new DirectoryMocCache(aladin, aladin.configuration.getDirectoryMocOrder());
+         mocCache.load();
+      }
+      return mocCache;
+   }
+
    private Moc oldMocSpatial = null;
 
    private ArrayList<String> oldIds = null;
@@ -1703,13 +1715,48 @@ public class Directory extends JPanel implements Iterable<MocItem>, GrabItFrame
    private int oldIntersect = MultiMoc.OVERLAPS;
 
    /**
-    * Filtrage spatial sur le MocServer distant. Utilise un cache pour viter de faire plusieurs fois de suite la mme requte
+    * Filtrage spatial des collections candidates. Se fait localement sur les MOCs de couverture
+    * dj connus (cf. DirectoryMocCache), et seulement pour les collections restantes via le MocServer
+    * distant (dont on charge alors les MOCs en tche de fond pour les fois suivantes)
     * @param moc
     * @param intersect pour le filtrage spatial, OVERLAPS, ENCLOSED ou COVERS
+    * @param ids les collections candidates
     * @return la liste des IDs qui matchent
     */
-   private ArrayList<String> filtrageSpatial(Moc moc, int intersect) {
+   private ArrayList<String> filtrageSpatial(Moc moc, int intersect, ArrayList<String> ids) {
       if( moc == null ) return null;
+      long t0 = System.currentTimeMillis();
+      DirectoryMocCache mc = getMocCache();
+      ArrayList<String> res = new ArrayList<>();
+      ArrayList<String> missing = mc.filter(multiProp, moc, intersect, ids, res);
+
+      // Filtrage local impossible => tout par le MocServer
+      if( missing == null ) return filtrageSpatial(moc, intersect);
+
+      if( missing.size() > 0 ) {
+         mc.fetch(multiProp, missing);
+         ArrayList<String> remote = filtrageSpatial(moc, intersect);
+
+         // Pas de rponse du MocServer => on ne cache pas ce que l'on ne sait pas
+         if( remote == null ) res.addAll(missing);
+         else {
+            HashSet<String> set = new HashSet<>(remote);
+            for( String id : missing ) if( set.contains(id) ) res.add(id);
+         }
+      }
+      aladin.trace(4, "Directory.filtrageSpatial(): " + (ids.size() - missing.size()) + " local + " + missing.size()
+            + " remote in " + (System.currentTimeMillis() - t0) + "ms");
+      return res;
+   }
+
+   /**
+    * Filtrage spatial sur le MocServer distant. Utilise un cache pour viter de faire plusieurs fois de suite la mme requte
+    * @param moc
+    * @param intersect pour le filtrage spatial, OVERLAPS, ENCLOSED ou COVERS
+    * @return la liste des IDs qui matchent, null si le MocServer n'a pu tre interrog
+    */
+   private ArrayList<String> filtrageSpatial(Moc moc, int intersect) {
+      if( moc == null || !Aladin.NETWORK ) return null;
       if( oldMocSpatial != null && intersect == oldIntersect && oldMocSpatial.equals(moc) ) return oldIds;
 
       oldIntersect = intersect;
@@ -1867,9 +1914,11 @@ public class Directory extends JPanel implements Iterable<MocItem>, GrabItFrame
          if( !withTime && !withSpace ) return true;
          
          String sysParam="";
+         boolean skyBody = true;   // Champ sur la sphre cleste (et non sur un corps plantaire)
          if( withsys && withSpace ) {
             String body = v.pref.getBody();
             if( body!=null ) {
+               skyBody = body.equals(Plan.BODYSKY);
                if( body.equals(Plan.BODYSKY) ) body="C";
                sysParam="&spacesys="+URLEncoder.encode(body);
             }
@@ -1902,7 +1951,8 @@ public class Directory extends JPanel implements Iterable<MocItem>, GrabItFrame
          }
 
          try {
-            if( mode == ResumeMode.FORCE || !sameLocation || !sameTime ) {
+            if( (mode == ResumeMode.FORCE || !sameLocation || !sameTime)
+                  && !(withSpace && !withTime && skyBody && checkInLocal(c, size, set)) ) {
                URL u = aladin.glu.getURL(GLUMOCSERVER, params, true);
 
                Aladin.trace(3, "Directory.hipsUpdate: Contacting MocServer : " + u);
@@ -1954,6 +2004,33 @@ public class Directory extends JPanel implements Iterable<MocItem>, GrabItFrame
       return true;
    }
 
+   /**
+    * Dtermination locale des collections prsentes dans le champ courant  partir des MOCs de couverture
+    * locaux (cf. DirectoryMocCache). Le champ est approxim par le cercle circonscrit
+    * @param c centre du champ
+    * @param size taille du champ (en degrs)
+    * @param set en retour, les IDs des collections prsentes dans le champ
+    * @return false si certaines collections n'ont pas encore de MOC local (=>  demander au MocServer)
+    */
+   private boolean checkInLocal(Coord c, double size, HashSet<String> set) throws Exception {
+      long t0 = System.currentTimeMillis();
+      DirectoryMocCache mc = getMocCache();
+      SMoc query = size > 90 ? null
+            : CDSHealpix.getMocByCircle(getAppropriateOrder(size), c.al, c.del, Math.toRadians(size * Math.sqrt(2) / 2), true);
+      ArrayList<String> ids = new ArrayList<>(dirList.size());
+      for( TreeObjDir to : dirList ) ids.add(to.internalId);
+      ArrayList<String> res = new ArrayList<>();
+      ArrayList<String> missing = mc.filter(multiProp, query, MultiMoc.OVERLAPS, ids, res);
+      if( missing == null ) return false;
+      if( missing.size() > 0 ) {
+         mc.fetch(multiProp, missing);
+         return false;
+      }
+      set.addAll(res);
+      Aladin.trace(4, "Directory.checkInLocal(): " + res.size() + " collections in view in " + (System.currentTimeMillis() - t0) + "ms");
+      return true;
+   }
+
    /** Retourne true si l'arbre est dvelopp selon le dfaut prvu */
    protected boolean isDefaultExpand() {
       return dirTree.isDefaultExpand();
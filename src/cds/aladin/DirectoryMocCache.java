@@ -0,0 +1,332 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.aladin;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import cds.moc.Moc;
+import cds.moc.MocCell;
+import cds.moc.SMoc;
+import cds.mocmulti.MocItem;
+import cds.mocmulti.MultiMoc;
+import cds.tools.Util;
+
+/**
+ * Cache local des MOCs de couverture des collections de l'arbre du Directory, dgrads  un ordre
+ * limit (cf. Configuration.getDirectoryMocOrder()) pour borner la mmoire. Permet de rpondre
+ * localement aux filtrages spatiaux (OVERLAPS, ENCLOSED, COVERS) sans interroger le MocServer.
+ *
+ * Les MOCs manquants sont chargs en tche de fond depuis le MocServer (par paquets) et l'ensemble
+ * est sauvegard dans le cache d'Aladin  ct du MultiProp. Un MOC est considr comme prim
+ * ds que l'enregistrement de la collection est plus rcent que lui.
+ *
+ * Les MOCs tant dgrads, le filtrage local est une approximation par excs : une collection
+ * peut tre retenue  tort, jamais carte  tort. Pour la mme raison, une collection dont le
+ * MOC n'a pu tre charg aprs MAXTRY tentatives est systmatiquement retenue.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+class DirectoryMocCache {
+
+   static final int DEFAULTORDER = 5;                        // Ordre de dgradation par dfaut
+   static final String FILE = "DirectoryMocs.bin";           // Nom du fichier de sauvegarde dans le cache
+   static private final int VERSION = 1;                     // Version du format de sauvegarde
+   static private final int MAXFETCH = 200;                  // Nombre max de MOCs chargs par paquet
+   static private final int NBFETCHER = 4;                   // Nombre de threads de chargement
+   static private final int MAXTRY = 3;                      // Nombre max de tentatives de chargement d'un MOC
+
+   private Aladin aladin;
+   private int order;                                        // Ordre de dgradation des MOCs
+   private ConcurrentHashMap<String,Item> map;               // MOCs locaux (cl: ID de la collection)
+   private Set<String> tried;                                // Collections en cours de chargement
+   private ConcurrentHashMap<String,Integer> failures;       // Nombre d'checs de chargement par collection
+   private volatile boolean fetching=false;                  // true si un chargement est en cours
+   private volatile boolean modif=false;                     // true si le cache doit tre resauvegard
+
+   /** Un MOC local */
+   static private class Item {
+      SMoc moc;            // MOC dgrad
+      long mask;           // Cellules d'ordre 1 concernes (1 bit par cellule) pour un pr-filtrage rapide
+      long timestamp;      // Estampille de l'enregistrement de la collection au moment du chargement
+
+      Item(SMoc moc,long timestamp) {
+         this.moc=moc;
+         this.timestamp=timestamp;
+         mask=getMask(moc);
+      }
+   }
+
+   DirectoryMocCache(Aladin aladin,int order) {
+      this.aladin=aladin;
+      this.order=order;
+      map = new ConcurrentHashMap<>();
+      tried = ConcurrentHashMap.newKeySet();
+      failures = new ConcurrentHashMap<>();
+   }
+
+   /** Ordre de dgradation des MOCs */
+   int getOrder() { return order; }
+
+   /** Nombre de MOCs locaux */
+   int size() { return map.size(); }
+
+   // Retourne le masque des cellules HEALPix d'ordre 1 (48 => tient dans un long) touches par le MOC
+   static private long getMask(SMoc moc) {
+      long mask=0L;
+      try {
+         SMoc m = moc;
+         if( m.getSpaceOrder()>1 ) { m=moc.clone(); m.setSpaceOrder(1); }
+         for( MocCell c : m ) {
+            int shift = c.order==0 ? 2 : 0;
+            for( long npix=c.start<<shift; npix<c.end<<shift; npix++ ) mask |= 1L<<npix;
+         }
+      } catch( Exception e ) { mask=-1L; }
+      return mask;
+   }
+
+   // Retourne true si la collection dispose d'un MOC sur le MocServer (cf. TreeObjDir.hasMocByMocServer())
+   static private boolean hasMoc(MocItem mi) {
+      MyProperties prop = mi.prop;
+      return prop!=null && ( prop.get("moc_type")!=null
+            || prop.get("moc_sky_fraction")!=null || prop.getProperty("moc_access_url")!=null );
+   }
+
+   // Retourne le MOC local  jour de la collection, null si absent ou prim
+   private Item get(MocItem mi) {
+      Item item = map.get(mi.mocId);
+      if( item==null || item.timestamp<mi.getPropTimeStamp() ) return null;
+      return item;
+   }
+
+   // Retourne true si le MOC de la collection n'a pu tre charg aprs MAXTRY tentatives
+   private boolean isUnavailable(String id) {
+      Integer n = failures.get(id);
+      return n!=null && n>=MAXTRY;
+   }
+
+   // Mmorisation d'un MOC de couverture, aprs dgradation si ncessaire
+   private void put(String id,long timestamp,Moc moc) throws Exception {
+      SMoc m = moc instanceof SMoc ? (SMoc)moc : moc.getSpaceMoc();
+      if( m.getSpaceOrder()>order ) m.setSpaceOrder(order);
+      map.put(id, new Item(m,timestamp));
+      modif=true;
+   }
+
+   /**
+    * Filtrage spatial local des collections
+    * @param multiProp les enregistrements des collections
+    * @param moc la zone de filtrage, null pour tout le ciel
+    * @param intersect MultiMoc.OVERLAPS, ENCLOSED ou COVERS
+    * @param ids les collections candidates
+    * @param res en retour, les collections qui satisfont au filtrage
+    * @return la liste des collections sans MOC local qu'il faudra dterminer autrement,
+    *         ou null si le filtrage local est impossible (zone de filtrage non spatiale)
+    */
+   ArrayList<String> filter(MultiMoc multiProp,Moc moc,int intersect,Collection<String> ids,ArrayList<String> res) {
+      if( moc!=null && !(moc instanceof SMoc) ) return null;
+      ArrayList<String> missing = new ArrayList<>();
+
+      // Pour ENCLOSED et COVERS, la zone est dgrade comme les MOCs des collections
+      // afin que l'approximation reste par excs
+      SMoc query = (SMoc)moc;
+      long mask=-1L;
+      if( query!=null ) {
+         try {
+            if( intersect!=MultiMoc.OVERLAPS && query.getSpaceOrder()>order ) {
+               query = query.clone();
+               query.setSpaceOrder(order);
+            }
+         } catch( Exception e ) { return null; }
+         mask = getMask(query);
+      }
+
+      for( String id : ids ) {
+         MocItem mi = multiProp.getItem(id);
+         if( mi==null || !hasMoc(mi) ) continue;
+         Item item = get(mi);
+         if( item==null ) {
+            if( isUnavailable(id) ) res.add(id);
+            else missing.add(id);
+            continue;
+         }
+         if( query==null ) { res.add(id); continue; }
+         try {
+            if( intersect==MultiMoc.OVERLAPS ) {
+               if( (item.mask & mask)==0L || !query.isIntersecting(item.moc) ) continue;
+            } else if( intersect==MultiMoc.ENCLOSED ) {
+               if( (mask & ~item.mask)!=0L || !item.moc.isIncluding(query) ) continue;
+            } else { // COVERS
+               if( (item.mask & ~mask)!=0L || !query.isIncluding(item.moc) ) continue;
+            }
+         } catch( Exception e ) { continue; }
+         res.add(id);
+      }
+      return missing;
+   }
+
+   /**
+    * Chargement en tche de fond, depuis le MocServer, des MOCs manquants (au plus MAXFETCH  la fois),
+    * puis sauvegarde du cache. Sans effet si un chargement est dj en cours ou sans rseau
+    * @param multiProp les enregistrements des collections
+    * @param ids les collections dont il faut charger le MOC
+    */
+   void fetch(final MultiMoc multiProp,Collection<String> ids) {
+      if( fetching || !Aladin.NETWORK ) return;
+      final ArrayList<String> list = new ArrayList<>(MAXFETCH);
+      for( String id : ids ) {
+         if( list.size()>=MAXFETCH ) break;
+         if( !isUnavailable(id) && tried.add(id) ) list.add(id);
+      }
+      if( list.isEmpty() ) return;
+      fetching=true;
+
+      (new Thread("DirectoryMocCache") {
+         public void run() {
+            long t0 = System.currentTimeMillis();
+            ExecutorService service = Executors.newFixedThreadPool(NBFETCHER);
+            try {
+               for( final String id : list ) {
+                  service.execute(new Runnable() {
+                     public void run() {
+                        try {
+                           MocItem mi = multiProp.getItem(id);
+                           if( mi==null ) return;
+                           put(id, mi.getPropTimeStamp(), load(id));
+                           failures.remove(id);
+                        } catch( Exception e ) {
+                           failures.merge(id, 1, Integer::sum);
+                           if( Aladin.levelTrace>=4 ) e.printStackTrace();
+                        } finally { tried.remove(id); }
+                     }
+                  });
+               }
+               service.shutdown();
+               while( !service.isTerminated() ) Util.pause(100);
+               Aladin.trace(4,"DirectoryMocCache.fetch(): "+list.size()+" MOCs requested in "
+                     +(System.currentTimeMillis()-t0)+"ms => "+map.size()+" local MOCs");
+               save();
+            } finally { fetching=false; }
+         }
+      }).start();
+   }
+
+   // Chargement du MOC d'une collection depuis le MocServer, directement  l'ordre de dgradation
+   private Moc load(String id) throws Exception {
+      URL u = aladin.glu.getURL(Directory.GLUMOCSERVER, id+"&get=moc&order="+order, true);
+      MyInputStream in = null;
+      try {
+         in = Util.openStream(u);
+         return Moc.createMoc(in);
+      } finally { if( in!=null ) in.close(); }
+   }
+
+   // Nom du fichier de sauvegarde, null si pas de cache disponible
+   private String getFileName() {
+      if( aladin.MOCLOCAL || aladin.cache==null ) return null;
+      String dir = aladin.cache.getCacheDir();
+      return dir==null ? null : dir+Util.FS+FILE;
+   }
+
+   /** Sauvegarde du cache si ncessaire (criture dans un fichier temporaire puis renommage) */
+   synchronized void save() {
+      if( !modif ) return;
+      String s = getFileName();
+      if( s==null ) return;
+      modif=false;
+      File tmp = new File(s+".tmp");
+      DataOutputStream out = null;
+      try {
+         out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(tmp) ));
+         out.writeInt(VERSION);
+         out.writeInt(order);
+         out.writeInt(map.size());
+         ByteArrayOutputStream buf = new ByteArrayOutputStream();
+         for( Map.Entry<String,Item> e : map.entrySet() ) {
+            Item item = e.getValue();
+            buf.reset();
+            item.moc.writeFITS(buf);
+            out.writeUTF(e.getKey());
+            out.writeLong(item.timestamp);
+            out.writeInt(buf.size());
+            buf.writeTo(out);
+         }
+         out.close(); out=null;
+         File f = new File(s);
+         f.delete();
+         if( !tmp.renameTo(f) ) throw new Exception("Cannot rename "+tmp+" in "+f);
+         Aladin.trace(3,"DirectoryMocCache: "+map.size()+" MOCs stored in cache ["+s+"]");
+      } catch( Exception e ) {
+         if( Aladin.levelTrace>=3 ) e.printStackTrace();
+         tmp.delete();
+      } finally {
+         if( out!=null ) try { out.close(); } catch( Exception e ) {}
+      }
+   }
+
+   /** Chargement du cache prcdemment sauvegard (ignor si l'ordre de dgradation a chang) */
+   void load() {
+      String s = getFileName();
+      if( s==null || !(new File(s)).exists() ) return;
+      DataInputStream in = null;
+      try {
+         long t0 = System.currentTimeMillis();
+         in = new DataInputStream( new BufferedInputStream( new FileInputStream(s) ));
+         if( in.readInt()!=VERSION ) throw new Exception("unknown version");
+         if( in.readInt()!=order ) throw new Exception("MOC order modified");
+         int n = in.readInt();
+         byte [] buf = new byte[8192];
+         for( int i=0; i<n; i++ ) {
+            String id = in.readUTF();
+            long timestamp = in.readLong();
+            int size = in.readInt();
+            if( size>buf.length ) buf = new byte[size];
+            in.readFully(buf,0,size);
+            SMoc m = new SMoc( new ByteArrayInputStream(buf,0,size) );
+            map.put(id, new Item(m,timestamp));
+         }
+         Aladin.trace(3,"DirectoryMocCache: "+n+" MOCs loaded from cache ["+s+"] in "
+               +(System.currentTimeMillis()-t0)+"ms");
+      } catch( Exception e ) {
+         map.clear();
+         Aladin.trace(1,"Directory MOC cache ignored: "+e.getMessage());
+      } finally {
+         if( in!=null ) try { in.close(); } catch( Exception e ) {}
+      }
+   }
+}
@@ -41,10 +41,10 @@ public final class FrameResample extends FrameRGBBlink {
    private PlanImage pref;
    private ButtonGroup cbPix;     // Pour reprer le mode pixel
    private ButtonGroup cbMethod;  // Pour reprer le mode du resampling
-   private JRadioButton cbPPV,cbBil,cb8,cbF;
+   private JRadioButton cbPPV,cbBil,cbLanczos,cb8,cbF;
    private JCheckBox cbKeep;
    
-   String TITLE,INFO,HELP1,PIXF,PIX8,METHOD_PPV,METHOD_BIL,KEEP_IMGS,KEEP_IMG,METHOD;
+   String TITLE,INFO,HELP1,PIXF,PIX8,METHOD_PPV,METHOD_BIL,METHOD_LANCZOS,KEEP_IMGS,KEEP_IMG,METHOD;
    
    protected void createChaine() {
       super.createChaine();
@@ -55,6 +55,7 @@ public final class FrameResample extends FrameRGBBlink {
       PIX8      = a.chaine.getString("RSPPIX8");
       METHOD_PPV= a.chaine.getString("RSPPPV");
       METHOD_BIL= a.chaine.getString("RSPBIL");
+      METHOD_LANCZOS= a.chaine.getString("RSPLANCZOS");
       KEEP_IMGS = a.chaine.getString("RSPKEEPIMGS");
       KEEP_IMG  = a.chaine.getString("RSPKEEPIMG");
       METHOD    = a.chaine.getString("RSPMETHOD");
@@ -121,8 +122,10 @@ public final class FrameResample extends FrameRGBBlink {
       cbMethod=new ButtonGroup();
       cbPPV=new JRadioButton(METHOD_PPV); cbMethod.add(cbPPV); cbPPV.setSelected(true);
       cbBil=new JRadioButton(METHOD_BIL); cbMethod.add(cbBil);
+      cbLanczos=new JRadioButton(METHOD_LANCZOS); cbMethod.add(cbLanczos);
       p2.add(cbPPV);
       p2.add(cbBil);
+      p2.add(cbLanczos);
       
       // Choix pour la conservation de l'image d'origine
       JPanel p3=new JPanel();
@@ -150,6 +153,7 @@ public final class FrameResample extends FrameRGBBlink {
 //         cbMethod.setCurrent(pref!=null && ((PlanImageResamp)pref).methode
 //               ==PlanImageResamp.PPV?cbPPV:cbBil);
          if( pref!=null && ((PlanImageResamp)pref).methode==PlanImageResamp.PPV ) cbPPV.setSelected(true);
+         else if( pref!=null && ((PlanImageResamp)pref).methode==PlanImageResamp.LANCZOS ) cbLanczos.setSelected(true);
          else cbBil.setSelected(true);
      } else {
           
@@ -180,8 +184,9 @@ public final class FrameResample extends FrameRGBBlink {
       // Rcupration de la mthode du resampling
 //      int methode = cbMethod.getCurrent().getLabel().equals(METHOD_PPV)?
 //            			PlanImageResamp.PPV:PlanImageResamp.BILINEAIRE;
-      int methode = cbPPV.isSelected() ? PlanImageResamp.PPV : PlanImageResamp.BILINEAIRE;
-      String sMethode = methode==PlanImageResamp.PPV ? " Closest":"";
+      int methode = cbPPV.isSelected() ? PlanImageResamp.PPV
+            : cbLanczos.isSelected() ? PlanImageResamp.LANCZOS : PlanImageResamp.BILINEAIRE;
+      String sMethode = methode==PlanImageResamp.PPV ? " Closest" : methode==PlanImageResamp.LANCZOS ? " Lanczos":"";
       
       PlanImage p = (PlanImage)getPlan(ch[0]);
       
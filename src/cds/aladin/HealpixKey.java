@@ -53,10 +53,12 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.StringTokenizer;
 import java.util.Vector;
 import java.util.zip.GZIPInputStream;
 
+import cds.allsky.HipsPack;
 import cds.fits.Fits;
 import cds.tools.FastMath;
 import cds.tools.Util;
@@ -91,6 +93,13 @@ public class HealpixKey implements Comparable<HealpixKey> {
    protected long timer;        // Date de la dernire utilisation du losange, -1 si jamais encore utilis
    protected long timerLoad;    // Date du chargement
    protected int priority=-1;   // Priorit pour le chargement
+   protected volatile boolean outView=false; // true si le losange n'a pas t retenu par le dernier trac (cf. PlanBG.resetPriority())
+
+   /** Positionnement de la priorit de chargement par le trac courant (le losange est donc dans le champ) */
+   protected void setPriority(int priority) {
+      this.priority=priority;
+      outView=false;
+   }
 
    protected PlanBG planBG;     // Plan d'appartenance de ce losange
    protected int order;         // Numro de rsolution HEALPIX
@@ -780,6 +789,18 @@ public class HealpixKey implements Comparable<HealpixKey> {
 
          } finally { if( dis!=null ) dis.close(); }
 
+         // Tuile locale servie par un conteneur pack (cf. HipsPack)
+      } else if( (buf=getPackedTile(filename))!=null ) {
+         if( buf.length>=8 ) detectTypeColor(buf);
+         if( buf.length>=2 && (buf[0] & 0xFF)==31 && (buf[1] & 0xFF)==139 ) {
+            gzipped = true;
+            try {
+               dis = new MyInputStream( new GZIPInputStream( new ByteArrayInputStream(buf) ) );
+               if( skip>0 ) dis.skip(skip);
+               buf = readFully(dis, fastLoad);
+            } finally { if( dis!=null ) dis.close(); }
+         } else if( skip>0 ) buf = Arrays.copyOfRange(buf,skip,buf.length);
+
          // Fichier local (zipp ou non)
       } else {
          RandomAccessFile f = null;
@@ -824,6 +845,24 @@ public class HealpixKey implements Comparable<HealpixKey> {
       return buf;
    }
    
+   /** Retourne le contenu de la tuile si le HiPS local dispose de conteneurs de tuiles packes
+    * et que la tuile y figure, sinon null (=> lecture classique du fichier)
+    * @param filename le nom du fichier de la tuile (sert uniquement pour l'extension)
+    */
+   private byte [] getPackedTile(String filename) {
+      if( npix<0 || planBG==null ) return null;       // pas pour les Allsky
+      HipsPack pack = planBG.getHipsPack();
+      if( pack==null ) return null;
+      String name = filename.substring( filename.lastIndexOf('/')+1 );
+      int i = name.indexOf('.');
+      if( i<0 ) return null;
+      try { return pack.getTile(order,npix,z<=0?0:z,name.substring(i+1)); }
+      catch( Exception e ) {
+         if( Aladin.levelTrace>=3 ) e.printStackTrace();
+         return null;
+      }
+   }
+
    // Detection de JPEG ou PNG
    private void detectTypeColor( byte [] c ) {
       if( (c[0] & 0xFF)==255 && (c[1] & 0xFF)==216 ) typeColor = JPEG;
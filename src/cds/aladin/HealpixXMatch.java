@@ -0,0 +1,398 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.aladin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import cds.healpix.FlatHashIterator;
+import cds.healpix.HashComputer;
+import cds.healpix.Healpix;
+import cds.healpix.HealpixNested;
+import cds.healpix.HealpixNestedBMOC;
+import cds.healpix.NeighbourList;
+
+/**
+ * Cross-match positionnel local index par HEALPix, pour les grandes tables.
+ *
+ * Les deux tables sont rparties par cellule HEALPix  un ordre dtermin par le rayon
+ * de recherche (la plus petite largeur de cellule reste suprieure au rayon), puis la
+ * corrlation est mene cellule par cellule de la premire table, en parallle sur un
+ * ForkJoinPool : pour chaque cellule, seules les sources de la seconde table situes
+ * dans les cellules touches par le cne (cellule + rayon) sont compares.
+ *
+ * Les modes et les rsultats sont ceux de LocalXMatch (meilleur, tous, non-matchs ;
+ * cercle ou ellipses d'erreur ; sources ignores via flag1/flag2), y compris l'ordre
+ * des XMatchResult et le choix du meilleur match en cas d'galit de distance : tri
+ * par dclinaison de la premire table, puis de la seconde.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+public final class HealpixXMatch {
+
+   /** Nombre de sources (table 1 + table 2)  partir duquel on prfre ce moteur au
+    * balayage en dclinaison de LocalXMatch */
+   static final int MINSIZE = 20000;
+
+   /** Ordre HEALPix maximal (le hash et l'indice de la source doivent tenir dans un long) */
+   static final int MAXORDER = 14;
+
+   // Nombre de cellules (resp. de sources) traites par une tche lmentaire
+   static private final int CELLGRAIN = 32;
+   static private final int SRCGRAIN = 65536;
+
+   private final double [][] array1, array2;
+   private final boolean [] flag1, flag2;
+   private final double [] seuil;
+   private final int fmtOut;
+   private final boolean ellipse;
+   private final double [] maj1,min1,pa1;
+   private final double span;             // Rayon de recherche (en degrs)
+   private final int order;
+   private final HealpixNested hn;
+
+   // Table 1 trie par cellule : hash et indice d'origine de chaque source
+   private long [] hash1;
+   private int [] idx1;
+   private int [] cell;                   // Dbut de chaque cellule dans hash1 (+ fin)
+
+   // Table 2 trie par cellule, avec positions (et ellipses) recopies dans cet ordre
+   private long [] hash2;
+   private int [] idx2;
+   private double [] ra2, dec2;
+   private XMatchEllipseElem [] elem2;
+
+   private List<List<XMatchResult>> resCell;     // Rsultats par cellule de la table 1
+
+   // Rang de chaque source dans le tri par dclinaison de LocalXMatch
+   private int [] rank1, rank2;
+
+   private HealpixXMatch(double[][] array1, double[][] array2, boolean[] flag1, boolean[] flag2,
+         double [] maj1, double [] min1, double [] pa1, double [] maj2, double [] min2, double [] pa2,
+         double[] seuil, int fmtOut, double span) {
+      this.array1=array1;
+      this.array2=array2;
+      this.flag1=flag1;
+      this.flag2=flag2;
+      this.maj1=maj1;
+      this.min1=min1;
+      this.pa1=pa1;
+      this.seuil=seuil;
+      this.fmtOut=fmtOut;
+      this.ellipse=maj1!=null;
+      this.span=span;
+      order = getOrder( Math.toRadians(span) );
+      hn = Healpix.getNested(order);
+
+      if( ellipse ) {
+         elem2 = new XMatchEllipseElem[ array2.length ];
+         for( int i=0; i<array2.length; i++ ) {
+            elem2[i] = new XMatchEllipseElem(array2[i][0], array2[i][1], i, maj2[i], min2[i], pa2[i]);
+         }
+      }
+   }
+
+   /** Cross-match positionnel, mmes paramtres et mme rsultat que LocalXMatch.xMatch()
+    * @param array1 coordonnes de la premire table array1[i][0] RA, array1[i][1] DEC (degrs)
+    * @param array2 coordonnes de la seconde table
+    * @param flag1 sources de la premire table  ignorer
+    * @param flag2 sources de la seconde table  ignorer
+    * @param seuil distances min et max (arcsec)
+    * @param fmtOut 1 = meilleur match, 2 = tous les matchs, 4 = non-matchs
+    */
+   static public XMatchResult[] xMatch(double[][] array1, double[][] array2,
+         boolean[] flag1, boolean[] flag2, double[] seuil, int fmtOut) {
+      HealpixXMatch x = new HealpixXMatch(array1,array2,flag1,flag2,null,null,null,null,null,null,
+            seuil,fmtOut,seuil[1]/3600.);
+      return x.run();
+   }
+
+   /** Cross-match positionnel avec ellipses d'erreur, mmes paramtres et mme rsultat
+    * que LocalXMatch.xMatchEllipse() (seuil exprim en nombre de sigmas, axes en arcsec,
+    * angles de position en degrs) */
+   static public XMatchResult[] xMatchEllipse(double[][] array1, double[][] array2,
+         double[] maj1, double[] min1, double[] pa1,
+         double[] maj2, double[] min2, double[] pa2, boolean[] flag1, boolean[] flag2,
+         double[] seuil, int fmtOut) {
+      double sig = seuil[1]/3600.0;
+      double span = sig * Math.sqrt( Math.pow(LocalXMatch.getMaxEllipse(maj1), 2)
+            + Math.pow(LocalXMatch.getMaxEllipse(maj2), 2) );
+      HealpixXMatch x = new HealpixXMatch(array1,array2,flag1,flag2,maj1,min1,pa1,maj2,min2,pa2,
+            seuil,fmtOut,span);
+      return x.run();
+   }
+
+   /** Ordre HEALPix le plus profond dont les cellules sont au moins aussi larges que le rayon */
+   static int getOrder(double radiusRad) {
+      int order=0;
+      while( order<MAXORDER && Healpix.SMALLER_EDGE2OPEDGE_DIST[order+1]>=radiusRad ) order++;
+      return order;
+   }
+
+   // Droulement complet du cross-match
+   private XMatchResult [] run() {
+      ForkJoinPool pool = new ForkJoinPool( Runtime.getRuntime().availableProcessors() );
+      try {
+         long t0 = System.currentTimeMillis();
+
+         // Ordre de LocalXMatch
+         rank1 = LocalXMatch.getDecRank(array1);
+         rank2 = LocalXMatch.getDecRank(array2);
+
+         // Indexation des deux tables
+         long [] key1 = index(pool,array1,flag1);
+         long [] key2 = index(pool,array2,flag2);
+         hash1 = new long[key1.length];
+         idx1 = new int[key1.length];
+         split(key1,hash1,idx1);
+         hash2 = new long[key2.length];
+         idx2 = new int[key2.length];
+         split(key2,hash2,idx2);
+         key1=key2=null;
+
+         ra2 = new double[idx2.length];
+         dec2 = new double[idx2.length];
+         for( int k=0; k<idx2.length; k++ ) {
+            ra2[k] = array2[ idx2[k] ][0];
+            dec2[k] = array2[ idx2[k] ][1];
+         }
+
+         // Reprage des cellules de la table 1
+         int nbCell=0;
+         for( int j=0; j<hash1.length; j++ ) if( j==0 || hash1[j]!=hash1[j-1] ) nbCell++;
+         cell = new int[nbCell+1];
+         nbCell=0;
+         for( int j=0; j<hash1.length; j++ ) if( j==0 || hash1[j]!=hash1[j-1] ) cell[nbCell++]=j;
+         cell[nbCell]=hash1.length;
+         resCell = new ArrayList<>( Collections.nCopies(nbCell,(List<XMatchResult>)null) );
+
+         long t1 = System.currentTimeMillis();
+
+         // Cross-match cellule par cellule
+         pool.invoke( new MatchTask(0,nbCell) );
+
+         long t2 = System.currentTimeMillis();
+         XMatchResult [] res = merge();
+
+         Aladin.trace(3,"HealpixXMatch: order="+order+" cells="+nbCell+" threads="+pool.getParallelism()
+               +" index="+(t1-t0)+"ms match="+(t2-t1)+"ms => "+res.length+" results");
+         return res;
+      } finally {
+         pool.shutdown();
+      }
+   }
+
+   // Calcul des cls (hash HEALPix << 31 | indice) des sources valides d'une table,
+   // retournes tries. Les sources ignores ou sans position exploitable sont cartes.
+   private long [] index(ForkJoinPool pool,double [][] array,boolean [] flag) {
+      final long [] key = new long[array.length];
+      pool.invoke( new HashTask(array,flag,key,0,array.length) );
+      int n=0;
+      for( int i=0; i<key.length; i++ ) if( key[i]>=0 ) key[n++]=key[i];
+      long [] k = Arrays.copyOf(key,n);
+      Arrays.parallelSort(k);
+      return k;
+   }
+
+   private void hash(double [][] array,boolean [] flag,long [] key,int deb,int fin) {
+      HashComputer hc = hn.newHashComputer();
+      for( int i=deb; i<fin; i++ ) {
+         key[i]=-1;
+         if( flag!=null && flag[i] ) continue;
+         double ra = array[i][0], dec = array[i][1];
+         if( !LocalXMatch.isValidPos(ra,dec) ) continue;
+         ra %= 360;
+         if( ra<0 ) ra+=360;
+         key[i] = (hc.hash(Math.toRadians(ra), Math.toRadians(dec))<<31) | i;
+      }
+   }
+
+   static private void split(long [] key,long [] hash,int [] idx) {
+      for( int i=0; i<key.length; i++ ) {
+         hash[i] = key[i]>>>31;
+         idx[i] = (int)(key[i] & 0x7FFFFFFFL);
+      }
+   }
+
+   // Cross-match des sources des cellules [deb,fin[ de la table 1
+   private void match(int deb,int fin) {
+      double radius = Math.toRadians(span);
+      double [] center = new double[2];
+      Ranges rg = new Ranges();
+
+      // Si le rayon est infrieur  la largeur minimale d'une cellule, les voisines
+      // immdiates suffisent, sinon il faut passer par un cne autour de la cellule
+      boolean neighbours = Healpix.SMALLER_EDGE2OPEDGE_DIST[order]>=radius;
+      NeighbourList nl = new NeighbourList(order);
+      for( int c=deb; c<fin; c++ ) {
+         ArrayList<XMatchResult> res = new ArrayList<>();
+         resCell.set(c,res);
+
+         // Les sources de la table 2 concernes par cette cellule de la table 1,
+         // sous la forme d'intervalles [lo,hi[ dans la table 2 trie
+         long h = hash1[ cell[c] ];
+         rg.n=0;
+         if( neighbours ) {
+            rg.add(h);
+            hn.neighbours(h,nl);
+            for( int i=0; i<nl.size(); i++ ) rg.add( nl.get(i) );
+         } else {
+            hn.center(h,center);
+            double r = Math.min(Math.PI,
+                  Healpix.getLargestCenterToCellVertexDistance(center[0],center[1],order) + radius);
+            HealpixNestedBMOC bmoc = hn.newConeComputer(r).overlappingCells(center[0],center[1]);
+            FlatHashIterator it = bmoc.flatHashIterator();
+            while( it.hasNext() ) rg.add( it.next() );
+         }
+         int [] lo = rg.lo, hi = rg.hi;
+         int n = rg.n;
+
+         for( int j=cell[c]; j<cell[c+1]; j++ ) {
+            int i1 = idx1[j];
+            XMatchEllipseElem e1 = !ellipse ? null :
+               new XMatchEllipseElem(array1[i1][0], array1[i1][1], i1, maj1[i1], min1[i1], pa1[i1]);
+            int kBest=-1;
+            double dstBest = seuil[1]+1.0;
+
+            for( int m=0; m<n; m++ ) {
+               for( int k=lo[m]; k<hi[m]; k++ ) {
+                  double dst;
+                  if( ellipse ) {
+                     if( LocalXMatch.sphDst(e1.ra, e1.dec, ra2[k], dec2[k]) > span ) continue;
+                     dst = LocalXMatch.nSigmaEllipse(e1, elem2[ idx2[k] ]);
+                  } else {
+                     dst = 3600.0*LocalXMatch.sphDst(array1[i1][0], array1[i1][1], ra2[k], dec2[k]);
+                  }
+                  if( dst<=seuil[1] && dst>=seuil[0] ) {
+                     if( (fmtOut & 2)>0 ) res.add( new XMatchResult(i1, idx2[k], dst) );
+                     if( dst<dstBest || dst==dstBest && rank2[ idx2[k] ]<rank2[ idx2[kBest] ] ) { kBest=k; dstBest=dst; }
+                  }
+               }
+            }
+            if( kBest>=0 && (fmtOut & 1)>0 && (fmtOut & 2)==0 ) res.add( new XMatchResult(i1, idx2[kBest], dstBest) );
+            if( kBest<0 && (fmtOut & 4)>0 ) res.add( new XMatchResult(i1, -1, -1.0) );
+         }
+      }
+   }
+
+   // Concatnation des rsultats de chaque cellule, puis tri dans l'ordre de LocalXMatch
+   // (rang en dclinaison dans la table 1, puis dans la table 2). Les sources de la table 1
+   // non indexables (position invalide) sont rajoutes comme non-matchs si demand
+   private XMatchResult [] merge() {
+      int n=0;
+      for( List<XMatchResult> r : resCell ) n+=r.size();
+      ArrayList<XMatchResult> res = new ArrayList<>(n);
+      for( int c=0; c<resCell.size(); c++ ) { res.addAll(resCell.get(c)); resCell.set(c,null); }
+
+      if( (fmtOut & 4)>0 ) {
+         boolean [] indexed = new boolean[array1.length];
+         for( int i : idx1 ) indexed[i]=true;
+         for( int i=0; i<array1.length; i++ ) {
+            if( !indexed[i] && (flag1==null || !flag1[i]) ) res.add( new XMatchResult(i, -1, -1.0) );
+         }
+      }
+
+      XMatchResult [] a = res.toArray(new XMatchResult[res.size()]);
+      Arrays.parallelSort(a, new Comparator<XMatchResult>() {
+         public int compare(XMatchResult r1, XMatchResult r2) {
+            int a1 = rank1[r1.idx1], a2 = rank1[r2.idx1];
+            if( a1!=a2 ) return a1<a2 ? -1 : 1;
+            int b1 = r1.idx2<0 ? -1 : rank2[r1.idx2], b2 = r2.idx2<0 ? -1 : rank2[r2.idx2];
+            return b1<b2 ? -1 : b1>b2 ? 1 : 0;
+         }
+      });
+      return a;
+   }
+
+   // Liste d'intervalles [lo,hi[ de la table 2 trie, correspondant  une liste de cellules
+   private class Ranges {
+      int [] lo = new int[16], hi = new int[16];
+      int n;
+
+      // Ajout de l'intervalle des sources de la table 2 situes dans la cellule h2
+      void add(long h2) {
+         int k = Arrays.binarySearch(hash2,h2);
+         if( k<0 ) return;
+         if( n==lo.length ) { lo = Arrays.copyOf(lo,n*2); hi = Arrays.copyOf(hi,n*2); }
+         int a=k, b=k+1;
+         while( a>0 && hash2[a-1]==h2 ) a--;
+         while( b<hash2.length && hash2[b]==h2 ) b++;
+         lo[n]=a;
+         hi[n++]=b;
+      }
+   }
+
+   // Tche ForkJoin gnrique sur un intervalle [deb,fin[, dcoup par dichotomie
+   private abstract class RangeTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      final int deb,fin,grain;
+
+      RangeTask(int deb,int fin,int grain) {
+         this.deb=deb;
+         this.fin=fin;
+         this.grain=grain;
+      }
+
+      protected void compute() {
+         if( fin-deb<=grain ) { run(deb,fin); return; }
+         int m = (deb+fin)>>>1;
+         invokeAll( create(deb,m), create(m,fin) );
+      }
+
+      abstract RangeTask create(int deb,int fin);
+      abstract void run(int deb,int fin);
+   }
+
+   // Tche de calcul des cls HEALPix d'un intervalle de sources
+   private class HashTask extends RangeTask {
+      private static final long serialVersionUID = 1L;
+
+      final double [][] array;
+      final boolean [] flag;
+      final long [] key;
+
+      HashTask(double [][] array,boolean [] flag,long [] key,int deb,int fin) {
+         super(deb,fin,SRCGRAIN);
+         this.array=array;
+         this.flag=flag;
+         this.key=key;
+      }
+      RangeTask create(int deb,int fin) { return new HashTask(array,flag,key,deb,fin); }
+      void run(int deb,int fin) { hash(array,flag,key,deb,fin); }
+   }
+
+   // Tche de cross-match sur un intervalle de cellules de la table 1
+   private class MatchTask extends RangeTask {
+      private static final long serialVersionUID = 1L;
+
+      MatchTask(int deb,int fin) { super(deb,fin,CELLGRAIN); }
+      RangeTask create(int deb,int fin) { return new MatchTask(deb,fin); }
+      void run(int deb,int fin) { match(deb,fin); }
+   }
+}
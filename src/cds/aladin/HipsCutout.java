@@ -0,0 +1,311 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.aladin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import cds.astro.Coo;
+import cds.moc.Healpix;
+import cds.moc.SMoc;
+import cds.tools.pixtools.CDSHealpix;
+
+/**
+ * Moteur d'extraction d'une portion de HiPS (pixels d'origine) rchantillonne sur la grille
+ * d'une image (crop d'un HiPS, commande "cutout").
+ *
+ * Principe de fonctionnement:
+ * La grille de sortie est dcoupe en bandes de lignes traites en parallle. Pour chaque bande,
+ * on calcule d'abord les positions clestes de tous ses pixels et la tuile HiPS dont ils dpendent,
+ * puis on demande une seule fois chacune de ces tuiles (chargement et accs aux pixels d'origine
+ * mmoriss pour toute la dure de l'extraction, partags entre les bandes), et enfin on calcule
+ * les valeurs (plus proche voisin ou interpolation sur 4 pixels HEALPix, comme
+ * PlanBG.getHealpixClosestPixel() et PlanBG.getHealpixLinearPixel()) qui sont crites directement
+ * dans le tampon des pixels d'origine de l'image.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class HipsCutout {
+
+   /** Nombre de lignes par bande */
+   static final int BAND = 16;
+
+   private final PlanBG plan;          // Le HiPS source
+   private final int order;            // Ordre des tuiles utilises
+   private final int z;                // Tranche courante (cube)
+   private int orderPix;               // Ordre HEALPix des pixels des tuiles
+   private int [] hpx2xy;              // Correspondance indice HEALPix => indice XY dans une tuile
+
+   // Tuiles dj demandes (une seule demande par tuile, quelle que soit la bande)
+   private final ConcurrentHashMap<Long,FutureTask<Tile>> tiles = new ConcurrentHashMap<>();
+
+   /**
+    * @param plan le HiPS source
+    * @param order l'ordre des tuiles  utiliser
+    */
+   HipsCutout(PlanBG plan,int order) {
+      this.plan=plan;
+      this.order=order;
+      z=(int)plan.getZ();
+   }
+
+   /** Extraction de la portion du HiPS couverte par le rectangle rcrop de la projection proj.
+    * L'ordre de parcours (et donc d'criture dans pixelsOrigin) est celui des lignes FITS
+    * (ligne du bas en premier).
+    * @param pixelsOrigin tampon des pixels d'origine  remplir (w*h pixels)
+    * @param bitpix codage des pixels d'origine (-32 ou -64)
+    * @param proj la projection de l'image cible
+    * @param rcrop le rectangle  extraire (coordonnes de la projection)
+    * @param zoom facteur de zoom de l'extraction
+    * @param w,h taille de l'image cible
+    * @param bounds MOC restreignant l'extraction, ou null
+    * @param forPourcent plan dont on met  jour le pourcentage d'avancement, ou null
+    * @return true si au-moins un pixel est indfini (NaN)
+    */
+   boolean extract(byte [] pixelsOrigin,int bitpix,Projection proj,RectangleD rcrop,double zoom,
+         int w,int h,SMoc bounds,Plan forPourcent) throws Exception {
+      boolean flagClosest = isClosest(proj,rcrop,zoom,w,h,bounds);
+      int nbBand = (h+BAND-1)/BAND;
+      int nbThread = Math.max(1, Math.min(nbBand, Runtime.getRuntime().availableProcessors()));
+      ExecutorService pool = Executors.newFixedThreadPool(nbThread);
+      try {
+         List<Future<Boolean>> res = new ArrayList<>(nbBand);
+         for( int i=0; i<nbBand; i++ ) {
+            final int deb = i*BAND;
+            final int fin = Math.min(h,deb+BAND);
+            res.add( pool.submit( () -> extractBand(pixelsOrigin,bitpix,proj.copy(),rcrop,zoom,w,h,deb,fin,
+                  bounds,flagClosest) ) );
+         }
+         boolean blank=false;
+         double fct = 100./h;
+         for( int i=0; i<nbBand; i++ ) {
+            blank |= res.get(i).get();
+            if( forPourcent!=null ) forPourcent.pourcent += fct*(Math.min(h,(i+1)*BAND)-i*BAND);
+         }
+         return blank;
+      } finally {
+         pool.shutdownNow();
+         release();
+      }
+   }
+
+   /** Passe en mode "plus proche voisin" s'il y a surchantillonnage (test sur le premier pixel trait) */
+   private boolean isClosest(Projection proj,RectangleD rcrop,double zoom,int w,int h,SMoc bounds) {
+      Healpix hpx = new Healpix();
+      Coord coo = new Coord();
+      Coord coo1 = new Coord();
+      for( int y=h-1; y>=0; y-- ) {
+         for( int x=0; x<w; x++ ) {
+            try {
+               getCoords(proj,rcrop,zoom,x,y,coo,coo1);
+               if( bounds!=null && !bounds.contains(hpx,coo1.al,coo1.del) ) continue;
+               double resDest = Coo.distance(coo.al,coo.del,coo1.al,coo1.del)*2;
+               return resDest<plan.getPixelResolution()/2;
+            } catch( Exception e ) { return false; }
+         }
+      }
+      return false;
+   }
+
+   /** Coordonnes (dans le repre du HiPS) du milieu du bord gauche (coo) et du centre (coo1)
+    * du pixel x,y de la grille de sortie */
+   private void getCoords(Projection proj,RectangleD rcrop,double zoom,int x,int y,Coord coo,Coord coo1) {
+      coo.x = rcrop.x + (x+0.5)/zoom;
+      coo.y = rcrop.y + y/zoom;
+      proj.getCoord(coo);
+      Localisation.frameToFrame(coo,Localisation.ICRS,plan.frameOrigin);
+      coo1.x = rcrop.x + (x+1)/zoom;
+      coo1.y = coo.y;
+      proj.getCoord(coo1);
+      Localisation.frameToFrame(coo1,Localisation.ICRS,plan.frameOrigin);
+   }
+
+   /** Traitement des lignes [deb,fin[ (numrotes comme dans la projection) de la grille de sortie
+    * @return true si au-moins un pixel est indfini (NaN)
+    */
+   private boolean extractBand(byte [] pixelsOrigin,int bitpix,Projection proj,RectangleD rcrop,double zoom,
+         int w,int h,int deb,int fin,SMoc bounds,boolean flagClosest) throws Exception {
+      int n = w*(fin-deb);
+      double [] theta = new double[n], phi = new double[n];      // Milieu du bord gauche
+      double [] theta1 = new double[n], phi1 = new double[n];    // Centre
+      long [] npixFile = new long[n];
+      Healpix hpx = new Healpix();
+      Coord coo = new Coord();
+      Coord coo1 = new Coord();
+      double [] polar = new double[2];
+      double [] radec = new double[2];
+
+      // Positions et tuiles concernes
+      for( int y=deb,i=0; y<fin; y++ ) {
+         for( int x=0; x<w; x++, i++ ) {
+            npixFile[i]=-1;
+            try {
+               getCoords(proj,rcrop,zoom,x,y,coo,coo1);
+               if( Double.isNaN(coo.al) || Double.isNaN(coo.del) ) continue;
+               if( bounds!=null && !bounds.contains(hpx,coo1.al,coo1.del) ) continue;
+               radec[0]=coo.al;  radec[1]=coo.del;
+               CDSHealpix.radecToPolar(radec,polar);
+               theta[i]=polar[0]; phi[i]=polar[1];
+               radec[0]=coo1.al; radec[1]=coo1.del;
+               CDSHealpix.radecToPolar(radec,polar);
+               theta1[i]=polar[0]; phi1[i]=polar[1];
+               npixFile[i] = flagClosest ? CDSHealpix.ang2pix_nest(order,theta1[i],phi1[i])
+                     : CDSHealpix.ang2pix_nest(order,theta[i],phi[i]);
+            } catch( Exception e ) { npixFile[i]=-1; }
+         }
+      }
+
+      // Demande groupe des tuiles distinctes de la bande
+      long [] list = npixFile.clone();
+      Arrays.sort(list);
+      for( int i=0; i<list.length; i++ ) {
+         if( list[i]>=0 && (i==0 || list[i]!=list[i-1]) ) getTile(list[i]);
+      }
+
+      // Calcul des valeurs, crites directement dans le tampon cible (lignes FITS)
+      boolean blank=false;
+      double bScale=plan.bScale, bZero=plan.bZero;
+      for( int y=deb,i=0; y<fin; y++ ) {
+         int offset = (h-1-y)*w;
+         for( int x=0; x<w; x++, i++ ) {
+            double val = Double.NaN;
+            if( npixFile[i]>=0 ) {
+               try {
+                  Tile t = getTile(npixFile[i]);
+                  if( t!=null ) {
+                     val = flagClosest ? t.get( CDSHealpix.ang2pix_nest(orderPix,theta1[i],phi1[i]) )
+                           : getLinearPixel(t,theta[i],phi[i],theta1[i],phi1[i]);
+                  }
+               } catch( Exception e ) { val=Double.NaN; }
+            }
+            if( Double.isNaN(val) ) blank=true;
+            else val = val*bScale+bZero;
+            PlanImage.setPixVal(pixelsOrigin,bitpix,offset+x,val);
+         }
+      }
+      return blank;
+   }
+
+   /** Interpolation sur le pixel HEALPix et ses 3 voisins (S,SW,W), pondre par l'inverse
+    * de la distance au centre du pixel cible (cf. PlanBG.getHealpixLinearPixel()) */
+   private double getLinearPixel(Tile t,double theta,double phi,double theta1,double phi1) throws Exception {
+      long npixPixel = CDSHealpix.ang2pix_nest(orderPix,theta,phi);
+      long [] voisins = CDSHealpix.neighbours(orderPix,npixPixel);
+      int m = 4;
+      for( int i=m; i>=1; i-- ) voisins[i] = voisins[i-1];
+      voisins[0]=npixPixel;
+      double totalPixel=0,totalCoef=0;
+      long size = (long)t.width*t.width;
+      for( int i=0; i<m; i++ ) {
+         long nlpix = voisins[i];
+         Tile t1 = t;
+         if( nlpix<t.startIdx || nlpix>=t.startIdx+size ) {
+            t1 = getTile(nlpix/size);
+            if( t1==null ) continue;
+         }
+         double pix = t1.get(nlpix);
+         if( Double.isNaN(pix) ) continue;
+         double [] polar2 = CDSHealpix.pix2ang_nest(orderPix,nlpix);
+         double coef = Coo.distance(theta1,phi1,polar2[0],polar2[1]);
+         if( coef==0 ) return pix;  // Je suis pile dessus
+         double c = 1/coef;
+         totalPixel += pix * c;
+         totalCoef += c;
+      }
+      return totalPixel/totalCoef;
+   }
+
+   /** Accs  une tuile, demande une seule fois (les autres bandes attendent son arrive)
+    * @return la tuile, ou null si elle n'est pas disponible
+    */
+   private Tile getTile(long npix) throws Exception {
+      FutureTask<Tile> f = tiles.get(npix);
+      if( f==null ) {
+         FutureTask<Tile> f1 = new FutureTask<>( () -> loadTile(npix) );
+         f = tiles.putIfAbsent(npix,f1);
+         if( f==null ) { f=f1; f.run(); }
+      }
+      return f.get();
+   }
+
+   /** Chargement synchrone d'une tuile et de ses pixels d'origine */
+   private Tile loadTile(long npix) throws Exception {
+      if( plan.isOutMoc(order,npix) ) return null;
+      HealpixKey h = plan.getHealpixLowLevel(order,npix,z,HealpixKey.SYNC);
+      if( h==null ) return null;
+      h.setPixelOriginFreeable(false);
+      if( !h.loadPixelsOrigin(HealpixKey.NOW) || h.pixelsOrigin==null ) {
+         h.setPixelOriginFreeable(true);
+         return null;
+      }
+      synchronized( this ) {
+         if( hpx2xy==null ) {
+            int o = (int)CDSHealpix.log2(h.width);
+            if( plan.hpx2xy==null || plan.hpx2xy.length!=h.width*h.width ) plan.createHealpixOrder(o);
+            hpx2xy = plan.hpx2xy;
+            orderPix = o + order;
+         }
+      }
+      return new Tile(h);
+   }
+
+   /** Libration des tuiles (leurs pixels d'origine peuvent de nouveau tre purgs) */
+   private void release() {
+      for( FutureTask<Tile> f : tiles.values() ) {
+         try {
+            Tile t = f.isDone() ? f.get() : null;
+            if( t!=null ) t.h.setPixelOriginFreeable(true);
+         } catch( Exception e ) { }
+      }
+      tiles.clear();
+   }
+
+   /** Tuile HiPS dont les pixels d'origine sont maintenus en mmoire durant l'extraction */
+   private final class Tile {
+      final HealpixKey h;
+      final byte [] pixels;      // Pixels d'origine
+      final int width;           // Largeur de la tuile
+      final long startIdx;       // Indice HEALPix (ordre orderPix) du premier pixel de la tuile
+
+      Tile(HealpixKey h) {
+         this.h=h;
+         pixels=h.pixelsOrigin;
+         width=h.width;
+         startIdx=h.npix*width*width;
+      }
+
+      /** Valeur du pixel HEALPix d'indice npixPixel (ordre orderPix), NaN si BLANK */
+      double get(long npixPixel) {
+         int idx = hpx2xy[(int)(npixPixel-startIdx)];
+         double pix = PlanImage.getPixVal1(pixels,plan.bitpix,idx);
+         if( plan.isBlank(pix) ) return Double.NaN;
+         return pix;
+      }
+   }
+}
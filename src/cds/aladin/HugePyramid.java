@@ -0,0 +1,400 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.aladin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cds.tools.Util;
+
+/**
+ * Pyramide de tuiles multi-rsolution d'une image HUGE (cf. PlanImageHuge).
+ *
+ * Principe de fonctionnement:
+ * Le niveau 0 est l'image pleine rsolution, lue directement dans le fichier FITS local
+ * (original ou dump dans le cache) via un mapping mmoire. Chaque niveau L>0 est obtenu
+ * en moyennant les blocs de 2x2 pixels du niveau prcdent (facteur de rduction 2^L), jusqu'au
+ * niveau qui prcde celui de l'image sous-chantillonne (pas "step"). Ces niveaux sont
+ * construits en une seule passe squentielle par un thread de fond lors de la premire
+ * ouverture, puis stocks sous forme de tuiles de TILE x TILE pixels (codage FITS d'origine,
+ * lignes dans l'ordre de l'affichage) dans un fichier du rpertoire PYRAMID,  ct du cache
+ * Aladin, afin d'tre rutiliss lors des ouvertures suivantes.
+ * Les tuiles sont lues par mapping mmoire et conserves, une fois converties en 8 bits selon
+ * le cut courant, dans un cache LRU (remis  zro  chaque changement de cut).
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class HugePyramid implements Runnable {
+
+   /** Taille des tuiles (en pixels) */
+   static final int TILE = 256;
+
+   /** Nombre maximal de tuiles 8 bits conserves en mmoire (64Ko chacune) */
+   static final int MAXTILES = 256;
+
+   /** Nombre maximal de pyramides conserves dans le rpertoire PYRAMID */
+   static final int MAXPYRAMID = 16;
+
+   /** Sous-rpertoire du rpertoire Aladin (.aladin) pour les pyramides persistantes */
+   static final String PYRAMID = "Pyramid";
+
+   static private final int MAGIC = 0x50595231;   // "PYR1"
+   static private final int HEADER = 64;          // Taille de l'entte du fichier pyramide
+
+   private final File src;              // Fichier des pixels pleine rsolution
+   private final long srcOffset;        // Position des pixels dans ce fichier
+   private final int bitpix,npix;       // Codage FITS des pixels
+   private final boolean isBlank;       // true si la valeur BLANK est dfinie
+   private final double blank;          // Valeur BLANK
+   private final int nbLevel;           // Nombre de niveaux (0 = pleine rsolution)
+   private final int [] width,height;   // Dimensions de chaque niveau (en pixels)
+   private final int [] tilesX;         // Nombre de tuiles en largeur pour chaque niveau
+   private final long [] levelOffset;   // Position de chaque niveau (>0) dans le fichier pyramide
+   private final long tileBytes;        // Taille d'une tuile stocke (en octets)
+   private final File file;             // Fichier pyramide
+   private final boolean persistent;    // false si le fichier pyramide doit disparatre avec la session
+   private final Runnable whenReady;    // Action  lancer ds que la pyramide est disponible
+
+   private MappedFile srcMap;           // Mapping des pixels pleine rsolution
+   private MappedFile pyrMap;           // Mapping du fichier pyramide
+   private volatile boolean ready;      // true si la pyramide est utilisable
+   private volatile boolean abort;      // true pour interrompre la construction
+   private double cutMin,cutMax;        // Cut associ aux tuiles 8 bits du cache
+
+   // Cache LRU des tuiles 8 bits
+   private final LinkedHashMap<Long,byte[]> lru = new LinkedHashMap<Long,byte[]>(MAXTILES,0.75f,true) {
+      protected boolean removeEldestEntry(Map.Entry<Long,byte[]> eldest) { return size()>MAXTILES; }
+   };
+
+   /** Cration de la pyramide (la construction ou l'ouverture se fait via start())
+    * @param src fichier contenant les pixels pleine rsolution
+    * @param srcOffset position des pixels dans ce fichier
+    * @param naxis1,naxis2 taille de l'image
+    * @param bitpix codage FITS des pixels
+    * @param isBlank,blank valeur BLANK ventuelle
+    * @param step pas du sous-chantillonnage de l'image de travail (une puissance de 2)
+    * @param dir rpertoire du fichier pyramide
+    * @param persistent true si le fichier pyramide doit tre conserv pour les sessions suivantes
+    * @param whenReady action  lancer ds que la pyramide est disponible (ou null)
+    */
+   HugePyramid(File src,long srcOffset,int naxis1,int naxis2,int bitpix,boolean isBlank,double blank,
+         int step,File dir,boolean persistent,Runnable whenReady) {
+      this.src=src;
+      this.srcOffset=srcOffset;
+      this.bitpix=bitpix;
+      this.isBlank=isBlank;
+      this.blank=blank;
+      this.persistent=persistent;
+      this.whenReady=whenReady;
+      npix = Math.abs(bitpix)/8;
+      tileBytes = (long)TILE*TILE*npix;
+
+      // Les niveaux vont de la pleine rsolution au niveau prcdant celui de l'image sous-chantillonne
+      int n=1;
+      for( int s=step; s>2; s/=2 ) n++;
+      nbLevel=n;
+      width = new int[nbLevel];
+      height = new int[nbLevel];
+      tilesX = new int[nbLevel];
+      levelOffset = new long[nbLevel];
+      width[0]=naxis1;
+      height[0]=naxis2;
+      long pos=HEADER;
+      for( int l=0; l<nbLevel; l++ ) {
+         if( l>0 ) {
+            width[l] = (width[l-1]+1)/2;
+            height[l] = (height[l-1]+1)/2;
+            levelOffset[l]=pos;
+            pos += getTilesX(l) * (long)getTilesY(l) * tileBytes;
+         }
+         tilesX[l] = getTilesX(l);
+      }
+
+      String key = Integer.toHexString(src.getAbsolutePath().hashCode())
+            +"_"+Long.toHexString(src.length())+"_"+Long.toHexString(src.lastModified())
+            +"_"+Long.toHexString(srcOffset);
+      file = new File(dir,key+".pyr");
+   }
+
+   private int getTilesX(int level) { return (width[level]+TILE-1)/TILE; }
+   private int getTilesY(int level) { return (height[level]+TILE-1)/TILE; }
+
+   /** Lancement de l'ouverture ou de la construction de la pyramide dans un thread de fond */
+   void start() {
+      Thread t = new Thread(this,"HugePyramid");
+      t.setPriority(Thread.MIN_PRIORITY);
+      t.setDaemon(true);
+      t.start();
+   }
+
+   /** Retourne true si la pyramide est utilisable */
+   boolean isReady() { return ready; }
+
+   /** Retourne le nombre de niveaux (niveau 0 = pleine rsolution) */
+   int getNbLevel() { return nbLevel; }
+
+   /** Arrt de la construction ventuelle et libration des ressources */
+   void close() {
+      abort=true;
+      ready=false;
+      srcMap=pyrMap=null;
+      synchronized( lru ) { lru.clear(); }
+      if( !persistent ) file.delete();
+   }
+
+   public void run() {
+      long t = System.currentTimeMillis();
+      try {
+         srcMap = new MappedFile(src, srcOffset, (long)width[0]*height[0]*npix);
+         boolean build = nbLevel>1 && !checkHeader();
+         if( build ) buildPyramid();
+         if( abort ) return;
+         if( nbLevel>1 ) {
+            pyrMap = new MappedFile(file, 0L, file.length());
+            if( persistent ) { file.setLastModified(System.currentTimeMillis()); cleanDir(); }
+            else file.deleteOnExit();
+         }
+         ready=true;
+         Aladin.trace(3,"HugePyramid "+(build?"built":"opened")+" ["+file+"] "+nbLevel+" levels in "
+               +(System.currentTimeMillis()-t)+"ms");
+         if( whenReady!=null ) whenReady.run();
+      } catch( Exception e ) {
+         if( Aladin.levelTrace>=3 ) e.printStackTrace();
+         Aladin.trace(3,"HugePyramid not available: "+e.getMessage());
+      }
+   }
+
+   /** Vrification de l'entte d'un fichier pyramide existant
+    * @return true si le fichier existe, est complet et correspond  l'image
+    */
+   private boolean checkHeader() {
+      if( !file.isFile() || file.length()!=levelOffset[nbLevel-1]
+            + getTilesX(nbLevel-1) * (long)getTilesY(nbLevel-1) * tileBytes ) return false;
+      try( RandomAccessFile f = new RandomAccessFile(file,"r") ) {
+         return f.readInt()==MAGIC && f.readInt()==width[0] && f.readInt()==height[0]
+               && f.readInt()==bitpix && f.readInt()==nbLevel && f.readLong()==src.length()
+               && f.readLong()==src.lastModified() && f.readLong()==srcOffset && f.readInt()==1;
+      } catch( Exception e ) { return false; }
+   }
+
+   /** Construction des niveaux rduits en une seule passe sur l'image pleine rsolution.
+    * Chaque ligne d'un niveau est combine avec la prcdente pour produire une ligne du niveau
+    * suivant. Les tuiles d'une mme range sont accumules puis crites d'un seul bloc.
+    * Le fichier est construit sous un nom temporaire puis renomm une fois complet.
+    */
+   private void buildPyramid() throws Exception {
+      File dir = file.getParentFile();
+      dir.mkdirs();
+      File tmp = File.createTempFile("pyr",".tmp",dir);
+      tmp.deleteOnExit();
+      try {
+         byte [][] tileRow = new byte[nbLevel][];
+         double [][] pending = new double[nbLevel][];
+         double [][] reduce = new double[nbLevel][];
+         for( int l=1; l<nbLevel; l++ ) {
+            tileRow[l] = new byte[ (int)(tilesX[l]*tileBytes) ];
+            reduce[l] = new double[ width[l] ];
+         }
+         for( int l=0; l<nbLevel-1; l++ ) pending[l] = new double[ width[l] ];
+
+         try( RandomAccessFile f = new RandomAccessFile(tmp,"rw") ) {
+            writeHeader(f,0);
+            byte [] buf = new byte[ width[0]*npix ];
+            double [] row = new double[ width[0] ];
+            for( int y=0; y<height[0] && !abort; y++ ) {
+               srcMap.get( getSrcPos(0,y), buf, 0, buf.length);
+               decode(buf,row,width[0]);
+               addRow(f,0,y,row,tileRow,pending,reduce);
+            }
+            if( abort ) return;
+            f.seek(0);
+            writeHeader(f,1);
+         }
+         if( !tmp.renameTo(file) ) {
+            file.delete();
+            if( !tmp.renameTo(file) ) throw new IOException("Cannot create "+file);
+         }
+      } finally { tmp.delete(); }
+   }
+
+   // Entte du fichier pyramide (complete=1 lorsque tous les niveaux sont crits)
+   private void writeHeader(RandomAccessFile f,int complete) throws IOException {
+      f.writeInt(MAGIC);
+      f.writeInt(width[0]);
+      f.writeInt(height[0]);
+      f.writeInt(bitpix);
+      f.writeInt(nbLevel);
+      f.writeLong(src.length());
+      f.writeLong(src.lastModified());
+      f.writeLong(srcOffset);
+      f.writeInt(complete);
+   }
+
+   /** Prise en compte de la ligne y du niveau level : mmorisation dans la range de tuiles
+    * courante (niveaux>0), puis rduction avec la ligne prcdente pour le niveau suivant */
+   private void addRow(RandomAccessFile f,int level,int y,double [] row,
+         byte [][] tileRow,double [][] pending,double [][] reduce) throws IOException {
+      if( level>0 ) {
+         byte [] t = tileRow[level];
+         int r = y%TILE;
+         for( int x=0; x<width[level]; x++ ) {
+            double v = row[x];
+            if( Double.isNaN(v) ) v = bitpix>0 ? (isBlank ? blank : 0) : Double.NaN;
+            else if( bitpix>0 ) v = Math.rint(v);
+            PlanImage.setPixVal(t,bitpix,(x/TILE)*TILE*TILE + r*TILE + x%TILE, v);
+         }
+         if( r==TILE-1 || y==height[level]-1 ) {
+            f.seek( levelOffset[level] + (y/TILE)*(long)tilesX[level]*tileBytes );
+            f.write(t);
+            Arrays.fill(t,(byte)0);
+         }
+      }
+      if( level==nbLevel-1 ) return;
+
+      double [] prev = pending[level];
+      boolean last = y==height[level]-1;
+      if( (y&1)==0 ) {
+         System.arraycopy(row,0,prev,0,width[level]);
+         if( !last ) return;
+      }
+      double [] out = reduce[level+1];
+      int w = width[level];
+      for( int x=0; x<out.length; x++ ) {
+         int x0=2*x, x1=Math.min(x0+1,w-1);
+         double s=0;
+         int n=0;
+         double v;
+         v=prev[x0]; if( !Double.isNaN(v) ) { s+=v; n++; }
+         v=prev[x1]; if( !Double.isNaN(v) ) { s+=v; n++; }
+         v=row[x0];  if( !Double.isNaN(v) ) { s+=v; n++; }
+         v=row[x1];  if( !Double.isNaN(v) ) { s+=v; n++; }
+         out[x] = n==0 ? Double.NaN : s/n;
+      }
+      addRow(f,level+1,y/2,out,tileRow,pending,reduce);
+   }
+
+   // Position dans le fichier source de la ligne y (ordre d'affichage)  partir de la colonne x
+   private long getSrcPos(int x,int y) {
+      return ((height[0]-1-y)*(long)width[0] + x)*npix;
+   }
+
+   // Conversion en valeurs relles (NaN pour les pixels BLANK)
+   private void decode(byte [] buf,double [] row,int n) {
+      for( int i=0; i<n; i++ ) {
+         double c = PlanImage.getPixVal1(buf,bitpix,i);
+         row[i] = isBlank && c==blank ? Double.NaN : c;
+      }
+   }
+
+   /** Suppression des pyramides les plus anciennes au-del de MAXPYRAMID */
+   private void cleanDir() {
+      File [] list = file.getParentFile().listFiles();
+      if( list==null ) return;
+      int n=0;
+      for( File f : list ) if( f.getName().endsWith(".pyr") ) list[n++]=f;
+      if( n<=MAXPYRAMID ) return;
+      File [] pyr = Arrays.copyOf(list,n);
+      Arrays.sort(pyr, (a,b) -> Long.compare(a.lastModified(),b.lastModified()) );
+      for( int i=0; i<n-MAXPYRAMID; i++ ) {
+         if( !pyr[i].equals(file) ) pyr[i].delete();
+      }
+   }
+
+   /** Extraction d'une portion 8 bits du niveau indiqu. Les pixels hors de l'image valent 0.
+    * La conversion 8 bits est identique  celle de PlanImageHuge.getSubImageThread()
+    * @param level niveau de la pyramide (0 = pleine rsolution)
+    * @param x,y coin haut gauche (coordonnes du niveau, ordre d'affichage)
+    * @param w,h taille de la portion
+    * @param min,max cut courant (pixelMin, pixelMax)
+    * @return les pixels 8 bits (w*h), ou null si la pyramide n'est pas disponible
+    */
+   byte [] crop(int level,int x,int y,int w,int h,double min,double max) {
+      if( !ready || level<0 || level>=nbLevel ) return null;
+      synchronized( lru ) {
+         if( min!=cutMin || max!=cutMax ) { lru.clear(); cutMin=min; cutMax=max; }
+      }
+      byte [] pixels = new byte[w*h];
+      int x0 = Math.max(0,x),              y0 = Math.max(0,y);
+      int x1 = Math.min(width[level],x+w), y1 = Math.min(height[level],y+h);
+      if( x0>=x1 || y0>=y1 ) return pixels;
+      try {
+         for( int ty=y0/TILE; ty<=(y1-1)/TILE; ty++ ) {
+            for( int tx=x0/TILE; tx<=(x1-1)/TILE; tx++ ) {
+               byte [] tile = getTile(level,tx,ty,min,max);
+               int xa = Math.max(x0,tx*TILE), xb = Math.min(x1,(tx+1)*TILE);
+               int ya = Math.max(y0,ty*TILE), yb = Math.min(y1,(ty+1)*TILE);
+               for( int j=ya; j<yb; j++ ) {
+                  System.arraycopy(tile,(j-ty*TILE)*TILE + xa-tx*TILE, pixels,(j-y)*w + xa-x, xb-xa);
+               }
+            }
+         }
+      } catch( Exception e ) {
+         if( Aladin.levelTrace>=3 ) e.printStackTrace();
+         return null;
+      }
+      return pixels;
+   }
+
+   /** Rcupration d'une tuile 8 bits, via le cache LRU ou par dcodage */
+   private byte [] getTile(int level,int tx,int ty,double min,double max) throws IOException {
+      Long key = ((long)level<<56) | ((long)ty<<28) | tx;
+      byte [] tile;
+      synchronized( lru ) { tile = lru.get(key); }
+      if( tile!=null ) return tile;
+      tile = decodeTile(level,tx,ty,min,max);
+      synchronized( lru ) { if( min==cutMin && max==cutMax ) lru.put(key,tile); }
+      return tile;
+   }
+
+   /** Lecture et conversion 8 bits d'une tuile */
+   private byte [] decodeTile(int level,int tx,int ty,double min,double max) throws IOException {
+      byte [] tile = new byte[TILE*TILE];
+      int w = Math.min(TILE, width[level]-tx*TILE);
+      int h = Math.min(TILE, height[level]-ty*TILE);
+      MappedFile map = level==0 ? srcMap : pyrMap;
+      if( map==null ) throw new IOException("HugePyramid closed");
+      double r = 255./(max - min);
+      byte [] buf = new byte[TILE*npix];
+      long pos = level==0 ? 0L : levelOffset[level] + (ty*(long)tilesX[level] + tx)*tileBytes;
+      for( int j=0; j<h; j++ ) {
+         if( level==0 ) map.get( getSrcPos(tx*TILE,ty*TILE+j), buf, 0, w*npix);
+         else map.get( pos + j*(long)TILE*npix, buf, 0, w*npix);
+         int o = j*TILE;
+         for( int i=0; i<w; i++ ) {
+            double c = PlanImage.getPixVal1(buf,bitpix,i);
+            if( Double.isNaN(c) || isBlank && c==blank ) continue;
+            tile[o+i] = (byte)( 1+ (c<=min?0x00:c>=max?0xfe :(int)( ((c-min)*r)) ) & 0xff);
+         }
+      }
+      return tile;
+   }
+
+   /** Rpertoire des pyramides persistantes */
+   static File getDir() {
+      return new File(System.getProperty("user.home")+Util.FS+Aladin.CACHE+Util.FS+PYRAMID);
+   }
+}
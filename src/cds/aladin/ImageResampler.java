@@ -0,0 +1,278 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.aladin;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moteur de rchantillonnage d'une image dans la grille de pixels d'une autre image
+ * (cf. PlanImageResamp.resample()).
+ *
+ * Principe de fonctionnement:
+ * L'image de sortie est dcoupe en tuiles de TILE x TILE pixels traites en parallle
+ * (ForkJoinPool commun). Pour chaque ligne d'une tuile, les changements de repre (pixel de
+ * sortie => coordonnes clestes => pixel de l'image initiale) sont calculs en une seule fois
+ * via les versions tableaux de Projection.getCoord() et Projection.getXY(), puis la valeur
+ * est interpole (plus proche voisin, bilinaire ou Lanczos-3)  la fois dans le tampon 8 bits
+ * et, s'il existe, dans le tampon des pixels d'origine. Chaque pixel de sortie n'tant crit
+ * que par une seule tuile, aucune synchronisation n'est ncessaire.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class ImageResampler {
+
+   /** Taille (en pixels) du ct d'une tuile de traitement */
+   static final int TILE = 128;
+
+   /** Demi-largeur du noyau de Lanczos */
+   static private final int LANCZOS = 3;
+
+   private final PlanImage plan;          // Plan concern (codage et valeur BLANK des pixels d'origine, avancement)
+   private final byte [] pixelsInit;      // Pixels 8 bits de l'image initiale
+   private final byte [] pixelsOriginInit;// Pixels d'origine de l'image initiale, ou null
+   private final int widthInit,heightInit;// Taille de l'image initiale
+   private final Projection projInit;     // Projection de l'image initiale
+   private final Projection projRef;      // Projection de la grille de sortie
+   private final int width,height;        // Taille de la grille de sortie
+   private final int methode;             // PlanImageResamp.PPV, BILINEAIRE ou LANCZOS
+
+   private byte [] pixels;                // Pixels 8 bits de sortie
+   private byte [] pixelsOrigin;          // Pixels d'origine de sortie, ou null
+   private final AtomicLong done = new AtomicLong(); // Nombre de pixels traits (pourcentage d'avancement)
+
+   /**
+    * @param plan le plan concern (codage des pixels d'origine et pourcentage d'avancement)
+    * @param pixelsInit les pixels 8 bits de l'image initiale
+    * @param pixelsOriginInit les pixels d'origine de l'image initiale, null si non traits
+    * @param widthInit,heightInit la taille de l'image initiale
+    * @param projInit la projection de l'image initiale
+    * @param projRef la projection de la grille de sortie
+    * @param width,height la taille de la grille de sortie
+    * @param methode PlanImageResamp.PPV, BILINEAIRE ou LANCZOS
+    */
+   ImageResampler(PlanImage plan,byte [] pixelsInit,byte [] pixelsOriginInit,int widthInit,int heightInit,
+         Projection projInit,Projection projRef,int width,int height,int methode) {
+      this.plan=plan;
+      this.pixelsInit=pixelsInit;
+      this.pixelsOriginInit=pixelsOriginInit;
+      this.widthInit=widthInit;
+      this.heightInit=heightInit;
+      this.projInit=projInit;
+      this.projRef=projRef;
+      this.width=width;
+      this.height=height;
+      this.methode=methode;
+   }
+
+   /** Rchantillonnage. Les pixels non couverts par l'image initiale restent  0
+    * @param pixels tampon 8 bits de sortie (width*height)
+    * @param pixelsOrigin tampon des pixels d'origine de sortie (lignes FITS), null si non traits
+    */
+   void resample(byte [] pixels,byte [] pixelsOrigin) {
+      this.pixels=pixels;
+      this.pixelsOrigin=pixelsOriginInit==null ? null : pixelsOrigin;
+      done.set(0L);
+      int nbTileX = (width+TILE-1)/TILE;
+      int nbTileY = (height+TILE-1)/TILE;
+      ForkJoinPool.commonPool().invoke( new TileTask(nbTileX,0,nbTileX*nbTileY) );
+   }
+
+   /** Traitement rcursif des tuiles [deb,fin[ (coupure en deux jusqu' la tuile unique) */
+   private class TileTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      private final int nbTileX,deb,fin;
+
+      TileTask(int nbTileX,int deb,int fin) { this.nbTileX=nbTileX; this.deb=deb; this.fin=fin; }
+
+      protected void compute() {
+         if( fin-deb<=1 ) {
+            for( int t=deb; t<fin; t++ ) {
+               int x0 = (t%nbTileX)*TILE;
+               int y0 = (t/nbTileX)*TILE;
+               resampleTile(x0,y0,Math.min(width,x0+TILE),Math.min(height,y0+TILE));
+            }
+            return;
+         }
+         int mid = (deb+fin)>>>1;
+         invokeAll(new TileTask(nbTileX,deb,mid), new TileTask(nbTileX,mid,fin));
+      }
+   }
+
+   /** Traitement de la tuile [x0,x1[ x [y0,y1[ de la grille de sortie */
+   private void resampleTile(int x0,int y0,int x1,int y1) {
+      int n = x1-x0;
+      double [] x = new double[n], y = new double[n];
+      double [] ra = new double[n], dec = new double[n];
+      double [] wx = new double[2*LANCZOS], wy = new double[2*LANCZOS];
+
+      for( int row=y0; row<y1; row++ ) {
+
+         // Changements de repre groups pour la ligne
+         for( int i=0; i<n; i++ ) { x[i]=x0+i; y[i]=row; }
+         projRef.getCoord(x,y,ra,dec,0,n);
+         projInit.getXY(ra,dec,x,y,0,n);
+
+         int offset = row*width;
+         int offsetOrig = (height-row-1)*width;
+         for( int i=0; i<n; i++ ) {
+            if( Double.isNaN(ra[i]) || Double.isNaN(x[i]) || Double.isNaN(y[i]) ) continue;
+            int col = x0+i;
+            switch( methode ) {
+               case PlanImageResamp.PPV:
+                  closest(x[i],y[i],offset+col,offsetOrig+col);
+                  break;
+               case PlanImageResamp.LANCZOS:
+                  lanczos(x[i],y[i],offset+col,offsetOrig+col,wx,wy);
+                  break;
+               default:
+                  bilinear(x[i],y[i],offset+col,offsetOrig+col);
+            }
+         }
+      }
+
+      // Avancement
+      long m = done.addAndGet( (long)n*(y1-y0) );
+      plan.setPourcent( m*100./((long)width*height) );
+   }
+
+   /** Plus proche voisin */
+   private void closest(double cx,double cy,int pos,int posOrig) {
+      int x = (int)Math.round(cx);
+      int y = (int)Math.round(cy);
+      if( x<0 || x>=widthInit || y<0 || y>=heightInit ) return;
+      pixels[pos] = pixelsInit[y*widthInit+x];
+      if( pixelsOrigin!=null ) plan.copyPixVal(pixelsOriginInit,(heightInit-y-1)*widthInit+x,pixelsOrigin,posOrig);
+   }
+
+   /** Interpolation bilinaire sur les 4 pixels voisins (les poids sont les distances complmentaires,
+    * ce qui traite naturellement le cas o la position tombe exactement sur un pixel) */
+   private void bilinear(double cx,double cy,int pos,int posOrig) {
+      int x1 = (int)Math.round(cx-0.5);
+      int y1 = (int)Math.round(cy-0.5);
+      int x2 = x1+1;
+      int y2 = y1+1;
+      if( x1<0 || x2>=widthInit || y1<0 || y2>=heightInit ) return;
+      double fx = cx-x1, fy = cy-y1;
+
+      double p0 = 0xFF & pixelsInit[y1*widthInit+x1];
+      double p1 = 0xFF & pixelsInit[y1*widthInit+x2];
+      double p2 = 0xFF & pixelsInit[y2*widthInit+x1];
+      double p3 = 0xFF & pixelsInit[y2*widthInit+x2];
+      double pA = p0+(p1-p0)*fx;
+      double pB = p2+(p3-p2)*fx;
+      pixels[pos] = (byte)(0xFF & (int)(pA+(pB-pA)*fy));
+      if( pixelsOrigin==null ) return;
+
+      int bitpix = plan.bitpix;
+      p0 = plan.getPixVal(pixelsOriginInit,bitpix,(heightInit-y1-1)*widthInit+x1);
+      p1 = plan.getPixVal(pixelsOriginInit,bitpix,(heightInit-y1-1)*widthInit+x2);
+      p2 = plan.getPixVal(pixelsOriginInit,bitpix,(heightInit-y2-1)*widthInit+x1);
+      p3 = plan.getPixVal(pixelsOriginInit,bitpix,(heightInit-y2-1)*widthInit+x2);
+      pA = p0+(p1-p0)*fx;
+      pB = p2+(p3-p2)*fx;
+      PlanImage.setPixVal(pixelsOrigin,bitpix,posOrig,pA+(pB-pA)*fy);
+   }
+
+   /** Interpolation de Lanczos-3 sur les 6x6 pixels voisins. Mme domaine de validit que
+    * l'interpolation bilinaire, les pixels du noyau qui sortent de l'image tant remplacs
+    * par ceux du bord. Les pixels BLANK sont ignors (renormalisation des poids restants) */
+   private void lanczos(double cx,double cy,int pos,int posOrig,double [] wx,double [] wy) {
+      int x1 = (int)Math.round(cx-0.5);
+      int y1 = (int)Math.round(cy-0.5);
+      if( x1<0 || x1+1>=widthInit || y1<0 || y1+1>=heightInit ) return;
+      double sx = weights(cx-x1,wx);
+      double sy = weights(cy-y1,wy);
+      double norm = 1./(sx*sy);
+
+      double val=0;
+      for( int j=0; j<wy.length; j++ ) {
+         int offset = clamp(y1-LANCZOS+1+j,heightInit)*widthInit;
+         double v=0;
+         for( int i=0; i<wx.length; i++ ) {
+            v += wx[i] * (0xFF & pixelsInit[offset+clamp(x1-LANCZOS+1+i,widthInit)]);
+         }
+         val += wy[j]*v;
+      }
+      val *= norm;
+      pixels[pos] = (byte)(val<=0 ? 0 : val>=255 ? 255 : (int)(val+0.5));
+      if( pixelsOrigin==null ) return;
+
+      int bitpix = plan.bitpix;
+      val=0;
+      double sw=0;
+      for( int j=0; j<wy.length; j++ ) {
+         int offset = (heightInit-clamp(y1-LANCZOS+1+j,heightInit)-1)*widthInit;
+         for( int i=0; i<wx.length; i++ ) {
+            double p = plan.getPixVal(pixelsOriginInit,bitpix,offset+clamp(x1-LANCZOS+1+i,widthInit));
+            if( Double.isNaN(p) ) continue;
+            double w = wx[i]*wy[j];
+            val += w*p;
+            sw += w;
+         }
+      }
+      if( sw==0 ) val=Double.NaN;
+      else {
+         val /= sw;
+         if( bitpix>0 ) val = Math.round(val);
+      }
+      PlanImage.setPixVal(pixelsOrigin,bitpix,posOrig,val);
+   }
+
+   // sin et cos de PI.k/LANCZOS pour les dcalages entiers k=i-LANCZOS+1 du noyau
+   static private final double [] SINK = new double[2*LANCZOS];
+   static private final double [] COSK = new double[2*LANCZOS];
+   static {
+      for( int i=0; i<2*LANCZOS; i++ ) {
+         double a = Math.PI*(i-LANCZOS+1)/LANCZOS;
+         SINK[i]=Math.sin(a);
+         COSK[i]=Math.cos(a);
+      }
+   }
+
+   /** Calcul des 2*LANCZOS poids du noyau sinc(t).sinc(t/LANCZOS) pour un dcalage f (0<=f<=1)
+    * par rapport au pixel de gauche (resp. du bas) et retourne leur somme. Les sinus des
+    * diffrents t=f-k se dduisent de ceux de f (seulement 3 appels trigonomtriques) */
+   static private double weights(double f,double [] w) {
+      double s = Math.sin(Math.PI*f);
+      double s3 = Math.sin(Math.PI*f/LANCZOS);
+      double c3 = Math.cos(Math.PI*f/LANCZOS);
+      double sum=0;
+      for( int i=0; i<w.length; i++ ) {
+         int k = i-LANCZOS+1;
+         double t = f-k;
+         if( Math.abs(t)<1e-8 ) w[i]=1;
+         else {
+            double a = Math.PI*t;
+            w[i] = ((k&1)==0 ? s : -s) * (s3*COSK[i]-c3*SINK[i]) * LANCZOS/(a*a);
+         }
+         sum+=w[i];
+      }
+      return sum;
+   }
+
+   /** Ramne l'indice i dans [0,max[ */
+   static private int clamp(int i,int max) { return i<0 ? 0 : i>=max ? max-1 : i; }
+}
@@ -119,7 +119,11 @@ public final class LocalXMatch {
         XMatchResult result;
 
         for (j=0; j<len1; j++) {
-            if( flag1[j] ) continue;
+            if( flag1[pos1[j].idx] ) continue;
+            if( !isValidPos(pos1[j].ra, pos1[j].dec) ) {
+                if ((fmtOut & 4)>0) resultVec.addElement(new XMatchResult(pos1[j].idx, -1, -1.0));
+                continue;
+            }
 
             while (pos2[k_inf].dec < pos1[j].dec-seuil[1]/3600. && k_inf < (len2-1) ) {
                 k_inf++;
@@ -131,7 +135,7 @@ public final class LocalXMatch {
             kBest = -1;
             dstBest = seuil[1]+1.0; /* make it a non-match */
             for (k=k_inf; k<=k_sup; k++) {
-                if( flag2[k] ) continue;
+                if( flag2[pos2[k].idx] || !isValidPos(pos2[k].ra, pos2[k].dec) ) continue;
                 //System.out.println(k+" "+j);
                 dst = 3600.0*sphDst(pos1[j].ra, pos1[j].dec, pos2[k].ra, pos2[k].dec);
                 if (dst <= seuil[1] && dst >= seuil[0]) {
@@ -208,7 +212,11 @@ public final class LocalXMatch {
 
         for (j=0; j<len1; j++) {
 //        	UTILISER FLAG ICI
-			if( flag1[j] ) continue;
+			if( flag1[pos1[j].idx] ) continue;
+			if( !isValidPos(pos1[j].ra, pos1[j].dec) ) {
+				if ((fmtOut & 4)>0) resultVec.addElement(new XMatchResult(pos1[j].idx, -1, -1.0));
+				continue;
+			}
 
         	/* fkInf and fkSup are the max window boundaries
                they grow monotonically with j */
@@ -231,7 +239,7 @@ public final class LocalXMatch {
         	dstBest = seuil[1]+1.0; /* make it a non-match */
         	for (k=kInf; k<=kSup; k++) {
 //        		UTLISER FLAG ICI
-				if( flag2[k] ) continue;
+				if( flag2[pos2[k].idx] || !isValidPos(pos2[k].ra, pos2[k].dec) ) continue;
 
         		/* petite ruse: on calcule la distance pour faire une selection grossiere en RA... */
         		if (sphDst(pos1[j].ra, pos1[j].dec, pos2[k].ra, pos2[k].dec) > span) continue;
@@ -274,7 +282,7 @@ public final class LocalXMatch {
 	 Computes distance between 2 ellipses expressed as a merged 'sigma'
 	 Returns the value of the distance
 	*/
-	static private double nSigmaEllipse(XMatchEllipseElem tab1, XMatchEllipseElem tab2)
+	static double nSigmaEllipse(XMatchEllipseElem tab1, XMatchEllipseElem tab2)
 	{
 	   double theta, dra, ddec, dcos, dst;
 	   double siang, coang, sig, sig1, sig2;
@@ -306,7 +314,7 @@ public final class LocalXMatch {
 	 Maximum major-axis in a pos array
 	 Returns the value of maximum
 	*/
-	static private double getMaxEllipse(double[] tableau) {
+	static double getMaxEllipse(double[] tableau) {
 	   double max=0.0;
 	   int i;
 
@@ -317,6 +325,33 @@ public final class LocalXMatch {
 	   return max;
 	}
 
+    /** Rank of each source in the ascending declination order used by xMatch()
+     * and xMatchEllipse(), i.e. the order of their results (cf. HealpixXMatch)
+     * @param array array of coordinates, array[i][1] is DEC
+     * @return rank[i] position of source i once sorted
+     */
+    static int[] getDecRank(double[][] array) {
+        int n = array.length;
+        double[] dec = new double[n];
+        for( int i=0; i<n; i++ ) dec[i] = sortKey(array[i][0], array[i][1]);
+        int[] iwksp = new int[n];
+        dindexx(dec, iwksp);
+        int[] rank = new int[n];
+        for( int j=0; j<n; j++ ) rank[iwksp[j]] = j;
+        return rank;
+    }
+
+    /** Returns true if the position can be cross-matched (finite RA, DEC in [-90,90]).
+     * Other sources never match and are reported as non-matches */
+    static boolean isValidPos(double ra, double dec) {
+        return !Double.isNaN(ra) && !Double.isInfinite(ra) && dec>=-90 && dec<=90;
+    }
+
+    /** Sort key: invalid positions are pushed at the end of the declination order */
+    static private double sortKey(double ra, double dec) {
+        return isValidPos(ra, dec) ? dec : Double.POSITIVE_INFINITY;
+    }
+
     /** fill a XMatchElem array from a table of coordinates */
     private static void fillElem(XMatchElem[] pos, double[][] array) {
         for( int i=0; i<array.length; i++ ) {
@@ -345,7 +380,7 @@ public final class LocalXMatch {
      *
      * @return distance in degrees between 2 sources
      */
-    private static double sphDst(final double ra1, final double dec1,
+    static double sphDst(final double ra1, final double dec1,
                                            final double ra2, final double dec2) {
         final double ra1Rad  = deg2rad(ra1);
         final double dec1Rad = deg2rad(dec1);
@@ -377,7 +412,7 @@ public final class LocalXMatch {
         double[] dec = new double[n];
 
         for (int j=0; j<n; j++)
-            dec[j] = rec[j].dec;
+            dec[j] = sortKey(rec[j].ra, rec[j].dec);
 
         int[] iwksp = new int[n];
         XMatchElem[] wksp = new XMatchElem[n];
@@ -0,0 +1,87 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.aladin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Accs en lecture  une portion de fichier via des segments mapps en mmoire
+ * (plusieurs segments pour dpasser la limite des 2Go d'un MappedByteBuffer).
+ * Les lectures peuvent tre faites simultanment par plusieurs threads.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class MappedFile {
+
+   static private final long SEGMENT = 1L<<30;    // Taille maximale d'un segment mapp
+
+   private final String path;                 // Le fichier mapp
+   private final long size;                   // Taille de la portion mappe
+   private final MappedByteBuffer [] seg;
+
+   /**
+    * @param f le fichier
+    * @param offset position du dbut de la portion  mapper
+    * @param size taille de la portion  mapper
+    */
+   MappedFile(File f,long offset,long size) throws IOException {
+      this.path=f.getPath();
+      this.size=size;
+      seg = new MappedByteBuffer[ (int)((size+SEGMENT-1)/SEGMENT) ];
+      try( RandomAccessFile rf = new RandomAccessFile(f,"r") ) {
+         FileChannel ch = rf.getChannel();
+         for( int i=0; i<seg.length; i++ ) {
+            long deb = i*SEGMENT;
+            seg[i] = ch.map(FileChannel.MapMode.READ_ONLY, offset+deb, Math.min(SEGMENT,size-deb));
+         }
+      }
+   }
+
+   /** Mapping de la totalit du fichier */
+   MappedFile(File f) throws IOException { this(f,0L,f.length()); }
+
+   /** Retourne true s'il s'agit du mapping du fichier path */
+   boolean isFor(String path) { return this.path.equals(path); }
+
+   /** Taille de la portion mappe */
+   long size() { return size; }
+
+   /** Lecture de len octets  partir de la position pos (relative au dbut de la portion) */
+   void get(long pos,byte [] dst,int off,int len) {
+      if( pos<0 || pos+len>size ) throw new IndexOutOfBoundsException("pos="+pos+" len="+len+" size="+size);
+      while( len>0 ) {
+         int i = (int)(pos/SEGMENT);
+         int p = (int)(pos%SEGMENT);
+         ByteBuffer b = seg[i].duplicate();
+         b.position(p);
+         int n = Math.min(len, b.remaining());
+         b.get(dst,off,n);
+         pos+=n; off+=n; len-=n;
+      }
+   }
+}
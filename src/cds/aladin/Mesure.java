@@ -835,7 +835,8 @@ public final class Mesure extends JPanel implements Runnable,Iterable<Source>,Wi
       if( o==null ) return null;
       
       Vector wordLine;
-      String s =(o.info!=null)?o.info:o.id; // Faute de grive...
+      String s = o.getFullInfo();
+      if( s==null ) s=o.id; // Faute de grive...
 
       StringTokenizer st = new StringTokenizer(s,"\t");
       int n = st.countTokens();
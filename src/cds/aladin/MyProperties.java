@@ -53,6 +53,7 @@ public class MyProperties {
    private ArrayList<PropItem>         prop;  // Liste squentielle des proprits
    private HashMap<String, PropItem>   hash;  // Accs direct  la valeur d'une proprit
    
+   private int modCount=0;                      // Compteur de modifications (cf. getModCount())
    private StringBuilder propOriginal = null;   // Strings des properties originales (telles que) si demand dans load()
 
    public MyProperties() {
@@ -67,6 +68,10 @@ public class MyProperties {
       return p;
    }
    
+   /** Retourne le compteur de modifications, incrment  chaque changement de cl ou de valeur.
+    * Permet aux index construits sur ces proprits (cf. MultiMoc) de dtecter les mises  jour */
+   public int getModCount() { return modCount; }
+   
    /** Retourne la liste ordonne des cls */
    public ArrayList<String> getKeys() {
       ArrayList<String> a = new ArrayList<>();
@@ -84,6 +89,7 @@ public class MyProperties {
          if( pi.key.equals("#") && pi.value!=null && pi.value.equals(s) ) { find=i; break; }
       }
       if( find==-1 ) return false;
+      modCount++;
       prop.remove( find );
       return true;
    }
@@ -301,6 +307,7 @@ public class MyProperties {
     */
    public void add(String key, String value) {
       remove(key);
+      modCount++;
       PropItem item = new PropItem(key, value);
       prop.add(item);
       hash.put(key,item);
@@ -313,6 +320,7 @@ public class MyProperties {
     */
    public void insert(String key, String value) {
       remove(key);
+      modCount++;
       PropItem item = new PropItem(key, value);
       prop.add(0,item);
       hash.put(key,item);
@@ -320,6 +328,7 @@ public class MyProperties {
    
    /** Suppression d'une proprit */
    public void remove(String key) {
+      modCount++;
       prop.remove( getItem(key) );
       hash.remove(key);
    }
@@ -340,6 +349,7 @@ public class MyProperties {
     */
    public void replaceValue(String key, String value) {
       if( value==null ) { remove(key); return; }
+      modCount++;
       PropItem item = getItem(key);
       if( item == null ) {
          item = new PropItem(key, value);
@@ -354,6 +364,7 @@ public class MyProperties {
     * @param value
     */
    public void put(String key, String value) {
+      modCount++;
       PropItem item = getItem(key);
       if( item == null ) {
          item = new PropItem(key, value);
@@ -367,6 +378,7 @@ public class MyProperties {
    public void replaceKey(String oldKey, String key) {
       for( PropItem item : prop ) {
          if( item.key.equals(oldKey) ) {
+            modCount++;
             item.key=key; 
             hash.remove(oldKey);
             hash.put(key, item);
@@ -426,6 +438,7 @@ public class MyProperties {
 
       prop = new ArrayList<>();
       hash = new HashMap<>();
+      modCount++;
       
 
       // Je lis les proprits de la configuration
@@ -565,7 +578,7 @@ public class MyProperties {
          } else {
             if( mode==0 ) {
                if( value.length()==0 ) remove(key);
-               else itemProp.value=value;
+               else { itemProp.value=value; modCount++; }
             } else {
                boolean trouve=false;
                Tok tok = new Tok(itemProp.value,"\t");
@@ -579,6 +592,7 @@ public class MyProperties {
                }
                if( mode==1 && !trouve) v1.append("\t"+value);
                itemProp.value = v1.toString();
+               modCount++;
                if( itemProp.value.length()==0 ) remove(key); 
             }
          }
@@ -39,6 +39,8 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import javax.swing.JFrame;
 import javax.swing.JScrollPane;
@@ -205,10 +207,13 @@ public final class Pcat implements TableParserConsumer/* , VOTableConsumer */ {
       projpcat[v.n]=proj;
 
       // Projection a appliquer sur chaque source
-      for( int i=0; i<nb_o; i++ ) {
-         try {
-            o[i].projection(v);   // On applique la projection a chaque source
-         } catch( Exception e ) { if( aladin.levelTrace>=3 ) e.printStackTrace(); }
+      if( !v.isPlot() && !plan.hasXYorig && !plan.hasNoPos ) projectionBatch(v,proj);
+      else {
+         for( int i=0; i<nb_o; i++ ) {
+            try {
+               o[i].projection(v);   // On applique la projection a chaque source
+            } catch( Exception e ) { if( aladin.levelTrace>=3 ) e.printStackTrace(); }
+         }
       }
 
       // Pour que les (x,y) soient recalcules dans la vue courante
@@ -222,6 +227,72 @@ public final class Pcat implements TableParserConsumer/* , VOTableConsumer */ {
       plan.statNbComputing++;
    }
 
+   static private final int PROJGRAIN = 8192;   // Nombre d'objets traits par une tche de projection
+
+   /** Projection par lots des sources du plan (cf. Projection.getXY(double[]...)), les autres
+    * objets (formes, repres...) tant projets individuellement. Au-del de PROJGRAIN objets,
+    * les lots sont rpartis sur les diffrents coeurs */
+   private void projectionBatch(ViewSimple v,Projection proj) {
+      for( int i=0; i<nb_o; i++ ) {
+         if( isBatchProj(o[i]) ) continue;
+         try {
+            o[i].projection(v);
+         } catch( Exception e ) { if( aladin.levelTrace>=3 ) e.printStackTrace(); }
+      }
+      if( nb_o<=PROJGRAIN ) projectionRange(v.n,proj,0,nb_o);
+      else ForkJoinPool.commonPool().invoke( new ProjTask(v.n,proj,0,nb_o) );
+   }
+
+   /** Retourne true si l'objet peut tre projet par lot */
+   private boolean isBatchProj(Obj obj) {
+      return obj instanceof Source && ((Source)obj).plan==plan;
+   }
+
+   /** Projection par lot des sources o[deb..fin[ dans la vue n */
+   private void projectionRange(int n,Projection proj,int deb,int fin) {
+      double [] ra = new double[fin-deb];
+      double [] de = new double[fin-deb];
+      int k=0;
+      for( int i=deb; i<fin; i++ ) {
+         if( !isBatchProj(o[i]) ) continue;
+         Position p = (Position)o[i];
+         ra[k]=p.raj;
+         de[k++]=p.dej;
+      }
+      if( k==0 ) return;
+      double [] x = new double[k];
+      double [] y = new double[k];
+      proj.getXY(ra,de,x,y,0,k);
+      k=0;
+      for( int i=deb; i<fin; i++ ) {
+         if( !isBatchProj(o[i]) ) continue;
+         Position p = (Position)o[i];
+         p.xv[n]=x[k];
+         p.yv[n]=y[k++];
+      }
+   }
+
+   // Tche ForkJoin de projection d'un intervalle [deb,fin[ d'objets, dcoup par dichotomie
+   private class ProjTask extends RecursiveAction {
+      private static final long serialVersionUID = 1L;
+
+      final int n,deb,fin;
+      final Projection proj;
+
+      ProjTask(int n,Projection proj,int deb,int fin) {
+         this.n=n;
+         this.proj=proj;
+         this.deb=deb;
+         this.fin=fin;
+      }
+
+      protected void compute() {
+         if( fin-deb<=PROJGRAIN ) { projectionRange(n,proj,deb,fin); return; }
+         int m = (deb+fin)>>>1;
+         invokeAll( new ProjTask(n,proj,deb,m), new ProjTask(n,proj,m,fin) );
+      }
+   }
+
    /** Positionne les coordonnees RA/DE de tous les objets du plan (CATALOG)
     * en fonction des coordonnees x,y
     */
@@ -393,6 +464,10 @@ public final class Pcat implements TableParserConsumer/* , VOTableConsumer */ {
    public void endTable() { 
       long t = Util.getTime() - timeStartTable;
       int nbObj = nb_o-lastNb_o;
+
+      // Passage des mesures en stockage colonnaire (cf. ColumnStore)
+      ColumnStore store = ColumnStore.compact(o,lastNb_o,nb_o);
+      if( store!=null ) Aladin.trace(3,"Pcat.endTable(): "+store.getNbRows()+" rows x "+store.getNbCol()+" columns stored by column");
       tableParserInfo("   -Table loaded & parsed in "+Util.getTemps(t*1000L)
             + " for "+nbObj+" object"+(nbObj>1?"s":"")
             + (nbObj<1000?"":" ("+Util.myRound(""+1000.*nbObj/t)+" objects per sec)"));
@@ -789,8 +789,8 @@ public class Plan implements Runnable {
             Source s = (Source)it.next();
             if( s.getLeg()!=leg ) continue;
             try {
-               c.al = Double.parseDouble( s.getValue(nlon) );
-               c.del = Double.parseDouble( s.getValue(nlat) );
+               c.al = s.getDoubleValue(nlon);
+               c.del = s.getDoubleValue(nlat);
                Localisation.frameToFrame(c, originFrame, Localisation.ICRS);
             } catch( Exception e ) {
                c.al=c.del=Double.NaN;
@@ -1010,8 +1010,8 @@ public class Plan implements Runnable {
          try {
             Source s = (Source)it.next();
             if( s.getLeg()!=leg ) continue;
-            s.x = Double.parseDouble( s.getValue(nx) );
-            s.y = Double.parseDouble( s.getValue(ny) );
+            s.x = s.getDoubleValue(nx);
+            s.y = s.getDoubleValue(ny);
          } catch( Exception e ) { if( aladin.levelTrace>=3 ) e.printStackTrace(); }
       }
 
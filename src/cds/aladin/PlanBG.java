@@ -61,6 +61,10 @@ import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.SwingUtilities;
 
@@ -68,6 +72,7 @@ import cds.aladin.stc.STCCircle;
 import cds.aladin.stc.STCObj;
 import cds.aladin.stc.STCPolygon;
 import cds.allsky.Constante;
+import cds.allsky.HipsPack;
 import cds.astro.Coo;
 import cds.fits.HeaderFits;
 import cds.moc.Healpix;
@@ -781,6 +786,21 @@ public class PlanBG extends PlanImage {
       return hasMoc;
    }
 
+   private volatile HipsPack hipsPack=null;       // Accs aux conteneurs de tuiles packes (HiPS local)
+   private volatile boolean testHipsPack=false;   // true : la prsence de conteneurs a t teste
+
+   /** Retourne l'accs aux conteneurs de tuiles packes (cf. action PACK de Hipsgen)
+    * s'il s'agit d'un HiPS local qui en dispose, sinon null */
+   protected HipsPack getHipsPack() {
+      if( testHipsPack ) return hipsPack;
+      if( local && HipsPack.isPacked(url) ) {
+         hipsPack = new HipsPack(url);
+         aladin.trace(3,"HiPS "+label+" => tiles served by packed containers");
+      }
+      testHipsPack=true;
+      return hipsPack;
+   }
+
    private boolean testHpxFinder=false; // true : la prsence d'un HpxFinder a t test
    
    /** Ajoute des infos sur le plan */
@@ -1280,6 +1300,8 @@ public class PlanBG extends PlanImage {
       hpx2xy = xy2hpx = null;
       frameOrigin=Localisation.ICRS;
       FreePixList();
+      if( hipsPack!=null ) { hipsPack.close(); hipsPack=null; }
+      testHipsPack=false;
       prop=null;
       return super.Free();
    }
@@ -2858,202 +2880,20 @@ public class PlanBG extends PlanImage {
 
    /** Retourne un tableau de pixels d'origine couvrant la vue courante */
    protected void getCurrentBufPixels(PlanImage pi,RectangleD rcrop, double zoom,double resMult,boolean fullRes) {
+      getCurrentBufPixels(pi,rcrop,null,zoom,resMult,fullRes);
+   }
+   
+   /** Retourne un tableau de pixels d'origine couvrant la vue courante, limit  la rgion stcObj si non nulle */
+   protected void getCurrentBufPixels(PlanImage pi,RectangleD rcrop, STCObj stcObj, double zoom,double resMult,boolean fullRes) {
       int w = (int)Math.round(rcrop.width*zoom);
       int h = (int)Math.round(rcrop.height*zoom);
       int bitpix= getBitpix()==-64 ? -64 : -32;
       int npix = Math.abs(bitpix)/8;
       byte [] pixelsOrigin = new byte[w*h*npix];
-      byte [] onePixelOrigin = new byte[npix];
-
-      double blank = Double.NaN;
-
-      //      boolean flagClosest = maxOrder()*resMult>maxOrder+4;
-      boolean flagClosest = false;
-      boolean testClosest = false;
-
-      int order = fullRes ? maxOrder : (int)(getOrder()*resMult);
-      if( order<3 ) order=3;
-      else if( order>maxOrder ) order=maxOrder;
-
-
-      int offset=0;
-      double fct = 100./h;
-      Coord coo = new Coord();
-      Coord coo1 = new Coord();
-      for( int y=h-1; y>=0; y-- ) {
-         pi.pourcent+=fct;
-         for( int x=0; x<w; x++ ) {
-            double val;
-
-            // Point de rfrence milieu bord gauche du pixel d'arrive
-            // Pour trouver au mieux les 4 pixels Healpix recouvrant le pixel d'arrive
-            double x1 = rcrop.x + (x+0.5)/zoom;
-            double y1 = rcrop.y + (y)/zoom;
-            coo.x = x1; coo.y = y1;
-            pi.projd.getCoord(coo);
-            coo = Localisation.frameToFrame(coo,Localisation.ICRS,frameOrigin);
-
-            // Point central du pixel d'arrive
-            double x2 = rcrop.x + (x+1)/zoom;
-            double y2 = rcrop.y + (y)/zoom;
-            coo1.x = x2; coo1.y = y2;
-            pi.projd.getCoord(coo1);
-            coo1 = Localisation.frameToFrame(coo1,Localisation.ICRS,frameOrigin);
-
-            // Passe en mode Closest si il y a surchantillonnage
-            if( !testClosest ) {
-               testClosest=true;
-               double resDest = Coo.distance(coo.al,coo.del,coo1.al,coo1.del)*2;
-               double resSrc = getPixelResolution();
-               if( resDest<resSrc/2 ) flagClosest=true;
-               //               System.out.println("resSrc="+resSrc+" resDst="+resDest+" flagClosest="+flagClosest);
-            }
-
-            if( Double.isNaN(coo.al) || Double.isNaN(coo.del) ) val = Double.NaN;
-            else if( flagClosest ) val = getHealpixClosestPixel(coo1.al,coo1.del,order);
-            else val = getHealpixLinearPixel(coo.al,coo.del,coo1.al,coo1.del,order);
-            if( Double.isNaN(val) ) {
-               setPixVal(onePixelOrigin, bitpix, 0, blank);
-               if( !pi.isBlank ) {
-                  pi.isBlank=true;
-                  pi.blank=blank;
-                  if( bitpix>0 && pi.headerFits!=null) pi.headerFits.setKeyValue("BLANK", blank+"");
-               }
-            } else {
-               val = val*bScale+bZero;
-               setPixVal(onePixelOrigin, bitpix, 0, val);
-            }
-
-            System.arraycopy(onePixelOrigin, 0, pixelsOrigin, offset, npix);
-            offset+=npix;
-            if( offset>pixelsOrigin.length ) break;  // Le tableau est plein
-         }
-      }
-
-      // Ajustement des variables en fonction du changement de bitpix
-      pi.bitpix = bitpix;
-      pi.pixelsOrigin = pixelsOrigin;
-      pi.dataMin = dataMin*bScale+bZero;
-      pi.dataMax = dataMax*bScale+bZero;
-      pi.pixelMin = pixelMin*bScale+bZero;
-      pi.pixelMax = pixelMax*bScale+bZero;
-      pi.bScale=1; pi.bZero=0;
-      pi.pixels = getPix8Bits(null,pi.pixelsOrigin,pi.bitpix,pi.width,pi.height,pi.pixelMin,pi.pixelMax,false,0,0,0);
-      pi.invImageLine(pi.width,pi.height,pi.pixels);
-      pi.colorBackground=Color.white;
 
+      extractPixels(pi,pixelsOrigin,bitpix,rcrop,getBounds(stcObj),zoom,getCropOrder(resMult,fullRes));
+      setCurrentBufPixels(pi,pixelsOrigin,bitpix);
    }
-   
-   protected void getCurrentBufPixels(PlanImage pi,RectangleD rcrop, STCObj stcObj, double zoom,double resMult,boolean fullRes) {
-          int w = (int)Math.round(rcrop.width*zoom);
-          int h = (int)Math.round(rcrop.height*zoom);
-          int bitpix= getBitpix()==-64 ? -64 : -32;
-          int npix = Math.abs(bitpix)/8;
-          byte [] pixelsOrigin = new byte[w*h*npix];
-          byte [] onePixelOrigin = new byte[npix];
-
-          double blank = Double.NaN;
-
-          //      boolean flagClosest = maxOrder()*resMult>maxOrder+4;
-          boolean flagClosest = false;
-          boolean testClosest = false;
-
-          int order = fullRes ? maxOrder : (int)(getOrder()*resMult);
-          if( order<3 ) order=3;
-          else if( order>maxOrder ) order=maxOrder;
-
-
-          int offset=0;
-          double fct = 100./h;
-          Coord coo = new Coord();
-          Coord coo1 = new Coord();
-            Healpix healPix = new Healpix();
-//            HealpixMoc posBounds = null;
-            SMoc posBounds = null;
-            try {
-                if (stcObj != null) {
-//                   posBounds = new HealpixMoc( aladin.createMocRegion(stcObj, -1, true) );
-                   posBounds = new SMoc( aladin.createMocRegion(stcObj, -1, true) );
-                }
-            } catch (Exception e) {
-                // TODO Auto-generated catch block
-                e.printStackTrace(); //in this case the bounding box is the outline instead
-            }
-            
-          for( int y=h-1; y>=0; y-- ) {
-             pi.pourcent+=fct;
-             for( int x=0; x<w; x++ ) {
-                double val = Double.NaN;
-                
-                try {
-                    // Point de rfrence milieu bord gauche du pixel d'arrive
-                    // Pour trouver au mieux les 4 pixels Healpix recouvrant le pixel d'arrive
-                    double x1 = rcrop.x + (x+0.5)/zoom;
-                    double y1 = rcrop.y + (y)/zoom;
-                    coo.x = x1; coo.y = y1;
-                    pi.projd.getCoord(coo);
-                    coo = Localisation.frameToFrame(coo,Localisation.ICRS,frameOrigin);
-                    
-                    // Point central du pixel d'arrive
-                    double x2 = rcrop.x + (x+1)/zoom;
-                    double y2 = rcrop.y + (y)/zoom;
-                    coo1.x = x2; coo1.y = y2;
-                    pi.projd.getCoord(coo1);
-                    coo1 = Localisation.frameToFrame(coo1,Localisation.ICRS,frameOrigin);
-
-                    if (posBounds != null && !posBounds.contains(healPix, coo1.al,coo1.del)) {
-                        val = Double.NaN;
-                    } else {
-                        // Passe en mode Closest si il y a surchantillonnage
-                        if( !testClosest ) {
-                           testClosest=true;
-                           double resDest = Coo.distance(coo.al,coo.del,coo1.al,coo1.del)*2;
-                           double resSrc = getPixelResolution();
-                           if( resDest<resSrc/2 ) flagClosest=true;
-                           //               System.out.println("resSrc="+resSrc+" resDst="+resDest+" flagClosest="+flagClosest);
-                        }
-                        
-                        if( Double.isNaN(coo.al) || Double.isNaN(coo.del) ) val = Double.NaN;
-                        else if( flagClosest ) val = getHealpixClosestPixel(coo1.al,coo1.del,order);
-                        else val = getHealpixLinearPixel(coo.al,coo.del,coo1.al,coo1.del,order);
-                        }
-                    } catch (Exception e) {
-                            // TODO Auto-generated catch block
-                            e.printStackTrace();
-                    }
-
-                if( Double.isNaN(val) ) {
-                   setPixVal(onePixelOrigin, bitpix, 0, blank);
-                   if( !pi.isBlank ) {
-                      pi.isBlank=true;
-                      pi.blank=blank;
-                      if( bitpix>0 && pi.headerFits!=null) pi.headerFits.setKeyValue("BLANK", blank+"");
-                   }
-                } else {
-                   val = val*bScale+bZero;
-                   setPixVal(onePixelOrigin, bitpix, 0, val);
-                }
-
-                System.arraycopy(onePixelOrigin, 0, pixelsOrigin, offset, npix);
-                offset+=npix;
-                if( offset>pixelsOrigin.length ) break;  // Le tableau est plein
-             }
-          }
-
-          // Ajustement des variables en fonction du changement de bitpix
-          pi.bitpix = bitpix;
-          pi.pixelsOrigin = pixelsOrigin;
-          pi.dataMin = dataMin*bScale+bZero;
-          pi.dataMax = dataMax*bScale+bZero;
-          pi.pixelMin = pixelMin*bScale+bZero;
-          pi.pixelMax = pixelMax*bScale+bZero;
-          pi.bScale=1; pi.bZero=0;
-          pi.pixels = getPix8Bits(null,pi.pixelsOrigin,pi.bitpix,pi.width,pi.height,pi.pixelMin,pi.pixelMax,false,0,0,0);
-          pi.invImageLine(pi.width,pi.height,pi.pixels);
-          pi.colorBackground=Color.white;
-
-       }
-   
 
    protected void getCurrentBufPixelsBubbleWrapped(PlanImage pi,RectangleD rcrop, STCObj stcObj, double zoom,double resMult,boolean fullRes) {
       int w = (int)Math.round(rcrop.width*zoom);
@@ -3074,130 +2914,65 @@ public class PlanBG extends PlanImage {
       if (ref == null || ref.get() == null) {
           aladin.notifyIMStatusChange(IMListener.LOWMEMORY);
           Aladin.trace(3, "can't process this"); return;
-      } else {//if only using SF scheme, consider checking additional memory as well.
-//        SoftReference<byte[]> buffer = new SoftReference<byte[]>(new byte[(int) (w*h*npix)]); 
-//      if (buffer == null || buffer.get() == null) {
-//          aladin.notifyIMStatusChange(IMListener.LOWMEMORY);
-//          Aladin.trace(3, "not enough buffer memory"); return;
-//      } else if (ref == null || ref.get() == null) {
-//          aladin.notifyIMStatusChange(IMListener.LOWMEMORY);
-//          Aladin.trace(3, "the byte array is now gone"); return;
-//      } else {
-//          buffer = null;
+      } else {
             aladin.notifyIMStatusChange(IMListener.PROCESSING);
-//      }
       }
-//      byte [] pixelsOrigin = new byte[w*h*npix];
-//      byte [] pixelsOrigin = ref.get(); ref = null;
       
-      byte [] onePixelOrigin = new byte[npix];
-
-      double blank = Double.NaN;
-
-      //      boolean flagClosest = maxOrder()*resMult>maxOrder+4;
-      boolean flagClosest = false;
-      boolean testClosest = false;
+      // Le tampon n'est tenu que le temps de l'extraction
+      byte [] buf = ref.get();
+      if( buf==null ) {
+         Aladin.trace(3, "ooo im thinking out of memory. free:"+(Runtime.getRuntime().freeMemory())/1E6+" request: "+stcObj);
+         return;
+      }
+      extractPixels(pi,buf,bitpix,rcrop,getBounds(stcObj),zoom,getCropOrder(resMult,fullRes));
+      buf=null;
 
+      if (ref.get() == null) {
+          Aladin.trace(3, "ooo im thinking out of memory. free:"+(Runtime.getRuntime().freeMemory())/1E6+" request: "+stcObj);
+          return;
+      }
+      setCurrentBufPixels(pi,ref.get(),bitpix);
+   }
+   
+   /** Ordre HEALPix des tuiles utilises pour une extraction de pixels d'origine */
+   private int getCropOrder(double resMult,boolean fullRes) {
       int order = fullRes ? maxOrder : (int)(getOrder()*resMult);
       if( order<3 ) order=3;
       else if( order>maxOrder ) order=maxOrder;
-
-
-      int offset=0;
-      double fct = 100./h;
-      Coord coo = new Coord();
-      Coord coo1 = new Coord();
-        Healpix healPix = new Healpix();
-//        HealpixMoc posBounds = null;
-        SMoc posBounds = null;
-        try {
-            if (stcObj != null) {
-//               posBounds = new HealpixMoc( aladin.createMocRegion(stcObj, -1, true) );
-               posBounds = new SMoc( aladin.createMocRegion(stcObj, -1, true) );
-            }
-        } catch (Exception e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace(); //in this case the bounding box is the outline instead
-        }
-        
-      for( int y=h-1; y>=0; y-- ) {
-         pi.pourcent+=fct;
-         for( int x=0; x<w; x++ ) {
-            double val = Double.NaN;
-            
-            try {
-                // Point de rfrence milieu bord gauche du pixel d'arrive
-                // Pour trouver au mieux les 4 pixels Healpix recouvrant le pixel d'arrive
-                double x1 = rcrop.x + (x+0.5)/zoom;
-                double y1 = rcrop.y + (y)/zoom;
-                coo.x = x1; coo.y = y1;
-                pi.projd.getCoord(coo);
-                coo = Localisation.frameToFrame(coo,Localisation.ICRS,frameOrigin);
-                
-                // Point central du pixel d'arrive
-                double x2 = rcrop.x + (x+1)/zoom;
-                double y2 = rcrop.y + (y)/zoom;
-                coo1.x = x2; coo1.y = y2;
-                pi.projd.getCoord(coo1);
-                coo1 = Localisation.frameToFrame(coo1,Localisation.ICRS,frameOrigin);
-
-                if (posBounds != null && !posBounds.contains(healPix, coo1.al,coo1.del)) {
-                    val = Double.NaN;
-                } else {
-                    // Passe en mode Closest si il y a surchantillonnage
-                    if( !testClosest ) {
-                       testClosest=true;
-                       double resDest = Coo.distance(coo.al,coo.del,coo1.al,coo1.del)*2;
-                       double resSrc = getPixelResolution();
-                       if( resDest<resSrc/2 ) flagClosest=true;
-                       //               System.out.println("resSrc="+resSrc+" resDst="+resDest+" flagClosest="+flagClosest);
-                    }
-                    
-                    if( Double.isNaN(coo.al) || Double.isNaN(coo.del) ) val = Double.NaN;
-                    else if( flagClosest ) val = getHealpixClosestPixel(coo1.al,coo1.del,order);
-                    else val = getHealpixLinearPixel(coo.al,coo.del,coo1.al,coo1.del,order);
-                    }
-                } catch (Exception e) {
-                        // TODO Auto-generated catch block
-                        e.printStackTrace();
-                }
-
-            if( Double.isNaN(val) ) {
-               setPixVal(onePixelOrigin, bitpix, 0, blank);
-               if( !pi.isBlank ) {
-                  pi.isBlank=true;
-                  pi.blank=blank;
-                  if( bitpix>0 && pi.headerFits!=null) pi.headerFits.setKeyValue("BLANK", blank+"");
-               }
-            } else {
-               val = val*bScale+bZero;
-               setPixVal(onePixelOrigin, bitpix, 0, val);
-            }
-
-//            System.arraycopy(onePixelOrigin, 0, pixelsOrigin, offset, npix);
-            int length = -1;
-            if (ref == null || ref.get() == null) { 
-                Aladin.trace(3, "ooo im thinking out of memory. free:"+(Runtime.getRuntime().freeMemory())/1E6+" request: "+stcObj);
-                return;
-            } else {
-                length = ref.get().length;
-                System.arraycopy(onePixelOrigin, 0, ref.get(), offset, npix);
-            }
-            
-            offset+=npix;
-            if( offset>length ) break;  // Le tableau est plein
-         }
+      return order;
+   }
+   
+   /** MOC correspondant  la rgion stcObj, null si aucune */
+   private SMoc getBounds(STCObj stcObj) {
+      if( stcObj==null ) return null;
+      try {
+         return new SMoc( aladin.createMocRegion(stcObj, -1, true) );
+      } catch (Exception e) {
+         e.printStackTrace(); //in this case the bounding box is the outline instead
       }
-
-      // Ajustement des variables en fonction du changement de bitpix
+      return null;
+   }
+   
+   /** Remplissage de pixelsOrigin par r-chantillonnage du HiPS sur la portion rcrop de la projection
+    * de pi (extraction parallle par bandes de lignes, cf. HipsCutout)
+    * @param bounds MOC limitant l'extraction, ou null
+    * @param order ordre HEALPix des tuiles  utiliser
+    */
+   private void extractPixels(PlanImage pi,byte [] pixelsOrigin,int bitpix,RectangleD rcrop,SMoc bounds,double zoom,int order) {
+      int w = (int)Math.round(rcrop.width*zoom);
+      int h = (int)Math.round(rcrop.height*zoom);
+      try {
+         if( new HipsCutout(this,order).extract(pixelsOrigin,bitpix,pi.projd,rcrop,zoom,w,h,bounds,pi) ) {
+            pi.isBlank=true;
+            pi.blank=Double.NaN;
+         }
+      } catch( Exception e ) { if( aladin.levelTrace>=3 ) e.printStackTrace(); }
+   }
+   
+   /** Mise en place des pixels d'origine extraits dans pi (en remplacement du codage du HiPS) */
+   private void setCurrentBufPixels(PlanImage pi,byte [] pixelsOrigin,int bitpix) {
       pi.bitpix = bitpix;
-//      pi.pixelsOrigin = pixelsOrigin;
-      if (ref == null || ref.get() == null) {
-          Aladin.trace(3, "ooo im thinking out of memory. free:"+(Runtime.getRuntime().freeMemory())/1E6+" request: "+stcObj);
-            return;
-        } else {
-            pi.pixelsOrigin = ref.get();
-        }
+      pi.pixelsOrigin = pixelsOrigin;
       pi.dataMin = dataMin*bScale+bZero;
       pi.dataMax = dataMax*bScale+bZero;
       pi.pixelMin = pixelMin*bScale+bZero;
@@ -3206,7 +2981,63 @@ public class PlanBG extends PlanImage {
       pi.pixels = getPix8Bits(null,pi.pixelsOrigin,pi.bitpix,pi.width,pi.height,pi.pixelMin,pi.pixelMax,false,0,0,0);
       pi.invImageLine(pi.width,pi.height,pi.pixels);
       pi.colorBackground=Color.white;
+   }
+   
+   /** Extraction (commande "cutout") d'une image w x h en projection TAN centre sur la position c (ICRS),
+    * indpendamment de toute vue. Le plan image rsultant est ajout dans la pile.
+    * @param c centre de l'image (ICRS)
+    * @param w,h taille de l'image (pixels)
+    * @param res taille d'un pixel (degrs), ou 0 pour la rsolution du HiPS
+    * @param label nom du plan rsultant, ou null
+    * @return le plan cr
+    */
+   protected PlanImage cutout(Coord c,int w,int h,double res,String label) throws Exception {
+      if( !hasOriginalPixels() ) throw new Exception("cutout requires a HiPS with original pixels (FITS tiles)");
+      if( w<=0 || h<=0 ) throw new Exception("cutout: bad image size");
+      if( res<=0 ) res = getPixelResolution();
+
+      // Ordre des tuiles le plus proche de la rsolution demande
+      int orderTile = getTileOrder();
+      int order=3;
+      while( order<maxOrder && CDSHealpix.pixRes(order+orderTile)/3600>res ) order++;
+      
+      PlanImage pi = (PlanImage)aladin.calque.dupPlan(this,null,type,false);
+      pi.flagOk=false;
+      try { pi.setLabel(label==null ? this.label : label); } catch( Exception e ) {}
+      pi.pourcent=1;
+      pi.type=Plan.IMAGE;
+      pi.width = pi.naxis1 = w;
+      pi.height = pi.naxis2 = h;
+      pi.initZoom=1;
+      pi.projd = new Projection("cutout",Projection.WCS,c.al,c.del,w*res*60,h*res*60,w/2.,h/2.,w,h,0,false,
+            Calib.TAN,Calib.FK5,pi);
+      
+      int bitpix= getBitpix()==-64 ? -64 : -32;
+      byte [] pixelsOrigin = new byte[w*h*(Math.abs(bitpix)/8)];
+      extractPixels(pi,pixelsOrigin,bitpix,new RectangleD(0,0,w,h),null,1,order);
+      setCurrentBufPixels(pi,pixelsOrigin,bitpix);
 
+      // Mme ajustement que pour le crop interactif (cf. ViewSimple.cropAreaBG())
+      pi.projd.deltaProjXYCenter(-0.5,-0.5);
+      try { pi.projd = Projection.getEquivalentProj(pi.projd); }
+      catch( Exception e ) { if( aladin.levelTrace>=3 ) e.printStackTrace(); }
+
+      pi.noCacheFromOriginalFile();
+      pi.copyright = "Cutout from "+this.label+" ("+c+" "+w+"x"+h+")";
+      pi.setHasSpecificCalib();
+      pi.pourcent=-1;
+      pi.isOldPlan=false;
+      pi.ref=false;
+      pi.selected=false;
+      pi.setOpacityLevel(1f);
+      pi.changeImgID();
+      pi.resetProj();
+      pi.colorBackground=null;
+      pi.reverse();
+      pi.objet = pi.projd.getProjCenter().getSexa();
+      pi.body = body;
+      pi.flagOk=true;
+      return pi;
    }
 
    boolean first1=false; //Aladin.PROTO;
@@ -3590,7 +3421,9 @@ public class PlanBG extends PlanImage {
       Enumeration<HealpixKey> e = pixList.elements();
       while( e.hasMoreElements() ) {
          HealpixKey healpix = e.nextElement();
-         if( healpix.npix!=-1 && healpix.priority<1000 ) healpix.priority+=1000;
+         if( healpix.npix==-1 ) continue;
+         if( healpix.priority<1000 ) healpix.priority+=1000;
+         healpix.outView=true;
       }
       priority=0;
    }
@@ -3648,7 +3481,7 @@ public class PlanBG extends PlanImage {
          if( healpix==null ) continue;
 
          // Positionnement de la priorit d'affichage
-         healpix.priority=250-(priority++);
+         healpix.setPriority(250-(priority++));
 
          int status = healpix.getStatus();
 
@@ -4063,7 +3896,7 @@ public class PlanBG extends PlanImage {
                   //            Util.pause(100);
 
                   // Positionnement de la priorit d'affichage
-                  healpix.priority=order<max ? 500-(priority++) : priority++;
+                  healpix.setPriority(order<max ? 500-(priority++) : priority++);
 
                   int status = healpix.getStatus();
 
@@ -4733,9 +4566,15 @@ public class PlanBG extends PlanImage {
     * Gre le chargement des losanges de manire asynchrone
     */
    class HealpixLoader implements Runnable {
-      static final int POOLSIZE = 1; //3;
-      boolean POOLTEST = true;   // EN COURS DE DEVELOPPEMENT POUR METTRE NE PLACE UN POOL DE THREADS DE CHARGEMENT DE TUILES
+      boolean POOLTEST = true;   // true => pool de Loaders rseau (sinon un seul)
       static final int DELAI =10000;   // delai en ms avant la mort des Loaders
+      
+      // File des losanges  charger depuis le rseau, trie par priorit d'affichage puis par ordre.
+      // Un changement de priorit se traduit par l'ajout d'un nouveau ticket, l'ancien tant ignor
+      // lorsqu'il sort de la file (pas de retri complet)
+      private PriorityBlockingQueue<NetTicket> netQueue = new PriorityBlockingQueue<>(256);
+      private ConcurrentHashMap<HealpixKey,NetTicket> netTickets = new ConcurrentHashMap<>();
+      private long netSeq=0L;
 
       private boolean loading;      // false s'il n'y a plus de losange en cours de chargement
       private boolean purging;      // false s'il n'y a plus aucun losange  purger
@@ -4748,15 +4587,38 @@ public class PlanBG extends PlanImage {
          purging=false;
          cacheLoader = new Loader(0);
          
-//         POOLTEST = aladin.view.getNbView()<=2;
-//         if( POOLTEST ) {
-            netPool = new Loader[POOLSIZE];
-            for( int i=0; i<netPool.length; i++ ) netPool[i] = new Loader(1);
-//         } else {
-            netLoader = new Loader(1);
-//         }
+         netPool = new Loader[ getNbFetcher() ];
+         for( int i=0; i<netPool.length; i++ ) netPool[i] = new Loader(1);
+         netLoader = new Loader(1);
          wakeUp();
       }
+      
+      /** Ajout (ou mise  jour de la priorit) d'un losange dans la file de chargement rseau */
+      private void offerNet(HealpixKey healpix) {
+         NetTicket t = netTickets.get(healpix);
+         if( t!=null && t.priority==healpix.priority ) return;
+         t = new NetTicket(healpix,netSeq++);
+         netTickets.put(healpix,t);
+         netQueue.offer(t);
+      }
+      
+      /** Retourne le prochain losange  charger depuis le rseau (attente max en ms), null si aucun */
+      protected HealpixKey pollNet(long timeout) throws InterruptedException {
+         long fin = System.currentTimeMillis()+timeout;
+         for( long reste=timeout; reste>0; reste=fin-System.currentTimeMillis() ) {
+            NetTicket t = netQueue.poll(reste,TimeUnit.MILLISECONDS);
+            if( t==null ) return null;
+            if( !netTickets.remove(t.healpix,t) ) continue;   // ticket prim (priorit modifie depuis)
+            return t.healpix;
+         }
+         return null;
+      }
+      
+      /** Remise dans la file d'un losange qui n'a pas pu tre pris en charge */
+      protected void requeueNet(HealpixKey healpix) {
+         NetTicket t = new NetTicket(healpix,0L);
+         if( netTickets.putIfAbsent(healpix,t)==null ) netQueue.offer(t);
+      }
 
       /** Retourne true si l'image de meilleure rsolution est prte */
       protected boolean isReadyForDrawing() { return readyAfterDraw;/* pourcent==-1; */ }
@@ -4839,6 +4701,8 @@ public class PlanBG extends PlanImage {
          } else {
             netLoader.stop();
          }
+         netQueue.clear();
+         netTickets.clear();
          thread=null;
          Aladin.trace(5,"PlanBG.HealpixLoader died");
          nbFlush=0;
@@ -4859,16 +4723,11 @@ public class PlanBG extends PlanImage {
          boolean first=true;
          int n=0;
          
-         // Parcours de la liste en commenant par les rsolutions les plus mauvaises
+         // Parcours de la liste (l'ordre de chargement est assur par la file de priorit netQueue)
          try {
-            ArrayList<HealpixKey> list = new ArrayList<>();
             Enumeration<HealpixKey> e = pixList.elements();
-            while( e.hasMoreElements() ) list.add(e.nextElement());
-            try { Collections.sort(list); } catch( Exception e1 ) { }
-
-            Iterator<HealpixKey> it = list.iterator();
-            while( it.hasNext() ) {
-               final HealpixKey healpix = it.next();
+            while( e.hasMoreElements() ) {
+               final HealpixKey healpix = e.nextElement();
                int status = healpix.getStatus();
 
                // Un peu de dbuging si besoin
@@ -4890,7 +4749,7 @@ public class PlanBG extends PlanImage {
 
                switch( status ) {
                   case HealpixKey.ASKING:
-                     if( !healpix.allSky && healpix.priority>=1000 ) healpix.setOld();
+                     if( !healpix.allSky && healpix.outView ) healpix.setOld();
                      else {
                         if( useCache && healpix.isCached() ) healpix.setStatus(status=HealpixKey.TOBELOADFROMCACHE);
                         else healpix.setStatus(status=HealpixKey.TOBELOADFROMNET);
@@ -4900,6 +4759,15 @@ public class PlanBG extends PlanImage {
                      if( useCache ) healpix.write();
                      break;
                }
+               
+               // Chargement rseau : mise  jour incrmentale de la file de priorit,
+               // interruption des seuls losanges sortis du champ
+               if( status==HealpixKey.TOBELOADFROMNET ) {
+                  if( !healpix.allSky && healpix.outView ) healpix.setOld();
+                  else offerNet(healpix);
+               } else if( status==HealpixKey.LOADINGFROMNET ) {
+                  if( !healpix.allSky && healpix.outView ) healpix.abort();
+               }
 
                nb[status]++;
 
@@ -4931,27 +4799,10 @@ public class PlanBG extends PlanImage {
 
          if( detectServerError(nb) ) error="Server not available";
 
-         // Eventuel arrt du chargement en cours si priorit dsormais plus faible
-         HealpixKey healpixMin=null,healpixNet=null;
-         int min = Integer.MAX_VALUE;
-         Enumeration<HealpixKey> e = pixList.elements();
-         while( e.hasMoreElements() ) {
-            HealpixKey healpix = e.nextElement();
-            int status = healpix.getStatus();
-            if( status!=HealpixKey.TOBELOADFROMNET && status!=HealpixKey.LOADINGFROMNET ) continue;
-            if( status==HealpixKey.LOADINGFROMNET ) healpixNet=healpix;
-            if( healpix.priority<min ) {
-               min=healpix.priority;
-               healpixMin=healpix;
-            }
-         }
-
-         if( healpixNet!=null && healpixNet!=healpixMin ) healpixNet.abort();
-
          if( nb[HealpixKey.TOBELOADFROMCACHE]>0 ) cacheLoader.wakeUp();
          if( nb[HealpixKey.TOBELOADFROMNET]>0 )   {
             if( POOLTEST ) {
-               for( Loader a : netPool ) if( a.isPause() ) a.wakeUp();
+               for( Loader a : netPool ) a.wakeUp();
             } else {
                netLoader.wakeUp();
             }
@@ -4969,6 +4820,56 @@ public class PlanBG extends PlanImage {
    }
 
 
+   /** Ticket de la file de chargement rseau : photographie de la priorit d'un losange */
+   static class NetTicket implements Comparable<NetTicket> {
+      final HealpixKey healpix;
+      final int priority;
+      final int order;
+      final long seq;
+
+      NetTicket(HealpixKey healpix,long seq) {
+         this.healpix=healpix;
+         this.priority=healpix.priority;
+         this.order=healpix.order;
+         this.seq=seq;
+      }
+
+      public int compareTo(NetTicket o) {
+         if( priority!=o.priority ) return priority<o.priority ? -1 : 1;
+         if( order!=o.order ) return order<o.order ? -1 : 1;
+         return seq<o.seq ? -1 : seq>o.seq ? 1 : 0;
+      }
+   }
+   
+   static private final int DEFAULTFETCHER = 3;     // Nombre de Loaders rseau concurrents par dfaut
+   static private final int MAXFETCHER = 16;        // Nombre max de Loaders rseau concurrents
+   
+   // Nombre de chargements simultans autoriss par serveur HiPS (partag par tous les plans)
+   static private final ConcurrentHashMap<String,Semaphore> SERVERSLOTS = new ConcurrentHashMap<>();
+
+   /** Nombre de Loaders rseau concurrents (cf. proprit de configuration HpxFetchers) */
+   protected int getNbFetcher() {
+      int n = DEFAULTFETCHER;
+      try {
+         String s = aladin.configuration.get(Configuration.HPXFETCHERS);
+         if( s!=null ) n = Integer.parseInt(s.trim());
+      } catch( Exception e ) { }
+      return Math.max(1,Math.min(MAXFETCHER,n));
+   }
+
+   /** Retourne le smaphore limitant le nombre de chargements simultans sur le serveur du HiPS */
+   private Semaphore getServerSlots() {
+      String host = url;
+      try { host = new URL(url).getHost(); } catch( Exception e ) { }
+      Semaphore slot = SERVERSLOTS.get(host);
+      if( slot==null ) {
+         Semaphore s = new Semaphore( getNbFetcher() );
+         slot = SERVERSLOTS.putIfAbsent(host, s);
+         if( slot==null ) slot=s;
+      }
+      return slot;
+   }
+
    class MyEnum implements Enumeration<HealpixKey> {
       HealpixKey [] tab;
       int size;
@@ -5035,8 +4936,47 @@ public class PlanBG extends PlanImage {
          if( thread!=null ) thread.interrupt();
       }
 
+      // Chargement des losanges distants par ordre de priorit (cf. HealpixLoader.netQueue)
+      private void runNet() {
+         while( encore ) {
+            try {
+               HealpixKey h = loader.pollNet(10000);
+               if( h==null ) continue;
+               
+               // On ne charge que si on a le temps...
+               if( aladin.view.mustDrawFast() ) {
+                  loader.requeueNet(h);
+                  Util.pause(100);
+                  continue;
+               }
+               
+               // Sorti du champ entre temps => ne sera pas charg
+               if( !h.allSky && h.outView ) continue;
+
+               Semaphore slot = getServerSlots();
+               slot.acquire();
+               try {
+                  h.waitLock();
+                  try {
+                     if( h.getStatus()!=HealpixKey.TOBELOADFROMNET) continue;   // ca a chang, tant pis !
+                     h.loadFromNet();
+                  } finally { h.unLock(); }
+               } finally { slot.release(); }
+
+               if( !h.allSky ) setTileOrder(h.getLosangeOrder());
+               loader.wakeUp();
+               
+            } catch( InterruptedException e ) {
+            } catch( Throwable t ) { if( Aladin.levelTrace>=3 ) t.printStackTrace(); }
+         }
+         Aladin.trace(5,"PlanBG.Loader ("+label+") died !");
+         thread=null;
+      }
+
       public void run() {
          boolean flagLoad;
+         
+         if( type==1 ) { runNet(); return; }
 
          while( encore ) {
             try {
@@ -261,7 +261,7 @@ public class PlanBGCat extends PlanBG {
             if( status==HealpixKey.ABORTING ) healpix.setStatus(HealpixKey.ASKING,true);
             
             // Positionnement de la priorit d'affichage
-            healpix.priority=250-(priority++);
+            healpix.setPriority(250-(priority++));
 
             // Losange  grer
             healpix.resetTimer();
@@ -187,7 +187,7 @@ public class PlanBGProgen extends PlanBGCat {
          if( healpix==null ) continue;            // Inconnu => on ne dessine pas
          int status = healpix.getStatus();
          if( status==HealpixKey.ERROR ) continue; // Losange erron ?
-         healpix.priority=250-(priority++);       // Positionnement de la priorit d'affichage
+         healpix.setPriority(250-(priority++));   // Positionnement de la priorit d'affichage
          if( status==HealpixKey.ABORTING ) healpix.setStatus(HealpixKey.ASKING,true); // On change d'avis
          if( status!=HealpixKey.READY ) { moreDetails = true; continue; }             // Pas encore prt
 
@@ -184,11 +184,12 @@ public class PlanCatalog extends Plan {
    protected String getTableName(Source o) {
       String s = o.getLeg()==null ? null : o.getLeg().name;
       if( s==null ) {
-         if( o.info==null ) return "Table";
-         int i = o.info.indexOf('|');
-         int j = o.info.indexOf('>');
+         String info = o.getFullInfo();
+         if( info==null ) return "Table";
+         int i = info.indexOf('|');
+         int j = info.indexOf('>');
          if( i==-1 || j==-1 ) return "Table";
-         s = o.info.substring(i+1,j);
+         s = info.substring(i+1,j);
       }
       if( s.endsWith("/out") ) s=s.substring(0,s.length()-4);
       return s;
@@ -135,6 +135,7 @@ public class PlanImage extends Plan {
    public static final String TRANSFERTFCT[] = { "Asinh", "Log","Sqrt","Linear","Pow2"," -- " };
 
    protected RandomAccessFile fCache; // L'accs au fichier cache
+   private volatile MappedFile mCache; // Le mapping mmoire du fichier cache (cf. mapCache())
    protected byte [] pixels;		  // Tableau des pixels de l'image (sur 8 bits)
    protected byte [] pixelsZoom;      // Tabluea des pixels de l'image vignette (8 bits) pour le ZoomView
    protected byte[] pixelsOrigin;     // Tableau des pixels d'origine (LIGNES NON INVERSEES - format FITS)
@@ -561,6 +562,7 @@ public class PlanImage extends Plan {
       p.orig=orig;
       p.cacheID=cacheID;
       p.fCache=null;    // Pour forcer la rouverture
+      p.mCache=null;
       p.cacheOffset = cacheOffset;
       p.cacheFromOriginalFile = cacheFromOriginalFile;
       p.typeCM=typeCM;
@@ -636,26 +638,23 @@ public class PlanImage extends Plan {
          int size = wi*hi;
          setBufPixels8(new byte[size]);
          pixelsOrigin= new byte[size*npix];
-         byte buf [] = new byte[wi*npix];
          int len = wi;
          int pos=0;
          int posOrig=0;
 
-         openCache();
+         MappedFile map = mapCache();
+         if( map==null ) return false;
 
          for( int i=naxis2-(yi+hi), ligne=0; i<naxis2-y; i++, ligne++ ) {
-            fCache.seek( cacheOffset + (i*(long)naxis1 + xi) * npix );
-            fCache.readFully(buf);
-
-            System.arraycopy(buf,0,pixelsOrigin,posOrig,buf.length);
-            posOrig+=buf.length;
+            map.get( cacheOffset + (i*(long)naxis1 + xi) * npix, pixelsOrigin, posOrig, len*npix);
 
             for( int j=0; j<len; j++ ) {
-               double c = getPixVal(buf,bitpix,j);
+               double c = getPixVal(pixelsOrigin,bitpix,posOrig/npix+j);
                if( Double.isNaN(c) ) { getBufPixels8()[pos++] = 0; continue; }
                getBufPixels8()[pos++] = (byte)( c<=pixelMin?0x00:c>=pixelMax?0xff
                      :(int)( ((c-pixelMin)*r) ) & 0xff);
             }
+            posOrig+=len*npix;
             setPourcent( 99. * ligne/h );
          }
          invImageLine(wi,hi,getBufPixels8());
@@ -891,6 +890,7 @@ public class PlanImage extends Plan {
             fCache=null;
          } catch(Exception e){}
       }
+      mCache=null;
       dataMinFits=dataMaxFits=0;
       headerFits=null;
       setBufPixels8(null);
@@ -974,6 +974,7 @@ public class PlanImage extends Plan {
             fCache.close();
             fCache=null;
          } catch( Exception e ) {}
+         mCache=null;      // Le contenu va changer
          File f = new File(cacheID);
          RandomAccessFile rf = new RandomAccessFile(f,"rw");
 
@@ -1003,17 +1004,10 @@ public class PlanImage extends Plan {
          return false;
       }
       try {
-         openCache();
-         fCache.seek(cacheOffset);
+         MappedFile map = mapCache();
+         if( map==null ) throw new Exception("no cache mapping");
          byte [] pixelsOrigin1 = new byte[width*height*npix];
-
-         //  Si on lit d'un coup un trop grop fichier, a explose la mmoire (pb prcdure native !!)
-         //         fCache.readFully(pixelsOrigin);
-         int bloc=4*1024*1024;
-         for( int pos=0,len=0; pos<pixelsOrigin1.length; pos+=len ) {
-            len = pixelsOrigin1.length-pos<bloc ? pixelsOrigin1.length-pos : bloc;
-            fCache.readFully(pixelsOrigin1,pos,len);
-         }
+         map.get(cacheOffset,pixelsOrigin1,0,pixelsOrigin1.length);
          pixelsOrigin=pixelsOrigin1;
       } catch( Exception e ) {
          if( Aladin.levelTrace>=3 ) e.printStackTrace();
@@ -1039,13 +1033,13 @@ public class PlanImage extends Plan {
       if( !Aladin.STANDALONE ) return false;
       if( cacheID==null ) return false;
       try {
-         openCache();
+         MappedFile map = mapCache();
+         if( map==null ) return false;
 
          int len = w*npix;
 
          for( int i=naxis2-y-h, k=0; i<naxis2-y; i++,k++ ) {
-            fCache.seek( cacheOffset+ (i*(long)naxis1 + x) * npix);
-            fCache.readFully(pixels, k*w*npix, len);
+            map.get( cacheOffset+ (i*(long)naxis1 + x) * npix, pixels, k*w*npix, len);
          }
 
       } catch( Exception e ) { e.printStackTrace(); return false; }
@@ -1079,6 +1073,31 @@ public class PlanImage extends Plan {
       }
    }
 
+   /** Mapping mmoire du fichier cache (ou du fichier d'origine) si ncessaire.
+    * Le mapping porte sur la totalit du fichier, les positions incluent donc cacheOffset.
+    * Il est refait si le cache a chang de fichier, ou s'il ne couvre pas l'image courante
+    * et que le fichier a grossi depuis (ex: PlanImageCube qui ajoute ses frames au fur et
+    *  mesure dans le mme fichier cache).
+    * @return le mapping, ou null si aucun cache n'est disponible
+    */
+   protected MappedFile mapCache() {
+      String id = cacheID;
+      if( id==null ) return null;
+      MappedFile map = mCache;
+      if( map!=null && map.isFor(id)
+            && cacheOffset+(long)naxis1*naxis2*npix > map.size()
+            && (new File(id)).length()!=map.size() ) map=null;
+      if( map==null || !map.isFor(id) ) {
+         try {
+            mCache = map = new MappedFile(new File(id));
+         } catch( Exception e ) {
+            if( Aladin.levelTrace>=3 ) e.printStackTrace();
+            return null;
+         }
+      }
+      return map;
+   }
+
    /** Relecture dans le cache d'un unique pixel d'origine.
     * Si besoin, ouvre le flux sur le fichier cache, mais ne le referme pas (voir Free() )
     * @param pixels le tableau qui va accueillir le pixel lu (doit avoir t taill assez grand)
@@ -1090,9 +1109,9 @@ public class PlanImage extends Plan {
       if( !Aladin.STANDALONE ) return false;
       if( cacheID==null ) return false;
       try {
-         openCache();
-         fCache.seek( cacheOffset+((naxis2-y-1)*(long)naxis1 + x) * npix );
-         fCache.readFully(pixels, 0, npix);
+         MappedFile map = mapCache();
+         if( map==null ) return false;
+         map.get( cacheOffset+((naxis2-y-1)*(long)naxis1 + x) * npix, pixels, 0, npix);
 
       } catch( Exception e ) { e.printStackTrace(); return false; }
       //Aladin.trace(3,"Original one pixel ("+x+","+y+") extracted "
@@ -1153,10 +1172,11 @@ public class PlanImage extends Plan {
       if( cacheFromOriginalFile || cacheID==null ||
             aladin.CACHEDIR==null || !cacheID.startsWith(aladin.CACHEDIR)) return;
       if( cacheCanBeFree() ) {
+         mCache=null;
          try {
             File f = new File(cacheID);
             aladin.setInCache(-f.length());
-            f.delete();
+            if( !f.delete() ) f.deleteOnExit();   // Encore mapp (Windows)
          } catch( Exception e ) { e.printStackTrace(); }
          Aladin.trace(3,"Original pixels removed from cache ["+cacheID+"]");
       }
@@ -3084,7 +3104,7 @@ public class PlanImage extends Plan {
       if( pixelsOrigin==null && isBigImage() ) {
          int taille = width*height*npix;
          int offsetLoad=0;		// octets effectivement lus
-         int len = 512;	    // taille des blocs par defaut  (frontire de mots)
+         int len = 1<<20;	    // taille des blocs par defaut  (frontire de mots)
          byte buf[];
 
          // Juste pour faire clignoter
@@ -3116,15 +3136,15 @@ public class PlanImage extends Plan {
 
             aladin.trace(4,"PlanImage.recut("+min+","+max+","+autocut+") on ["+x+","+y+"-"+w+"x"+h+"] => min="+min+" max="+max);
             buf = new byte[len];
-            openCache();
-            fCache.seek( cacheOffset );
+            MappedFile map = mapCache();
+            if( map==null ) throw new Exception("no cache mapping");
             
             byte [] pixels = getBufPixels8();
 
             // Lecture par tranches
             while( offsetLoad<taille) {
                if( taille-offsetLoad<len ) len=taille-offsetLoad;
-               fCache.readFully(buf,0,len);
+               map.get(cacheOffset+offsetLoad,buf,0,len);
 
                // Normalisation de la tranche
                to8bits(pixels,offsetLoad/npix,buf,len/npix,bitpix,
@@ -21,6 +21,7 @@
 
 package cds.aladin;
 
+import java.io.File;
 import java.io.RandomAccessFile;
 import java.util.Date;
 
@@ -35,8 +36,12 @@ import cds.tools.Util;
  * image qui servira pour toutes les manipulations classiques (pan, contour, superposition)..
  * Lorque l'utilisateur choisira un niveau de zoom lev, on ira charger une sous-image
  * pleine rsolution couvrant le champ de vue courant.
+ * Une pyramide de tuiles multi-rsolution (cf. HugePyramid) est construite en tche de fond
+ *  la premire ouverture ; ds qu'elle est prte, les zooms suprieurs  1 sont servis
+ * directement par le niveau adquat de cette pyramide.
  *
  * @author Pierre Fernique [CDS]
+ * @version 1.1 : oct 2026 - pyramide de tuiles multi-rsolution
  * @version 1.0 : juin 2007 - cration
  */
 public class PlanImageHuge extends PlanImage implements Runnable {
@@ -54,6 +59,7 @@ public class PlanImageHuge extends PlanImage implements Runnable {
    private Thread thread;           // thead d'extraction
    protected boolean isExtracting;  // true si le thread d'extraction est running
    private boolean toSubImage;      // flag pour pouvoir surcharger la mthode run() sans mettre le bouz
+   private HugePyramid pyramid;     // Pyramide de tuiles multi-rsolution (null si non disponible)
 
    /** Creation d'un plan de type IMAGEHUGE (via un stream)
     * @param in le stream
@@ -71,6 +77,54 @@ public class PlanImageHuge extends PlanImage implements Runnable {
    /** Retourne le pas d'chantillonnage */
    protected int getStep() { return step; }
 
+   protected boolean Free() {
+      if( pyramid!=null ) { pyramid.close(); pyramid=null; }
+      return super.Free();
+   }
+
+   /** Retourne le facteur de rduction (par rapport  la pleine rsolution) du niveau de la
+    * pyramide adapt au zoom courant (exprim dans l'image sous-chantillonne), ou 0 si
+    * la pyramide n'est pas disponible ou n'est pas pertinente pour ce zoom (zoom<=1 ou
+    * zoom qui n'est pas une puissance de 2)
+    */
+   protected int getPyramidFactor(double zoom) {
+      if( pyramid==null || !pyramid.isReady() || zoom<=1 ) return 0;
+      int z = (int)zoom;
+      if( z!=zoom || Integer.bitCount(z)!=1 ) return 0;
+      int f = z>=step ? 1 : step/z;
+      return Integer.numberOfTrailingZeros(f)<pyramid.getNbLevel() ? f : 0;
+   }
+
+   /** Extrait les pixels du niveau de la pyramide de facteur de rduction f correspondant
+    * au rectangle indiqu en paramtre (coord. de l'image sous-chantillonne)
+    * @return les pixels ((w*step/f) x (h*step/f)), ou null si impossible
+    */
+   protected byte [] cropPyramid(int f,int x,int y,int w,int h) {
+      HugePyramid pyr = pyramid;
+      if( pyr==null ) return null;
+      int s = step/f;
+      return pyr.crop(Integer.numberOfTrailingZeros(f),x*s,y*s,w*s,h*s,pixelMin,pixelMax);
+   }
+
+   /** Lancement de la construction (ou de la rouverture) de la pyramide de tuiles.
+    * Elle est persistante si les pixels sont lus dans le fichier d'origine, sinon elle
+    * est associe au dump dans le cache de la session
+    */
+   private void startPyramid() {
+      if( cacheID==null ) return;
+      try {
+         File dir = cacheFromOriginalFile ? HugePyramid.getDir() : new File(Aladin.CACHEDIR);
+         pyramid = new HugePyramid(new File(cacheID),cacheOffset,naxis1,naxis2,bitpix,isBlank,blank,
+               step,dir,cacheFromOriginalFile, new Runnable() {
+            public void run() {
+               nextImgID();
+               aladin.view.repaintAll();
+            }
+         });
+         pyramid.start();
+      } catch( Exception e ) { if( Aladin.levelTrace>=3 ) e.printStackTrace(); pyramid=null; }
+   }
+
    /** Retourne true si on doit extraire une sous-image pleine rsolution. Ceci dpend
     * du champ de vue (wview x hview), du facteur de zoom courant
     * et du pas du sous-chantillonnage. Le but est d'viter de charger des portions
@@ -272,10 +326,11 @@ public class PlanImageHuge extends PlanImage implements Runnable {
          buf = new byte[w*step*npix];
          int len = w*step;
          int pos=0;
+         MappedFile map = mapCache();
+         if( map==null ) throw new Exception("no cache mapping");
 
          for( int i=naxis2-(y+h)*step; i<naxis2-y*step; i++ ) {
-            fCache.seek( cacheOffset + (i*(long)naxis1 + x*step) * npix );
-            fCache.readFully(buf);
+            map.get( cacheOffset + (i*(long)naxis1 + x*step) * npix, buf, 0, buf.length);
 
             for( int j=0; j<len; j++ ) {
                double c = getPixVal(buf,bitpix,j);
@@ -419,10 +474,11 @@ public class PlanImageHuge extends PlanImage implements Runnable {
       offsetLoad=0;        // octets effectivement lus
 
       try {
+         MappedFile map = mapCache();
+         if( map==null ) throw new Exception("no cache mapping");
          for( h=0; h<height; h++ ) {
             for( w=0; w<width; w++ ) {
-               fCache.seek(cacheOffset+((h*step+step/2)*(long)naxis1+(w*step+step/2))*npix);
-               fCache.readFully(buf,pos,npix);
+               map.get(cacheOffset+((h*step+step/2)*(long)naxis1+(w*step+step/2))*npix,buf,pos,npix);
                pos+=npix;
 
                if( pos==buf.length ) {
@@ -569,6 +625,9 @@ public class PlanImageHuge extends PlanImage implements Runnable {
 
       creatDefaultCM();
       setPourcent(99);
+
+      // Construction de la pyramide de tuiles en tche de fond
+      startPyramid();
       return true;
    }
 }
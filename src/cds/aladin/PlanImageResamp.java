@@ -31,6 +31,7 @@ import cds.tools.Util;
 public class PlanImageResamp extends PlanImage {
    static final protected int PPV = 0;  // Plus proche voisin
    static final protected int BILINEAIRE = 1; // Mthode bilinaire
+   static final protected int LANCZOS = 2;    // Mthode de Lanczos (noyau 6x6)
    
 
    // Gestion du Resampling
@@ -75,7 +76,7 @@ public class PlanImageResamp extends PlanImage {
     * est null ou est gale  this, il y a restitution de la
     * solution initiale (sans threading)
     * @param pref Le plan dont l'image servira de solution astromtrique
-    * @param methode PPV,BILINEAIRE
+    * @param methode PPV,BILINEAIRE,LANCZOS
     * @param flagFullPixel true si on doit traiter galement les pixels d'origine
     */
    protected void launchResampleBy(PlanImage pref,int methode,boolean flagFullPixel) {
@@ -109,7 +110,7 @@ public class PlanImageResamp extends PlanImage {
       aladin.calque.select.repaint();
      
       sendLog("Resample"," [" + this + " with "+pref
-            +(methode==BILINEAIRE?"/bilinear":"")
+            +(methode==BILINEAIRE?"/bilinear":methode==LANCZOS?"/lanczos":"")
             +(fullPixel?"/fullPix":"")
             +"]");
       
@@ -138,10 +139,6 @@ public class PlanImageResamp extends PlanImage {
 
       Aladin.trace(3,"Resampling " + this + " with " + pref + " method="
             + methode);
-      Coord coo=new Coord();
-      int x=0, y=0;
-      int w=pref.width;
-      int i;
 
       // Mmorisation ou restitution pralable si ncessaire
       if( isResample() ) {
@@ -156,74 +153,18 @@ public class PlanImageResamp extends PlanImage {
 
       boolean hasOrig=pixelsOriginInit != null;
 
+      // Rchantillonnage multi-threads par tuiles
       if( !pref.projd.c.TheSame(projInit.c) ) {
-         setBufPixels8(new byte[pref.getBufPixels8().length]);
-         if( hasOrig ) pixelsOrigin=new byte[pref.getBufPixels8().length * npix];
-         for( i=0; i < pref.getBufPixels8().length; i++ ) {
-            coo.x=i % w;
-            coo.y=i / w;
-            pref.projd.getCoord(coo);
-            if( Double.isNaN(coo.al) ) continue;
-            projInit.getXY(coo);
-            if( !Double.isNaN(coo.x) ) {
-               switch( methode ) {
-               case PPV:
-                  x=(int) Math.round(coo.x);
-                  y=(int) Math.round(coo.y);
-                  if( x<0 || x>=widthInit || y<0 || y>=heightInit ) break;
-                  getBufPixels8()[i]=pixelsInit[y * widthInit + x];
-                  if( !hasOrig ) break;
-                  
-                  int pos1=(heightInit - y-1) * widthInit + x;
-                  int pos2=getBufPixels8().length - pref.width
-                              * ((i / pref.width) + 1) + i % pref.width;
-                  copyPixVal(pixelsOriginInit,pos1,pixelsOrigin,pos2);
-                  break;
-                  
-               case BILINEAIRE:
-                  int x1=(int)Math.round(coo.x - 0.5);
-                  int y1=(int)Math.round(coo.y - 0.5);
-                  int x2=x1 + 1;
-                  int y2=y1 + 1;
-                  if( x1<0 || x2>=widthInit || y1<0 || y2>=heightInit ) break;                  
-                  double p0=(0xFF & pixelsInit[y1 * widthInit+ x1]);
-                  double p1=(0xFF & pixelsInit[y1 * widthInit+ x2]);
-                  double p2=(0xFF & pixelsInit[y2 * widthInit+ x1]);
-                  double p3=(0xFF & pixelsInit[y2 * widthInit+ x2]);
-                  
-                  double d0,d1,d2,d3,pA,pB;
-                  try {
-                     d0 = 1./(coo.x-x1); 
-                     try { d1 = 1./(x2-coo.x); } catch( Exception e ) { d0=0;d1=1; }
-                  } catch( Exception e ) { d0=1;d1=0; }
-                  pA = (p0*d0+p1*d1)/(d0+d1);
-                  pB = (p2*d0+p3*d1)/(d0+d1);
-                  try {
-                     d2 = 1./(coo.y-y1);
-                     try { d3 = 1./(y2-coo.y); } catch( Exception e ) { d2=0;d3=1; }
-                  } catch( Exception e ) { d2=1;d3=0; }
-                  getBufPixels8()[i]=(byte) (0xFF & (int) ((pA*d2+pB*d3)/(d2+d3))); 
-                  if( !hasOrig ) break;
-                  
-                  p0=getPixVal(pixelsOriginInit,bitpix,(heightInit-y1-1)*widthInit+x1);
-                  p1=getPixVal(pixelsOriginInit,bitpix,(heightInit-y1-1)*widthInit+x2);
-                  p2=getPixVal(pixelsOriginInit,bitpix,(heightInit-y2-1)*widthInit+x1);
-                  p3=getPixVal(pixelsOriginInit,bitpix,(heightInit-y2-1)*widthInit+x2);
-                  pA = (p0*d0+p1*d1)/(d0+d1);
-                  pB = (p2*d0+p3*d1)/(d0+d1);
-                  setPixVal(pixelsOrigin,bitpix,getBufPixels8().length - pref.width
-                           * ((i / pref.width) + 1) + i % pref.width,
-                           (pA*d2+pB*d3)/(d2+d3));
-                  break;
-               }
-            }
-
-            // Pour laisser la main aux autres threads
-            // et pouvoir afficher le changement de pourcentage
-            if( i % 10000 == 0 ) {
-               setPourcent(i * 100 / pref.getBufPixels8().length);
-            }
-         }
+         int len = pref.width*pref.height;
+         byte [] pixels = new byte[len];
+         byte [] pixOrig = hasOrig ? new byte[len * npix] : null;
+         ImageResampler resampler = new ImageResampler(this,pixelsInit,pixelsOriginInit,widthInit,heightInit,
+               projInit,pref.projd,pref.width,pref.height,methode);
+         long t0=System.currentTimeMillis();
+         resampler.resample(pixels,pixOrig);
+         Aladin.trace(4,"PlanImageResamp.resample(): "+len+" pixels in "+(System.currentTimeMillis()-t0)+"ms");
+         setBufPixels8(pixels);
+         if( hasOrig ) pixelsOrigin=pixOrig;
       }
       naxis1=width=pref.width;
       naxis2=height=pref.height;
@@ -24,6 +24,8 @@ package cds.aladin;
 import java.util.Enumeration;
 import java.util.Vector;
 
+import cds.astro.Astroframe;
+import cds.astro.FK4;
 import cds.fits.HeaderFits;
 import cds.tools.Util;
 
@@ -841,6 +843,78 @@ public final class Projection {
       return coo;
    }
 
+   /** Matrice de rotation ICRS => frame de la projection (from=true) ou frame => ICRS (from=false),
+    * null si aucune rotation n'est ncessaire, NOROT si le changement de repre n'est pas
+    * une simple rotation (FK4) */
+   private double [] getFrameRotation(boolean from) {
+      if( frame==Localisation.ICRS || frame==Localisation.ICRSD || isXYLinear() ) return null;
+      Astroframe af = Localisation.getAstroframe(frame);
+      if( af instanceof FK4 ) return NOROT;
+      return Calib.getRotation(af,from);
+   }
+   static private final double [] NOROT = new double[0];
+
+   /** Version tableaux de getXY(Coord) : calcule les positions (x[i],y[i]) des coordonnes
+    * ICRS (ra[i],dec[i]) pour deb<=i<fin (NaN si hors projection). Le changement de repre
+    * ventuel est intgr  la matrice de projection de la calibration. Aucun objet de travail
+    * n'tant partag, plusieurs threads peuvent traiter simultanment des tranches diffrentes */
+   public void getXY(double [] ra,double [] dec,double [] x,double [] y,int deb,int fin) {
+      double [] pre = modeCalib==PLOT || c==null ? NOROT : getFrameRotation(true);
+
+      // Calcul point par point (mode PLOT, FK4...)
+      if( pre==NOROT ) {
+         Coord coo = new Coord();
+         for( int i=deb; i<fin; i++ ) {
+            coo.al=ra[i]; coo.del=dec[i];
+            if( modeCalib==PLOT ) getXYPlot(coo);
+            else {
+               try {
+                  if( frame!=Localisation.ICRS ) Localisation.frameToFrame(coo, Localisation.ICRS, frame);
+                  c.GetXY(coo);
+                  coo.x-=0.5; coo.y+=0.5;
+               } catch( Exception e ) { coo.x=coo.y=Double.NaN; }
+            }
+            x[i]=coo.x; y[i]=coo.y;
+         }
+         return;
+      }
+
+      c.GetXY(pre,ra,dec,x,y,deb,fin,true);
+      for( int i=deb; i<fin; i++ ) { x[i]-=0.5; y[i]+=0.5; }
+   }
+
+   /** Version tableaux de getCoord(Coord) : calcule les coordonnes ICRS (ra[i],dec[i])
+    * des positions (x[i],y[i]) pour deb<=i<fin (NaN si impossible). Mme remarque que
+    * pour getXY(double[]...) concernant l'usage multi-threads */
+   public void getCoord(double [] x,double [] y,double [] ra,double [] dec,int deb,int fin) {
+      double [] post = modeCalib==PLOT || c==null ? NOROT : getFrameRotation(false);
+
+      // Calcul point par point (mode PLOT, FK4...)
+      if( post==NOROT ) {
+         Coord coo = new Coord();
+         for( int i=deb; i<fin; i++ ) {
+            coo.x=x[i]; coo.y=y[i];
+            if( modeCalib==PLOT ) getCoordPlot(coo);
+            else {
+               try {
+                  coo.x+=0.5; coo.y-=0.5;
+                  c.GetCoord(coo);
+                  if( frame!=Localisation.ICRS ) Localisation.frameToFrame(coo, frame, Localisation.ICRS);
+               } catch( Exception e ) { coo.al=coo.del=Double.NaN; }
+            }
+            ra[i]=coo.al; dec[i]=coo.del;
+         }
+         return;
+      }
+
+      double [] xs = new double[fin-deb], ys = new double[fin-deb];
+      for( int i=deb; i<fin; i++ ) { xs[i-deb]=x[i]+0.5; ys[i-deb]=y[i]-0.5; }
+      double [] ras = new double[fin-deb], decs = new double[fin-deb];
+      c.GetCoord(post,xs,ys,ras,decs,0,fin-deb);
+      System.arraycopy(ras,0,ra,deb,fin-deb);
+      System.arraycopy(decs,0,dec,deb,fin-deb);
+   }
+
 
    protected Coord getProjCenter()  {
       if( modeCalib==PLOT ) {
@@ -1054,7 +1054,7 @@ public class Save extends JFrame implements ActionListener {
          append(po.raj+"\t"+po.dej+"\t"+po.id);
 
          // Ajout des infos TSV
-         append("\t"+o.info+CR);
+         append("\t"+o.getFullInfo()+CR);
 
       }
 
@@ -3068,7 +3068,7 @@ public class Save extends JFrame implements ActionListener {
    static protected String getSourceInfo(Source o,String sep) {
       StringBuilder s = new StringBuilder();
 
-      StringTokenizer st = new StringTokenizer(o.info,"\t");
+      StringTokenizer st = new StringTokenizer(o.getFullInfo(),"\t");
       st.nextElement();     // On saute le triangle
       while( st.hasMoreTokens() ) {
          Words w = new Words(st.nextToken(),-1);
@@ -67,9 +67,11 @@ public class Source extends Position implements Comparator {
       "solid oval","solid square","solid circle","solid rhomb","solid triangle" };
 
    protected byte sourceType=SQUARE;    //Type de representation de la source par dfaut (CARRE, ...)
-   protected String info;       // Information supplementaire associee a la source (en plus de id)
+   protected volatile String info;       // Information supplementaire associee a la source (en plus de id)
    private Legende leg;       // La legende associee a la source
    private String oid=null;     // L'OID de la source s'il a ete defini
+   private volatile ColumnStore store;   // Stockage colonnaire des mesures (utilis si info==null)
+   private int row;             // Numro de ligne dans le store
 
    /**** variables lis aux filtres ****/
    // TODO :  remplacer par un objet, ce qui viterait d'avoir 4 double pour chaque Source si on en utilise que 2 par exemple
@@ -231,7 +233,9 @@ public class Source extends Position implements Comparator {
 
    /** fix for the AVO demo : sometimes, info is shorter than leg ! */
    protected void fixInfo() {
-       if( getLeg()==null || getLeg().field==null || info==null ) return;
+       if( getLeg()==null || getLeg().field==null ) return;
+       if( info==null && store!=null && store.getNbCol()-1<getLeg().field.length ) unStore();
+       if( info==null ) return;
 
        StringTokenizer st = new StringTokenizer(this.info,"\t");
        int nbInfo = st.countTokens()-1; // skip du triangle
@@ -314,9 +318,32 @@ public class Source extends Position implements Comparator {
    */
    public void setInfo(String info) { 
       this.info = info; 
+      store=null;
       oid="";
    }
 
+   /** Retourne la chane info complte (champs spars par des TABs), reconstitue
+    * depuis le stockage colonnaire si ncessaire */
+   protected String getFullInfo() {
+      String s = info;
+      ColumnStore st = store;
+      if( s!=null || st==null ) return s;
+      return st.getInfo(row);
+   }
+
+   /** Rattachement au stockage colonnaire (la chane info est alors libre) */
+   protected void setStore(ColumnStore store,int row) {
+      this.store=store;
+      this.row=row;
+      info=null;
+   }
+
+   /** Retour  la forme "info" classique, pralable  toute modification */
+   private void unStore() {
+      if( info==null && store!=null ) info=store.getInfo(row);
+      store=null;
+   }
+
   /** Modification de la legende associee a la source
    * @param leg la nouvelle legende
    */
@@ -1116,6 +1143,7 @@ public class Source extends Position implements Comparator {
 
     /** Returns the catalog name for the source */
     protected String getCatalogue() {
+        String info = getFullInfo();
         if( info!=null) {
             int tab = info.indexOf('\t');
             if(tab<0) return null;
@@ -1138,6 +1166,12 @@ public class Source extends Position implements Comparator {
      */
     protected String getCodedValue(int index) throws NoSuchElementException {
        index++;   // skip du triangle  (il y a toujours une premire valeur)
+       String info = this.info;   // copie locale (la source peut tre compacte en parallle, cf. setStore())
+       ColumnStore st = store;
+       if( info==null && st!=null ) {
+          if( index>=st.getNbCol() ) throw new NoSuchElementException();
+          return st.get(row,index);
+       }
        int deb= -1;
        int n=info.length();
        int i=0;
@@ -1187,12 +1221,51 @@ public class Source extends Position implements Comparator {
       	return ret.trim();
     }
 
+    /** Retourne la valeur numrique du champ  la position index. Pour les sources
+     * stockes en colonnes, la valeur est directement lue dans la colonne numrique
+     * sans passer par sa reprsentation textuelle.
+     * @param index - the position of the field one wants
+     * @return the numerical value
+     * @throws Exception if the field does not exist or is not numerical
+     */
+    protected double getDoubleValue(int index) throws Exception {
+       ColumnStore st = store;
+       if( info==null && st!=null && index+1<st.getNbCol() && st.isNumeric(row,index+1)
+             && index<getLeg().field.length && getLeg().field[index].nullValue==null ) {
+          return st.getDouble(row,index+1);
+       }
+       return Double.parseDouble( getValue(index) );
+    }
+
+    /** Retourne la valeur numrique du champ  la position index, ou la valeur par dfaut
+     * si le champ n'existe pas, est vide ou n'est pas numrique. Contrairement 
+     * getDoubleValue(index), les champs vides ne gnrent pas d'exception (parcours de colonnes).
+     * @param index - the position of the field one wants
+     * @param defaut - the value returned if the field is not a number
+     * @return the numerical value
+     */
+    protected double getDoubleValue(int index,double defaut) {
+       ColumnStore st = store;
+       if( info==null && st!=null && index+1<st.getNbCol() && st.isNumeric(row,index+1)
+             && index<getLeg().field.length && getLeg().field[index].nullValue==null ) {
+          return st.getDouble(row,index+1);
+       }
+       String v = getValue(index);
+       if( v==null || v.length()==0 ) return defaut;
+       try { return Double.parseDouble(v); }
+       catch( NumberFormatException e ) { return defaut; }
+    }
+
     /** Retourne le type d'objet */
     public String getObjType() { return "Source"; }
 
     /** Retourne un tableau de chaines contenant les valeurs de chaque champ */
     public String [] getValues() {
-       StringTokenizer st = new StringTokenizer(info,"\t");
+       String info = this.info;   // copie locale (la source peut tre compacte en parallle, cf. setStore())
+       ColumnStore cs = store;
+       String [] tok = info==null && cs!=null ? cs.getTokens(row) : null;
+       StringTokenizer st = tok!=null ? null : new StringTokenizer(info,"\t");
+       int k=1;
 
        // Si on connait le nombre de champ, on alloue immdiatement le tableau
        // sinon on passe par un Vector temporaire et on recopie  la fin
@@ -1201,10 +1274,10 @@ public class Source extends Position implements Comparator {
        if( getLeg().field.length>0 ) v = new String[ getLeg().field.length ];
        else tmp = new Vector();
 
-       st.nextElement();  // Skip le triangle
+       if( st!=null ) st.nextElement();  // Skip le triangle
        boolean encore;
-       for( int i=0; (encore=st.hasMoreTokens()) ||  (v!=null && i<v.length) ; i++ ) {
-         String ret = encore?st.nextToken():"";
+       for( int i=0; (encore= st!=null ? st.hasMoreTokens() : k<tok.length) ||  (v!=null && i<v.length) ; i++ ) {
+         String ret = !encore ? "" : st!=null ? st.nextToken() : tok[k++];
           // Pierre: En cas de marques GLU
           if( ret.startsWith("<&") ) {
              int a = ret.indexOf('|');
@@ -1232,6 +1305,7 @@ public class Source extends Position implements Comparator {
      * @param value new value
      */
     public boolean setValue(int index,String value) {
+       unStore();
        StringTokenizer st = new StringTokenizer(info,"\t");
        StringBuilder nInfo=null;
        boolean encore;
@@ -1299,6 +1373,7 @@ public class Source extends Position implements Comparator {
     /** Return the number of columns associated to this object */
     public int getSize() {
        if( getLeg()!=null ) return getLeg().getSize();
+       String info = getFullInfo();
        if( info==null ) return 0;
        return new StringTokenizer(info,"\t").countTokens();
     }
@@ -22,12 +22,14 @@
 package cds.aladin;
 
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.StringTokenizer;
 import java.util.Vector;
 
 import cds.astro.Unit;
 import cds.tools.Util;
+import cds.tools.parser.CompiledExpr;
 import cds.tools.parser.Parser;
 import cds.tools.parser.ParserException;
 
@@ -53,6 +55,11 @@ public class UCDFilter {
 	private static final String EQ = "="; // equals
 	private static final String NE = "!="; // not equal
 
+	// result of the vectorized check of a block of constraints for a source
+	private static final byte NOTVERIFIED = 0;
+	private static final byte VERIFIED = 1;
+	private static final byte CONVERTPB = 2;   // unit conversion problem
+
     //  true if a problem arose during the conversion
 	private boolean convertProblem = false;
     //  nb of sources for which conversion problems happened
@@ -824,15 +831,16 @@ public class UCDFilter {
 		while (eBlocks.hasMoreElements()) {
 			curBlock = (ConstraintsBlock) eBlocks.nextElement();
 			remainingSources.removeAllElements();
+			byte[] verified = verifyValueConstraints(sources, curBlock);
 
 			for (int i = sources.length - 1; i >= 0; i--) {
 
-				if (verifyValueConstraints(sources[i], curBlock)) {
+				if (verified[i] == VERIFIED) {
 
 					sources[i].setSelect(true);
 					a.view.vselobj.addElement(sources[i]);
 
-				} else if (convertProblem) {
+				} else if (verified[i] == CONVERTPB) {
 					//System.out.println("Problem");
 					nbConvertProblem++;
 				} else {
@@ -890,6 +898,16 @@ public class UCDFilter {
         Vector[] vecBlockSources = new Vector[blocks.length];
         for( int i=0; i<vecBlockSources.length; i++ ) vecBlockSources[i] = new Vector();
 
+        // vectorized check of the constraints of each block for all sources
+        byte[][] verified = new byte[blocks.length][];
+        for( int k=0; k<blocks.length; k++ ) {
+           verified[k] = verifyValueConstraints(sources, blocks[k]);
+           if( pf.filterThread.askingRestart() ) {
+              if( pf.DEBUG ) System.err.println("UCDFilter.getFilteredSources() => break (filterThread.askingRestart())");
+              return null;
+           }
+        }
+
 
         // we test all sources
         for (int i = sources.length - 1; i >= 0; i--) {
@@ -916,7 +934,7 @@ public class UCDFilter {
            // loop on all blocks (on teste une par une les contraintes jusqu' ce que la source en vrifie une)
            for( int k=0;!accomplished&&k<blocks.length;k++ ) {
               curBlock = blocks[k];
-              if (verifyValueConstraints(sources[i], curBlock)) {
+              if( verified[k][i]==VERIFIED ) {
                  filteredSources.add(sources[i]);
                  vecBlockSources[k].add(sources[i]);
                  accomplished=true;
@@ -930,7 +948,7 @@ public class UCDFilter {
                  for(int j = 0;j < sources[i].actions[numero].length; j++) {
                     sources[i].actions[numero][j].computeValues(sources[i],numero,j);
                  }
-              } else if (convertProblem) {
+              } else if( verified[k][i]==CONVERTPB ) {
                  //System.out.println("Problem");
                  nbConvertProblem++;
                  accomplished=true;
@@ -962,17 +980,13 @@ public class UCDFilter {
               blocks[i].actions[k].computeExtremum(blockSources[i]);
            }
 
-           // Boucle sur les sources
-           for( int j=0; j<blockSources[i].length; j++) {
+           // Boucle sur les actions (calcul vectoris sur l'ensemble des sources du block)
+           for( int k=0; k<blocks[i].actions.length; k++ ) {
                 if( pf.filterThread.askingRestart() ) {
                    if( pf.DEBUG ) System.err.println("UCDFilter.getFilteredSources() => return (filterThread.askingRestart())");
                    return null;
                 }
-
-                // Boucle sur les actions
-                for( int k=0; k<blocks[i].actions.length; k++ ) {
-                    blocks[i].actions[k].finalcomputeValues(blockSources[i][j],numero,k);
-                }
+                blocks[i].actions[k].finalcomputeValues(blockSources[i],numero,k);
             }
 
             //System.out.println("Nb sources slectionnes pour block "+i+" : "+blockSources[i].length);
@@ -1035,33 +1049,82 @@ public class UCDFilter {
 
 		final int length = b.valueConstraints.length;
 
-		// array storing if b.valueConstraints[i] is verified
-		boolean[] check = new boolean[length];
+		// array storing if b.valueConstraints[i] is verified (1) or not (0)
+		double[] check = new double[length];
 
 		for (i = 0; i < length; i++) {
 			curConst = b.valueConstraints[i];
 
-			check[i] = verifyOneValueConstraint(s, curConst);
+			check[i] = verifyOneValueConstraint(s, curConst) ? 1 : 0;
 			if( convertProblem ) { /*System.out.println("Convert problem");*/
 				return false;
 			}
 
 		}
 
-		final String un = "1";
-		final String zero = "0";
-		String foo;
-		String checkStr = new String(b.checkExpr);
-		// we replace the "\[index]" by the value (0==false, 1==true)
- 		for( i = length-1; i >= 0; i-- ) {
-			foo = check[i] ? un : zero;
-			checkStr = MetaDataTree.replace(checkStr, "\\" + i, foo,1);
+		return (b.getCheck().eval(b.toSlots(check)) > 0);
+	}
+
+	/** Vectorized check of the value constraints of a block for a set of sources.
+	 *  Decimal constraints without unit conversion are evaluated by column batches
+	 *  (see ColumnEvaluator), the other ones source by source
+	 *	@param sources the sources
+	 *	@param b block of constraints
+	 *	@return for each source VERIFIED, NOTVERIFIED or CONVERTPB (unit conversion problem)
+	 */
+	private byte[] verifyValueConstraints(Source[] sources, ConstraintsBlock b) {
+		int n = sources.length;
+		byte[] res = new byte[n];
+
+		if (b.valueConstraints == null) {
+			Arrays.fill(res, VERIFIED);
+			return res;
 		}
 
-		Parser parserCheck = new Parser(checkStr);
-		parserCheck.parseString();
-//		System.out.println("string vaut : "+checkStr);
-		return (parserCheck.eval() > 0);
+		final int length = b.valueConstraints.length;
+
+		// check[i][j] : 1 if b.valueConstraints[i] is verified by sources[j], 0 otherwise
+		double[][] check = new double[length][n];
+		double[] value = new double[n];
+		boolean[] ok = new boolean[n];
+
+		for (int i = 0; i < length; i++) {
+			Constraint cons = b.valueConstraints[i];
+
+			if (cons.isVectorizable()) {
+				if (cons.evaluator == null) cons.evaluator = new ColumnEvaluator(cons.parser);
+				cons.evaluator.eval(sources, value, ok);
+				for (int j = 0; j < n; j++) {
+					check[i][j] = ok[j] && checkExpr(value[j], cons.operator, cons.value) ? 1 : 0;
+				}
+			} else {
+				for (int j = 0; j < n; j++) {
+					if (res[j] == CONVERTPB) continue;
+					check[i][j] = verifyOneValueConstraint(sources[j], cons) ? 1 : 0;
+					if (convertProblem) res[j] = CONVERTPB;
+				}
+			}
+		}
+		convertProblem = false;
+
+		double[] out = new double[n];
+		b.getCheck().eval(b.toSlots(check), 0, n, out);
+		for (int j = 0; j < n; j++) {
+			if (res[j] != CONVERTPB) res[j] = out[j] > 0 ? VERIFIED : NOTVERIFIED;
+		}
+		return res;
+	}
+
+	/** Vectorized check of the value constraints of a block for a set of sources
+	 *	@param sources the sources
+	 *	@param indexBlock index of the block of constraints
+	 *	@return for each source, true if it verifies the value constraints
+	 */
+	protected boolean[] verifyValueConstraints(Source[] sources, int indexBlock) {
+		byte[] verified = verifyValueConstraints(sources, constraintsBlocks.elementAt(indexBlock));
+		boolean[] res = new boolean[verified.length];
+		for (int i = 0; i < res.length; i++) res[i] = verified[i] == VERIFIED;
+		return res;
 	}
 
 	/** checks on a source the validity of a constraint (used by verifyValueConstraints)
@@ -1430,6 +1493,9 @@ public class UCDFilter {
 		// used for string and undefined constraints
 		String ucd = null;
 
+		// compiled version of parser, for vectorized evaluations (created on demand)
+		ColumnEvaluator evaluator = null;
+
 		// constructor for a decimal value constraint
 		Constraint(Parser parser, String operator, double value) {
 			this.parser = parser;
@@ -1466,6 +1532,11 @@ public class UCDFilter {
 			this.ucd = ucd;
 			undefinedConstraint = true;
 		}
+
+		/** true if the constraint can be evaluated by column batches (decimal value without unit conversion) */
+		boolean isVectorizable() {
+			return !stringConstraint && !undefinedConstraint && !convertUnit;
+		}
 	}
 
 	// inner class to describe a block of constraints
@@ -1480,8 +1551,54 @@ public class UCDFilter {
 		// expression which will be used to check whether a source is selected by a filter
 		String checkExpr;
 
+		// compiled version of checkExpr, the variable "{index}" standing for valueConstraints[index]
+		private CompiledExpr check = null;
+
+		// checkIndex[slot] : index of the constraint corresponding to the variable slot of check
+		private int[] checkIndex = null;
+
 		ConstraintsBlock() {
 		}
+
+		/** Returns the compiled check expression (compiled once for all sources) */
+		synchronized CompiledExpr getCheck() {
+			if( check==null ) {
+				// we replace the "\[index]" by the variable "{index}"
+				String checkStr = checkExpr;
+				for( int i=valueConstraints.length-1; i>=0; i-- ) {
+					checkStr = MetaDataTree.replace(checkStr, "\\"+i, "{"+i+"}", -1);
+				}
+				Parser parser = new Parser(checkStr);
+				for( int i=0; i<valueConstraints.length; i++ ) parser.addVar("{"+i+"}");
+				parser.parseString();
+				CompiledExpr c = parser.compile();
+
+				// the variable slots of the compiled expression do not follow the constraint order
+				String[] vars = c.getVariables();
+				int[] index = new int[vars.length];
+				for( int k=0; k<vars.length; k++ ) {
+					index[k] = Integer.parseInt(vars[k].substring(1, vars[k].length()-1));
+				}
+				checkIndex = index;
+				check = c;
+			}
+			return check;
+		}
+
+		/** Reorders the results of the constraints (indexed by constraint) according
+		 *  to the variable slots of the compiled check expression (see getCheck()) */
+		synchronized double[] toSlots(double[] res) {
+			double[] val = new double[checkIndex.length];
+			for( int k=0; k<val.length; k++ ) val[k] = res[checkIndex[k]];
+			return val;
+		}
+
+		/** Same as toSlots(double[]) for vectorized results (res[constraint][source]) */
+		synchronized double[][] toSlots(double[][] res) {
+			double[][] val = new double[checkIndex.length][];
+			for( int k=0; k<val.length; k++ ) val[k] = res[checkIndex[k]];
+			return val;
+		}
 	}
 
 }
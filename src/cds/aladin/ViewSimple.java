@@ -4440,7 +4440,21 @@ DropTargetListener, DragSourceListener, DragGestureListener {
 
       // Cas d'une image HUGE
       flagHuge=false;
-      if( p.type==Plan.IMAGEHUGE &&
+
+      // Pyramide de tuiles disponible => on prend directement le niveau adapt au zoom
+      if( p.type==Plan.IMAGEHUGE && frame==-1 ) {
+         PlanImageHuge ph = (PlanImageHuge)p;
+         int f = ph.getPyramidFactor(zoom);
+         if( f>0 && (pixels=ph.cropPyramid(f,x1,y1,w,h))!=null ) {
+            int s = ph.step/f;
+            xHuge=x1; yHuge=y1; wHuge=w; hHuge=h;
+            zoom /= s;
+            w *=s;
+            h *=s;
+            flagHuge=true;
+         }
+      }
+      if( !flagHuge && p.type==Plan.IMAGEHUGE &&
             (((PlanImageHuge)p).inSubImage(x1,y1,w,h)
                   || ((PlanImageHuge)p).fromSubImage(zoom,getWidth(),getHeight())) ) {
          PlanImageHuge ph = (PlanImageHuge)p;
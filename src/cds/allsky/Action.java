@@ -240,6 +240,13 @@ public enum Action {
          "The LINT action checks that the HiPS specified by the out parameter is compliant with "
                + "the IVOA HiPS 1.0 standard. If not, it indicates the non-conforming elements."),
    ZIP       ("ZIP HiPS directories",A.TEST),                                                     // PROTO
+   PACK      ("Pack HiPS tiles in per-directory containers",
+         "The PACK action gathers all the tiles of each `NorderNN/DirDDDD` directory into a single "
+               + "`NorderNN/DirDDDD.hpk` container file preceded by a binary index. Aladin Desktop "
+               + "serves the tiles of a local HiPS directly from these containers, which avoids one "
+               + "file opening per tile on slow disks or network file systems. The original tiles "
+               + "are kept. The PACK action must be run again after any modification of the tiles.",
+         "out=/data/hips PACK"),
    //   INFO      ("Generate properties and index.html information files"),
    MAPTILES  ("Build HiPS tiles from a HEALPix FITS map",
          "The MAPTILES action generates the FITS tiles and the HiPS hierarchy from a "
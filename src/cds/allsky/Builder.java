@@ -106,6 +106,7 @@ public abstract class Builder {
          case VALIDATOR: return new BuilderValidator(context);
          case CUT:       return new BuilderCut(context);
 //         case ZIP:       return new BuilderZip(context);
+         case PACK:      return new BuilderPack(context);
          default: break;
       }
       throw new Exception("No builder associated to this action");
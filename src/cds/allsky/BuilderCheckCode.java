@@ -25,9 +25,9 @@ import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Arrays;
 
 import cds.aladin.Tok;
+import cds.fits.Fits;
 import cds.tools.Util;
 
 /** Gnration/Maj des Check codes (en fait des cls de hash) associs  un HiPS
@@ -49,6 +49,7 @@ public class BuilderCheckCode extends Builder {
       int n;         // Nombre de tuiles
       long length;   // taille cumulative (en bytes)
       int code;      // cl de hash = check code
+      long dataSum;  // DATASUM cumul (cf. BuilderCheckDataSum)
       ArrayList<File> corruptedFile =null;  // Liste des fichiers corrompus (DATASUM);
       
       Info(String fmt) { this.fmt=fmt; code=0; length=0L; }
@@ -66,6 +67,18 @@ public class BuilderCheckCode extends Builder {
          corruptedFile.add(f);
       }
       
+      // Cumul des informations d'un parcours suivant celui-ci (cf. TileTreeWalker).
+      // Le check code tant une cl de hash polynomiale, code = code*31^other.n + other.code
+      void merge(Info other) {
+         int p=1;
+         for( int b=31, k=other.n; k>0; k>>=1, b*=b ) if( (k&1)!=0 ) p*=b;
+         code = code*p + other.code;
+         n += other.n;
+         length += other.length;
+         dataSum = Fits.sumDataSum(dataSum, other.dataSum);
+         if( other.corruptedFile!=null ) for( File f : other.corruptedFile ) addCorruptedFile(f);
+      }
+
       // On ajoute sur le hash le nombre de fichiers
       // Puis Edition en entier 32 bits non sign
       String getCode() {
@@ -171,28 +184,31 @@ public class BuilderCheckCode extends Builder {
       return true;
    }
    
+   // Parcours parallle, mais ordonn (le check code dpend de l'ordre lexicographique des fichiers,
+   // important car listFiles() ne retourne pas tjrs le mme ordre suivant l'OS)
    public void scanDir(File dir, String fmt, Info info) throws Exception {
-      if( context.isTaskAborting() ) throw new Exception("Task abort !");
-      
-      // rpertoire
-      if( dir.isDirectory() ) {
-         File [] list = dir.listFiles();
-         Arrays.sort(list);    // Important car cette liste n'est pas ordonne tjrs de la mme manire suivant OS
-         for ( File f : list ) scanDir(f,fmt,info);
-         
-         if( Files.isSymbolicLink( dir.toPath()) ) {
-            Path target = Files.readSymbolicLink( dir.toPath() );
-            updateInfo( target.toFile(), info);
+      Info res = new TileTreeWalker(context).walk(dir.toPath(), new TileTreeWalker.Visitor<Info>() {
+         public Info create() { return new Info(fmt); }
+
+         public void visit(Info acc, Path p) throws Exception {
+            File f = p.toFile();
+            if( !mustBeScanned(f,fmt) ) return;
+            updateInfo( f, acc );
+            context.setProgress( incNbFile() );
          }
 
-         // simple fichier
-      } else if( mustBeScanned(dir,fmt) ) {
-         updateInfo( dir, info );
-         nbFile++;
-         context.setProgress(nbFile);
-      }
+         public void leave(Info acc, Path p) throws Exception {
+            if( Files.isSymbolicLink(p) ) updateInfo( Files.readSymbolicLink(p).toFile(), acc );
+         }
+
+         public void merge(Info acc, Info other) { acc.merge(other); }
+      }, true);
+      info.merge(res);
    }
+
+   private synchronized int incNbFile() { return ++nbFile; }
    
+   // Appele simultanment par plusieurs threads (cf. scanDir()), chacun sur son propre Info
    protected void updateInfo(File f, Info info) throws Exception {
       long len = f.length();
       info.update( len );
@@ -22,6 +22,7 @@
 package cds.allsky;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import cds.fits.Fits;
 
@@ -33,8 +34,8 @@ public class BuilderCheckDataSum extends BuilderCheckCode {
    static final int MAXCORRUPT = 99;  // Nombre MAX de fichiers corrompus avant d'arrter
    static final int MAXMISSING = 10;  // Nombre MAX de fichiers tolrs sans DATASUM
    
-   int missingDataSum=0;              // Nombre de fichiers sans DATASUM
-   int corruptDataSum=0;              // Nombre de fichiers corrompus
+   AtomicInteger missingDataSum = new AtomicInteger();  // Nombre de fichiers sans DATASUM
+   AtomicInteger corruptDataSum = new AtomicInteger();  // Nombre de fichiers corrompus
    boolean flagGlobalDataSum=false;   // true si on doit calculer le DATASUM global
    long globalDataSum=0L;             // DATASUM global sur toutes les tuiles Fits
 
@@ -64,6 +65,9 @@ public class BuilderCheckDataSum extends BuilderCheckCode {
    public void run() throws Exception {
 
       Info info = scanDir(new File( context.getOutputPath() ),"fits");
+      int missingDataSum = this.missingDataSum.get();
+      int corruptDataSum = this.corruptDataSum.get();
+      globalDataSum = info.dataSum;
       
       // A priori pas de fichiers avec DATASUM
       if( missingDataSum>MAXMISSING  && corruptDataSum==0 ) {
@@ -95,26 +99,29 @@ public class BuilderCheckDataSum extends BuilderCheckCode {
    
    // Affichage des fichiers corrompus
    private void report(Info info) {
+      if( info.corruptedFile==null ) return;
       for( File f: info.corruptedFile ) {
          context.info("   ."+f.getAbsolutePath());
       }
    }
    
+   // Le DATASUM est calcul au fil de la lecture de la tuile, sans chargement complet
    protected void updateInfo(File f, Info info) throws Exception {
       super.updateInfo(f, info);
       
-      if( missingDataSum>MAXMISSING && corruptDataSum==0 ) return;
+      if( missingDataSum.get()>MAXMISSING && corruptDataSum.get()==0 ) return;
 
-      Fits fits = new Fits();
-      fits.loadFITS( f.getAbsolutePath(),false );
-      int check = fits.checkDataSum();
-      if( check==0 ) { corruptDataSum++; info.addCorruptedFile(f); }
-      else if( check==-1 ) missingDataSum++;
+      long [] sum = Fits.streamDataSum( f.getAbsolutePath() );
+      int nbCorrupt=0;
+      if( sum[1]==-1 ) missingDataSum.incrementAndGet();
+      else if( sum[0]!=sum[1] ) { nbCorrupt=corruptDataSum.incrementAndGet(); info.addCorruptedFile(f); }
       
-      // On va calculer un DATASUM global
-      if( flagGlobalDataSum ) globalDataSum = fits.computeDataSum(globalDataSum);
+      // On va calculer un DATASUM global (cumul par Info puis fusionn, cf. Info.merge())
+      if( flagGlobalDataSum ) info.dataSum = Fits.sumDataSum(info.dataSum, sum[0]);
       
-      if( corruptDataSum>MAXCORRUPT ) {
+      // Seul le thread qui franchit le seuil arrte le parcours (son Info, partielle, contient
+      // au-moins le fichier courant)
+      if( nbCorrupt==MAXCORRUPT+1 ) {
          context.error("A lot of HiPS Fits tile(s) corrupted (DATASUM not compliant)!");
          report(info);
          context.info("   ...");
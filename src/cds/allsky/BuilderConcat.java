@@ -206,6 +206,10 @@ public class BuilderConcat extends BuilderRunner {
          doHpxFinder=false;
          if( liveIn ) context.warning("Source HiPS does provide weight tiles => ignored");
       }
+      if( doHpxFinder && (HpxFinderIndex.find(inputPathIndex)!=null || HpxFinderIndex.find(outputPathIndex)!=null) ) {
+         doHpxFinder=false;
+         context.warning("Binary HpxFinder index (-binindex) not supported for CONCAT => HpxFinder not concatenated");
+      }
       if( doHpxFinder ) context.info("HpxFinder will be also concatenated");
 
       if( mode==ModeMerge.mergeMean ) {
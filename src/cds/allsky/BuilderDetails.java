@@ -48,6 +48,7 @@ public class BuilderDetails extends Builder {
    private int detailOrder;
    private int maxOrder;
    private long nbItemPerOrder[];
+   private HpxFinderIndex index;      // Index HpxFinder binaire, null si index JSON
 
    private int statNbFile;
    private long startTime,totalTime;
@@ -132,16 +133,23 @@ public class BuilderDetails extends Builder {
       HealpixProgen allsky=null;
       nbItemPerOrder = new long[maxOrder+1];
 
-      for( int i=0; i<768; i++ ) {
-         HealpixProgen hi = createTree(output,3,i);
-         if( hi!=null ) {
-            if( allsky==null ) allsky  = new HealpixProgen();
-            if( !allsky.hasTooMany() ) {
-               allsky.merge(hi);
-               if( allsky.size()>HealpixProgen.TOOMANY ) allsky.setTooMany(true);
+      // Les tuiles du dernier niveau sont lues dans l'index binaire s'il existe
+      index = context.getHpxFinderIndex();
+      try {
+         for( int i=0; i<768; i++ ) {
+            HealpixProgen hi = createTree(output,3,i);
+            if( hi!=null ) {
+               if( allsky==null ) allsky  = new HealpixProgen();
+               if( !allsky.hasTooMany() ) {
+                  allsky.merge(hi);
+                  if( allsky.size()>HealpixProgen.TOOMANY ) allsky.setTooMany(true);
+               }
             }
+            context.setProgress(i);
          }
-         context.setProgress(i);
+      } finally {
+         context.closeHpxFinderIndex();
+         index=null;
       }
 
 
@@ -189,7 +197,7 @@ public class BuilderDetails extends Builder {
       String file = Util.getFilePath(path,order,npix);
 
       HealpixProgen out = null;
-      if( order==maxOrder ) out = createLeave(file);
+      if( order==maxOrder ) out = createLeave(file,npix);
       else {
          HealpixProgen fils[] = new HealpixProgen[4];
          boolean found = false;
@@ -232,12 +240,18 @@ public class BuilderDetails extends Builder {
 
    /** Construction d'une tuile terminale. Lit le fichier est map les entres de l'index
     * dans une TreeMap */
-   private HealpixProgen createLeave(String file) throws Exception {
-      File f = new File(file);
-      if( !f.exists() ) return null;
-      //      System.out.println("   createLeave("+file+")");
-      HealpixProgen out = new HealpixProgen();
-      out.loadStream( new FileInputStream(f));
+   private HealpixProgen createLeave(String file,long npix) throws Exception {
+      HealpixProgen out;
+      if( index!=null ) {
+         out = index.getProgen(npix);
+         if( out==null ) return null;
+      } else {
+         File f = new File(file);
+         if( !f.exists() ) return null;
+         //      System.out.println("   createLeave("+file+")");
+         out = new HealpixProgen();
+         out.loadStream( new FileInputStream(f));
+      }
       updateStat();
       return out;
    }
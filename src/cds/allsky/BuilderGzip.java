@@ -25,11 +25,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.zip.GZIPOutputStream;
 
 import cds.aladin.MyInputStream;
-import cds.fits.Fits;
-import cds.tools.pixtools.Util;
 
 
 /**
@@ -40,7 +39,6 @@ import cds.tools.pixtools.Util;
 public class BuilderGzip extends BuilderRunner {
    
    public int nbFile;      // Nombre de fichires traits
-   private Fits bidon;                  // Ne sert qu' renvoyer quelque chose pour faire plaisir  BuilderTiles
    protected boolean compress;          // Compression ou decompression ?
    
    public BuilderGzip(Context context) {
@@ -77,37 +75,82 @@ public class BuilderGzip extends BuilderRunner {
    
    public void run() throws Exception { build(); }
    
+   // Parcours parallle de l'arborescence Norder*/Dir*/Npix* (cf. TileTreeWalker)
+   // plutt que l'arbre HEALPix pilot par le MOC (cf. BuilderRunner). Seules les tuiles
+   // de l'ordre min  l'ordre max qui intersectent la rgion sont traites, comme
+   // le faisait BuilderRunner.build()
    public void build() throws Exception {
       ordermax = context.getOrder();
+      int minorder = context.getMinOrder();
+      context.resetCounter();
       context.resetCheckCode("fits");
-      super.build();
+      buildPre();
+      startTime = System.currentTimeMillis();
+      
+      String path = context.getOutputPath();
+      Path root = new File(path).toPath();
+      new TileTreeWalker(context).walk(root, new TileTreeWalker.Visitor<int []>() {
+         public int [] create() { return new int[1]; }
+         
+         public boolean accept(Path dir) {
+            String name = dir.getFileName().toString();
+            if( !root.equals( dir.getParent() ) ) return name.startsWith("Dir");
+            int order = getOrder(name);
+            return order>=minorder && order<=ordermax;
+         }
+         
+         public void visit(int [] acc, Path p) throws Exception {
+            String name = p.getFileName().toString();
+            if( !name.startsWith("Npix") || !name.endsWith(".fits") ) return;
+            int order = getOrder( p.getParent().getParent().getFileName().toString() );
+            long npix = getNpix(name);
+            if( npix<0 || !context.isInMocTree(order,npix) ) return;
+            long duree = gzip( p.toString() );
+            tileDone(duree);
+            acc[0]++;
+         }
+         
+         public void merge(int [] acc, int [] other) { acc[0]+=other[0]; }
+      }, false);
+      
+      // Regnration du MOC et du Allsky, mise  jour des proprits (comme BuilderRunner.build())
+      buildPost( System.currentTimeMillis()-startTime );
+      
       context.info(getAction()+" allsky...");
-      allsky( context.getOutputPath() );
+      allsky( path );
+   }
+   
+   // Ordre d'un rpertoire NorderNN, -1 si ce n'en est pas un
+   static private int getOrder(String name) {
+      if( !name.startsWith("Norder") ) return -1;
+      try { return Integer.parseInt( name.substring(6) ); } catch( Exception e ) { return -1; }
+   }
+   
+   // Numro HEALPix d'une tuile NpixNNN[_z].fits, -1 si non reconnu
+   static private long getNpix(String name) {
+      int i=4, n=name.length();
+      while( i<n && Character.isDigit(name.charAt(i)) ) i++;
+      try { return Long.parseLong( name.substring(4,i) ); } catch( Exception e ) { return -1; }
    }
 
    public void buildPre() {
-      bidon = new Fits();
       compress=true;
    }
-
-   protected Fits createLeafHpx(ThreadBuilderTile hpx, String file,String path,int order,long npix, int z) throws Exception {
-//      if( order>Constante.GZIPMAXORDER ) return bidon;
-      
-      String filename = Util.getFilePath(path, order, npix,z)+".fits";
-      long duree = gzip(filename);
+   
+   public void showStatistics() {
+      if( statNbTile==0 ) return;
+      context.stat(statNbTile+" tiles processed in "+cds.tools.Util.getTemps(System.currentTimeMillis()-startTime));
+   }
+   
+   // Mise  jour des stats, appel en parallle par les threads du TileTreeWalker
+   private synchronized void tileDone(long duree) {
       updateStat(0,1,0,duree,0,0);
       nbFile++;
-      return bidon;
    }
-
-   protected Fits createNodeHpx(String file,String path,int order,long npix,Fits fils[], int z) throws Exception {
-//      if( order>Constante.GZIPMAXORDER ) return bidon;
-      
-      String filename = Util.getFilePath(path, order, npix,z)+".fits";
-      long duree = gzip(filename);
-      updateStat(0,0,0,0,1,duree);
+   
+   private synchronized void incNbFile() {
       nbFile++;
-      return bidon;
+      if( context!=null ) context.setProgress(nbFile);
    }
    
    private void allsky(String path) throws Exception {
@@ -115,7 +158,7 @@ public class BuilderGzip extends BuilderRunner {
          String allsky = path+FS+"Norder3"+FS+"Allsky"+(z==0?"":"_"+z)+".fits";
          if( (new File(allsky)).isFile() ) {
             gzip(allsky,compress);
-            nbFile++;
+            incNbFile();
          }
       }
    }
@@ -224,8 +267,7 @@ public class BuilderGzip extends BuilderRunner {
            in = new File(file);
            if( !out.renameTo(in) ) throw new Exception("Cannot rename "+outFile+" in "+file);
 
-           nbFile++;
-           if( context!=null ) context.setProgress(nbFile);
+           incNbFile();
         }
         
      } 
@@ -26,6 +26,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import cds.aladin.Aladin;
 import cds.aladin.Calib;
@@ -50,6 +54,10 @@ public class BuilderIndex extends Builder {
    private int [] hdu = null;
    private SMoc area;                  // rgion de travail
    private boolean flagAppend;             // true => inutile de vrifier les doublons
+   private HpxFinderIndex.Writer indexWriter;  // Construction de l'index binaire (null si index JSON)
+   private ThreadPoolExecutor executor;    // Pool d'indexation parallle (null si mono-thread)
+   private AtomicInteger nbFiles;          // Nombre d'images indexes (pour le mode Pilot)
+   private final Object [] tileLocks;      // Verrous des tuiles d'index (rpartis selon le npix)
    private int maxOverlays;                // Estimation du nombre max d'overlays 
                                            // (en dcomptant le nombre d'entres dans chaque tuile de HpxFinder=
 
@@ -60,12 +68,17 @@ public class BuilderIndex extends Builder {
    private long statMemFile;               // Taille totale des fichiers sources (en octets)
    private long statPixSize;               // Nombre total de pixels
    private long statMaxSize;               // taille du plus gros fichier trouv
+   private boolean firstFile;              // true tant qu'aucune image n'a t dispense du test maxRatio
    private long statTime;                  // Date de dbut
    private int statMaxWidth, statMaxHeight, statMaxDepth, statMaxNbyte; // info sur le plus gros fichier trouv
 
    boolean stopped = false;
 
-   public BuilderIndex(Context context) { super(context); }
+   public BuilderIndex(Context context) {
+      super(context);
+      tileLocks = new Object[256];
+      for( int i=0; i<tileLocks.length; i++ ) tileLocks[i] = new Object();
+   }
 
    public Action getAction() { return Action.INDEX; }
 
@@ -83,7 +96,7 @@ public class BuilderIndex extends Builder {
 
    /** Ajout d'un fichier  la liste des fichiers images sources carts lors de l'indexation
     * suivi de la raison de son viction. */
-   private void addBadFile(String file, String error) {
+   private synchronized void addBadFile(String file, String error) {
       if( badFiles==null ) badFiles = new ArrayList<>();
       badFiles.add( file+(error!=null && error.length()>0 ? " => "+error:"") );
    }
@@ -138,6 +151,14 @@ public class BuilderIndex extends Builder {
       flagAppend = !context.isExistingIndexDir();
       if( !flagAppend ) context.info("Pre-existing HpxFinder index => will add new images only...");
       
+      // Format de l'index : on conserve celui d'un index pr-existant
+      if( !flagAppend ) {
+         boolean bin = HpxFinderIndex.find( context.getHpxFinderPath() )!=null;
+         if( context.binIndex && !bin ) context.warning("Pre-existing JSON HpxFinder index => binary index option ignored");
+         context.binIndex = bin;
+      }
+      if( context.binIndex ) context.info("HpxFinder index stored in a single binary file");
+      
       // Tests order
       int order = context.getOrder();
       double originalPixelRes=-1;
@@ -240,27 +261,76 @@ public class BuilderIndex extends Builder {
       borderSize = context.getBorderSize();
       maxRatio = context.getMaxRatio();
       maxOverlays = 0;
+      nbFiles = new AtomicInteger();
 
       File f = new File(output);
       if (!f.exists()) f.mkdir();
       String pathDest = context.getHpxFinderPath();
 
-      create(input, pathDest, order);
+      // Index binaire => construction par runs tris puis fusion
+      context.closeHpxFinderIndex();
+      if( context.binIndex ) {
+         indexWriter = new HpxFinderIndex.Writer(HpxFinderIndex.getFilename(pathDest, order),
+               order, HpxFinderIndex.Writer.DEFAULTRUNSIZE);
+      }
+      // Indexation parallle ?
+      int nbThread = getNbThread();
+      if( nbThread>1 ) {
+         context.info("Indexing thanks to "+nbThread+" threads");
+         executor = new ThreadPoolExecutor(nbThread, nbThread, 0L, TimeUnit.MILLISECONDS,
+               new ArrayBlockingQueue<Runnable>(nbThread*4), new ThreadPoolExecutor.CallerRunsPolicy());
+      }
+      try {
+         try {
+            create(input, pathDest, order);
+         } finally {
+            if( executor!=null ) {
+               executor.shutdown();
+               while( !executor.awaitTermination(1, TimeUnit.SECONDS) );
+               executor=null;
+            }
+         }
+         if( indexWriter!=null ) {
+            context.info("Merging binary HpxFinder index...");
+            indexWriter.close();
+            maxOverlays = indexWriter.getMaxOverlays();
+            context.info("Binary HpxFinder index: "+indexWriter.getNbEntries()+" entries");
+         }
+      } catch( Exception e ) {
+         if( indexWriter!=null ) indexWriter.abort();
+         throw e;
+      } finally { indexWriter=null; }
       
       context.addPixelIn(statPixSize);
       context.addMaxImgSize(statMaxWidth, statMaxHeight, statMaxDepth, statMaxNbyte);
    }
 
+   // Nombre de threads d'indexation : la limite utilisateur, sinon le nombre de processeurs
+   private int getNbThread() {
+      int nbThread = context.getMaxNbThread();
+      if( nbThread<=0 ) nbThread = Runtime.getRuntime().availableProcessors();
+      return Math.max(1,nbThread);
+   }
+
    // Initialisation des statistiques
    private void initStat() {
       statNbFile = statNbZipFile = statBlocFile = 0;
       statPixSize=statMemFile = 0;
       statMaxSize = -1;
+      firstFile = true;
       statTime = System.currentTimeMillis();
    }
 
+   // Retourne true pour la seule premire image traite (dispense du test maxRatio),
+   // false pour toutes les suivantes, quel que soit le nombre de threads d'indexation
+   private synchronized boolean takeFirstFile() {
+      if( !firstFile ) return false;
+      firstFile=false;
+      return true;
+   }
+
    // Mise  jour des stats
-   private void updateStat(File f,int code, int width,int height,int depth,int nbyte,int deltaBlocFile) {
+   private synchronized void updateStat(File f,int code, int width,int height,int depth,int nbyte,int deltaBlocFile) {
       statNbFile++;
       statBlocFile += deltaBlocFile;
       if( (code & Fits.GZIP) !=0 ) statNbZipFile++;
@@ -289,35 +359,11 @@ public class BuilderIndex extends Builder {
          throws IOException {
 
       try {
-         // Dtermination d'un nom de produit  partir du filename
-         // 1.Suppression du path
-         int o1 = filename.lastIndexOf('/');
-         int o1b = filename.lastIndexOf('\\');
-         if( o1b>o1 ) o1=o1b;
-
-         // 2.Suppression d'une extension ?
-         int o2 = filename.lastIndexOf('.');
-
-         // 3.Suppression du suffixe [x,y-wxh] si ncessaire (dans le cas o il n'y a pas d'extension
-         // car sinon ce suffixe aura dj t supprim)
-         if( o2==-1 || o2<=o1 ) {
-            int o3 = filename.charAt(filename.length()-1)==']' ? filename.lastIndexOf('['):-1;
-            if( o3>o2 ) o2=o3;
-         }
-
-         if( o2==-1 || o2<=o1 ) o2 = filename.length();
-         String name = filename.substring(o1+1,o2);
-
-         if( fitsVal==null ) fitsVal="";
-
-         String line = "{ \"name\": \""+name+"\", \"path\": \""+filename+"\", " +
-               "\"ra\": \""+center.al+"\", \"dec\": \""+center.del+"\", " +
-               "\"cellmem\": \""+cellMem+"\", " +
-               "\"stc\": \""+stc+"\""+fitsVal+" }\n";
+         String line = getLine(filename, center, cellMem, stc, fitsVal)+"\n";
          
          // Estimation du nombre d'entres
          int nbEntries = (int)( out.length()/line.length()) +1;
-         if( maxOverlays<nbEntries ) maxOverlays=nbEntries;
+         updateMaxOverlays(nbEntries);
 
          if( flagAppend ) out.seek( out.length() );
          else {
@@ -340,6 +386,39 @@ public class BuilderIndex extends Builder {
       } finally { if( out!=null ) out.close(); }
    }
    
+   private synchronized void updateMaxOverlays(int nbEntries) {
+      if( maxOverlays<nbEntries ) maxOverlays=nbEntries;
+   }
+   
+   // Description JSON d'un fichier d'origine (une ligne d'une tuile d'index, sans le \n final)
+   private String getLine(String filename, Coord center, long cellMem, String stc, String fitsVal) {
+         // Dtermination d'un nom de produit  partir du filename
+         // 1.Suppression du path
+         int o1 = filename.lastIndexOf('/');
+         int o1b = filename.lastIndexOf('\\');
+         if( o1b>o1 ) o1=o1b;
+
+         // 2.Suppression d'une extension ?
+         int o2 = filename.lastIndexOf('.');
+
+         // 3.Suppression du suffixe [x,y-wxh] si ncessaire (dans le cas o il n'y a pas d'extension
+         // car sinon ce suffixe aura dj t supprim)
+         if( o2==-1 || o2<=o1 ) {
+            int o3 = filename.charAt(filename.length()-1)==']' ? filename.lastIndexOf('['):-1;
+            if( o3>o2 ) o2=o3;
+         }
+
+         if( o2==-1 || o2<=o1 ) o2 = filename.length();
+         String name = filename.substring(o1+1,o2);
+
+         if( fitsVal==null ) fitsVal="";
+
+         return "{ \"name\": \""+name+"\", \"path\": \""+filename+"\", " +
+               "\"ra\": \""+center.al+"\", \"dec\": \""+center.del+"\", " +
+               "\"cellmem\": \""+cellMem+"\", " +
+               "\"stc\": \""+stc+"\""+fitsVal+" }";
+   }
+   
    // Recherche rapide d'une chaine dans le fichier out
    // Charge tout d'abord, puis compare ensuite.
    private boolean checkIn(RandomAccessFile out, String line) throws IOException {
@@ -369,16 +448,15 @@ public class BuilderIndex extends Builder {
       if (list == null) return true;
       
       // Limitation du nombre de fichiers dans le cas d'un Pilot
-      int nbPilot = context.nbPilot;
+      final int nbPilot = context.nbPilot;
 
       int i=0;
-      int nbFiles=0;
       
       context.setProgress(0,list.length-1);
       for( File file : list ) {
          
          // S'agit-il d'un Pilot ?
-         if( nbPilot>=0 && nbFiles>nbPilot ) {
+         if( nbPilot>=0 && nbFiles.get()>nbPilot ) {
             context.warning("Test Pilot limited to "+nbPilot+" images => partial HiPS");
             return false;
          }
@@ -386,89 +464,19 @@ public class BuilderIndex extends Builder {
          if( context.isTaskAborting() ) throw new Exception("Task abort !");
          context.setProgress(i++);
          if( !context.isInputFile && file.isDirectory() ) { dir.add(file); continue; }
-         currentfile = file.getPath();
-         
-         Fits fitsfile = new Fits();
-         boolean flagDefaultHDU = hdu==null;
-         boolean flagAllHDU = hdu!=null && hdu.length>0 && hdu[0]==-1;
-         int cellSize = context.getPartitioning();
-         int firstDepth=0;
          
-         // Multi Extension ou non ?
-         for( int j=0; flagAllHDU || flagDefaultHDU ||  j<hdu.length; j++ ) {
-            int ext = flagDefaultHDU ? 0 : flagAllHDU ? j : hdu[j];
-
-            // L'image sera mosaique en cellSize x cellSize pour viter de
-            // saturer la mmoire par la suite
-            try {
-               int code = fitsfile.loadHeaderFITS(currentfile+ (ext==0?"":"["+ext+"]"));
-               if( flagAllHDU && (code & Fits.HDU0SKIP) != 0 ) continue;
-
-               // S'agit-il d'une image calibre ?
-               if( fitsfile.getCalib()==null ) {
-                  if( flagDefaultHDU ) break;
-                  else continue;
+         // Mode parallle => l'indexation du fichier est confie au pool
+         // (l'appelant l'effectue lui-mme si la file d'attente est pleine)
+         if( executor!=null ) {
+            executor.execute( new Runnable() {
+               public void run() {
+                  if( context.isTaskAborting() ) return;
+                  if( nbPilot>=0 && nbFiles.get()>nbPilot ) return;
+                  try { indexFile(file, pathDest, order); }
+                  catch( Throwable e ) { e.printStackTrace(); }
                }
-               
-              nbFiles++;
-
-               if( firstDepth==0 ) firstDepth=fitsfile.depth;
-               else if( fitsfile.depth!=firstDepth ) continue;          // Les cubes qui n'ont pas le meme nombre de plans que le 1er cube sont ignores
-
-               Aladin.trace(4,"HiPS indexing "+currentfile+ (ext==0?"":"["+ext+"]..."));
-
-               try {
-
-                  // Test sur l'image entire
-                  if( !partitioning ) {
-                     testAndInsert(fitsfile, pathDest, currentfile, null, order);
-                     updateStat(file, code, fitsfile.width, fitsfile.height, fitsfile.depth, fitsfile.bitpix==0 ? 4 : Math.abs(fitsfile.bitpix) / 8, 0);
-
-                  // Dcoupage en blocs de tailles fixes sauf les derniers des lignes et des colonnes
-                  // pour qu'ils ne soient pas trop petits
-                  } else {
-                     //                     context.info("Scanning by cells "+cellSize+"x"+cellSize+"...");
-                     int width = fitsfile.width - borderSize[3];
-                     int height = fitsfile.height - borderSize[2];
-                     
-                     for( int x=borderSize[1]; x<width; x+=fitsfile.widthCell ) {
-
-                        for( int y=borderSize[0]; y<height; y+=fitsfile.heightCell ) {
-                           fitsfile.widthCell = x + cellSize > width || width-x<2*cellSize ? 
-                                 width - x : cellSize;
-                           fitsfile.heightCell = y + cellSize > height || height-y<2*cellSize ? 
-                                 height - y : cellSize;
-                           
-//                           if( fitsfile.widthCell!=cellSize || fitsfile.heightCell!=cellSize ) {
-//                              System.out.println(currentfile +" "+x+","+y+" "+fitsfile.widthCell+"x"+fitsfile.heightCell);
-//                           }
-                           int depth = fitsfile.depth;
-                           fitsfile.depthCell = fitsfile.depth = 1;   // On considre qu'une seule tranche marchera pour toute
-                           fitsfile.xCell=x;
-                           fitsfile.yCell=y;
-                           fitsfile.zCell=0;
-                           fitsfile.ext = ext;
-                           String currentCell = fitsfile.getCellSuffix();
-                           testAndInsert(fitsfile, pathDest, currentfile, currentCell, order);
-                           fitsfile.depthCell = fitsfile.depth = depth;   // Pour mettre  jour les stats correctement
-                        }
-                     }
-
-
-                     updateStat(file, code, width, height, fitsfile.depth, fitsfile.bitpix==0 ? 4 : Math.abs(fitsfile.bitpix) / 8, 1);
-                  }
-               } catch( Exception e1 ) {
-                  addBadFile(currentfile,e1.getMessage());
-                  break;
-               }
-            } catch( MyInputStreamCachedException e ) {
-               context.taskAbort();
-            }  catch (Exception e) {
-               Aladin.trace(3,e.getMessage() + " " + currentfile);
-               break;
-            }
-            if( flagDefaultHDU ) break;
-         }
+            });
+         } else indexFile(file, pathDest, order);
       }
 
       list=null;
@@ -488,6 +496,93 @@ public class BuilderIndex extends Builder {
       return true;
    }
    
+   // Indexation d'un fichier (toutes les HDU concernes). Peut tre appele
+   // simultanment par plusieurs threads (cf. -maxThread)
+   private void indexFile(File file, String pathDest, int order) throws Exception {
+      String currentfile = file.getPath();
+      Fits fitsfile = new Fits();
+      boolean flagDefaultHDU = hdu==null;
+      boolean flagAllHDU = hdu!=null && hdu.length>0 && hdu[0]==-1;
+      int cellSize = context.getPartitioning();
+      int firstDepth=0;
+      
+      // Multi Extension ou non ?
+      for( int j=0; flagAllHDU || flagDefaultHDU ||  j<hdu.length; j++ ) {
+         int ext = flagDefaultHDU ? 0 : flagAllHDU ? j : hdu[j];
+
+         // L'image sera mosaique en cellSize x cellSize pour viter de
+         // saturer la mmoire par la suite
+         try {
+            int code = fitsfile.loadHeaderFITS(currentfile+ (ext==0?"":"["+ext+"]"));
+            if( flagAllHDU && (code & Fits.HDU0SKIP) != 0 ) continue;
+
+            // S'agit-il d'une image calibre ?
+            if( fitsfile.getCalib()==null ) {
+               if( flagDefaultHDU ) break;
+               else continue;
+            }
+            
+           nbFiles.incrementAndGet();
+
+            if( firstDepth==0 ) firstDepth=fitsfile.depth;
+            else if( fitsfile.depth!=firstDepth ) continue;          // Les cubes qui n'ont pas le meme nombre de plans que le 1er cube sont ignores
+
+            Aladin.trace(4,"HiPS indexing "+currentfile+ (ext==0?"":"["+ext+"]..."));
+
+            try {
+
+               // Test sur l'image entire
+               if( !partitioning ) {
+                  testAndInsert(fitsfile, pathDest, currentfile, null, order);
+                  updateStat(file, code, fitsfile.width, fitsfile.height, fitsfile.depth, fitsfile.bitpix==0 ? 4 : Math.abs(fitsfile.bitpix) / 8, 0);
+
+               // Dcoupage en blocs de tailles fixes sauf les derniers des lignes et des colonnes
+               // pour qu'ils ne soient pas trop petits
+               } else {
+                  //                     context.info("Scanning by cells "+cellSize+"x"+cellSize+"...");
+                  int width = fitsfile.width - borderSize[3];
+                  int height = fitsfile.height - borderSize[2];
+                  
+                  for( int x=borderSize[1]; x<width; x+=fitsfile.widthCell ) {
+
+                     for( int y=borderSize[0]; y<height; y+=fitsfile.heightCell ) {
+                        fitsfile.widthCell = x + cellSize > width || width-x<2*cellSize ? 
+                              width - x : cellSize;
+                        fitsfile.heightCell = y + cellSize > height || height-y<2*cellSize ? 
+                              height - y : cellSize;
+                        
+//                           if( fitsfile.widthCell!=cellSize || fitsfile.heightCell!=cellSize ) {
+//                              System.out.println(currentfile +" "+x+","+y+" "+fitsfile.widthCell+"x"+fitsfile.heightCell);
+//                           }
+                        int depth = fitsfile.depth;
+                        fitsfile.depthCell = fitsfile.depth = 1;   // On considre qu'une seule tranche marchera pour toute
+                        fitsfile.xCell=x;
+                        fitsfile.yCell=y;
+                        fitsfile.zCell=0;
+                        fitsfile.ext = ext;
+                        String currentCell = fitsfile.getCellSuffix();
+                        testAndInsert(fitsfile, pathDest, currentfile, currentCell, order);
+                        fitsfile.depthCell = fitsfile.depth = depth;   // Pour mettre  jour les stats correctement
+                     }
+                  }
+
+
+                  updateStat(file, code, width, height, fitsfile.depth, fitsfile.bitpix==0 ? 4 : Math.abs(fitsfile.bitpix) / 8, 1);
+               }
+            } catch( Exception e1 ) {
+               addBadFile(currentfile,e1.getMessage());
+               break;
+            }
+         } catch( MyInputStreamCachedException e ) {
+            context.taskAbort();
+         }  catch (Exception e) {
+            Aladin.trace(3,e.getMessage() + " " + currentfile);
+            break;
+         }
+         if( flagDefaultHDU ) break;
+      }
+   }
+   
    private void testAndInsert(Fits fitsfile, String pathDest, String currentFile,
          String suffix, int order) throws Exception {
       String hpxname;
@@ -536,7 +631,8 @@ public class BuilderIndex extends Builder {
       
       // On teste le rapport largeur/longeur du pixel si ncessaire
       // sauf s'il n'y a qu'une image ou que la projection est CAR
-      if( !isRECT && maxRatio>0 && statNbFile>0 ) {
+      boolean first = takeFirstFile();
+      if( !isRECT && maxRatio>0 && !first ) {
          double w = Coord.getDist(corner[0], corner[1])/fitsfile.width;
          double h = Coord.getDist(corner[1], corner[2])/fitsfile.height;
          //         System.out.println("w="+Coord.getUnit(w)+" h="+Coord.getUnit(h));
@@ -632,6 +728,7 @@ public class BuilderIndex extends Builder {
       }
       
       // pour chacun des losanges concerns
+      int fileId=-1;
       for (int i = 0; i < npixs.length; i++) {
          long npix = npixs[i];
          
@@ -641,16 +738,26 @@ public class BuilderIndex extends Builder {
          // vrifie la validit du losange trouv
          if( !isInImage(fitsfile, Util.getCorners(order, npix), isRECT)) continue;
 
-         hpxname = cds.tools.Util.concatDir(pathDest,Util.getFilePath("", order,npix));
-         out = openFile(hpxname);
-
          // ajoute le chemin du fichier Source FITS,
          // suivi ventuellement de la dfinition de la cellule en question
          // (mode mosaic), void du HDU particulier
          String filename = currentFile + (suffix == null ? "" : suffix);
 
-         createAFile(out, filename, center, cellMem, stc.toString(), fitsVal);
-         out.close();
+         // Index binaire => le fichier n'est enregistr qu'une seule fois
+         if( indexWriter!=null ) {
+            if( fileId==-1 ) fileId = indexWriter.addFile(filename, cellMem, 
+                  getLine(filename, center, cellMem, stc.toString(), fitsVal));
+            indexWriter.add(npix, fileId);
+            continue;
+         }
+
+         // Une mme tuile d'index ne peut tre complte que par un seul thread  la fois
+         hpxname = cds.tools.Util.concatDir(pathDest,Util.getFilePath("", order,npix));
+         synchronized( tileLocks[ (int)(npix % tileLocks.length) ] ) {
+            out = openFile(hpxname);
+            createAFile(out, filename, center, cellMem, stc.toString(), fitsVal);
+            out.close();
+         }
       }
    }
 
@@ -484,6 +484,9 @@ public class BuilderMirror extends BuilderRunner {
   
    }
    
+   // Le nombre de threads est ajust dynamiquement en fonction du dbit => mode fifo historique
+   protected boolean isForkJoin() { return false; }
+   
    public void build() throws Exception {
       bidon = new Fits();
       initStat();
@@ -884,7 +887,7 @@ public class BuilderMirror extends BuilderRunner {
    
    boolean oneWaiting() {
       try {
-         Iterator<ThreadBuilder> it = threadList.iterator();
+         Iterator<Worker> it = threadList.iterator();
          while( it.hasNext() ) if( it.next().isWaitingAndUsable(false) ) return true;
       } catch( Exception e ) { }
       return false;
@@ -25,6 +25,7 @@ import static cds.tools.Util.FS;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.nio.file.Path;
 
 import cds.aladin.Localisation;
 import cds.aladin.MyInputStream;
@@ -155,7 +156,7 @@ public class BuilderMoc extends Builder {
       nbTiles=1;
    }
    
-   protected void updateStat() {
+   protected synchronized void updateStat() {
       nbTiles++;
    }
    
@@ -191,42 +192,63 @@ public class BuilderMoc extends Builder {
       
    }
 
+   // Parcours parallle des tuiles du niveau fileOrder (cf. TileTreeWalker), chaque thread
+   // alimentant son propre MOC, ces MOCs tant fusionns  la fin du parcours
    protected void generateMoc(SMoc moc, int fileOrder,String path) throws Exception {
       
       initStat();
       moc.bufferOn();
       
       File f = new File(path + Util.FS + "Norder" + fileOrder );
+      String [] sf = f.list();
+      if( sf==null || sf.length==0 ) throw new Exception("No tiles found !");
       
+      // Table xy->hpx partage par les threads => initialise au pralable
+      if( isMocHight ) context.createHealpixOrder( tileOrder );
 
-      File[] sf = f.listFiles();
-      if( sf==null || sf.length==0 ) throw new Exception("No tiles found !");
-      for( int i = 0; i < sf.length; i++ ) {
-         if( context.isTaskAborting() ) throw new Exception("Task abort !");
-         if( !sf[i].isDirectory() ) continue;
-         File[] sf1 = sf[i].listFiles();
-         for( int j = 0; j < sf1.length; j++ ) {
-            String file = sf1[j].getAbsolutePath();
+      SMoc res = new TileTreeWalker(context).walk(f.toPath(), new TileTreeWalker.Visitor<SMoc>() {
+         public SMoc create() {
+            SMoc m = new SMoc();
+            try { m.setMocOrder( moc.getMocOrder() ); } catch( Exception e ) { }
+            m.setSpaceSys( moc.getSpaceSys() );
+            m.bufferOn();
+            return m;
+         }
+
+         public void visit(SMoc m, Path p) throws Exception {
+            String file = p.toAbsolutePath().toString();
 
             long npix = Util.getNpixFromPath(file);
-            if( npix == -1 ) continue;
+            if( npix == -1 ) return;
 
             // Ecarte les fichiers n'ayant pas l'extension requise
-            String e = getExt(file);
-            if( ext == null ) ext = e;
-            else if( !ext.equals(e) ) continue;
+            if( !acceptExt( getExt(file) ) ) return;
             
             // Ecarte les frames non concernes dans le cas d'un cube>10frames
             if( frameCube>-1 ) {
-               if( getCubeFrameNumber(file)!=frameCube ) continue;
+               if( getCubeFrameNumber(file)!=frameCube ) return;
             }
 
-            generateTileMoc(moc,sf1[j], fileOrder, npix);
+            generateTileMoc(m,p.toFile(), fileOrder, npix);
          }
-      }
+
+         public void merge(SMoc m, SMoc other) throws Exception {
+            other.bufferOff();
+            m.add(other);
+         }
+      }, false);
+      
+      res.bufferOff();
+      moc.add(res);
       moc.bufferOff();
    }
    
+   // Retient la premire extension rencontre si aucune n'a t impose, et teste la conformit de e
+   private synchronized boolean acceptExt(String e) {
+      if( ext == null ) ext = e;
+      return ext.equals(e);
+   }
+   
    protected void generateTileMoc(SMoc moc,File f,int fileOrder, long npix) throws Exception {
       updateStat();
       if( isMocHight ) generateHighTileMoc(moc,fileOrder,f,npix);
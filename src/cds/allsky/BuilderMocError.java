@@ -86,43 +86,6 @@ public class BuilderMocError extends BuilderMoc {
    
    private String getDefaultExt(String path) { return "fits"; }
    
-   protected void generateMoc(SMoc moc, int fileOrder,String path) throws Exception {
-      
-      initStat();
-      moc.bufferOn();
-      
-      File f = new File(path + Util.FS + "Norder" + fileOrder );
-      
-
-      File[] sf = f.listFiles();
-      if( sf==null || sf.length==0 ) throw new Exception("No tiles found !");
-      for( int i = 0; i < sf.length; i++ ) {
-         if( context.isTaskAborting() ) throw new Exception("Task abort !");
-         if( !sf[i].isDirectory() ) continue;
-         File[] sf1 = sf[i].listFiles();
-         for( int j = 0; j < sf1.length; j++ ) {
-            String file = sf1[j].getAbsolutePath();
-
-            long npix = Util.getNpixFromPath(file);
-            if( npix == -1 ) continue;
-
-            // Ecarte les fichiers n'ayant pas l'extension requise
-            String e = getExt(file);
-            if( ext == null ) ext = e;
-            else if( !ext.equals(e) ) continue;
-            
-            // Ecarte les frames non concernes dans le cas d'un cube>10frames
-            if( frameCube>-1 ) {
-               if( getCubeFrameNumber(file)!=frameCube ) continue;
-            }
-
-            generateTileMoc(moc,sf1[j], fileOrder, npix);
-         }
-      }
-      moc.bufferOff();
-   }
-   
-
    protected void generateTileMoc(SMoc moc,File f,int fileOrder, long npix) throws Exception {
       updateStat();
       
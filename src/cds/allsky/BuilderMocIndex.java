@@ -45,7 +45,12 @@ public class BuilderMocIndex extends BuilderMoc {
       String outputFile = path + FS + Constante.FILE_MOC;
       String frame = getFrame();
       moc.setSpaceSys(frame);
-      generateMoc(moc,mocOrder, path);
+      HpxFinderIndex index = HpxFinderIndex.open(path);
+      if( index==null ) generateMoc(moc,mocOrder, path);
+      else {
+         try { generateMoc(moc,index); }
+         finally { index.close(); }
+      }
       moc.write(outputFile);
       
 // IL NE FAUT PAS CONVERTIR EN ICRS SI ON EST EN GAL CAR SINON LE BuilderTiles NE VA PAS
@@ -66,5 +71,17 @@ public class BuilderMocIndex extends BuilderMoc {
 
    }
    
+   // Gnration du MOC  partir de la liste des npix de l'index binaire
+   private void generateMoc(SMoc moc, HpxFinderIndex index) throws Exception {
+      initStat();
+      moc.bufferOn();
+      for( long npix : index.getNpixList() ) {
+         if( context.isTaskAborting() ) throw new Exception("Task abort !");
+         updateStat();
+         moc.add(index.getOrder(),npix);
+      }
+      moc.bufferOff();
+   }
+   
    public Action getAction() { return Action.MOCINDEX; }
 }
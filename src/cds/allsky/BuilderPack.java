@@ -0,0 +1,46 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.allsky;
+
+/**
+ * Regroupement des tuiles de chaque rpertoire NorderNN/DirDDDD dans un conteneur
+ * NorderNN/DirDDDD.hpk directement exploitable par Aladin (cf. HipsPack)
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+public class BuilderPack extends BuilderZip {
+
+   public BuilderPack(Context context) { super(context); }
+
+   public Action getAction() { return Action.PACK; }
+
+   public void validateContext() throws Exception {
+      validateOutput();
+      if( !context.isExistingAllskyDir() ) throw new Exception("No tile found");
+   }
+
+   // Gnration du conteneur  la place du zip
+   protected void zip(String dir) throws Exception {
+      HipsPack.write(dir);
+      if( context.isTaskAborting() ) throw new Exception("Task abort !");
+   }
+}
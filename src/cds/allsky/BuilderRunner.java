@@ -29,6 +29,11 @@ import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
 
 import cds.aladin.Aladin;
 import cds.aladin.MyInputStream;
@@ -56,7 +61,10 @@ public abstract class BuilderRunner extends Builder {
    protected double blank;
 
    // Liste des Threads de calcul
-   protected ArrayList<ThreadBuilder> threadList = new ArrayList<>();
+   protected List<Worker> threadList = new CopyOnWriteArrayList<>();
+   
+   // Pool de calcul en mode "work-stealing" (null si mode historique par fifo)
+   private ForkJoinPool pool=null;
    private ModeMerge modeMerge;
    private ModeTree modeTree;
 
@@ -322,8 +330,11 @@ public abstract class BuilderRunner extends Builder {
       long deltaNbTile = statNbTile-lastNbTile;
       lastTime=now;
       lastNbTile=statNbTile;
+      long statSteal = pool==null ? -1L : pool.getStealCount();
+      long statIdleTime = pool==null ? -1L : getIdleTime();
       context.showTilesStat(statNbThreadRunning,statNbThread,totalTime,statNbTile,statEmptyTile,statNodeTile,
-            statMinTime,statMaxTime,statAvgTime,statNodeAvgTime,0L/*getUsedMem()*/,deltaTime,deltaNbTile);
+            statMinTime,statMaxTime,statAvgTime,statNodeAvgTime,0L/*getUsedMem()*/,deltaTime,deltaNbTile,
+            statSteal,statIdleTime);
       if( Aladin.levelTrace>=3 ) {
          String s = showMem();
          if( s.length()>0 ) context.stat(s);
@@ -376,12 +387,16 @@ public abstract class BuilderRunner extends Builder {
    }
 
    // Suivi de mmoire d'un Thread particulier : retrait d'un Fits
+   // (en mode work-stealing, le Fits a pu tre calcul par un autre thread)
    protected void rmFits(Thread t,Fits f) {
       
       synchronized( memPerThread ) {
          ArrayList<Fits> m = memPerThread.get(t);
-         if( m==null ) return;
-         m.remove(f);
+         if( m!=null && m.remove(f) ) return;
+         if( pool==null || f==null ) return;
+         for( ArrayList<Fits> m1 : memPerThread.values() ) {
+            if( m1.remove(f) ) return;
+         }
       }
    }
    
@@ -573,16 +588,24 @@ public abstract class BuilderRunner extends Builder {
       // Initialisation spcifique du Builder
       buildPre();
 
-      // Lancement des threads de calcul
-      launchThreadBuilderHpx(nbThread);
+      // Calcul par un arbre de tches rcursives (work-stealing)
+      if( isForkJoin() ) buildForkJoin(nbThread);
+      
+      // Mode historique: threads de calcul aliments par la fifo
+      else {
+         
+         // Lancement des threads de calcul
+         launchThreadBuilderHpx(nbThread);
 
-      // Attente de la fin du travail
-      while( /* !stopped && */ !fifo.isEmpty() || stillWorking() ) {
-         cds.tools.Util.pause(1000);
-         infoInCaseOfProblem();
+         // Attente de la fin du travail
+         while( /* !stopped && */ !fifo.isEmpty() || stillWorking() ) {
+            cds.tools.Util.pause(1000);
+            infoInCaseOfProblem();
+         }
       }
       
       destroyThreadBuilderHpx();
+      context.closeHpxFinderIndex();
 //      if( stopped ) return;
       
       long duree = System.currentTimeMillis()-t;
@@ -625,6 +648,7 @@ public abstract class BuilderRunner extends Builder {
       }
 
       CacheFits cache = new CacheFits(maxMem,maxFile,limitMem, limitFile);
+      cache.setMapped( context.mmap );
       context.setCache( cache );
       context.info("Available RAM: "+cds.tools.Util.getUnitDisk(size)+" => RAM cache size: "+cache.getMaxFile()
           +" items / "+ cds.tools.Util.getUnitDisk( cache.getMaxMem()));
@@ -721,16 +745,19 @@ public abstract class BuilderRunner extends Builder {
    }
    
    protected void showDebugInfo() {
-      context.warning("DEBUG REPORT !!! (fifosize="+fifo.size()+")");
+      if( pool!=null ) context.warning("DEBUG REPORT !!! (pool: "+pool.getActiveThreadCount()+" active, "
+                     +pool.getQueuedTaskCount()+" queued tasks, "+pool.getStealCount()+" steals)");
+      else context.warning("DEBUG REPORT !!! (fifosize="+fifo.size()+")");
       int nbDied=0;
-      Iterator<ThreadBuilder> it = threadList.iterator();
+      Iterator<Worker> it = threadList.iterator();
       while( it.hasNext() ) {
-         ThreadBuilder tb = it.next();
+         Worker tb = it.next();
          String info = tb.getInfo();
          if( tb.isDied() ) nbDied++;
          context.warning(".thread "+tb.getName()+": "+tb.getMode()+(info!=null?" => "+info:""));
       }
       if( nbDied>0 ) context.warning(".and "+nbDied+" threads DIED");
+      if( pool!=null ) context.warning(".idle time "+cds.tools.Util.getTemps(getIdleTime()*1000L));
       CacheFits cache = context.getCache();
       if( cache!=null ) context.warning(cache.toString());
       else context.warning("No cache. FreeRAM="+cds.tools.Util.getUnitDisk(CacheFits.getFreeMem()));
@@ -799,40 +826,8 @@ public abstract class BuilderRunner extends Builder {
          // Cration des branches filles, et cumul des rsultats
       } else {
 
-         Fits fils[] = new Fits[4];
-         Item item[] = new Item[4];
-         for( int i=0; i<4; i++ ) item[i]=new Item();
-
-         int nbDelegate=0;  // Nombre de fils dlgus  d'autres threads
-         for( int i =0; i<4; i++ ) {
-            if( context.isTaskAborting() ) throw new Exception("Task abort !");
-
-            // Si je peux dlguer des calculs  d'autres threads libres, je le fais
-            // sauf pour au-moins une tuile fille
-            if( nbDelegate<3 && fifo.isEmpty() && oneWaiting() ) {
-               item[i] = addNpix(order+1,npix*4+i, z,Thread.currentThread());
-               nbDelegate++;
-               wakeUp();
-
-            } else {
-               hpx.threadBuilder.setInfo("CreateHpx go to next order => "+(order+1)+"/"+(npix*4+i)+"...");
-               fils[i] = createHpx(hpx, path,order+1,npix*4+i, z);
-            }
-         }
-
-         // Attente et rcupration des fils si besoin
-         while( !(item[0].isReady() && item[1].isReady() && item[2].isReady() && item[3].isReady()) ) {
-            hpx.threadBuilder.setWaitingChildren(true);
-            StringBuilder t = new StringBuilder();
-            for( int i=0; i<item.length; i++ ) t.append( item[i].isReady()?".": (item[i].hasBeenUsed()?"x":"o"));
-            hpx.threadBuilder.setInfo("CreateHpx still waiting children of "+order+"/"+npix+" ["+t+"]...");
-            try { Thread.currentThread().sleep(300); } catch( Exception e ) { }
-            if( context.isTaskAborting() ) throw new Exception("Task abort !");
-         }
-         hpx.threadBuilder.setWaitingChildren(false);
-         for( int i=0; i<4; i++ ) {
-            if( item[i].hasBeenUsed() ) fils[i] = item[i].getFits();
-         }
+         Fits fils[] = pool!=null ? createChildrenForkJoin(hpx,order,npix,z)
+                                  : createChildren(hpx,path,order,npix,z);
 
          hpx.threadBuilder.setInfo("createNodeHpx "+file+"...");
          try { f = createNodeHpx(file,path,order,npix,fils,z); }
@@ -846,12 +841,264 @@ public abstract class BuilderRunner extends Builder {
       return f;
    }
    
+   // Calcul des 4 fils d'un losange en mode historique: dlgation via la fifo
+   // aux threads en attente, puis attente active des rsultats
+   private Fits [] createChildren(ThreadBuilderTile hpx, String path,int order,long npix, int z) throws Exception {
+      Fits fils[] = new Fits[4];
+      Item item[] = new Item[4];
+      for( int i=0; i<4; i++ ) item[i]=new Item();
+
+      int nbDelegate=0;  // Nombre de fils dlgus  d'autres threads
+      for( int i =0; i<4; i++ ) {
+         if( context.isTaskAborting() ) throw new Exception("Task abort !");
+
+         // Si je peux dlguer des calculs  d'autres threads libres, je le fais
+         // sauf pour au-moins une tuile fille
+         if( nbDelegate<3 && fifo.isEmpty() && oneWaiting() ) {
+            item[i] = addNpix(order+1,npix*4+i, z,Thread.currentThread());
+            nbDelegate++;
+            wakeUp();
+
+         } else {
+            hpx.threadBuilder.setInfo("CreateHpx go to next order => "+(order+1)+"/"+(npix*4+i)+"...");
+            fils[i] = createHpx(hpx, path,order+1,npix*4+i, z);
+         }
+      }
+
+      // Attente et rcupration des fils si besoin
+      ThreadBuilder tb = (ThreadBuilder)hpx.threadBuilder;
+      while( !(item[0].isReady() && item[1].isReady() && item[2].isReady() && item[3].isReady()) ) {
+         tb.setWaitingChildren(true);
+         StringBuilder t = new StringBuilder();
+         for( int i=0; i<item.length; i++ ) t.append( item[i].isReady()?".": (item[i].hasBeenUsed()?"x":"o"));
+         tb.setInfo("CreateHpx still waiting children of "+order+"/"+npix+" ["+t+"]...");
+         try { Thread.currentThread().sleep(300); } catch( Exception e ) { }
+         if( context.isTaskAborting() ) throw new Exception("Task abort !");
+      }
+      tb.setWaitingChildren(false);
+      for( int i=0; i<4; i++ ) {
+         if( item[i].hasBeenUsed() ) fils[i] = item[i].getFits();
+      }
+      return fils;
+   }
+   
+   // Calcul des 4 fils d'un losange en mode work-stealing: les fils 1..3 sont
+   // empils sur la deque du thread courant (et peuvent tre vols par un thread libre),
+   // le fils 0 est calcul sur place, puis on joint les autres (un join en attente
+   // excute lui-mme d'autres tches plutt que de dormir)
+   private Fits [] createChildrenForkJoin(ThreadBuilderTile hpx,int order,long npix, int z) throws Exception {
+      
+      // Le fils 0, calcul sur place, hrite de la possibilit de suspension de la tche courante
+      // (comme en mode historique), les fils 1..3 (ventuellement vols) ne sont jamais suspendables
+      boolean suspendable = ((TileWorker)Thread.currentThread()).suspendable;
+      CellTask sub[] = new CellTask[4];
+      for( int i=0; i<4; i++ ) sub[i] = new CellTask(order+1,npix*4+i,z,false, i==0 && suspendable);
+      for( int i=3; i>0; i-- ) sub[i].fork();
+      
+      Fits fils[] = new Fits[4];
+      hpx.threadBuilder.setInfo("CreateHpx go to next order => "+(order+1)+"/"+(npix*4)+"...");
+      fils[0] = sub[0].invoke();
+      for( int i=1; i<4; i++ ) {
+         hpx.threadBuilder.setInfo("CreateHpx joining children of "+order+"/"+npix+" ["+i+"]...");
+         fils[i] = sub[i].join();
+      }
+      if( context.isTaskAborting() ) throw new Exception("Task abort !");
+      return fils;
+   }
+   
+   /** Retourne true si la construction de l'arbre doit se faire par un ForkJoinPool
+    * (work-stealing). Le mode historique (fifo + threads en attente active) est
+    * conserv pour les builders qui ajustent dynamiquement leur nombre de threads (BuilderMirror) */
+   protected boolean isForkJoin() { return true; }
+   
+   // Construction de l'arbre HEALPix par un ForkJoinPool: une tche par losange racine,
+   // chaque losange noeud fork ses 4 fils et les joint
+   private void buildForkJoin(int nbThreads) throws Exception {
+      initStat(nbThreads);
+      context.createHealpixOrder(context.getTileOrder());
+      ThreadBuilderTile.hasShape = new HashMap<>();
+      
+      pool = new ForkJoinPool(nbThreads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+         public ForkJoinWorkerThread newThread(ForkJoinPool p) { return new TileWorker(p); }
+      }, null, false);
+      
+      // La fifo ne sert plus qu' fournir les losanges racines
+      ArrayList<CellTask> roots = new ArrayList<>(fifo.size());
+      while( !fifo.isEmpty() ) {
+         Item item = fifo.removeLast();
+         CellTask task = new CellTask(item.order,item.npix,item.z,true,true);
+         roots.add( task );
+         pool.execute( task );
+      }
+      
+      // Attente de la fin du travail
+      try {
+         for( CellTask task : roots ) {
+            while( !task.isDone() ) {
+               cds.tools.Util.pause(1000);
+               infoInCaseOfProblem();
+               if( context.isTaskAborting() ) break;
+            }
+         }
+      } finally {
+         if( context.isTaskAborting() ) pool.shutdownNow();
+      }
+   }
+   
+   // Cumul des temps d'inactivit des threads du pool (en ms)
+   private long getIdleTime() {
+      long idle=0L;
+      long now=System.currentTimeMillis();
+      for( Worker w : threadList ) {
+         if( w instanceof TileWorker ) idle += ((TileWorker)w).getIdleTime(now);
+      }
+      return idle;
+   }
+   
+   /** Calcul d'un losange HEALPix (et de toute sa descendance) */
+   private class CellTask extends RecursiveTask<Fits> {
+      private static final long serialVersionUID = 1L;
+      
+      private int order;
+      private long npix;
+      private int z;
+      private boolean root;          // true s'il s'agit d'un losange racine (issu de la MOC d'ordre minimal)
+      private boolean suspendable;   // true si le thread peut tre suspendu pendant cette tche (cf. arret())
+      
+      CellTask(int order, long npix, int z, boolean root, boolean suspendable) {
+         this.order=order;
+         this.npix=npix;
+         this.z=z;
+         this.root=root;
+         this.suspendable=suspendable;
+      }
+      
+      protected Fits compute() {
+         TileWorker w = (TileWorker)Thread.currentThread();
+         boolean prevSuspendable = w.enter(suspendable);
+         Fits fits=null;
+         try {
+            if( context.isTaskAborting() ) return null;
+            Aladin.trace(4,w.getName()+" process HEALPix cell branch "+order+"/"+npix+"...");
+            fits = createHpx(w.threadBuilderTile, context.getOutputPath(), order, npix, z);
+            w.setInfo("Tile ready");
+            if( root ) {
+               rmFits(w, fits);
+               if( order==3 && z==0 ) setProgressBar((int)npix);
+            }
+            
+         } catch( Throwable e ) {
+            Aladin.trace(1,"*** "+w.getName()+" exception !!! ("+e.getMessage()+")");
+            e.printStackTrace();
+            context.taskAbort();
+            fits=null;
+         } finally { w.exit(prevSuspendable); }
+         return fits;
+      }
+   }
+   
    static final String [] MODE =  { "START","WAIT","EXEC","DIED","SUSPEND" };
    
    protected Object lockStop = new Object();
    
+   /** Etat d'un thread de calcul (pour les stats, le debug et la suspension en cas de manque de RAM) */
+   protected interface Worker {
+      String getName();
+      String getInfo();
+      String getMode();
+      void setInfo(String info);
+      boolean isDied();
+      boolean isExec();
+      boolean isSuspend();
+      boolean isWaitingAndUsable(boolean checkMem);
+      boolean arret(String info);
+      boolean reprise();
+      ThreadBuilderTile getThreadBuilderTile();
+   }
+   
+   // Classe des threads de calcul du ForkJoinPool
+   class TileWorker extends ForkJoinWorkerThread implements Worker {
+      ThreadBuilderTile threadBuilderTile;
+      private volatile int mode=ThreadBuilder.START;
+      private volatile String info;
+      private int depth=0;                // Nombre de tches imbriques en cours sur ce thread
+      private boolean suspendable=false;  // true si la tche en cours peut tre suspendue (cf. CellTask)
+      private long idleTime=0L;           // Temps cumul sans tche (ms)
+      private long lastExit=0L;           // Date de fin de la dernire tche racine
+      
+      TileWorker(ForkJoinPool p) {
+         super(p);
+         setName("Builder"+threadId++);
+         threadBuilderTile = new ThreadBuilderTile(context,BuilderRunner.this);
+         threadBuilderTile.threadBuilder = this;   // pour faire des remontes de debug
+         threadList.add(this);
+         Aladin.trace(3,"Creating "+getName());
+      }
+      
+      protected void onStart() {
+         super.onStart();
+         lastExit=System.currentTimeMillis();
+      }
+      
+      protected void onTermination(Throwable exception) {
+         mode=ThreadBuilder.DIED;
+         info="Thread died";
+         rmThread(this);
+         super.onTermination(exception);
+      }
+      
+      // Dbut d'une tche (ventuellement imbrique via un join), retourne l'tat de suspension
+      // possible de la tche englobante afin de le restituer en fin de tche (cf. exit())
+      private boolean enter(boolean taskSuspendable) {
+         boolean prev = suspendable;
+         if( depth++==0 ) {
+            long now = System.currentTimeMillis();
+            synchronized( this ) { idleTime += now-lastExit; lastExit=0L; }
+            mode=ThreadBuilder.EXEC;
+            info=null;
+         }
+         suspendable=taskSuspendable;
+         return prev;
+      }
+      
+      // Fin d'une tche, avec restitution de l'tat de suspension possible de la tche englobante
+      private void exit(boolean prevSuspendable) {
+         suspendable=prevSuspendable;
+         if( --depth==0 ) {
+            synchronized( this ) { lastExit=System.currentTimeMillis(); }
+            mode=ThreadBuilder.WAIT;
+            info="No more HEALPix cell branch to compute => thread waiting another task";
+         }
+      }
+      
+      synchronized long getIdleTime(long now) { return idleTime + (lastExit>0 ? now-lastExit : 0L); }
+      
+      public String getInfo() { return info; }
+      public String getMode() { return MODE[mode]; }
+      public void setInfo(String info) { this.info=info; }
+      public boolean isDied() { return mode==ThreadBuilder.DIED; }
+      public boolean isExec() { return mode==ThreadBuilder.EXEC; }
+      public boolean isSuspend() { return mode==ThreadBuilder.SUSPEND; }
+      public boolean isWaitingAndUsable(boolean checkMem) { return mode==ThreadBuilder.WAIT; }
+      public ThreadBuilderTile getThreadBuilderTile() { return threadBuilderTile; }
+      
+      public boolean arret(String info) {
+         if( !suspendable ) return false;
+         mode=ThreadBuilder.SUSPEND;
+         this.info=info;
+         return true;
+      }
+      
+      public boolean reprise() {
+         if( mode!=ThreadBuilder.SUSPEND ) return false;
+         mode=ThreadBuilder.EXEC;
+         info=null;
+         return true;
+      }
+   }
+   
    // Classe des threads de calcul
-   public class ThreadBuilder extends Thread {
+   public class ThreadBuilder extends Thread implements Worker {
       static final int START =0;
       static final int WAIT  =1;
       static final int EXEC  =2;
@@ -876,6 +1123,8 @@ public abstract class BuilderRunner extends Builder {
       public String getInfo() { return info; }
       
       public String getMode() { return MODE[mode]; }
+      
+      public ThreadBuilderTile getThreadBuilderTile() { return threadBuilderTile; }
 
       /** Le thread est mort */
       public boolean isDied() { return mode==DIED; }
@@ -1042,7 +1291,7 @@ public abstract class BuilderRunner extends Builder {
          
          // On rcupre d'ventuelles places libres ?
          for( int i=0; nbThreads>0 && i<threadList.size(); i++ ) {
-            ThreadBuilder tb = threadList.get(i);
+            Worker tb = threadList.get(i);
             if( tb.isDied() ) {
                ThreadBuilderTile threadBuilderTile = new ThreadBuilderTile(context,this);
                ThreadBuilder t = new ThreadBuilder(tb.getName(),threadBuilderTile);
@@ -1069,7 +1318,7 @@ public abstract class BuilderRunner extends Builder {
    protected int getNbThreads() {
       int nb=0;
       try {
-         for( ThreadBuilder tb : threadList ) {
+         for( Worker tb : threadList ) {
             if( !tb.isDied() ) nb++;
          }
       } catch( Exception e ) { return -1; }
@@ -1088,36 +1337,41 @@ public abstract class BuilderRunner extends Builder {
    
    // Demande l'arrt de tous les threads de calcul
    void destroyThreadBuilderHpx() {
-      Iterator<ThreadBuilder> it = threadList.iterator();
+      if( pool!=null ) {
+         pool.shutdown();
+         pool=null;
+         return;
+      }
+      Iterator<Worker> it = threadList.iterator();
       while( it.hasNext() ) {
-         ThreadBuilder tb = it.next();
-         tb.tue();
+         Worker tb = it.next();
+         if( tb instanceof ThreadBuilder ) ((ThreadBuilder)tb).tue();
       }
    }
    
    boolean arret(ThreadBuilderTile tbt, String info ) {
-      Iterator<ThreadBuilder> it = threadList.iterator();
+      Iterator<Worker> it = threadList.iterator();
       while( it.hasNext() ) {
-         ThreadBuilder tb = it.next();
-         if( tb.threadBuilderTile==tbt ) return tb.arret(info);
+         Worker tb = it.next();
+         if( tb.getThreadBuilderTile()==tbt ) return tb.arret(info);
       }
       return false;
    }
    
    boolean reprise(ThreadBuilderTile tbt ) {
-      Iterator<ThreadBuilder> it = threadList.iterator();
+      Iterator<Worker> it = threadList.iterator();
       while( it.hasNext() ) {
-         ThreadBuilder tb = it.next();
-         if( tb.threadBuilderTile==tbt ) return tb.reprise();
+         Worker tb = it.next();
+         if( tb.getThreadBuilderTile()==tbt ) return tb.reprise();
       }
       return false;
    }
 
    int getNbThreadRunning() {
       int n=0;
-      Iterator<ThreadBuilder> it = threadList.iterator();
+      Iterator<Worker> it = threadList.iterator();
       while( it.hasNext() ) {
-         ThreadBuilder tb = it.next();
+         Worker tb = it.next();
          if( tb.isExec() ) n++;
 //         System.out.println(tb.getName()+" mode="+tb.getMode());
       }
@@ -1126,9 +1380,9 @@ public abstract class BuilderRunner extends Builder {
 
    // Retourne true si au-moins un thread est encore en train de travailler
    boolean stillWorking() {
-      Iterator<ThreadBuilder> it = threadList.iterator();
+      Iterator<Worker> it = threadList.iterator();
       while( it.hasNext() ) {
-         ThreadBuilder tb = it.next();
+         Worker tb = it.next();
          if( tb.isExec() || tb.isSuspend() ) return true;
       }
       return false;
@@ -1136,7 +1390,7 @@ public abstract class BuilderRunner extends Builder {
    
    boolean oneWaiting() {
       try {
-         Iterator<ThreadBuilder> it = threadList.iterator();
+         Iterator<Worker> it = threadList.iterator();
          while( it.hasNext() ) if( it.next().isWaitingAndUsable(true) ) return true;
       } catch( Exception e ) { }
       return false;
@@ -1144,10 +1398,10 @@ public abstract class BuilderRunner extends Builder {
    
    void wakeUp() {
       try {
-         Iterator<ThreadBuilder> it = threadList.iterator();
+         Iterator<Worker> it = threadList.iterator();
          while( it.hasNext() ) {
-            ThreadBuilder tb = it.next();
-            if( tb.isWaitingAndUsable(false) ) tb.interrupt();
+            Worker tb = it.next();
+            if( tb instanceof ThreadBuilder && tb.isWaitingAndUsable(false) ) ((ThreadBuilder)tb).interrupt();
          }
       } catch( Exception e ) {
       }
@@ -135,21 +135,36 @@ public class BuilderSMoc extends Builder {
       mocFinder.read(hpxFinder+Util.FS+"Moc.fits");
       mocFinder.setMocOrder(hipsOrder);
       
-      long progress=0L;
       context.setProgressMax(mocFinder.getNbValues());
       
       cleanIt();
       initIt();   
       info();
       
+      // Les tuiles HpxFinder sont lues dans l'index binaire s'il existe
+      HpxFinderIndex index = context.getHpxFinderIndex();
+      if( index!=null && index.getOrder()!=hipsOrder ) {
+         context.closeHpxFinderIndex();
+         throw new Exception("Binary HpxFinder index order ["+index.getOrder()
+               +"] does not correspond to the HiPS order ["+hipsOrder+"]");
+      }
+      try {
+         extract(hpxFinder,mocFinder,index);
+      } finally { context.closeHpxFinderIndex(); }
+      writeIt();
+   }
+
+   // Parcours des tuiles HpxFinder du MOC et ajout des MOCs de chaque progniteur
+   private void extract(String hpxFinder,SMoc mocFinder,HpxFinderIndex index) throws Exception {
+      long progress=0L;
       int maxCache = 200;
       ArrayDeque<String> cache = new ArrayDeque<>(maxCache);
-      
+
       Iterator<Long> it = mocFinder.valIterator();
       while( it.hasNext() ) {
          long npix = it.next();
          String file = Util.getFilePath(hpxFinder, hipsOrder, npix);
-         HealpixProgen out = createLeave(file);
+         HealpixProgen out = index!=null ? createLeave(index,npix) : createLeave(file);
          if( out==null ) {
             context.warning("Missing HpxFinder tile "+hipsOrder+"/"+npix+" => ignored ("+file+")");
             continue;
@@ -177,7 +192,6 @@ public class BuilderSMoc extends Builder {
          }
          context.setProgress( progress++ );
       }
-      writeIt();
    }
    
    class MocParsingException extends Exception { }
@@ -252,6 +266,13 @@ public class BuilderSMoc extends Builder {
       totalTime = System.currentTimeMillis()-startTime;
    }
    
+   /** Construction d'une tuile HpxFinder  partir de l'index binaire */
+   protected HealpixProgen createLeave(HpxFinderIndex index,long npix) throws Exception {
+      HealpixProgen out = index.getProgen(npix);
+      if( out!=null ) updateStat();
+      return out;
+   }
+
    /** Construction d'une tuile HpxFinder. Lit le fichier est map les entres de l'index
     * dans une TreeMap */
    protected HealpixProgen createLeave(String file) throws Exception {
@@ -22,17 +22,15 @@
 package cds.allsky;
 
 import java.io.File;
-import java.io.FileFilter;
 import java.io.FileOutputStream;
 import java.io.RandomAccessFile;
 import java.math.BigInteger;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-import cds.tools.pixtools.Util;
-
 
 /**
  * PROTO - En cours d'laboration - mise en ZIP de tous un HiPS
@@ -60,28 +58,48 @@ public class BuilderZip extends Builder {
       }
    }
    
+   // Parcours parallle des rpertoires Norder*/Dir* (cf. TileTreeWalker), chacun donnant un Dir*.zip
    protected void zip() throws Exception {
-      String path = context.getOutputPath();
-      int maxOrder = Util.getMaxOrderByPath(path);
-
-      for( int order=0; order<=maxOrder; order++ ) {
-         File nOrder = new File(path+"/Norder"+order);
-         if( nOrder.isDirectory() ) {
-            File [] dirs = nOrder.listFiles( new FileFilter() {
-               public boolean accept(File pathname) {
-                  String name = pathname.getName();
-                  if( !name.startsWith("Dir") ) return false;
-                  try { Integer.parseInt( name.substring(3) ); } catch( Exception e ) { return false; }
-                  return true;
-               }
-            });
-            for( File dir : dirs ) { {
-               zip( dir.getCanonicalPath() );
-               // IL FAUDRAIT ICI SUPPRIMER L'ARBORESCENCE CORRESPONDANTE
-            }
-            }
+      Path root = new File( context.getOutputPath() ).toPath();
+      
+      int [] n = new TileTreeWalker(context).walk(root, new TileTreeWalker.Visitor<int []>() {
+         public int [] create() { return new int[1]; }
+         
+         // Seuls les Norder* et leurs Dir* sont parcourus, chaque Dir* tant ainsi une tche distincte
+         public boolean accept(Path dir) { return isDir(root,dir) || isOrder(root,dir); }
+         
+         // Les tuiles elles-mmes sont traites globalement en fin de rpertoire (cf. leave())
+         public void visit(int [] acc, Path p) { }
+         
+         public void leave(int [] acc, Path dir) throws Exception {
+            if( !isDir(root,dir) ) return;
+            zip( dir.toFile().getCanonicalPath() );
+            // IL FAUDRAIT ICI SUPPRIMER L'ARBORESCENCE CORRESPONDANTE
+            acc[0]++;
          }
-      }
+         
+         public void merge(int [] acc, int [] other) { acc[0]+=other[0]; }
+      }, false);
+      
+      context.info(getAction()+": "+n[0]+" tile directories processed");
+   }
+   
+   // Retourne true s'il s'agit d'un rpertoire root/NorderNN
+   static private boolean isOrder(Path root,Path dir) {
+      return root.equals( dir.getParent() ) && isNumbered(dir,"Norder");
+   }
+   
+   // Retourne true s'il s'agit d'un rpertoire root/NorderNN/DirDDDD
+   static private boolean isDir(Path root,Path dir) {
+      return isNumbered(dir,"Dir") && isOrder(root,dir.getParent());
+   }
+   
+   // Retourne true si le nom du fichier est de la forme prefixNNN
+   static private boolean isNumbered(Path p,String prefix) {
+      String name = p.getFileName().toString();
+      if( !name.startsWith(prefix) ) return false;
+      try { Integer.parseInt( name.substring(prefix.length()) ); } catch( Exception e ) { return false; }
+      return true;
    }
    
    static final int ENTRYSIZE = 50;
@@ -104,7 +122,7 @@ public class BuilderZip extends Builder {
 
    // gzip (resp. gunzip) du fichier indiqu. 
    // Dans le cas o un fichier est dj gzipp (resp. gunzipp), le fichier est simplement ignor
-   private void zip(String dir) throws Exception {
+   protected void zip(String dir) throws Exception {
       File [] files = (new File(dir)).listFiles();
       if( files==null ) return;
       
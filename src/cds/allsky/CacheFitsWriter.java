@@ -48,14 +48,12 @@ public class CacheFitsWriter extends CacheFits {
    
    /** Ajout direct d'un Fits dans la gestion du cache */
    public void addFits(String filename,Fits fits) throws Exception {
-      synchronized( lockObj ) {
-         // On s'assure qu'il va y avoir assez de place pour ajouter un nouveau fits dans le cache
-         if( isOver() ) clean();
-         FitsFile f = new FitsFile();
-         f.fits = fits;
-         map.put(filename,f);
-         statNbOpen++;
-      }
+      // On s'assure qu'il va y avoir assez de place pour ajouter un nouveau fits dans le cache
+      if( isOver() ) clean();
+      FitsFile f = new FitsFile();
+      f.fits = fits;
+      insert(filename,f);
+      statNbOpen.incrementAndGet();
    }
 
    
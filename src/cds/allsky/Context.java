@@ -198,6 +198,8 @@ public class Context {
    
    protected boolean trim=false;            // true s'il faut l'appliquer
    protected boolean gzip=false;            // true s'il faut l'appliquer
+   protected boolean mmap=false;            // true si les images originales sont mappes plutt que charges en mmoire
+   protected boolean binIndex=false;        // true si l'index HpxFinder doit tre gnr sous la forme d'un unique fichier binaire
 
 
    public Context() { 
@@ -1711,6 +1713,26 @@ public class Context {
       return false;
    }
 
+   private HpxFinderIndex hpxFinderIndex=null;    // Index HpxFinder binaire ouvert en lecture
+   private boolean hpxFinderIndexChecked=false;   // true si la prsence de l'index binaire a dj t teste
+
+   /** Retourne l'index HpxFinder binaire (ouvert une seule fois et partag par les threads),
+    * null si l'index est au format JSON (un fichier par tuile) */
+   protected synchronized HpxFinderIndex getHpxFinderIndex() throws Exception {
+      if( !hpxFinderIndexChecked ) {
+         hpxFinderIndex = HpxFinderIndex.open( getHpxFinderPath() );
+         hpxFinderIndexChecked=true;
+      }
+      return hpxFinderIndex;
+   }
+
+   /** Fermeture de l'index HpxFinder binaire s'il a t ouvert */
+   protected synchronized void closeHpxFinderIndex() {
+      if( hpxFinderIndex!=null ) try { hpxFinderIndex.close(); } catch( Exception e ) { }
+      hpxFinderIndex=null;
+      hpxFinderIndexChecked=false;
+   }
+
    /** Positionne le MOC correspondant  l'index */
    protected void setMocIndex(SMoc m) throws Exception {
       mocIndex=m;
@@ -1767,7 +1789,7 @@ public class Context {
    // Demande d'affichage des stats (dans le TabBuild)
    protected void showTilesStat(int statNbThreadRunning, int statNbThread, long totalTime,
          int statNbTile, int statNbEmptyTile, int statNodeTile, long statMinTime, long statMaxTime, long statAvgTime,
-         long statNodeAvgTime,long usedMem,long deltaTime,long deltaNbTile) {
+         long statNodeAvgTime,long usedMem,long deltaTime,long deltaNbTile,long statSteal,long statIdleTime) {
 
       if( statNbTile==0 ) return;
       long nbCells = getNbLowCells();
@@ -1785,6 +1807,9 @@ public class Context {
       String s=statNbTile+(statNbEmptyTile==0?"":"+"+statNbEmptyTile)+sNbCells+" tiles + "+statNodeTile+" nodes in "+Util.getTemps(totalTime*1000L)+" ("
             +pourcentNbCells+(nbTilesPerMin<=0 ? "": " "+nbTilesPerMin+" tiles/mn(="+pixPerSec+"/s) EndsIn:"+Util.getTemps(tempsTotalEstime*1000L))+") "
             +(statNbThread==0 ? "":"by "+statNbThreadRunning+"/"+statNbThread+" threads")
+            +(statSteal<0 ? "" : " steals="+statSteal)
+            +(statIdleTime<0 || statNbThread==0 || totalTime==0 ? "" 
+                  : " idle="+Math.round( (100.*statIdleTime)/(statNbThread*totalTime) )+"%")
             ;
 
       stat(s);
@@ -3175,6 +3200,19 @@ public class Context {
       aldel[1] = coo.getLat();
       return aldel;
    }
+   /** Version "ligne" de gal2ICRSIfRequired() : conversion sur place des n premires positions
+    * des tableaux al[] et del[], sans allocation par position */
+   protected void gal2ICRSIfRequired(double [] al,double [] del,int n) {
+      if( getFrame()==Localisation.ICRS ) return;
+      Astrocoo src = (Astrocoo) COO_GAL.clone();
+      Astrocoo dst = (Astrocoo) COO_EQU.clone();
+      for( int i=0; i<n; i++ ) {
+         src.set(al[i],del[i]);
+         Astrocoo.convert(src,dst);
+         al[i]  = dst.getLon();
+         del[i] = dst.getLat();
+      }
+   }
    protected double[] ICRS2galIfRequired(double al, double del) { return ICRS2galIfRequired(new double[]{al,del}); }
    protected double[] ICRS2galIfRequired(double [] aldel) {
       if( getFrame()==Localisation.ICRS ) return aldel;
@@ -3211,10 +3249,14 @@ public class Context {
    public void createHealpixOrder(int order) {
       int nside = (int) CDSHealpix.pow2(order);
       if( xy2hpx!=null && xy2hpx.length == nside*nside ) return;  // dja fait
-      xy2hpx = new int[nside * nside];
-      hpx2xy = new int[nside * nside];
-      fillUp(xy2hpx, nside, null);
-      for (int i = 0; i < xy2hpx.length; i++) hpx2xy[xy2hpx[i]] = i;
+      
+      // Tables construites avant d'tre publies (peuvent tre utilises par d'autres threads)
+      int [] xy = new int[nside * nside];
+      int [] hpx = new int[nside * nside];
+      fillUp(xy, nside, null);
+      for (int i = 0; i < xy.length; i++) hpx[xy[i]] = i;
+      hpx2xy = hpx;
+      xy2hpx = xy;
    }
 
    /**
@@ -74,7 +74,7 @@ public class ContextGui extends Context {
    // Demande d'affichage des stats (dans le TabBuild)
    protected void showTilesStat(int statNbThreadRunning, int statNbThread, long totalTime,
          int statNbTile, int statNbEmptyTile, int statNodeTile, long statMinTime, long statMaxTime, long statAvgTime,
-         long statNodeAvgTime,long usedMem,long deltaTime,long deltaNbTile) {
+         long statNodeAvgTime,long usedMem,long deltaTime,long deltaNbTile,long statSteal,long statIdleTime) {
 
       if( statNbTile==0 ) return;
       
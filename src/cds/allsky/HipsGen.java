@@ -554,6 +554,8 @@ public class HipsGen {
             else if( ParamOption.clean.equals(arg) )   { force=true; po=ParamOption.clean; }
             else if( ParamOption.trim.equals(arg) )    { trim=true; po=ParamOption.trim; }
             else if( ParamOption.gzip.equals(arg) )    { gzip=true; po=ParamOption.gzip; }
+            else if( ParamOption.mmap.equals(arg) )    { context.mmap=true; po=ParamOption.mmap; }
+            else if( ParamOption.binindex.equals(arg) ) { context.binIndex=true; po=ParamOption.binindex; }
             else if( ParamOption.hhhcar.equals(arg) )  { flagHHHcar=true; po=ParamOption.hhhcar; }
             else if( ParamOption.nice.equals(arg) )    { context.mirrorDelay=500; po=ParamOption.nice; }
             else if( ParamOption.notouch.equals(arg) ) { context.notouch=true; po=ParamOption.notouch; }
@@ -591,6 +593,7 @@ public class HipsGen {
                     if( a==Action.PROGEN ) a=Action.DETAILS;   // Pour compatibilit
                     if( a==Action.MIRROR ) flagMirror=true;
                     if( a==Action.ZIP )    flagZip=true;
+                    if( a==Action.PACK )   flagZip=true;
                     if( a==Action.UPDATE ) flagUpdate=true;
                     if( a==Action.GUNZIP ) flagGunzip=true;
                     if( a==Action.MAP )    flagHealpixMap=true;
@@ -686,7 +689,9 @@ public class HipsGen {
                 }
                 actions.add(Action.CHECKCODE);
                 
-                if( !context.isColor() && !flagMapFits ) actions.add(Action.DETAILS);
+                // Pas de DETAILS par dfaut avec un index binaire : la table des dtails
+                // n'est exploitable qu'avec des tuiles JSON au dernier niveau
+                if( !context.isColor() && !flagMapFits && !context.binIndex ) actions.add(Action.DETAILS);
 //                actions.add(Action.STMOC);
             }
 
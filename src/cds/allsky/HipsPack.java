@@ -0,0 +1,324 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.allsky;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cds.tools.pixtools.Util;
+
+/**
+ * Conteneur de tuiles HiPS "packes" : toutes les tuiles d'un rpertoire NorderNN/DirDDDD
+ * sont concatnes dans un unique fichier NorderNN/DirDDDD.hpk, prcdes d'un index binaire
+ * tri permettant de retrouver chaque tuile sans ouvrir un fichier par tuile.
+ *
+ * Format (entiers big-endian) :
+ *    MAGIC "HPK1" (4 octets), nombre d'entres (int)
+ *    n entres de ENTRYSIZE octets tries par npix, z, ext :
+ *       npix (long), z (int, 0 si pas de cube), ext (8 octets ASCII complts par des 0),
+ *       offset de la tuile dans le conteneur (long), taille de la tuile (int)
+ *    les tuiles elles-mmes, dans l'ordre de l'index
+ *
+ * Ct criture : cf. write(...) utilis par l'action PACK (BuilderPack)
+ * Ct lecture : une instance par HiPS local mappe en mmoire les conteneurs au fur et
+ *  mesure des besoins et sert les tuiles par simple dcoupage (cf. getTile(...))
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+public final class HipsPack {
+
+   static public final String EXT = ".hpk";
+   static private final byte [] MAGIC = { 'H','P','K','1' };
+   static private final int EXTSIZE = 8;
+   static private final int ENTRYSIZE = 8+4+EXTSIZE+8+4;
+   static private final int HEADSIZE = 8;
+   static private final long MAXSEGMENT = 1L<<30;   // Taille max d'un segment mapp
+
+   private String root;                                        // Rpertoire racine du HiPS
+   private ConcurrentHashMap<String,Container> containers;     // Conteneurs dj ouverts (cl: NorderNN/DirDDDD)
+
+   /** Lecture des conteneurs d'un HiPS local */
+   public HipsPack(String root) {
+      this.root=root;
+      containers = new ConcurrentHashMap<>();
+   }
+
+   /** Retourne true si le HiPS local dispose de conteneurs de tuiles packes. On se contente
+    * de regarder le premier rpertoire NorderNN trouv. */
+   static public boolean isPacked(String root) {
+      File [] orders = (new File(root)).listFiles();
+      if( orders==null ) return false;
+      for( File order : orders ) {
+         if( !order.getName().startsWith("Norder") || !order.isDirectory() ) continue;
+         String [] list = order.list();
+         if( list==null ) continue;
+         for( String name : list ) if( name.startsWith("Dir") && name.endsWith(EXT) ) return true;
+         return false;
+      }
+      return false;
+   }
+
+   /** Retourne la tuile (contenu brut du fichier) ou null si elle n'est pas dans un conteneur
+    * @param order ordre HEALPix de la tuile
+    * @param npix numro HEALPix de la tuile
+    * @param z indice de la frame dans le cas d'un cube (0 sinon)
+    * @param ext extension du fichier de la tuile (ex: fits, png, jpg)
+    */
+   public byte [] getTile(int order, long npix, int z, String ext) throws Exception {
+      String key = "Norder"+order+"/Dir"+(npix/Util.DIRSIZE)*Util.DIRSIZE;
+      Container c = containers.get(key);
+      if( c==null ) {
+         synchronized( this ) {
+            c = containers.get(key);
+            if( c==null ) {
+               File f = new File(root+"/"+key+EXT);
+               c = f.isFile() && !isStale(f) ? new Container(f) : Container.NONE;
+               containers.put(key,c);
+            }
+         }
+      }
+      return c.get(npix,z,ext);
+   }
+
+   /** Retourne true si le conteneur est prim, c..d. plus ancien que le rpertoire
+    * de tuiles correspondant (tuiles ajoutes ou supprimes) ou que l'une des tuiles
+    * de ce rpertoire (tuiles regnres depuis le PACK) => lecture des fichiers */
+   static public boolean isStale(File pack) {
+      long date = pack.lastModified();
+      String s = pack.getPath();
+      File dir = new File( s.substring(0,s.length()-EXT.length()) );
+      if( !dir.isDirectory() ) return false;
+      if( dir.lastModified()>date ) return true;
+      File [] files = dir.listFiles();
+      if( files==null ) return false;
+      for( File f : files ) {
+         if( f.getName().startsWith("Npix") && f.lastModified()>date ) return true;
+      }
+      return false;
+   }
+
+   /** Libre les conteneurs (les mappings seront librs par le GC) */
+   public void close() { containers.clear(); }
+
+   /** Un conteneur mapp en mmoire */
+   static private class Container {
+      static final Container NONE = new Container();
+
+      private long [] npix;              // Index : numros HEALPix (tris)
+      private int [] z;                  // Index : frames
+      private String [] ext;             // Index : extensions
+      private int [] length;             // Index : tailles
+      private int [] segment;            // Index : numro du segment mapp
+      private int [] pos;                // Index : position dans le segment mapp
+      private MappedByteBuffer [] seg;   // Segments mapps (chacun < MAXSEGMENT, sauf tuile plus grosse)
+
+      private Container() { npix = new long[0]; }
+
+      private Container(File f) throws Exception {
+         RandomAccessFile rf = null;
+         try {
+            rf = new RandomAccessFile(f,"r");
+            FileChannel ch = rf.getChannel();
+
+            // Lecture de l'index
+            ByteBuffer head = ch.map(FileChannel.MapMode.READ_ONLY,0,HEADSIZE);
+            for( int i=0; i<MAGIC.length; i++ ) {
+               if( head.get(i)!=MAGIC[i] ) throw new Exception("Not a HiPS tile container ["+f+"]");
+            }
+            int n = head.getInt(4);
+            ByteBuffer index = ch.map(FileChannel.MapMode.READ_ONLY,HEADSIZE,(long)n*ENTRYSIZE);
+            npix = new long[n];
+            z = new int[n];
+            ext = new String[n];
+            length = new int[n];
+            segment = new int[n];
+            pos = new int[n];
+            long [] offset = new long[n];
+            byte [] e = new byte[EXTSIZE];
+            for( int i=0; i<n; i++ ) {
+               npix[i] = index.getLong();
+               z[i] = index.getInt();
+               index.get(e);
+               int m;
+               for( m=0; m<EXTSIZE && e[m]!=0; m++ );
+               ext[i] = new String(e,0,m,"US-ASCII");
+               offset[i] = index.getLong();
+               length[i] = index.getInt();
+            }
+
+            // Dcoupage des donnes en segments mapps, les tuiles tant contigus dans l'ordre de l'index
+            ArrayList<MappedByteBuffer> v = new ArrayList<>();
+            long start=0L,end=0L;
+            for( int i=0; i<n; i++ ) {
+               long fin = offset[i]+length[i];
+               if( i==0 || fin-start>MAXSEGMENT ) {
+                  if( i>0 ) v.add( ch.map(FileChannel.MapMode.READ_ONLY,start,end-start) );
+                  start=offset[i];
+               }
+               end=fin;
+               segment[i] = v.size();
+               pos[i] = (int)(offset[i]-start);
+            }
+            if( n>0 ) v.add( ch.map(FileChannel.MapMode.READ_ONLY,start,end-start) );
+            seg = v.toArray( new MappedByteBuffer[ v.size() ] );
+
+         // Les mappings restent valides aprs la fermeture du fichier
+         } finally { if( rf!=null ) rf.close(); }
+      }
+
+      private byte [] get(long npix1, int z1, String ext1) {
+         int i = Arrays.binarySearch(npix,npix1);
+         if( i<0 ) return null;
+         while( i>0 && npix[i-1]==npix1 ) i--;
+         for( ; i<npix.length && npix[i]==npix1; i++ ) {
+            if( z[i]!=z1 || !ext[i].equals(ext1) ) continue;
+            ByteBuffer b = seg[ segment[i] ].duplicate();
+            b.position( pos[i] );
+            byte [] buf = new byte[ length[i] ];
+            b.get(buf);
+            return buf;
+         }
+         return null;
+      }
+   }
+
+   /** Une entre d'index lors de l'criture */
+   static private class Entry implements Comparable<Entry> {
+      File file;
+      long npix;
+      int z;
+      String ext;
+
+      Entry(File file,long npix,int z,String ext) {
+         this.file=file; this.npix=npix; this.z=z; this.ext=ext;
+      }
+
+      public int compareTo(Entry o) {
+         if( npix!=o.npix ) return npix<o.npix ? -1 : 1;
+         if( z!=o.z ) return z<o.z ? -1 : 1;
+         return ext.compareTo(o.ext);
+      }
+   }
+
+   // Analyse d'un nom de tuile Npix<npix>[_<z>].<ext>, null si ce n'en est pas une
+   static private Entry parse(File f) {
+      String name = f.getName();
+      if( !name.startsWith("Npix") ) return null;
+      int i = name.indexOf('.');
+      if( i<0 ) return null;
+      String ext = name.substring(i+1);
+      if( ext.length()==0 || ext.length()>EXTSIZE ) return null;
+      String s = name.substring(4,i);
+      int z=0;
+      int j = s.indexOf('_');
+      try {
+         if( j>=0 ) { z = Integer.parseInt( s.substring(j+1) ); s=s.substring(0,j); }
+         return new Entry(f,Long.parseLong(s),z,ext);
+      } catch( Exception e ) { return null; }
+   }
+
+   /** Gnre le conteneur dir.hpk regroupant toutes les tuiles du rpertoire dir
+    * (criture dans un fichier temporaire puis renommage)
+    * @param dir chemin du rpertoire NorderNN/DirDDDD
+    * @return le nombre de tuiles packes
+    */
+   static public int write(String dir) throws Exception {
+      File [] files = (new File(dir)).listFiles();
+      if( files==null ) return 0;
+
+      ArrayList<Entry> list = new ArrayList<>(files.length);
+      for( File f : files ) {
+         Entry e = parse(f);
+         if( e!=null && f.isFile() ) list.add(e);
+      }
+      Collections.sort(list);
+      int n = list.size();
+
+      File tmp = new File(dir+EXT+".tmp");
+      File out = new File(dir+EXT);
+      if( tmp.exists() ) tmp.delete();
+
+      // Copie des tuiles aprs la place rserve  l'entte et  l'index. La taille
+      // mmorise pour l'index est celle effectivement copie depuis le fichier ouvert
+      int headSize = HEADSIZE + n*ENTRYSIZE;
+      int [] size = new int[n];
+      DataOutputStream dos = null;
+      try {
+         dos = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(tmp), 1<<16) );
+         dos.write( new byte[headSize] );
+         byte [] buf = new byte[1<<16];
+         for( int i=0; i<n; i++ ) {
+            Entry entry = list.get(i);
+            RandomAccessFile rf = new RandomAccessFile(entry.file,"r");
+            try {
+               long len = rf.length();
+               if( len>Integer.MAX_VALUE ) throw new Exception("Tile too large for HiPS container ["+entry.file+"]");
+               size[i] = (int)len;
+               while( len>0 ) {
+                  int m = rf.read(buf,0,(int)Math.min(buf.length,len));
+                  if( m<0 ) throw new Exception("Unexpected end of file ["+entry.file+"]");
+                  dos.write(buf,0,m);
+                  len-=m;
+               }
+            } finally { rf.close(); }
+         }
+         dos.close(); dos=null;
+      } finally { if( dos!=null ) dos.close(); }
+
+      // Entte et index
+      ByteBuffer head = ByteBuffer.allocate(headSize);
+      head.put(MAGIC);
+      head.putInt(n);
+      long offset = headSize;
+      byte [] e = new byte[EXTSIZE];
+      for( int i=0; i<n; i++ ) {
+         Entry entry = list.get(i);
+         head.putLong(entry.npix);
+         head.putInt(entry.z);
+         byte [] b = entry.ext.getBytes("US-ASCII");
+         Arrays.fill(e,(byte)0);
+         System.arraycopy(b,0,e,0,b.length);
+         head.put(e);
+         head.putLong(offset);
+         head.putInt(size[i]);
+         offset+=size[i];
+      }
+      RandomAccessFile rf = new RandomAccessFile(tmp,"rw");
+      try { rf.write(head.array()); }
+      finally { rf.close(); }
+
+      if( out.exists() ) out.delete();
+      if( !tmp.renameTo(out) ) throw new Exception("Cannot rename "+tmp+" in "+out);
+      return n;
+   }
+}
@@ -0,0 +1,562 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.allsky;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+import cds.aladin.HealpixProgen;
+import cds.aladin.HealpixProgenItem;
+import cds.tools.pixtools.Util;
+
+/**
+ * Index HpxFinder binaire : un unique fichier tri par npix remplaant la
+ * hirarchie de fichiers JSON (un par tuile). Il est plac dans le rpertoire
+ * HpxFinder/NorderNN afin que la dtection de l'ordre reste inchange.
+ *
+ * Format (big-endian) :
+ *  - entte : magic, version, order, nbFiles, nbEntries, maxOverlays, offsets des sections
+ *  - entres : nbEntries x (npix, fileId, cellMem, descOffset), tries par npix puis fileId
+ *  - fichiers : nbFiles x offset du path dans la table des chanes
+ *  - table des chanes : (longueur, octets UTF-8) pour les paths et les descriptions JSON
+ *
+ * La description d'un fichier est la ligne JSON qui aurait t crite dans les
+ * tuiles texte, ce qui permet de retrouver le STC et les ventuels mots cls FITS.
+ *
+ * @version 1.0 - oct 2026 - cration
+ */
+public class HpxFinderIndex {
+
+   static final public String FILENAME = "Index.bin";
+
+   static final private int MAGIC   = 0x48504649;   // "HPFI"
+   static final private int VERSION = 1;
+   static final private int HEADERSIZE = 4*4 + 8 + 4*2 + 8*3;
+   static final private int ENTRYSIZE  = 8+4+8+8;
+
+   /** Une entre de l'index */
+   static public class Item {
+      public final long npix;          // Numro de la tuile
+      public final int fileId;         // Indice du fichier source (ou de la cellule)
+      public final long cellMem;       // Estimation de la RAM ncessaire au chargement
+      public final long descOffset;    // Position de la description JSON dans la table des chanes
+
+      Item(long npix,int fileId,long cellMem,long descOffset) {
+         this.npix=npix;
+         this.fileId=fileId;
+         this.cellMem=cellMem;
+         this.descOffset=descOffset;
+      }
+   }
+
+   private final String filename;
+   private final RandomAccessFile raf;
+   private final FileChannel channel;
+   private int order,nbFiles,maxOverlays;
+   private long nbEntries;
+   private long entriesOffset,filesOffset,stringsOffset;
+
+   /** Ouverture en lecture d'un index binaire */
+   public HpxFinderIndex(String filename) throws Exception {
+      this.filename=filename;
+      raf = new RandomAccessFile(filename,"r");
+      channel = raf.getChannel();
+      try {
+         ByteBuffer b = read(0,HEADERSIZE);
+         if( b.getInt()!=MAGIC ) throw new Exception("Not a binary HpxFinder index ["+filename+"]");
+         int version = b.getInt();
+         if( version>VERSION ) throw new Exception("Unsupported binary HpxFinder index version ["+version+"]");
+         order       = b.getInt();
+         nbFiles     = b.getInt();
+         nbEntries   = b.getLong();
+         maxOverlays = b.getInt();
+         b.getInt();
+         entriesOffset = b.getLong();
+         filesOffset   = b.getLong();
+         stringsOffset = b.getLong();
+      } catch( Exception e ) { raf.close(); throw e; }
+   }
+
+   /** Retourne le nom du fichier d'index binaire pour un rpertoire HpxFinder et un ordre donns */
+   static public String getFilename(String hpxFinderPath,int order) {
+      return cds.tools.Util.concatDir( cds.tools.Util.concatDir(hpxFinderPath,"Norder"+order), FILENAME);
+   }
+
+   /** Retourne le nom du fichier d'index binaire prsent dans le rpertoire HpxFinder, null sinon */
+   static public String find(String hpxFinderPath) {
+      if( hpxFinderPath==null ) return null;
+      int order = Util.getMaxOrderByPath(hpxFinderPath);
+      if( order==-1 ) return null;
+      String filename = getFilename(hpxFinderPath,order);
+      return new File(filename).isFile() ? filename : null;
+   }
+
+   /** Ouverture de l'index binaire prsent dans le rpertoire HpxFinder, null si absent */
+   static public HpxFinderIndex open(String hpxFinderPath) throws Exception {
+      String filename = find(hpxFinderPath);
+      return filename==null ? null : new HpxFinderIndex(filename);
+   }
+
+   public String getFilename()  { return filename; }
+   public int getOrder()        { return order; }
+   public int getNbFiles()      { return nbFiles; }
+   public long getNbEntries()   { return nbEntries; }
+   public int getMaxOverlays()  { return maxOverlays; }
+
+   public void close() throws IOException { raf.close(); }
+
+   // Lecture de n octets  la position pos (thread safe)
+   private ByteBuffer read(long pos,int n) throws IOException {
+      ByteBuffer b = ByteBuffer.allocate(n);
+      while( b.hasRemaining() ) {
+         if( channel.read(b,pos+b.position())<0 ) throw new EOFException(filename);
+      }
+      b.flip();
+      return b;
+   }
+
+   // Retourne le npix de la ime entre
+   private long getNpix(long i) throws IOException {
+      return read(entriesOffset+i*ENTRYSIZE,8).getLong();
+   }
+
+   // Recherche dichotomique de la premire entre dont le npix est >= npix
+   private long lowerBound(long npix) throws IOException {
+      long lo=0, hi=nbEntries;
+      while( lo<hi ) {
+         long mid = (lo+hi)>>>1;
+         if( getNpix(mid)<npix ) lo=mid+1;
+         else hi=mid;
+      }
+      return lo;
+   }
+
+   /** Retourne les entres de la tuile npix (tableau vide si aucune) */
+   public Item [] get(long npix) throws IOException {
+      ArrayList<Item> list = new ArrayList<>();
+      final int bloc = 64;
+      boolean encore=true;
+      for( long i=lowerBound(npix); encore && i<nbEntries; i+=bloc ) {
+         int n = (int)Math.min(bloc,nbEntries-i);
+         ByteBuffer b = read(entriesOffset+i*ENTRYSIZE,n*ENTRYSIZE);
+         for( int j=0; j<n; j++ ) {
+            long np = b.getLong();
+            if( np!=npix ) { encore=false; break; }
+            list.add( new Item(np,b.getInt(),b.getLong(),b.getLong()) );
+         }
+      }
+      return list.toArray(new Item[list.size()]);
+   }
+
+   /** Retourne les entres de la tuile npix sous la forme d'une tuile HpxFinder JSON,
+    * null si la tuile n'est pas dans l'index */
+   public HealpixProgen getProgen(long npix) throws IOException {
+      Item [] items = get(npix);
+      if( items.length==0 ) return null;
+      HealpixProgen out = new HealpixProgen();
+      for( Item item : items ) {
+         HealpixProgenItem pi = new HealpixProgenItem( getDescription(item) );
+         out.put( pi.getID(), pi);
+      }
+      return out;
+   }
+
+   /** Retourne la liste trie des npix prsents dans l'index */
+   public long [] getNpixList() throws IOException {
+      long [] res = new long[1024];
+      int n=0;
+      DataInputStream in = openEntries();
+      try {
+         long last=-1;
+         for( long i=0; i<nbEntries; i++ ) {
+            long npix = in.readLong();
+            in.skipBytes(ENTRYSIZE-8);
+            if( npix==last ) continue;
+            if( n==res.length ) res = grow(res);
+            res[n++]=last=npix;
+         }
+      } finally { in.close(); }
+      long [] a = new long[n];
+      System.arraycopy(res,0,a,0,n);
+      return a;
+   }
+
+   // Lecture squentielle des entres
+   private DataInputStream openEntries() throws IOException {
+      FileInputStream fin = new FileInputStream(filename);
+      DataInputStream in = new DataInputStream(new BufferedInputStream(fin,64*1024));
+      long skip=entriesOffset;
+      while( skip>0 ) skip -= in.skip(skip);
+      return in;
+   }
+
+   /** Retourne le path du fichier source (ou de la cellule) fileId */
+   public String getPath(int fileId) throws IOException {
+      return getString( read(filesOffset+8L*fileId,8).getLong() );
+   }
+
+   /** Retourne la description JSON associe  une entre (quivalente  une ligne d'une tuile JSON) */
+   public String getDescription(Item item) throws IOException {
+      return getString(item.descOffset);
+   }
+
+   // Retourne la chane situe  la position offset de la table des chanes
+   private String getString(long offset) throws IOException {
+      int len = read(stringsOffset+offset,4).getInt();
+      ByteBuffer b = read(stringsOffset+offset+4,len);
+      return new String(b.array(),0,len,"UTF-8");
+   }
+
+   static private long [] grow(long [] a) {
+      long [] b = new long[ a.length*2 ];
+      System.arraycopy(a,0,b,0,a.length);
+      return b;
+   }
+
+   static private int [] grow(int [] a) {
+      int [] b = new int[ a.length*2 ];
+      System.arraycopy(a,0,b,0,a.length);
+      return b;
+   }
+
+   /**
+    * Construction d'un index binaire. Les entres (npix,fileId) sont accumules
+    * en mmoire par paquets de taille borne, tries puis dverses sur disque
+    * sous forme de "runs", lesquels sont fusionns  la fermeture. Les chanes
+    * (paths et descriptions) sont crites au fil de l'eau dans un fichier temporaire.
+    * Si un index binaire existe dj, son contenu est repris et les doublons
+    * (mme tuile, mme description) sont carts.
+    * L'alimentation (addFile(), add()) peut se faire depuis plusieurs threads.
+    */
+   static public class Writer {
+
+      static final public int DEFAULTRUNSIZE = 1<<21;
+
+      private final String filename;
+      private final int order;
+      private final int runSize;
+      private final File dir;
+      private boolean dedup=false;
+      private HashMap<String,Integer> known=null;   // description -> fileId (ddoublonnage)
+
+      // Table des chanes
+      private File stringsFile;
+      private DataOutputStream strings;
+      private long stringsSize=0L;
+
+      // Table des fichiers
+      private long [] pathOffset = new long[1024];
+      private long [] descOffset = new long[1024];
+      private long [] cellMem = new long[1024];
+      private int nbFiles=0;
+
+      // Run courant et runs dj dverss
+      private long [] runNpix;
+      private int [] runId;
+      private int nbRun=0;
+      private ArrayList<File> runs = new ArrayList<>();
+
+      private long nbEntries=0L;
+      private int maxOverlays=0;
+
+      /** Cration d'un index binaire
+       * @param filename fichier d'index
+       * @param order ordre HEALPix des npix indexs
+       * @param runSize nombre maximal d'entres gardes en mmoire avant dversement sur disque
+       */
+      public Writer(String filename,int order,int runSize) throws Exception {
+         this.filename=filename;
+         this.order=order;
+         this.runSize=runSize;
+         cds.tools.Util.createPath(filename);
+         dir = new File(filename).getParentFile();
+         runNpix = new long[ Math.min(runSize,4096) ];
+         runId = new int[ runNpix.length ];
+         stringsFile = File.createTempFile("strings",".tmp",dir);
+         strings = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(stringsFile), 64*1024) );
+         if( new File(filename).isFile() ) load();
+      }
+
+      // Reprise d'un index binaire pr-existant. Les fileId sont conservs, ce qui
+      // permet de rutiliser directement ses entres comme un run dj tri.
+      private void load() throws Exception {
+         HpxFinderIndex index = new HpxFinderIndex(filename);
+         try {
+            if( index.getOrder()!=order ) throw new Exception("Pre-existing binary HpxFinder index order ["
+                  +index.getOrder()+"] does not correspond to the param order ["+order+"]");
+            dedup=true;
+            known = new HashMap<>();
+
+            int n = index.getNbFiles();
+            long [] oldCellMem = new long[n];
+            long [] oldDesc = new long[n];
+            File run = File.createTempFile("run",".tmp",dir);
+            runs.add(run);
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(run), 64*1024) );
+            DataInputStream in = index.openEntries();
+            try {
+               for( long i=0; i<index.getNbEntries(); i++ ) {
+                  long npix = in.readLong();
+                  int id = in.readInt();
+                  oldCellMem[id] = in.readLong();
+                  oldDesc[id] = in.readLong();
+                  out.writeLong(npix);
+                  out.writeInt(id);
+               }
+            } finally { in.close(); out.close(); }
+
+            for( int id=0; id<n; id++ ) {
+               String desc = index.getString(oldDesc[id]);
+               addFile(index.getPath(id),oldCellMem[id],desc);
+            }
+         } finally { index.close(); }
+      }
+
+      // Ajout d'une chane dans la table, retourne sa position
+      private long addString(String s) throws IOException {
+         long pos = stringsSize;
+         byte [] b = s.getBytes("UTF-8");
+         strings.writeInt(b.length);
+         strings.write(b);
+         stringsSize += 4+b.length;
+         return pos;
+      }
+
+      /** Enregistrement d'un fichier source (ou d'une cellule)
+       * @param path chemin du fichier, suivi ventuellement du suffixe de la cellule
+       * @param mem estimation de la RAM ncessaire  son chargement
+       * @param desc description JSON (quivalente  une ligne d'une tuile JSON)
+       * @return l'identificateur du fichier  utiliser pour add()
+       */
+      public synchronized int addFile(String path,long mem,String desc) throws IOException {
+         if( known!=null ) {
+            Integer id = known.get(desc);
+            if( id!=null ) return id.intValue();
+         }
+         if( nbFiles==pathOffset.length ) {
+            pathOffset = grow(pathOffset);
+            descOffset = grow(descOffset);
+            cellMem = grow(cellMem);
+         }
+         pathOffset[nbFiles] = addString(path);
+         descOffset[nbFiles] = addString(desc);
+         cellMem[nbFiles] = mem;
+         if( known!=null ) known.put(desc,nbFiles);
+         return nbFiles++;
+      }
+
+      /** Ajout du fichier fileId dans la tuile npix */
+      public synchronized void add(long npix,int fileId) throws IOException {
+         if( nbRun==runNpix.length ) {
+            if( nbRun>=runSize ) spill();
+            else {
+               runNpix = grow(runNpix);
+               runId = grow(runId);
+            }
+         }
+         runNpix[nbRun]=npix;
+         runId[nbRun]=fileId;
+         nbRun++;
+      }
+
+      // Tri du run courant et dversement sur disque
+      private void spill() throws IOException {
+         if( nbRun==0 ) return;
+         sort(runNpix,runId,0,nbRun-1);
+         File run = File.createTempFile("run",".tmp",dir);
+         runs.add(run);
+         DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(run), 64*1024) );
+         try {
+            for( int i=0; i<nbRun; i++ ) {
+               out.writeLong(runNpix[i]);
+               out.writeInt(runId[i]);
+            }
+         } finally { out.close(); }
+         nbRun=0;
+      }
+
+      /** Retourne le nombre max d'entres pour une mme tuile (disponible aprs close()) */
+      public int getMaxOverlays() { return maxOverlays; }
+
+      /** Retourne le nombre d'entres de l'index (disponible aprs close()) */
+      public long getNbEntries() { return nbEntries; }
+
+      /** Fusion des runs et criture de l'index dfinitif */
+      public void close() throws Exception {
+         spill();
+         strings.close();
+         strings=null;
+
+         File tmp = new File(filename+".tmp");
+         PriorityQueue<Run> queue = new PriorityQueue<>();
+         try {
+            for( File f : runs ) {
+               Run r = new Run(f);
+               if( r.next() ) queue.add(r);
+               else r.close();
+            }
+
+            DataOutputStream out = new DataOutputStream( new BufferedOutputStream( new FileOutputStream(tmp), 64*1024) );
+            try {
+               out.write( new byte[HEADERSIZE] );
+
+               // Fusion des runs => entres tries et ddoublonnes
+               long lastNpix=-1;
+               int lastId=-1;
+               int nb=0;
+               while( !queue.isEmpty() ) {
+                  Run r = queue.poll();
+                  long npix=r.npix;
+                  int id=r.id;
+                  if( r.next() ) queue.add(r);
+                  else r.close();
+
+                  if( npix==lastNpix && id==lastId ) continue;
+                  if( npix!=lastNpix ) nb=0;
+                  if( ++nb>maxOverlays ) maxOverlays=nb;
+                  lastNpix=npix;
+                  lastId=id;
+
+                  out.writeLong(npix);
+                  out.writeInt(id);
+                  out.writeLong(cellMem[id]);
+                  out.writeLong(descOffset[id]);
+                  nbEntries++;
+               }
+
+               // Table des fichiers
+               for( int i=0; i<nbFiles; i++ ) out.writeLong(pathOffset[i]);
+
+               // Table des chanes
+               FileInputStream in = new FileInputStream(stringsFile);
+               try {
+                  byte [] buf = new byte[64*1024];
+                  int n;
+                  while( (n=in.read(buf))>0 ) out.write(buf,0,n);
+               } finally { in.close(); }
+            } finally { out.close(); }
+
+            // Mise  jour de l'entte
+            long entries = HEADERSIZE;
+            long files = entries + nbEntries*ENTRYSIZE;
+            RandomAccessFile raf = new RandomAccessFile(tmp,"rw");
+            try {
+               raf.writeInt(MAGIC);
+               raf.writeInt(VERSION);
+               raf.writeInt(order);
+               raf.writeInt(nbFiles);
+               raf.writeLong(nbEntries);
+               raf.writeInt(maxOverlays);
+               raf.writeInt(0);
+               raf.writeLong(entries);
+               raf.writeLong(files);
+               raf.writeLong(files + 8L*nbFiles);
+            } finally { raf.close(); }
+
+            File f = new File(filename);
+            if( f.exists() && !f.delete() ) throw new Exception("Cannot replace binary HpxFinder index ["+filename+"]");
+            if( !tmp.renameTo(f) ) throw new Exception("Cannot create binary HpxFinder index ["+filename+"]");
+            tmp=null;
+
+         } finally {
+            for( Run r : queue ) r.close();
+            if( tmp!=null ) tmp.delete();
+            clean();
+         }
+      }
+
+      /** Abandon de la construction (suppression des fichiers temporaires) */
+      public void abort() {
+         if( strings!=null ) try { strings.close(); } catch( Exception e ) {}
+         strings=null;
+         clean();
+      }
+
+      private void clean() {
+         for( File f : runs ) f.delete();
+         runs.clear();
+         if( stringsFile!=null ) stringsFile.delete();
+         stringsFile=null;
+      }
+   }
+
+   // Lecture squentielle d'un run tri
+   static private class Run implements Comparable<Run> {
+      private DataInputStream in;
+      long npix;
+      int id;
+
+      Run(File f) throws IOException {
+         in = new DataInputStream( new BufferedInputStream( new FileInputStream(f), 64*1024) );
+      }
+
+      boolean next() throws IOException {
+         try {
+            npix = in.readLong();
+            id = in.readInt();
+            return true;
+         } catch( EOFException e ) { return false; }
+      }
+
+      void close() { try { in.close(); } catch( Exception e ) {} }
+
+      public int compareTo(Run r) {
+         if( npix!=r.npix ) return npix<r.npix ? -1 : 1;
+         return id<r.id ? -1 : id>r.id ? 1 : 0;
+      }
+   }
+
+   // Tri rapide simultan des deux tableaux selon (npix,id)
+   static private void sort(long [] npix,int [] id,int lo,int hi) {
+      while( lo<hi ) {
+         int m = (lo+hi)>>>1;
+         long pn = npix[m];
+         int pi = id[m];
+         int i=lo, j=hi;
+         while( i<=j ) {
+            while( npix[i]<pn || npix[i]==pn && id[i]<pi ) i++;
+            while( npix[j]>pn || npix[j]==pn && id[j]>pi ) j--;
+            if( i<=j ) {
+               long t=npix[i]; npix[i]=npix[j]; npix[j]=t;
+               int u=id[i]; id[i]=id[j]; id[j]=u;
+               i++; j--;
+            }
+         }
+         // Rcursion sur la plus petite partie pour borner la pile
+         if( j-lo<hi-i ) { sort(npix,id,lo,j); lo=i; }
+         else { sort(npix,id,i,hi); hi=j; }
+      }
+   }
+}
@@ -38,6 +38,8 @@ public enum ParamOption {
    hhhcar           ("[INDEX] Generate hhh file for an all sky image"),
    trim             ("[TILES,CONCAT,APPEND] Trim FITS tiles if possible"),
    gzip             ("[TILES,CONCAT,APPEND] Gzip FITS tiles"),
+   mmap             ("[TILES] Memory-map original FITS images rather than loading them in RAM"),
+   binindex         ("[INDEX] Store the HpxFinder index in a single binary file rather than one JSON file per tile"),
    cds              ("[LINT] CDS dedicated LINT features",A.UNDOC),
    d                ("Debug messages"),
    h                ("Inline help"),
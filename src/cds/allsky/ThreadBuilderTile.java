@@ -35,12 +35,15 @@ import java.io.InputStreamReader;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 
+import cds.aladin.Calib;
 import cds.aladin.Coord;
 import cds.aladin.Localisation;
 import cds.fits.CacheFits;
 import cds.fits.Fits;
+import cds.fits.PixelAccess;
 import cds.healpix.Healpix;
 import cds.healpix.HealpixNestedFast;
 import cds.tools.pixtools.Util;
@@ -49,7 +52,7 @@ final public class ThreadBuilderTile {
 
    private Context context;
    protected BuilderRunner builderTiles;
-   protected BuilderRunner.ThreadBuilder threadBuilder;   // just pour faire des remontes de debug sur setInfo(...)
+   protected BuilderRunner.Worker threadBuilder;   // just pour faire des remontes de debug sur setInfo(...)
    private int bitpix;
    private ModeOverlay modeCoadd;
    private double max,maxDemi;
@@ -451,81 +454,74 @@ final public class ThreadBuilderTile {
 //         final VerticesAndPathComputer vpc = hn.newVerticesAndPathComputer(); // For thread safety issues
 
          
+         // Traitement ligne par ligne : les centres des pixels HEALPix d'une ligne de la tuile
+         // sont calculs d'un bloc dans des tableaux primitifs (changement de repre compris),
+         // puis la ligne entire est projete dans chaque image source  la premire demande.
+         // La boucle par pixel ne fait plus que l'interpolation
+         int width = out.width;
+         double [] rowAl  = new double[width];
+         double [] rowDel = new double[width];
+         double [][] rowX = new double[overlay][width];
+         double [][] rowY = new double[overlay][width];
+         boolean [][] rowErr = new boolean[overlay][width];
+         int [] rowDone = new int[overlay];        // Dernire ligne projete dans chaque image
+         Arrays.fill(rowDone,-1);
+
          for (int y = 0; y < out.height; y++) {
-            for (int x = 0; x < out.width; x++) {
-               index = min + context.xy2hpx[y * out.width + x];
-//               index = min + context.xy2hpx(y * out.width + x);
-               
-               // Recherche les coordonnes du pixels HPX 
-               
-               // ANCIENNE METHODE REINECKE)
-//               Pointing pt = hpx.pix2ang(index);
-//               radec[1] = (PI2 - pt.theta)*toDeg;
-//               radec[0] = pt.phi*toDeg;
-//               if( gal2ICRS ) radec = context.gal2ICRSIfRequired(radec);
-//               coo.al = radec[0]; coo.del = radec[1];
-
-               // Nouvelle methode FX
+
+            // Coordonnes des centres des pixels HEALPix de la ligne
+            for( int x=0; x<width; x++ ) {
+               index = min + context.xy2hpx[y * width + x];
                hn.center(index,radec);
-               if( gal2ICRS ) {
-                  radec[0] *= toDeg;
-                  radec[1] *= toDeg;
-                  radec = context.gal2ICRSIfRequired(radec);
-                  coo.al = radec[0]; 
-                  coo.del = radec[1];
-               } else {
-                  coo.al = radec[0]*toDeg;
-                  coo.del = radec[1]*toDeg;
-               }
+               rowAl[x]  = radec[0]*toDeg;
+               rowDel[x] = radec[1]*toDeg;
+            }
+            if( gal2ICRS ) context.gal2ICRSIfRequired(rowAl,rowDel,width);
 
+            for (int x = 0; x < width; x++) {
                int nbPix=0;
                double totalCoef=0;
 
                int removed=0;
                for( int i=deb; i<fin; i++ ) {
                   try {
-//                     file = downFiles.get(i);
                      file = downFiles[i];
                      if( file.flagRemoved ) continue;
-                     try {
-//                        file.open(z, flagGauss);
-                        file.open(z1);
-                     } catch( Exception e ) {
-                        if( context.getVerbose()>=3 ) e.printStackTrace();
-                        context.addFileRemoveList(file.name);
+                     int k = i-deb;
+
+                     // Projection de la ligne courante dans cette image, si pas encore faite
+                     if( rowDone[k]!=y ) {
+                        try {
+                           file.open(z1);
+                        } catch( Exception e ) {
+                           if( context.getVerbose()>=3 ) e.printStackTrace();
+                           context.addFileRemoveList(file.name);
                         
-                        // Cas complexe o l'image originale est un JPEG ou un PNG et que JAVA
-                        // tente de l'ouvrir sur une portion uniquement. Il va en interne
-                        // l'ouvrir totalement sur le tmp du systme. Si tmp est trop petit
-                        // a va planter et faire des petits carrs noirs sur le HiPS final,
-                        // un par thread de calcul
-                        String msg = e.getMessage();
-                        if( msg!=null && msg.indexOf("space")>=0 ) {
-                           context.taskAbort();
-                           throw e;
-                        }
+                           // Cas complexe o l'image originale est un JPEG ou un PNG et que JAVA
+                           // tente de l'ouvrir sur une portion uniquement. Il va en interne
+                           // l'ouvrir totalement sur le tmp du systme. Si tmp est trop petit
+                           // a va planter et faire des petits carrs noirs sur le HiPS final,
+                           // un par thread de calcul
+                           String msg = e.getMessage();
+                           if( msg!=null && msg.indexOf("space")>=0 ) {
+                              context.taskAbort();
+                              throw e;
+                           }
                         
-                        file.flagRemoved=true;
-                        removed++;
-                        if( removed>=fin-deb ) return null;  // Aucun fichier source disponible
-                        continue;
+                           file.flagRemoved=true;
+                           removed++;
+                           if( removed>=fin-deb ) return null;  // Aucun fichier source disponible
+                           continue;
+                        }
+                        projectRow(file,rowAl,rowDel,rowX[k],rowY[k],rowErr[k],order,npix_file);
+                        rowDone[k]=y;
                      }
 
-                     // Dtermination du pixel dans l'image  traiter
-                     try {
-                        file.fitsfile.getCalib().GetXY(coo,false);
-                        
-                     // gasp !
-                     } catch( Exception e ) {
-                        System.err.println("Problem on calib: "+file.name+" => exception "+e.getMessage()+" tile="+order+"/"+npix_file);
-                        if( context.getVerbose()>=3 ) e.printStackTrace();
-//                        System.exit(1);
-                        continue;
-                     }
-                      
-                     // Inversion ordonne et ajustement pour le calcul bilinaire
-                     coo.y = file.fitsfile.height-coo.y-1;
-                     coo.x -=1;
+                     // Dtermination du pixel dans l'image  traiter (dj invers en ordonne
+                     // et ajust pour le calcul bilinaire)
+                     if( rowErr[k][x] ) continue;
+                     coo.x = rowX[k][x];
+                     coo.y = rowY[k][x];
 
                      // Cas RGB
                      if( flagColor ) {
@@ -661,6 +657,28 @@ final public class ThreadBuilderTile {
       return (!empty) ? out : null;
    }
 
+   // Projection d'une ligne de coordonnes clestes dans une image source. Les coordonnes
+   // pixel sont retournes inverses en ordonne et ajustes pour le calcul bilinaire.
+   // err[i] est positionn si la projection de la ime position a chou
+   private void projectRow(SrcFile file,double [] al,double [] del,double [] x,double [] y,boolean [] err,
+         int order,long npix_file) {
+      Calib calib = file.fitsfile.getCalib();
+      int height = file.fitsfile.height;
+      calib.GetXY(al,del,x,y,0,al.length,false);
+      boolean pb=false;
+      for( int i=0; i<al.length; i++ ) {
+         err[i] = Double.isNaN(x[i]) || Double.isNaN(y[i]);
+         if( err[i] ) { pb=true; continue; }
+         x[i] -= 1;
+         y[i] = height-y[i]-1;
+      }
+
+      // gasp !
+      if( pb ) {
+         System.err.println("Problem on calib: "+file.name+" => unprojectable positions tile="+order+"/"+npix_file);
+      }
+   }
+
    static private final double OVERLAY_PROPORTION = 1/6.;
    
 
@@ -770,11 +788,22 @@ final public class ThreadBuilderTile {
       if( ox2==f.xCell+f.widthCell ) ox2--;
       if( oy2==f.yCell+f.heightCell ) oy2--;
 
+      // Accs spcialis par BITPIX (mmoire ou mapping disque) => pas de switch par pixel
+      PixelAccess pa = f.getPixelAccess();
+      
       for( int z=0; z<res.length; z++ ) {
-         double a0 = f.getPixelDouble(ox1,oy1,z);
-         double a1 = f.getPixelDouble(ox2,oy1,z);
-         double a2 = f.getPixelDouble(ox1,oy2,z);
-         double a3 = f.getPixelDouble(ox2,oy2,z);
+         double a0,a1,a2,a3;
+         if( pa!=null ) {
+            a0 = pa.get(ox1,oy1,z);
+            a1 = pa.get(ox2,oy1,z);
+            a2 = pa.get(ox1,oy2,z);
+            a3 = pa.get(ox2,oy2,z);
+         } else {
+            a0 = f.getPixelDouble(ox1,oy1,z);
+            a1 = f.getPixelDouble(ox2,oy1,z);
+            a2 = f.getPixelDouble(ox1,oy2,z);
+            a3 = f.getPixelDouble(ox2,oy2,z);
+         }
 
          boolean b0 = Double.isNaN(a0) || a0==myBlank;
          boolean b1 = Double.isNaN(a1) || a1==myBlank;
@@ -824,10 +853,20 @@ final public class ThreadBuilderTile {
       if( ox2==f.xCell+f.widthCell ) ox2--;
       if( oy2==f.yCell+f.heightCell ) oy2--;
 
-      double a0 = f.getPixelDouble(ox1,oy1,z);
-      double a1 = f.getPixelDouble(ox2,oy1,z);
-      double a2 = f.getPixelDouble(ox1,oy2,z);
-      double a3 = f.getPixelDouble(ox2,oy2,z);
+      // Accs spcialis par BITPIX (mmoire ou mapping disque) => pas de switch par pixel
+      PixelAccess pa = f.getPixelAccess();
+      double a0,a1,a2,a3;
+      if( pa!=null ) {
+         a0 = pa.get(ox1,oy1,z);
+         a1 = pa.get(ox2,oy1,z);
+         a2 = pa.get(ox1,oy2,z);
+         a3 = pa.get(ox2,oy2,z);
+      } else {
+         a0 = f.getPixelDouble(ox1,oy1,z);
+         a1 = f.getPixelDouble(ox2,oy1,z);
+         a2 = f.getPixelDouble(ox1,oy2,z);
+         a3 = f.getPixelDouble(ox2,oy2,z);
+      }
 
       boolean b0 = Double.isNaN(a0) || a0==myBlank;
       boolean b1 = Double.isNaN(a1) || a1==myBlank;
@@ -1003,6 +1042,16 @@ final public class ThreadBuilderTile {
     * @return
     */
    private SrcFile[] askLocalFinder(BuilderRunner bt, String path, int order, long npix, double blank) {
+      
+      // Index binaire ?
+      try {
+         HpxFinderIndex index = context.getHpxFinderIndex();
+         if( index!=null ) return askBinaryFinder(index, order, npix);
+      } catch( Exception e ) {
+         e.printStackTrace();
+         return null;
+      }
+      
       ArrayList<SrcFile> downFiles = new ArrayList<>( Constante.MAXOVERLAY*2); 
       String hpxfilename = path + cds.tools.Util.FS + Util.getFilePath("", order, npix);
       File f = new File(hpxfilename);
@@ -1048,6 +1097,22 @@ final public class ThreadBuilderTile {
       }
    }
 
+   // Interroge l'index HpxFinder binaire pour obtenir la liste des fichiers du losange donn
+   private SrcFile[] askBinaryFinder(HpxFinderIndex index, int order, long npix) throws Exception {
+      if( order!=index.getOrder() ) return null;
+      HpxFinderIndex.Item [] items = index.get(npix);
+      if( items.length==0 ) return null;
+      SrcFile[] result = new SrcFile[ items.length ];
+      for( int i=0; i<items.length; i++ ) {
+         String fitsfilename = index.getPath(items[i].fileId);
+         Fits fitsfile = new Fits();
+         fitsfile.setFilename(fitsfilename);
+         result[i] = new SrcFile(fitsfilename,items[i].cellMem);
+         result[i].fitsfile = fitsfile;
+      }
+      return result;
+   }
+
    // retourne le polygone|cercle associ au fichier ou null si aucun
    // Soit il s'agit du mme nom de fichier avec l'extension ".fov"
    // soit c'est le premier rpertoire parent qui a un fichier associ avec l'extension ".fov"
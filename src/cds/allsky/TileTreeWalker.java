@@ -0,0 +1,233 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.allsky;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Parcours parallle d'une arborescence de tuiles HiPS (Norder* / Dir* / Npix*) utilis par les
+ * actions de post-traitement (MOC, CHECKCODE, CHECKDATASUM, ZIP, GZIP...).
+ * Chaque rpertoire est trait par une tche ForkJoin, son contenu tant lu via un DirectoryStream
+ * NIO, le nombre de threads tant born (cf. -maxThread). Deux modes de cumul des rsultats :
+ *   - non ordonn : chaque thread alimente son propre accumulateur, l'ensemble des accumulateurs
+ *     tant fusionn  la fin du parcours (MOC, DATASUM global, compteurs...)
+ *   - ordonn : le contenu de chaque rpertoire est parcouru dans l'ordre lexicographique et les
+ *     accumulateurs sont fusionns dans ce mme ordre, ce qui donne le mme rsultat qu'un
+ *     parcours squentiel tri (check code)
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class TileTreeWalker {
+
+   /** Traitement appliqu lors du parcours, A tant le type de l'accumulateur */
+   interface Visitor<A> {
+
+      /** Cration d'un accumulateur vierge */
+      A create();
+
+      /** Retourne true si le rpertoire doit tre parcouru, sinon il est pass  visit() */
+      default boolean accept(Path dir) { return true; }
+
+      /** Traitement d'un fichier (ou d'un rpertoire non parcouru) */
+      void visit(A acc, Path file) throws Exception;
+
+      /** Traitement d'un rpertoire aprs celui de son contenu */
+      default void leave(A acc, Path dir) throws Exception { }
+
+      /** Cumul de other dans acc (other suivant acc dans l'ordre du parcours) */
+      void merge(A acc, A other) throws Exception;
+   }
+
+   private final Context context;
+   private final int nbThread;
+   private final AtomicReference<Exception> error = new AtomicReference<>();  // Premire erreur rencontre
+
+   TileTreeWalker(Context context) { this(context,getDefaultNbThread(context)); }
+
+   TileTreeWalker(Context context,int nbThread) {
+      this.context=context;
+      this.nbThread=Math.max(1,nbThread);
+   }
+
+   /** Nombre de threads par dfaut : un par coeur, born par le nombre max de threads du contexte */
+   static int getDefaultNbThread(Context context) {
+      int n = Runtime.getRuntime().availableProcessors();
+      int max = context==null ? -1 : context.getMaxNbThread();
+      if( max>0 && n>max ) n=max;
+      return n;
+   }
+
+   int getNbThread() { return nbThread; }
+
+   /** Parcours de l'arborescence issue de root
+    * @param root rpertoire racine (ou simple fichier)
+    * @param visitor le traitement  appliquer
+    * @param ordered true pour un cumul dans l'ordre lexicographique du parcours
+    * @return l'accumulateur rsultant de la fusion de tous les accumulateurs
+    */
+   <A> A walk(Path root,Visitor<A> visitor,boolean ordered) throws Exception {
+      ForkJoinPool pool = new ForkJoinPool(nbThread);
+      error.set(null);
+      try {
+         if( !Files.isDirectory(root) ) {
+            A acc = visitor.create();
+            visitor.visit(acc,root);
+            return acc;
+         }
+         if( ordered ) return pool.invoke( new OrderedTask<>(root,visitor) );
+
+         ConcurrentHashMap<Thread,A> accs = new ConcurrentHashMap<>();
+         pool.invoke( new Task<>(root,visitor,accs) );
+         A res = visitor.create();
+         for( A acc : accs.values() ) visitor.merge(res,acc);
+         return res;
+
+      } catch( WalkException e ) {
+         Exception first = error.get();
+         throw first!=null ? first : (Exception)e.getCause();
+      } finally {
+         pool.shutdown();
+      }
+   }
+
+   // Liste du contenu d'un rpertoire, ventuellement trie. Le parcours s'interrompt
+   // ds la premire erreur rencontre par l'une des tches
+   private ArrayList<Path> list(Path dir,boolean sort) throws Exception {
+      if( error.get()!=null ) throw new WalkException(error.get());
+      if( context!=null && context.isTaskAborting() ) throw new Exception("Task abort !");
+      ArrayList<Path> list = new ArrayList<>();
+      try( DirectoryStream<Path> ds = Files.newDirectoryStream(dir) ) {
+         for( Path p : ds ) list.add(p);
+      } catch( IOException e ) {
+         if( context!=null ) context.warning("Cannot scan "+dir+" => "+e.getMessage());
+      }
+      if( sort ) Collections.sort(list);
+      return list;
+   }
+
+   // Exception d'un visiteur transmise  travers les tches ForkJoin
+   static private final class WalkException extends RuntimeException {
+      private static final long serialVersionUID = 1L;
+
+      WalkException(Exception e) { super(e); }
+   }
+
+   // Mmorisation de la premire erreur et propagation
+   private WalkException fail(Exception e) {
+      error.compareAndSet(null,e);
+      return new WalkException(e);
+   }
+
+   // Tche de parcours non ordonn d'un rpertoire: chaque thread utilise son propre accumulateur
+   private final class Task<A> extends RecursiveTask<Void> {
+      private static final long serialVersionUID = 1L;
+
+      private final Path dir;
+      private final Visitor<A> visitor;
+      private final ConcurrentHashMap<Thread,A> accs;
+
+      Task(Path dir,Visitor<A> visitor,ConcurrentHashMap<Thread,A> accs) {
+         this.dir=dir;
+         this.visitor=visitor;
+         this.accs=accs;
+      }
+
+      private A getAcc() { return accs.computeIfAbsent(Thread.currentThread(), t -> visitor.create()); }
+
+      protected Void compute() {
+         try {
+            ArrayList<Task<A>> sub = new ArrayList<>();
+            ArrayList<Path> files = new ArrayList<>();
+            for( Path p : list(dir,false) ) {
+               if( Files.isDirectory(p) && visitor.accept(p) ) {
+                  Task<A> t = new Task<>(p,visitor,accs);
+                  t.fork();
+                  sub.add(t);
+               } else files.add(p);
+            }
+            for( Path p : files ) visitor.visit(getAcc(),p);
+            for( Task<A> t : sub ) t.join();
+            visitor.leave(getAcc(),dir);
+         } catch( WalkException e ) {
+            throw e;
+         } catch( Exception e ) {
+            throw fail(e);
+         }
+         return null;
+      }
+   }
+
+   // Tche de parcours ordonn d'un rpertoire: retourne l'accumulateur de son contenu
+   private final class OrderedTask<A> extends RecursiveTask<A> {
+      private static final long serialVersionUID = 1L;
+
+      private final Path dir;
+      private final Visitor<A> visitor;
+
+      OrderedTask(Path dir,Visitor<A> visitor) {
+         this.dir=dir;
+         this.visitor=visitor;
+      }
+
+      @SuppressWarnings("unchecked")
+      protected A compute() {
+         try {
+            // Les sous-rpertoires sont lancs en parallle, les fichiers conscutifs
+            // cumuls dans un mme accumulateur intermdiaire
+            ArrayList<Object> seq = new ArrayList<>();
+            A cur=null;
+            for( Path p : list(dir,true) ) {
+               if( Files.isDirectory(p) && visitor.accept(p) ) {
+                  OrderedTask<A> t = new OrderedTask<>(p,visitor);
+                  t.fork();
+                  seq.add(t);
+                  cur=null;
+               } else {
+                  if( cur==null ) { cur=visitor.create(); seq.add(cur); }
+                  visitor.visit(cur,p);
+               }
+            }
+
+            // Fusion dans l'ordre du parcours
+            A res = visitor.create();
+            for( Object o : seq ) visitor.merge(res, o instanceof OrderedTask ? ((OrderedTask<A>)o).join() : (A)o);
+            visitor.leave(res,dir);
+            return res;
+
+         } catch( WalkException e ) {
+            throw e;
+         } catch( Exception e ) {
+            throw fail(e);
+         }
+      }
+   }
+}
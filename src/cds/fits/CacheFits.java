@@ -26,9 +26,14 @@ import java.io.FileNotFoundException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import cds.aladin.Aladin;
 import cds.allsky.CacheFitsWriter;
@@ -50,10 +55,20 @@ import cds.tools.Util;
  * 
  * L'accs  un fichier Fits se fait par Fits getFits(filename)( ou getFits(filename,true) pour du JPEG)
  *
+ * Politique de remplacement : "Segmented LRU" pondre par la taille mmoire de chaque entre
+ * (FitsFile.getMem()). Les nouvelles entres arrivent dans un segment probatoire ; celles qui ont
+ * t rutilises depuis leur insertion sont promues dans un segment protg (au plus 80% de la
+ * capacit) lors du balayage d'viction, ce qui vite tout verrou lors d'un accs russi.
+ * L'viction est incrmentale :  chaque insertion on libre juste ce qu'il faut pour revenir
+ * dans les capacits, en ignorant les Fits en cours d'utilisation (Fits.hasUsers()).
+ * Le chargement d'un fichier se fait hors de tout verrou global, les threads demandant le
+ * mme fichier attendant simplement la fin de son chargement.
+ *
  * Rq: Le rajouti d'Anas sur la soustraction du skyvalName ne devrait pas tre dans cette classe (selon moi)
  * => A voir si on le dplace
  *
  * @author Pierre Fernique [CDS]
+ * @version 1.4 - octobre 2026 - cache concurrent, viction incrmentale SLRU pondre
  * @version 1.3 - novembre 2022 - ajout de la variation dynamique de la capacit du cache
  * @version 1.2 - novembre 2014
  * @version 1.1 - juillet 2012
@@ -76,16 +91,29 @@ public class CacheFits {
    private long initMem;             // Taille max courante souhaite au dpart (en octets)
    private int initFile;             // Nombre max courant d'items souhait au dpart 
 
-   private int nextId;              // prochain identificateur unique de fichier
+   private AtomicInteger nextId;    // prochain identificateur unique de fichier
    volatile private boolean cacheOutOfMem;   // En cas de dbordement mmoire, on vire totalement le cache
-   protected HashMap<String, FitsFile> map;             // Table des fichiers
+   protected ConcurrentHashMap<String, FitsFile> map;   // Table des fichiers
    private int nbClean;  // Nombre de purges du cache
+   
+   static private final double PROTECTRATIO = 0.8;   // Part max de la capacit rserve au segment protg
+   static private final long DELAYRECENT = 5000L;    // Une entre accde depuis moins de 5s est juge rcente
+
+   private ConcurrentLinkedQueue<FitsFile> probation;  // Segment probatoire (ordre d'insertion)
+   private ConcurrentLinkedQueue<FitsFile> protect;    // Segment protg (ordre de promotion)
+   private AtomicLong curMem;                          // Taille cumule des entres (en octets)
+   private AtomicLong protectMem;                      // Taille cumule du segment protg
+   private AtomicInteger protectSize;                  // Nombre d'entres du segment protg
+   private final ReentrantLock evictLock = new ReentrantLock();  // Un seul thread vince  la fois
 
    private Context context;
    private Hashtable<String, double[]> cutCache = new Hashtable<>();
    private Hashtable<String, double[]> shapeCache = new Hashtable<>();
 
-   protected int statNbOpen,statNbFind,statNbFree;
+   protected AtomicInteger statNbOpen,statNbFind,statNbFree;
+   protected AtomicLong statNbHit,statNbMiss,statNbEvict;
+   
+   private boolean mapped=false;   // true si les FITS sont mapps depuis le disque plutt que chargs (cf. Fits.loadFITSMapped())
 
    /**
     * Cration d'un cache de fichiers Fits
@@ -112,10 +140,20 @@ public class CacheFits {
       this.LIMITFILE = limitFile;
       
       cacheOutOfMem = maxMem==0;
-      nextId = 0;
+      nextId = new AtomicInteger();
       nbClean=0;
-      statNbFree = statNbOpen = statNbFind = 0;
-      map = new HashMap<>(maxFile+maxFile/2);
+      statNbFree = new AtomicInteger();
+      statNbOpen = new AtomicInteger();
+      statNbFind = new AtomicInteger();
+      statNbHit = new AtomicLong();
+      statNbMiss = new AtomicLong();
+      statNbEvict = new AtomicLong();
+      map = new ConcurrentHashMap<>(maxFile+maxFile/2);
+      probation = new ConcurrentLinkedQueue<>();
+      protect = new ConcurrentLinkedQueue<>();
+      curMem = new AtomicLong();
+      protectMem = new AtomicLong();
+      protectSize = new AtomicInteger();
    }
    
    /** Retourne la limite courante en mmoire du cache (en bytes) */
@@ -123,9 +161,19 @@ public class CacheFits {
    
    /** Retourne la limite courante en nombre de fichiers du cache */
    public int getMaxFile() { return maxFile; }
-
-   // Gestion d'un lock
-   static protected final Object lockObj= new Object();
+   
+   /** Demande que les images FITS soient mappes directement depuis le disque plutt que
+    * recopies en mmoire (uniquement si aucun filtre ne doit modifier leurs pixels) */
+   public void setMapped(boolean flag) { mapped=flag; }
+   
+   // Retourne true si les pixels de l'image pourront tre lus tels quels depuis le disque
+   // (aucun filtre ne devant les modifier)
+   private boolean canMap(boolean flagLoad) {
+      if( !mapped || !flagLoad ) return false;
+      if( context==null ) return true;
+      return context.skyvalName==null && context.expTimeName==null && context.pixelGood==null
+            && context.dataArea==Constante.SHAPE_UNKNOWN && !context.cutByImage;
+   }
 
    static public final int FITS = 0; // FITS classique
    static public final int JPEG = 1; // JPEG
@@ -140,54 +188,89 @@ public class CacheFits {
     */
    public Fits getFits(String fileName) throws Exception,MyInputStreamCachedException { return getFits(fileName,FITS,true,true); }
    public Fits getFits(String fileName,int mode,boolean flagLoad,boolean keepHeader) throws Exception,MyInputStreamCachedException {
-      if( cacheOutOfMem )  return open(fileName,mode,flagLoad,keepHeader).fits;
+      if( cacheOutOfMem ) {
+         statNbMiss.incrementAndGet();
+         return open(fileName,mode,flagLoad,keepHeader).fits;
+      }
 
-      synchronized( lockObj  ) {
+      while( true ) {
          FitsFile f = find(fileName);
 
-         // Trouv, je le mets  jour
+         // Trouv (ventuellement aprs attente de son chargement par un autre thread), je le mets  jour
          if( f!=null ) {
+            if( !f.waitLoaded() ) continue;    // Echec du chargement par l'autre thread => on retente
             f.update();
-            statNbFind++;
+            statNbFind.incrementAndGet();
+            statNbHit.incrementAndGet();
+            return f.fits;
          }
 
-         // Pas trouv, je l'ajoute
-         else {
-            if( isOver() ) clean();
-            try {
-               f=add(fileName,mode,flagLoad,keepHeader);
-            } catch( OutOfMemoryError e ) {
-               System.out.println("CacheFits.getFits("+fileName+") out of memory... clean and try again...");
-               if( maxMem<0 ) maxMem*=2;
-               else maxMem /= 2;
-               try {
-                  clean();
-                  f=add(fileName,mode,flagLoad,keepHeader);
-               } catch( OutOfMemoryError e1 ) {
-                  System.out.println("CacheFits.getFits("+fileName+") out of memory... double error... removing the cache...");
-                  e1.printStackTrace();
-                  reset();
-                  cacheOutOfMem=true;
-                  return open(fileName,mode,flagLoad,keepHeader).fits;
-               }
-            }
-            statNbOpen++;
+         // Pas trouv, je rserve l'entre puis je la charge (hors verrou)
+         f = new FitsFile();
+         if( map.putIfAbsent(fileName, f)!=null ) continue;   // Un autre thread a t plus rapide
+         statNbMiss.incrementAndGet();
+         try {
+            f.fits = load(fileName,mode,flagLoad,keepHeader);
+         } catch( Exception | Error e ) {
+            map.remove(fileName, f);
+            f.setLoaded(false);
+            throw e;
          }
 
+         // Le cache a t supprim entre temps suite  un manque de mmoire
+         if( cacheOutOfMem ) {
+            map.remove(fileName, f);
+            f.setLoaded(true);
+            return f.fits;
+         }
+
+         insert(fileName, f);
+         statNbOpen.incrementAndGet();
+         if( isOver() ) clean();
          return f.fits;
       }
    }
 
+   // Chargement d'un fichier. En cas de manque de mmoire, la capacit du cache est rduite
+   // de moiti et le cache est nettoy, voire totalement supprim si cela ne suffit pas
+   private Fits load(String fileName,int mode,boolean flagLoad,boolean keepHeader) throws Exception,MyInputStreamCachedException {
+      try {
+         return open(fileName,mode,flagLoad,keepHeader).fits;
+      } catch( OutOfMemoryError e ) {
+         System.out.println("CacheFits.getFits("+fileName+") out of memory... clean and try again...");
+         if( maxMem<0 ) maxMem*=2;
+         else maxMem /= 2;
+         try {
+            clean();
+            return open(fileName,mode,flagLoad,keepHeader).fits;
+         } catch( OutOfMemoryError e1 ) {
+            System.out.println("CacheFits.getFits("+fileName+") out of memory... double error... removing the cache...");
+            e1.printStackTrace();
+            cacheOutOfMem=true;
+            reset();
+            return open(fileName,mode,flagLoad,keepHeader).fits;
+         }
+      }
+   }
+
    // Retrouve l'objet Fits dans le cache, null si inconnu
    protected FitsFile find(String name) {
       return map.get(name);
    }
 
-   // Ajoute un fichier Fits au cache. Celui-ci est totalement charg en mmoire
-   private FitsFile add(String name,int mode,boolean flagLoad,boolean keepHeader) throws Exception,MyInputStreamCachedException {
-      FitsFile f = open(name,mode,flagLoad,keepHeader);
-      map.put(name, f);
-      return f;
+   // Enregistre une entre charge dans le cache (segment probatoire)
+   protected void insert(String name,FitsFile f) {
+      f.name = name;
+      f.weight = f.getMem();
+      curMem.addAndGet(f.weight);
+      FitsFile old = map.put(name, f);
+      if( old!=null && old!=f ) {
+         old.removed=true;
+         unprotect(old);
+         curMem.addAndGet(-old.weight);
+      }
+      probation.add(f);
+      f.setLoaded(true);
    }
 
    // Suppression d'un fichier Fits de cache.
@@ -279,10 +362,18 @@ public class CacheFits {
          f.fits.loadPreview(fileName,true, (mode&HHH)==0, format);
          
       } else {
-         f.fits.loadFITS(fileName, false, flagLoad,true);
+         if( canMap(flagLoad) ) f.fits.loadFITSMapped(fileName);
+         else f.fits.loadFITS(fileName, false, flagLoad,true);
          setAltBlank(f.fits);
          if( context!=null ) {
             flagChangeOrig = f.fits.bzero!=context.bZeroOrig || f.fits.bscale!=context.bScaleOrig;
+            
+            // Le changement d'chelle modifie les pixels => rechargement classique
+            if( flagChangeOrig && f.fits.isMapped() ) {
+               f.fits = new Fits();
+               f.fits.loadFITS(fileName, false, flagLoad,true);
+               setAltBlank(f.fits);
+            }
             if( flagChangeOrig && firstChangeOrig ) {
                context.warning("All original data sets do no used the same BZERO & BSCALE factors => rescaling will be applied => "+fileName);
                firstChangeOrig=false;
@@ -332,121 +423,129 @@ public class CacheFits {
    // Retourne true si le cache est en surcapacit
    protected boolean isOver() {
       if( map.size()>maxFile ) return true;
-      if( maxMem<0 ) {
-//                  System.out.println("Cachemem="+Util.getUnitDisk(mem)+" freeMem="+Util.getUnitDisk(getFreeMem())
-//                        +" maxMem="+Util.getUnitDisk(-maxMem)
-//                        +" isOver="+(mem>getFreeMem()+maxMem));
-         //         return mem>getFreeMem()+maxMem;
-         return getFreeMem()<-maxMem;
-      }
-      return getMem()>maxMem;
+      if( maxMem<0 ) return getFreeMem()<-maxMem;
+      return curMem.get()>maxMem;
    }
 
    /** Retourne la taille occupe par le cache */
    public long getMem() {
-      long mem=0L;
-      if( map==null ) return mem;
-      try { for( FitsFile f: map.values() ) mem += f.fits.getMem(); } catch( Exception e ) { };
-      return mem;
+      return curMem==null ? 0L : curMem.get();
    }
 
    // Force le nettoyage du clean
-   public void forceClean() {
-      synchronized( lockObj  ) {  clean(); }
-   }
-
+   public void forceClean() { clean(); }
 
-   volatile boolean deja=false;
-   
-   // Supprime les plus vieux lments du cache pour
-   // qu'il y ait un peu de place libre
+   // Supprime les lments les moins utiles du cache (politique SLRU) jusqu' revenir
+   // dans les capacits du cache. Si un autre thread est dj en train de le faire,
+   // on ne l'attend pas
    protected void clean() {
-      
-      synchronized( lockObj ) {
-         long mem = getMem();
+      if( !evictLock.tryLock() ) return;
+      try {
+         long now = System.currentTimeMillis();
          long freeMem = getFreeMem();
+         long mem = curMem.get();
          
-         boolean tooManyFile = map.size()>maxFile;
-         boolean tooManyMem = maxMem<0 && freeMem<-maxMem || maxMem>=0 && mem>maxMem;
-         if( !tooManyFile && !tooManyMem ) return;
-         
-//         if( !isOver() ) return;
+         int nbToFree = map.size()-maxFile;
+         long memToFree = maxMem<0 ? -maxMem-freeMem : mem-maxMem;
+         if( nbToFree<=0 && memToFree<=0 ) return;
          
          long totMem=0L;
-         long m=0;
          int nb=0;
-         boolean encore=true;
-         long now = Util.getTime(0);
-         long delay=5000;
-         boolean flagGC=false;
-
-         int pass;
-         try {
-            cacheOutOfMem=true;
-
-            HashMap<String,String> libere = new  HashMap<>(map.size());
-            HashMap<String,FitsFile> map1 = new  HashMap<>(maxFile+maxFile/2);
-
-            // en premier tour, on supprime les fits non utiliss
-            // depuis plus de 5s, et si pas assez de mmoire, on ne regarde plus la date
-            for( pass=0; pass<2 && encore; pass++) {
-               int mapsize=map.size();
-
-               for( String key: map.keySet() ) {
-                  FitsFile f = map.get(key);
-                  if( f.fits.hasUsers() ) continue;
-                  if( pass==0 && now-f.timeAccess<delay ) continue;
-                  m = f.getMem();
-                  totMem+=m;
-                  nb++;
-                  statNbFree++;
-
-                  libere.put(key,"");
-                  if( totMem>mem/3L && mapsize-nb < 2*maxFile/3 ) { encore=false; break; }
-               }
-
-               for( String key: map.keySet() ) {
-                  if( libere.get(key)!=null ) continue;
-                  FitsFile f = map.get(key);
-                  map1.put(key,f);
-               }
-               
-               // Obligatoire d'appeler le remove dans le cas d'un cacheFitsWriter
-               if( this instanceof CacheFitsWriter ) {
-                  for( String key: libere.keySet() ) try { remove(key); } catch( Exception e ) {}
-               }
-               
-               map=map1;
-            }
-
-            // Je fais explicitement un gc() si la taille RAM restante est plus petite que la moiti de la taille du cache
-            // sinon on laisse la JVM grer tout seul
-            if( freeMem < mem/2 ) { gc(); flagGC=true; }
+         int nbRecent=0;
+         
+         // Le nombre de candidats examins est born pour ne pas boucler sur des Fits en cours d'utilisation
+         for( int n=2*map.size()+1; n>0 && (nb<nbToFree || totMem<memToFree); n-- ) {
+            FitsFile f = nextVictim();
+            if( f==null ) break;
+            if( f.fits.hasUsers() ) { probation.add(f); continue; }
             
-         } finally {
-            cacheOutOfMem=false;
+            if( now-f.timeAccess<DELAYRECENT ) nbRecent++;
+            totMem += evict(f);
+            nb++;
          }
-
-         long duree = Util.getTime(0) - now;
-         String s1 = pass>1 ? "s":"";
-         long freeRam = getFreeMem();
          nbClean++;
+
          if( context!=null && context.getVerbose()>=3) {
-            String tps = duree>1000 ? " in "+Util.getTemps(duree/1000L):""; 
-            String p = pass>1 ? " in "+pass+" steps":"";
-            context.stat("Cache: freeRAM="+Util.getUnitDisk(freeMem)+" => "+nb+" files released ("+Util.getUnitDisk(totMem)+")"+p+s1+tps
-            +(flagGC?" => freeRAM="+Util.getUnitDisk(freeRam):""));
+            long duree = System.currentTimeMillis() - now;
+            String tps = duree>1000 ? " in "+Util.getTemps(duree*1000L):""; 
+            context.stat("Cache: freeRAM="+Util.getUnitDisk(freeMem)+" => "+nb+" files released ("+Util.getUnitDisk(totMem)+")"
+                  +(nbRecent>0 ? " including "+nbRecent+" recently used":"")+tps);
          }
          
          // Modification de la capacit du cache
-         // (augmentation si dernier nettoyage en 2 passes, diminution si a fait longtemps qu'on n'a pas du augmenter)
-         now = System.currentTimeMillis();
-         if( pass>1 ) { 
+         // (augmentation s'il a fallu vincer des fichiers rcemment utiliss, diminution si a fait longtemps qu'on n'a pas du augmenter)
+         if( nbRecent>0 ) { 
             if( increaseCache() ) timeLastIncrease=now;
          } else {
-            if( System.currentTimeMillis()-timeLastIncrease>DELAYINCREASE ) decreaseCache();
+            if( now-timeLastIncrease>DELAYINCREASE ) decreaseCache();
          }
+      } finally {
+         evictLock.unlock();
+      }
+   }
+   
+   // Retourne la prochaine entre candidate  l'viction (retire de son segment), null si aucune.
+   // Il s'agit de la plus ancienne entre du segment probatoire qui n'a pas t rutilise depuis son
+   // insertion, les autres tant promues au passage dans le segment protg. A dfaut, c'est la plus
+   // ancienne entre du segment protg (doit tre appele sous evictLock)
+   private FitsFile nextVictim() {
+      FitsFile f;
+      while( (f=probation.poll())!=null ) {
+         if( f.removed ) continue;
+         if( f.hit ) { f.hit=false; promote(f); continue; }
+         return f;
+      }
+      while( (f=protect.poll())!=null ) {
+         if( f.removed ) continue;
+         unprotect(f);
+         return f;
       }
+      return null;
+   }
+   
+   // Promotion d'une entre dans le segment protg. Si ce dernier dpasse sa part de la capacit
+   // du cache, ses plus anciennes entres non rutilises sont rtrogrades dans le segment probatoire
+   private void promote(FitsFile f) {
+      synchronized( f ) {
+         f.inProtect=true;
+         protectMem.addAndGet(f.weight);
+      }
+      protectSize.incrementAndGet();
+      protect.add(f);
+      
+      long limitMem = (long)( PROTECTRATIO * (maxMem<0 ? curMem.get() : maxMem) );
+      int limitFile = (int)( PROTECTRATIO * maxFile );
+      for( int n=protectSize.get(); n>0 && (protectMem.get()>limitMem || protectSize.get()>limitFile); n-- ) {
+         FitsFile g = protect.poll();
+         if( g==null ) break;
+         if( g.removed ) continue;
+         if( g.hit ) { g.hit=false; protect.add(g); continue; }   // seconde chance
+         unprotect(g);
+         probation.add(g);
+      }
+   }
+   
+   // Retrait d'une entre des statistiques du segment protg
+   private void unprotect(FitsFile f) {
+      synchronized( f ) {
+         if( !f.inProtect ) return;
+         f.inProtect=false;
+         protectMem.addAndGet(-f.weight);
+      }
+      protectSize.decrementAndGet();
+   }
+   
+   // Eviction d'une entre, retourne la mmoire libre
+   private long evict(FitsFile f) {
+      f.removed=true;
+      long m = f.refreshWeight();
+      // Obligatoire d'appeler le remove dans le cas d'un cacheFitsWriter (rcriture du fichier)
+      try { remove(f.name); } catch( Exception e ) { }
+      map.remove(f.name, f);
+      curMem.addAndGet(-f.weight);
+      statNbFree.incrementAndGet();
+      statNbEvict.incrementAndGet();
+      return m;
    }
    
    // Augmente la capacit du cache si possible
@@ -471,15 +570,13 @@ public class CacheFits {
    private boolean decreaseCache() {
       if( maxFile<=initFile || maxMem<=initMem ) return false;
       
-      int delay=5000;
       long now = System.currentTimeMillis();
       
       // Je vrifie qu'il y a suffisamment d'items que l'on peut effectivement librer
       int nb=0;
-      for( String key: map.keySet() ) {
-         FitsFile f = map.get(key);
-         if( f.fits.hasUsers() ) continue;
-         if( now-f.timeAccess<delay ) continue;
+      for( FitsFile f : map.values() ) {
+         if( f.fits==null || f.fits.hasUsers() ) continue;
+         if( now-f.timeAccess<DELAYRECENT ) continue;
          nb++;
          if( nb< maxFile/3 ) return false;
       }
@@ -504,16 +601,29 @@ public class CacheFits {
 
    // Reset totalement le cache
    public void reset() {
-      statNbFree+=map.size();
-      
-      if( this instanceof CacheFitsWriter ) {
+      evictLock.lock();
+      try {
          ArrayList<String> a = new ArrayList<>(map.size());
-         for( String key: map.keySet() ) a.add(key);
+         for( Map.Entry<String,FitsFile> e : map.entrySet() ) {
+            if( e.getValue().fits==null ) continue;    // en cours de chargement
+            e.getValue().removed=true;
+            a.add(e.getKey());
+         }
+         statNbFree.addAndGet(a.size());
          for( String key: a ) {
             try { remove(key); } catch( Exception e1 ) { }
+            map.remove(key);
          }
-         
-      } else map.clear();
+         probation.clear();
+         protect.clear();
+         protectMem.set(0L);
+         protectSize.set(0);
+         long mem=0L;
+         for( FitsFile f : map.values() ) mem += f.weight;
+         curMem.set(mem);
+      } finally {
+         evictLock.unlock();
+      }
 
       gc();
    }
@@ -802,13 +912,28 @@ public class CacheFits {
    static double obscale=-1;
 
    /** Retourne le nombre de fichiers ayant t ouverts */
-   public int getStatNbOpen() { return statNbOpen; }
+   public int getStatNbOpen() { return statNbOpen.get(); }
 
    /** Retourne le nombre de fichiers ayant t trouvs directement dans le cache */
-   public int getStatNbFind() { return statNbFind; }
+   public int getStatNbFind() { return statNbFind.get(); }
 
    /** Retourne le nombre de fichiers ayant t supprims du cache */
-   public int getStatNbFree() { return statNbFree; }
+   public int getStatNbFree() { return statNbFree.get(); }
+
+   /** Retourne le nombre d'accs satisfaits directement par le cache */
+   public long getStatNbHit() { return statNbHit.get(); }
+
+   /** Retourne le nombre d'accs ayant ncessit un chargement depuis le disque */
+   public long getStatNbMiss() { return statNbMiss.get(); }
+
+   /** Retourne le nombre d'entres vinces par la politique de remplacement */
+   public long getStatNbEvict() { return statNbEvict.get(); }
+
+   /** Retourne le taux de russite du cache (entre 0 et 1) */
+   public double getHitRatio() {
+      long hit=statNbHit.get(), n=hit+statNbMiss.get();
+      return n==0 ? 0 : (double)hit/n;
+   }
 
    public String toString() {
       //      int nbReleased = getNbReleased();
@@ -819,7 +944,8 @@ public class CacheFits {
             +" using "+Util.getUnitDisk(getMem())
             +(maxMem>0 ? "/"+Util.getUnitDisk(maxMem):"["+Util.getUnitDisk(maxMem)+"]")
             +" freeRAM="+Util.getUnitDisk(getFreeMem())
-            +" (opened="+statNbOpen+" reused="+statNbFind+" released="+statNbFree+(nbClean>0?" [flush:"+nbClean+"x]":"")+")";
+            +" (opened="+statNbOpen+" reused="+statNbFind+" released="+statNbFree+(nbClean>0?" [flush:"+nbClean+"x]":"")
+            +" hit="+statNbHit+" miss="+statNbMiss+" evict="+statNbEvict+" ratio="+Util.myRound(getHitRatio()*100)+"%)";
    }
 
    // retourne le nombre de fichier dans le cache dont le bloc mmoire pixel[]
@@ -841,7 +967,15 @@ public class CacheFits {
    // Gre une entre dans le cache
    protected class FitsFile {
       public Fits fits;
-      long timeAccess;
+      volatile long timeAccess;
+      
+      String name;                // Cl de l'entre
+      long weight;                // Taille mmoire de l'entre lors de sa dernire mesure
+      volatile boolean hit;       // true si l'entre a t rutilise depuis son insertion ou sa dernire promotion
+      volatile boolean removed;   // true si l'entre a t vince
+      volatile boolean inProtect; // true si l'entre est dans le segment protg
+      private final CountDownLatch loading = new CountDownLatch(1);
+      private volatile boolean loaded;
 
       private int id;
       
@@ -849,7 +983,7 @@ public class CacheFits {
 
       public FitsFile() {
          timeAccess = System.currentTimeMillis();
-         id=nextId++;
+         id=nextId.getAndIncrement();
       }
 
       //      public void free() {
@@ -860,8 +994,36 @@ public class CacheFits {
          if( fits==null ) return 0L;
          return fits.getMem();
       }
+      
+      // Remise  jour de la taille de l'entre (la libration temporaire des pixels la fait varier)
+      synchronized long refreshWeight() {
+         long m = getMem();
+         long delta = m-weight;
+         if( delta!=0 ) {
+            weight=m;
+            curMem.addAndGet(delta);
+            if( inProtect ) protectMem.addAndGet(delta);
+         }
+         return m;
+      }
+      
+      // Fin du chargement (russi ou non) => libre les threads en attente
+      void setLoaded(boolean ok) {
+         loaded=ok;
+         loading.countDown();
+      }
+      
+      // Attend la fin du chargement, retourne false s'il a chou
+      boolean waitLoaded() throws InterruptedException {
+         loading.await();
+         return loaded;
+      }
 
-      void update() { timeAccess = System.currentTimeMillis(); }
+      void update() {
+         timeAccess = System.currentTimeMillis();
+         hit=true;
+         refreshWeight();
+      }
 
       public String toString() {
          long now = System.currentTimeMillis();
@@ -40,6 +40,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
@@ -139,8 +141,11 @@ final public class Fits {
    private int [] hdu=null;   // Liste des HDU  prendre en compte (en cas de dcompression requise)
 
    private Calib calib; // Calibration astromtrique
+   
+   private PixelAccess pixAccess=null;  // Accs spcialis aux pixels (cf. getPixelAccess())
+   private boolean mapped=false;        // true si les pixels sont mapps directement depuis le fichier (pixels==null)
 
-   /** Donne une approximation de l'occupation mmoire (en bytes) */
+   /** Donne une approximation de l'occupation mmoire (en bytes) - les pixels mapps ne sont pas dans le tas */
    public long getMem() {
       long mem = 12 * 4 + 4 * 8;
       if( calib != null ) mem += calib.getMem();
@@ -655,6 +660,79 @@ final public class Fits {
       this.setFilename(filename);
    }
 
+   /** Chargement d'une image FITS (ou d'une cellule) en mappant directement ses pixels
+    * depuis le fichier disque plutt que de les recopier en mmoire. Les pixels ne sont
+    * alors accessibles qu'en lecture via getPixelDouble(), getPixelFull(), getPixelInt()
+    * et getPixelAccess() (pixels==null).
+    * Si le mapping n'est pas possible (fichier compress, trimm, BITPIX 8, > 2Go...),
+    * le chargement classique est effectu.
+    */
+   public void loadFITSMapped(String filename) throws Exception,MyInputStreamCachedException {
+      String file = parseCell(filename);
+      MyInputStream is = null;
+      boolean flagCompressed=false;
+      try {
+         is = new MyInputStreamCached( file, hdu);
+         
+         // Flux compress (ou dcompress via le cache disque) => la position du bitmap
+         // ne correspond pas  un offset dans le fichier d'origine
+         flagCompressed = (is.getType(10000) & (MyInputStream.GZ|MyInputStream.BZIP2|MyInputStream.FITSCMP))!=0;
+         if( !flagCompressed ) {
+            MyInputStream is1 = is.startRead();
+            flagCompressed = is1!=is;
+            is = is1;
+         }
+         if( !flagCompressed ) loadFITS(is, ext, xCell, yCell, zCell, widthCell, heightCell, depthCell, false,false);
+      } finally {
+         if( is != null ) is.close();
+      }
+      if( flagCompressed ) {
+         loadFITS(filename, false, true, true);
+         return;
+      }
+      this.setFilename(file);
+      
+      // BITPIX 8 et couleur RGB (bitpix 0) => pas de mapping
+      long size = (long)width * height * depth * (Math.abs(bitpix)/8);
+      if( bitpix==8 || bitpix==0 || pixels!=null || bitmapOffset<0 || size>Integer.MAX_VALUE 
+            || headerFits.hasKey(XTRIM) || !(new File(file)).canRead() ) {
+         pixels=null;
+         calib=null;
+         bitmapReleaseDone=false;
+         loadFITS(filename, false, true, true);
+         return;
+      }
+      
+      RandomAccessFile f = null;
+      try {
+         f = new RandomAccessFile(file, "r");
+         MappedByteBuffer buf = f.getChannel().map(FileChannel.MapMode.READ_ONLY, bitmapOffset, size);
+         pixAccess = PixelAccess.create(buf, bitpix, 0, 0, 0, width, height);
+      } finally {
+         if( f!=null ) f.close();
+      }
+      mapped = true;
+      bitmapReleaseDone = false;
+   }
+   
+   /** Retourne true si les pixels sont mapps depuis le fichier disque (cf. loadFITSMapped()) */
+   public boolean isMapped() { return mapped; }
+   
+   /** Retourne un accs aux pixels spcialis par BITPIX (pas de switch par pixel), que ceux-ci
+    * soient en mmoire (pixels[]) ou mapps depuis le disque.
+    * @return l'accs, ou null si les pixels ne sont pas disponibles (bitmap releas, image couleur)
+    */
+   public PixelAccess getPixelAccess() {
+      PixelAccess pa = pixAccess;
+      if( mapped ) return pa;
+      byte [] p = pixels;
+      if( p==null ) return null;
+      if( pa==null || !pa.isBackedBy(p,bitpix) ) {
+         pixAccess = pa = PixelAccess.create(p, bitpix, xCell, yCell, zCell, widthCell, heightCell);
+      }
+      return pa;
+   }
+
    /** Chargement d'une image FITS */
    public void loadFITS(MyInputStream dis) throws Exception {
       loadFITS(dis, 0,  0,0,0, -1,-1,-1);
@@ -1260,6 +1338,42 @@ final public class Fits {
    
    /** Calcul et ajoute le DATASUM  un DATASUM prcdent (permet une DATASUM HiPS global) */
    public long computeDataSum(long dataSum) { return computeDataSum(pixels,dataSum); }
+
+   static private final int DATASUMBLOC = 1<<16;   // Taille des blocs lus pour le calcul d'un DATASUM au fil du flux
+
+   /** Calcul du DATASUM des donnes d'un fichier FITS (ventuellement gzipp) en lisant le flux
+    * par blocs, sans charger l'image en mmoire (mme rsultat que loadFITS() + checkDataSum())
+    * @param filename le fichier FITS
+    * @return { DATASUM calcul, DATASUM trouv dans l'entte ou -1 s'il est absent }
+    */
+   static public long [] streamDataSum(String filename) throws Exception {
+      MyInputStream dis = null;
+      try {
+         dis = new MyInputStream(new FileInputStream(filename));
+         dis = dis.startRead();
+         HeaderFits header = new HeaderFits(dis);
+         String dataSum = header.getDataSum();
+         int naxis = header.getIntFromHeader("NAXIS");
+         long size = naxis<=0 ? 0L : Math.abs(header.getIntFromHeader("BITPIX"))/8;
+         for( int i=1; i<=naxis; i++ ) size *= header.getIntFromHeader("NAXIS"+i);
+
+         long sum32 = 0L;
+         byte [] buf = new byte[ (int)Math.min(DATASUMBLOC,size) ];
+         while( size>0 ) {
+            int n = (int)Math.min(buf.length,size);
+            dis.readFully(buf,0,n);
+            sum32 = computeDataSum(buf,n,sum32);
+            size -= n;
+         }
+         return new long[]{ sum32, dataSum==null ? -1L : Long.parseLong(dataSum.trim()) };
+      } finally { if( dis!=null ) dis.close(); }
+   }
+
+   /** Cumul de deux DATASUM (addition en complment  un, donc indpendante de l'ordre) */
+   static public long sumDataSum(long sum1, long sum2) {
+      byte [] buf = { (byte)(sum2>>>24), (byte)(sum2>>>16), (byte)(sum2>>>8), (byte)sum2 };
+      return computeDataSum(buf,sum1);
+   }
    
    static final public String ISO_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
    static final public SimpleDateFormat sdf = new SimpleDateFormat(ISO_FORMAT);
@@ -1294,23 +1408,27 @@ final public class Fits {
     * @return la nouvelle valeur du DATASUM prenant en compte le buffer de donnes
     * @throws Exception
     */
-   static long computeDataSum(byte [] buf, long sum32) {
+   static long computeDataSum(byte [] buf, long sum32) { return computeDataSum(buf,buf.length,sum32); }
+
+   /** Idem sur les len premiers octets du buffer */
+   static long computeDataSum(byte [] buf, int len, long sum32) {
       long hi,lo,hicarry,locarry;
       
       // Si jamais le buffer des donnes n'est pas un multiple de 4
       // on va le rcrire avec du bourrage au bout (cas inexistant pour les tuiles HiPS)
-      int m = buf.length%4;
+      int m = len%4;
       if( m!= 0 ) {
-         byte [] buf1 = new byte [ buf.length+m ];
-         System.arraycopy(buf, 0, buf1, 0, buf.length);
+         byte [] buf1 = new byte [ len+4-m ];
+         System.arraycopy(buf, 0, buf1, 0, len);
          buf=buf1;
+         len=buf1.length;
       }
 
       
       hi = sum32 >>> 16;
       lo = sum32 & 0xFFFF;
       
-      for( int i=0; i<buf.length; i+=4 ) {
+      for( int i=0; i<len; i+=4 ) {
          hi += ( (buf[i] & 0xFF) << 8) | (buf[i+1] & 0xFF);
          lo += ( (buf[i+2] & 0xFF) << 8) | (buf[i+3] & 0xFF);
       }
@@ -1722,14 +1840,14 @@ final public class Fits {
     *  partir du bas) sous forme d'un double
     */
    public double getPixelFull(int x, int y) {
-      double pix = getPixValDouble(pixels, bitpix, (y - yCell) * widthCell
+      double pix = mapped ? pixAccess.get(x,y) : getPixValDouble(pixels, bitpix, (y - yCell) * widthCell
             + (x - xCell));
       if( isBlankPixel(pix) ) return Double.NaN;
       return bscale * pix  + bzero;
    }
 
    public double getPixelFull(int x, int y, int z) {
-      double pix = getPixValDouble(pixels, bitpix, (z-zCell)*widthCell*heightCell + (y - yCell) * widthCell
+      double pix = mapped ? pixAccess.get(x,y,z) : getPixValDouble(pixels, bitpix, (z-zCell)*widthCell*heightCell + (y - yCell) * widthCell
             + (x - xCell));
       if( isBlankPixel(pix) ) return Double.NaN;
       return bscale * pix  + bzero;
@@ -1740,16 +1858,25 @@ final public class Fits {
       if( isBlankPixel(pix) ) return Double.NaN;
       return (pix*bscale)+bzero;
    }
+   
+   // Idem getPixFull(...) via un accs spcialis (pas de switch sur le bitpix)
+   private double getPixFull(PixelAccess pa, int i) {
+      double pix = pa.get(i);
+      if( isBlankPixel(pix) ) return Double.NaN;
+      return (pix*bscale)+bzero;
+   }
 
    /**
     * Retourne la valeur du pixel en (x,y) (y compt  partir du bas) sous forme
     * d'un double
     */
    public double getPixelDouble(int x, int y) {
+      if( mapped ) return pixAccess.get(x,y);
       return getPixValDouble(pixels, bitpix, (y - yCell) * widthCell + (x - xCell));
    }
 
    public double getPixelDouble(int x, int y, int z) {
+      if( mapped ) return pixAccess.get(x,y,z);
       return getPixValDouble(pixels, bitpix, (z-zCell)*widthCell*heightCell + (y - yCell) * widthCell + (x - xCell));
    }
 
@@ -1758,10 +1885,12 @@ final public class Fits {
     * d'un entier
     */
    public int getPixelInt(int x, int y) {
+      if( mapped ) return (int)pixAccess.get(x,y);
       return getPixValInt(pixels, bitpix, (y - yCell) * widthCell + (x - xCell));
    }
 
    public int getPixelInt(int x, int y,int z) {
+      if( mapped ) return (int)pixAccess.get(x,y,z);
       return getPixValInt(pixels, bitpix, (z-zCell)*widthCell*heightCell + (y - yCell) * widthCell + (x - xCell));
    }
 
@@ -2226,6 +2355,7 @@ final public class Fits {
     */
    synchronized public long releaseBitmap() throws Exception {
       if( bitpix == 0 ) return 0; // De fait du JPEG
+      if( mapped ) return 0;      // Rien dans le tas, l'OS gre les pages mappes
       if( hasUsers() ) return 0; // Pas possible, qq s'en sert
       if( filename==null ) return 0;
       testBitmapReleaseFeature();
@@ -2242,6 +2372,7 @@ final public class Fits {
     */
    synchronized public void reloadBitmap() throws Exception {
       if( bitpix == 0 ) return; // De fait du JPEG
+      if( mapped ) return;      // Toujours accessible via le mapping
       if( pixels != null ) return;
       if( filename==null ) return;
       if( !bitmapReleaseDone ) throw new Exception("no releaseBitmap done before");
@@ -2294,6 +2425,8 @@ final public class Fits {
    /** Pour aider le GC */
    public void free() {
       pixels = null;
+      pixAccess = null;
+      mapped = false;
       rgb = null;
       setCalib(null);
       headerFits = headerFits0 = null;
@@ -2725,9 +2858,11 @@ final public class Fits {
       int taille = widthCell * heightCell * depthCell;
 
       if( a.pixels != null && pixels != null ) {
+         PixelAccess pa1 = getPixelAccess();
+         PixelAccess pa2 = a.getPixelAccess();
          for( int i = 0; i < taille; i++ ) {
-            double v1 = getPixFull(pixels, bitpix, i);
-            double v2 = a.getPixFull(a.pixels, a.bitpix, i);
+            double v1 = getPixFull(pa1, i);
+            double v2 = a.getPixFull(pa2, i);
             double v;
                  if( mode==AVG ) v = a.isBlankPixel(v2) ? v1 : isBlankPixel(v1) ? v2 : (v1 + v2) / 2;
             else if( mode==MUL ) v = isBlankPixel(v1) || a.isBlankPixel(v2)? v1 :  v1 * v2;
@@ -2769,9 +2904,11 @@ final public class Fits {
       int taille = widthCell * heightCell * depthCell;
 
       if( a.pixels != null && pixels != null ) {
+         PixelAccess pa1 = getPixelAccess();
+         PixelAccess pa2 = a.getPixelAccess();
          for( int i = 0; i < taille; i++ ) {
-            double v1 = getPixFull(pixels, bitpix, i);
-            double v2 = a.getPixFull(a.pixels, a.bitpix, i);
+            double v1 = getPixFull(pa1, i);
+            double v2 = a.getPixFull(pa2, i);
             double fct1 = weightOut[i] / (weightOut[i] + weightIn[i]);
             double fct2 = weightIn[i] / (weightOut[i] + weightIn[i]);
             weightOut[i] += weightIn[i];
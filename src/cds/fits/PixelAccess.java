@@ -0,0 +1,154 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.fits;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * Accs en lecture aux pixels bruts d'une image FITS, spcialis par BITPIX.
+ * Le stockage sous-jacent est un ByteBuffer big-endian, soit enveloppant le tableau
+ * Fits.pixels, soit directement mapp sur le fichier disque (cf. Fits.loadFITSMapped()).
+ * La spcialisation vite le switch sur le bitpix  chaque pixel dans les boucles
+ * d'interpolation (getBilinearPixel, coadd...).
+ *
+ * Les coordonnes (x,y,z) sont exprimes dans le repre de l'image complte, l'accs
+ * tenant compte de l'origine et de la taille de la zone stocke (cellule ou image entire)
+ *
+ * @version 1.0 - oct 2026 - cration
+ */
+public abstract class PixelAccess {
+
+   protected final byte [] src;      // Tableau de pixels envelopp (null si mapping disque)
+   protected final int bitpix;       // Codage des pixels
+   private final int x0,y0,z0;       // Origine de la zone stocke
+   private final int w;              // Largeur de la zone stocke
+   private final long plane;         // Nombre de pixels d'une frame de la zone stocke
+
+   private PixelAccess(byte [] src,int bitpix,int x0,int y0,int z0,int w,int h) {
+      this.src=src;
+      this.bitpix=bitpix;
+      this.x0=x0;
+      this.y0=y0;
+      this.z0=z0;
+      this.w=w;
+      this.plane=(long)w*h;
+   }
+
+   /** Valeur brute (sans BZERO/BSCALE) du ime pixel de la zone stocke */
+   abstract public double get(int i);
+
+   /** Valeur brute (sans BZERO/BSCALE) du pixel (x,y,z), coordonnes dans l'image complte */
+   final public double get(int x,int y,int z) {
+      return get( (int)( (z-z0)*plane + (long)(y-y0)*w + (x-x0) ) );
+   }
+
+   /** Valeur brute (sans BZERO/BSCALE) du pixel (x,y) de la premire frame */
+   final public double get(int x,int y) {
+      return get( (y-y0)*w + (x-x0) );
+   }
+
+   /** Retourne true si cet accs porte bien sur ce tableau de pixels et ce codage */
+   final public boolean isBackedBy(byte [] pixels,int bitpix) {
+      return src!=null && src==pixels && this.bitpix==bitpix;
+   }
+
+   /** Retourne true s'il s'agit d'un accs par mapping disque */
+   final public boolean isMapped() { return src==null; }
+
+   /** Cration d'un accs sur un tableau de pixels en mmoire
+    * @param pixels Les pixels FITS (big-endian)
+    * @param bitpix Le codage FITS
+    * @param x0,y0,z0 Origine de la zone stocke dans l'image complte
+    * @param w,h Taille d'une frame de la zone stocke
+    * @return l'accs, null si le bitpix n'est pas support
+    */
+   static public PixelAccess create(byte [] pixels,int bitpix,int x0,int y0,int z0,int w,int h) {
+      return create(pixels,ByteBuffer.wrap(pixels),bitpix,x0,y0,z0,w,h);
+   }
+
+   /** Cration d'un accs sur un buffer (typiquement un MappedByteBuffer) */
+   static public PixelAccess create(ByteBuffer buf,int bitpix,int x0,int y0,int z0,int w,int h) {
+      return create(null,buf,bitpix,x0,y0,z0,w,h);
+   }
+
+   static private PixelAccess create(byte [] src,ByteBuffer buf,int bitpix,int x0,int y0,int z0,int w,int h) {
+      buf.order(ByteOrder.BIG_ENDIAN);
+      switch( bitpix ) {
+         case   8: return new Int8(src,buf,x0,y0,z0,w,h);
+         case  16: return new Int16(src,buf,x0,y0,z0,w,h);
+         case  32: return new Int32(src,buf,x0,y0,z0,w,h);
+         case -32: return new Float32(src,buf,x0,y0,z0,w,h);
+         case -64: return new Float64(src,buf,x0,y0,z0,w,h);
+      }
+      return null;
+   }
+
+   static final private class Int8 extends PixelAccess {
+      private final ByteBuffer b;
+      Int8(byte [] src,ByteBuffer buf,int x0,int y0,int z0,int w,int h) {
+         super(src,8,x0,y0,z0,w,h);
+         b=buf.duplicate();
+      }
+      public double get(int i) { return b.get(i) & 0xFF; }
+   }
+
+   static final private class Int16 extends PixelAccess {
+      private final ShortBuffer b;
+      Int16(byte [] src,ByteBuffer buf,int x0,int y0,int z0,int w,int h) {
+         super(src,16,x0,y0,z0,w,h);
+         b=buf.asShortBuffer();
+      }
+      public double get(int i) { return b.get(i); }
+   }
+
+   static final private class Int32 extends PixelAccess {
+      private final IntBuffer b;
+      Int32(byte [] src,ByteBuffer buf,int x0,int y0,int z0,int w,int h) {
+         super(src,32,x0,y0,z0,w,h);
+         b=buf.asIntBuffer();
+      }
+      public double get(int i) { return b.get(i); }
+   }
+
+   static final private class Float32 extends PixelAccess {
+      private final FloatBuffer b;
+      Float32(byte [] src,ByteBuffer buf,int x0,int y0,int z0,int w,int h) {
+         super(src,-32,x0,y0,z0,w,h);
+         b=buf.asFloatBuffer();
+      }
+      public double get(int i) { return b.get(i); }
+   }
+
+   static final private class Float64 extends PixelAccess {
+      private final DoubleBuffer b;
+      Float64(byte [] src,ByteBuffer buf,int x0,int y0,int z0,int w,int h) {
+         super(src,-64,x0,y0,z0,w,h);
+         b=buf.asDoubleBuffer();
+      }
+      public double get(int i) { return b.get(i); }
+   }
+}
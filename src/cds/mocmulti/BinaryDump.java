@@ -24,6 +24,7 @@ package cds.mocmulti;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
 
 import cds.aladin.MyProperties;
 import cds.moc.Moc;
@@ -36,14 +37,22 @@ import cds.moc.TMoc;
 /**
  * Binary "dumper" dedicated for MultiMoc
  * Writter and reader for MultiMoc as a binary dump
+ * Two formats:
+ *  - MC12: sequential dump, fully decoded at loading time
+ *  - MC13: MOC data blocks followed by a record table (ID, dates, properties, MOC offsets,
+ *          coarse index cells). The file is memory mapped at loading time and the MOCs
+ *          are only decoded on demand (cf. MappedDump)
  * @version 1.0 - sept 2011
+ * @version 1.1 - oct 2026 - MC13 memory mapped format
  * @author Pierre Fernique [CDS]
  */
 public final class BinaryDump {
    
    static private boolean debug=false;
    static private final byte BINVERSION[]  = { 'M','C','1','2' };  // Binary magic code
-   static private final long MAGICODE = 2021042317L;
+   static private final byte BINVERSION2[] = { 'M','C','1','3' };  // Binary magic code (memory mapped format)
+   static final long MAGICODE = 2021042317L;
+   static final int HEADSIZE = 4;                                   // Taille du code magique de dbut
    
    public BinaryDump() { }
    
@@ -63,6 +72,15 @@ public final class BinaryDump {
       rf.readFully(version);
       String va = new String(version);
       String vb = new String(BINVERSION);
+      
+      // Nouveau format => projection mmoire, dcodage des MOCs  la demande
+      if( va.equals( new String(BINVERSION2) ) ) {
+         rf.close();
+         MultiMoc moc = new MappedDump(f).load();
+         if( debug ) System.out.println("MultiMoc binary dump mapped in "+((System.currentTimeMillis()-deb)/1000.)+"s");
+         return moc;
+      }
+      
       if( !va.equals(vb) ) {
          rf.close();
          throw new Exception("MultiMoc binary dump not compatible (found ["+va+"], required ["+vb+"]");
@@ -99,8 +117,8 @@ public final class BinaryDump {
       try {
          tmp = new File(path+".tmp"+(System.currentTimeMillis()%1000));
          RandomAccessFile rf = new RandomAccessFile(tmp,"rw");
-         rf.write(BINVERSION);
-         createDump(mMoc,rf);
+         rf.write(BINVERSION2);
+         createMappedDump(mMoc,rf);
          rf.close();
 
          File f = new File(path);
@@ -137,24 +155,12 @@ public final class BinaryDump {
          Moc moc = null;
          byte typeMoc = buf.readByte();
          if( typeMoc!=NOMOC ) {
-            
-                 if( typeMoc==SMOC ) moc = new SMoc();
-            else if( typeMoc==TMOC ) moc = new TMoc();
-            else if( typeMoc==STMOC) moc = new STMoc();
-            else throw new Exception("Unknown MOC type => ["+typeMoc+"]");
-                 
-            if( moc instanceof Moc1D ) {
-               ((Moc1D)moc).setMocOrder( buf.readInteger() );
-               
-            } else {
-              ((Moc2D)moc).setMocOrder1( buf.readInteger() );
-              ((Moc2D)moc).setMocOrder2( buf.readInteger() );
-            }
-            
+            int order1 = buf.readInteger();
+            int order2 = typeMoc==STMOC ? buf.readInteger() : -1;
             int nbBytes = buf.readInteger();
             byte [] a = new byte[nbBytes];
             for( int j=0; j<a.length; j++ ) a[j] = buf.readByte();
-            moc.readSpecificDataRange( nbBytes/8, a, Moc.COMPRESS_SINGLETON);
+            moc = decodeMoc(typeMoc,order1,order2,a);
          }
          
          // Lecture de ses proprits
@@ -214,10 +220,122 @@ public final class BinaryDump {
 //   }
 
    
-   private static final byte NOMOC = 0;
-   private static final byte SMOC  = 1;
-   private static final byte TMOC  = 2;
-   private static final byte STMOC = 3;
+   static final byte NOMOC = 0;
+   static final byte SMOC  = 1;
+   static final byte TMOC  = 2;
+   static final byte STMOC = 3;
+   
+   /** Dcodage d'un MOC  partir de son type, de son (ses) ordre(s) et de son codage binaire
+    * (cf. Moc.writeSpecificDataRange(...)) */
+   static Moc decodeMoc(byte typeMoc,int order1,int order2,byte [] a) throws Exception {
+      Moc moc;
+           if( typeMoc==SMOC ) moc = new SMoc();
+      else if( typeMoc==TMOC ) moc = new TMoc();
+      else if( typeMoc==STMOC) moc = new STMoc();
+      else throw new Exception("Unknown MOC type => ["+typeMoc+"]");
+
+      if( moc instanceof Moc1D ) {
+         ((Moc1D)moc).setMocOrder( order1 );
+
+      } else {
+         ((Moc2D)moc).setMocOrder1( order1 );
+         ((Moc2D)moc).setMocOrder2( order2 );
+      }
+      moc.readSpecificDataRange( a.length/8, a, Moc.COMPRESS_SINGLETON);
+      return moc;
+   }
+   
+   /** Generate the memory mapped dump (MC13 format) associated to a MultiMoc:
+    * MOC data blocks and their coarse index cells, then the record table,
+    * then the table offset and the end MAGIC CODE
+    * @param mMoc MultiMoc to dump
+    * @seealso MappedDump
+    */
+   public void createMappedDump(MultiMoc mMoc,RandomAccessFile rf) throws Exception {
+      BufWriter buf = new BufWriter(rf);
+      ArrayList<MocItem> list = new ArrayList<>( mMoc.size() );
+      for( MocItem mi : mMoc ) list.add(mi);
+      int n = list.size();
+      byte [] type = new byte[n];
+      int [] order1 = new int[n];
+      int [] order2 = new int[n];
+      long [] mocPos = new long[n];
+      int [] mocLen = new int[n];
+      long [] cellsPos = new long[n];
+      
+      // Les MOCs et leurs cellules d'index
+      for( int i=0; i<n; i++ ) {
+         Moc moc = list.get(i).getMoc();
+         cellsPos[i] = -1L;
+         order2[i] = -1;
+         if( moc==null ) { type[i]=NOMOC; continue; }
+         
+         int nbCoding=-1;
+         if( moc instanceof SMoc ) {
+            type[i] = SMOC;
+            order1[i] = ((Moc1D)moc).getMocOrder();
+            nbCoding = ((Moc1D)moc).seeRangeList().sz;
+         } else if( moc instanceof TMoc ) {
+            type[i] = TMOC;
+            order1[i] = ((Moc1D)moc).getMocOrder();
+         } else {
+            type[i] = STMOC;
+            order1[i] = ((Moc2D)moc).getMocOrder1();
+            order2[i] = ((Moc2D)moc).getMocOrder2();
+         }
+         if( nbCoding==-1) nbCoding = moc.getNbCoding();
+         ByteArrayOutputStream byteStream = new ByteArrayOutputStream(nbCoding*8);
+         mocLen[i] = moc.writeSpecificDataRange(byteStream,Moc.COMPRESS_SINGLETON);
+         mocPos[i] = buf.position();
+         byte [] a = byteStream.toByteArray();
+         for( int j=0; j<mocLen[i]; j++ ) buf.memoByte(a[j]);
+         
+         long [][] cells = MocIndex.getCells(moc);
+         cellsPos[i] = buf.position();
+         buf.memoByte( (byte)( (cells[0]!=null ? 1 : 0) | (cells[1]!=null ? 2 : 0) ) );
+         if( cells[0]!=null ) {
+            buf.memoInteger(cells[0].length);
+            for( long c : cells[0] ) buf.memoInteger( (int)c );
+         }
+         if( cells[1]!=null ) {
+            buf.memoInteger(cells[1].length);
+            for( long c : cells[1] ) buf.memoLong(c);
+         }
+         buf.flush();
+      }
+      
+      // La table des enregistrements
+      long tablePos = buf.position();
+      buf.memoString(mMoc.getCoordSys());
+      buf.memoInteger(n);
+      for( int i=0; i<n; i++ ) {
+         MocItem mi = list.get(i);
+         buf.memoLong(mi.dateMoc);
+         buf.memoString(mi.mocId);
+         buf.memoByte(type[i]);
+         buf.memoInteger(order1[i]);
+         buf.memoInteger(order2[i]);
+         buf.memoLong(mocPos[i]);
+         buf.memoInteger(mocLen[i]);
+         buf.memoLong(cellsPos[i]);
+         buf.memoLong(mi.dateProp);
+         MyProperties prop = mi.prop;
+         if( prop==null ) buf.memoInteger(0);
+         else {
+            buf.memoInteger( prop.size() );
+            for( String key : prop.getKeys() ) {
+               buf.memoString(key);
+               buf.memoString(prop.get(key));
+            }
+         }
+         buf.flush();
+      }
+      
+      // Position de la table et marque de fin de fichier
+      buf.memoLong(tablePos);
+      buf.memoLong(MAGICODE);
+      buf.flush();
+   }
 
 
    /** Generate the dump associated to a MultiMoc
@@ -234,7 +352,7 @@ public final class BinaryDump {
          
          // Enregistrement d'un MOC
          buf.memoLong(mi.dateMoc);
-         Moc moc = mi.moc;
+         Moc moc = mi.getMoc();
          String mocId = mi.mocId;
          buf.memoString(mocId);
          
@@ -98,6 +98,9 @@ public final class BufWriter {
       buf[offset++]= (byte)((v>>56) & 0xFF);
    }
    
+   /** Position courante dans le fichier (octets dj crits + octets en attente) */
+   public long position() throws Exception { return in.getFilePointer()+offset; }
+   
    public void flush() throws Exception {
       in.write(buf,0,offset);
       offset=0;
@@ -0,0 +1,81 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.mocmulti;
+
+import cds.aladin.MyProperties;
+import cds.moc.Moc;
+
+/**
+ * MocItem issu d'un dump binaire projet en mmoire (cf. MappedDump).
+ * Le champ moc reste  null (sauf affectation explicite) : le MOC est dcod  la demande
+ * par getMoc() et conserv dans le cache LRU du dump, non dans l'enregistrement.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class DumpItem extends MocItem {
+
+   private final MappedDump dump;   // Le dump d'origine
+   final byte typeMoc;              // Type du MOC (cf. BinaryDump.NOMOC, SMOC...)
+   final int order1,order2;         // Ordres du MOC (order2 pour les STMOCs uniquement)
+   final long mocPos;               // Position du codage du MOC dans le dump
+   final int mocLen;                // Taille du codage du MOC
+   final long cellsPos;             // Position des cellules d'index dans le dump (-1 si aucune)
+
+   DumpItem(String id,MyProperties p,long dMoc,long dProp,MappedDump dump,
+         byte typeMoc,int order1,int order2,long mocPos,int mocLen,long cellsPos) {
+      super(id,null,null,dMoc,dProp);
+      prop=p;
+      this.dump=dump;
+      this.typeMoc=typeMoc;
+      this.order1=order1;
+      this.order2=order2;
+      this.mocPos=mocPos;
+      this.mocLen=mocLen;
+      this.cellsPos=cellsPos;
+   }
+
+   public Moc getMoc() {
+      if( moc!=null || typeMoc==BinaryDump.NOMOC ) return moc;
+      return dump.getMoc(this);
+   }
+
+   public int getMocType() {
+      if( moc!=null ) return super.getMocType();
+      return typeMoc-1;
+   }
+
+   MocItem share() {
+      DumpItem mi = new DumpItem(mocId,prop,dateMoc,dateProp,dump,typeMoc,order1,order2,mocPos,mocLen,cellsPos);
+      mi.moc=moc;
+      mi.fileDateMoc=fileDateMoc;
+      return mi;
+   }
+
+   /** Cellules d'index mmorises dans le dump (cf. MocIndex.getCells(Moc)) */
+   long [][] getCells() { return dump.getCells(cellsPos); }
+
+   /** Dcodage du MOC  partir de son codage binaire */
+   Moc decode(byte [] a) throws Exception {
+      return BinaryDump.decodeMoc(typeMoc,order1,order2,a);
+   }
+}
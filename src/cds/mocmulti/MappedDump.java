@@ -0,0 +1,197 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.mocmulti;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cds.aladin.MyProperties;
+import cds.moc.Moc;
+
+/**
+ * Dump binaire de MultiMoc projet en mmoire (format MC13, cf. BinaryDump).
+ *
+ * Le fichier est projet par segments d'1 Go. A l'ouverture, seule la table des
+ * enregistrements (identificateurs, dates, proprits, positions des MOCs et des cellules
+ * d'index) est parcourue. Les MOCs ne sont dcods qu' la demande (cf. DumpItem.getMoc()),
+ * les derniers utiliss tant conservs dans un cache LRU born en mmoire (CACHESIZE).
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class MappedDump {
+
+   static private final int SEGSHIFT = 30;                   // Taille des segments projets (2^30 octets)
+   static private final long SEGMASK = (1L<<SEGSHIFT)-1;
+
+   /** Taille mmoire maximale des MOCs dcods conservs dans le cache */
+   static long CACHESIZE = 64L*1024L*1024L;
+
+   private final MappedByteBuffer [] seg;      // Les segments projets
+   private final long length;                  // Taille du fichier
+   private final LinkedHashMap<Long,Moc> cache; // MOCs dcods, reprs par leur position (ordre LRU)
+   private long cacheMem;                      // Taille mmoire des MOCs du cache
+
+   /** Projection en mmoire du fichier */
+   MappedDump(File f) throws Exception {
+      try( RandomAccessFile rf = new RandomAccessFile(f,"r") ) {
+         FileChannel channel = rf.getChannel();
+         length = channel.size();
+         seg = new MappedByteBuffer[ (int)((length+SEGMASK)>>>SEGSHIFT) ];
+         for( int i=0; i<seg.length; i++ ) {
+            long pos = (long)i<<SEGSHIFT;
+            seg[i] = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(SEGMASK+1, length-pos) );
+         }
+      }
+      cache = new LinkedHashMap<>(64,0.75f,true);
+   }
+
+   /** Construction du MultiMoc  partir de la table des enregistrements
+    * (les MOCs restent dans le fichier) */
+   MultiMoc load() throws Exception {
+      if( length<BinaryDump.HEADSIZE+16 || getLong(length-8)!=BinaryDump.MAGICODE ) {
+         throw new Exception("Multimoc dump error. Bad end MAGIC CODE");
+      }
+      long [] pos = { getLong(length-16) };
+
+      MultiMoc mMoc = new MultiMoc();
+      getString(pos);
+      int nbMoc = getInt(pos);
+      for( int i=0; i<nbMoc; i++ ) {
+         long dateMoc = getLong(pos);
+         String mocId = getString(pos);
+         byte typeMoc = get(pos[0]++);
+         int order1 = getInt(pos);
+         int order2 = getInt(pos);
+         long mocPos = getLong(pos);
+         int mocLen = getInt(pos);
+         long cellsPos = getLong(pos);
+         long dateProp = getLong(pos);
+         int n = getInt(pos);
+         MyProperties prop = n>0 ? new MyProperties() : null;
+         for( int j=0; j<n; j++ ) {
+            String key = getString(pos);
+            String value = getString(pos);
+            prop.put(key, value);
+         }
+         mMoc.add( new DumpItem(mocId,prop,dateMoc,dateProp,this,typeMoc,order1,order2,mocPos,mocLen,cellsPos) );
+      }
+      return mMoc;
+   }
+
+   /** Retourne le MOC de l'enregistrement, dcod si ncessaire (null en cas d'erreur).
+    * Le MOC retourn est partag via le cache : il ne doit pas tre modifi */
+   Moc getMoc(DumpItem di) {
+      Long key = di.mocPos;
+      synchronized( cache ) {
+         Moc moc = cache.get(key);
+         if( moc!=null ) return moc;
+      }
+      Moc moc;
+      try { moc = di.decode( read(di.mocPos,di.mocLen) ); }
+      catch( Exception e ) {
+         System.err.println("MultiMoc dump: MOC "+di.mocId+" not readable ["+e.getMessage()+"]");
+         return null;
+      }
+      synchronized( cache ) {
+         if( cache.put(key,moc)==null ) cacheMem += moc.getMem();
+         Iterator<Map.Entry<Long,Moc>> it = cache.entrySet().iterator();
+         while( cacheMem>CACHESIZE && cache.size()>1 ) {
+            Map.Entry<Long,Moc> e = it.next();
+            cacheMem -= e.getValue().getMem();
+            it.remove();
+         }
+      }
+      return moc;
+   }
+
+   /** Lecture des cellules d'index mmorises  la position pos (cf. MocIndex.getCells(Moc)) */
+   long [][] getCells(long p) {
+      if( p<0 ) return null;
+      long [] pos = { p };
+      long [][] cells = new long[2][];
+      byte flags = get(pos[0]++);
+      if( (flags & 1)!=0 ) {
+         cells[0] = new long[ getInt(pos) ];
+         for( int i=0; i<cells[0].length; i++ ) cells[0][i] = getInt(pos);
+      }
+      if( (flags & 2)!=0 ) {
+         cells[1] = new long[ getInt(pos) ];
+         for( int i=0; i<cells[1].length; i++ ) cells[1][i] = getLong(pos);
+      }
+      return cells;
+   }
+
+   /** Lecture de len octets  partir de la position pos (ventuellement  cheval sur deux segments) */
+   byte [] read(long pos,int len) {
+      byte [] a = new byte[len];
+      int i=0;
+      while( i<len ) {
+         ByteBuffer b = seg[ (int)(pos>>>SEGSHIFT) ].duplicate();
+         int off = (int)(pos & SEGMASK);
+         int n = Math.min(len-i, b.limit()-off);
+         b.position(off);
+         b.get(a,i,n);
+         i+=n;
+         pos+=n;
+      }
+      return a;
+   }
+
+   // Lecture d'un octet  une position absolue
+   private byte get(long pos) { return seg[ (int)(pos>>>SEGSHIFT) ].get( (int)(pos & SEGMASK) ); }
+
+   // Lectures squentielles (octet de poids faible en premier, cf. BufWriter), pos[0] tant avanc
+   private int getInt(long [] pos) {
+      long p = pos[0];
+      pos[0]+=4;
+      return (get(p)&0xFF) | (get(p+1)&0xFF)<<8 | (get(p+2)&0xFF)<<16 | (get(p+3)&0xFF)<<24;
+   }
+
+   private long getLong(long [] pos) {
+      long v = getLong(pos[0]);
+      pos[0]+=8;
+      return v;
+   }
+
+   private long getLong(long p) {
+      long v=0L;
+      for( int i=7; i>=0; i-- ) v = (v<<8) | (get(p+i)&0xFFL);
+      return v;
+   }
+
+   private String getString(long [] pos) throws Exception {
+      long p = pos[0];
+      int n = (short)( (get(p)&0xFF) | (get(p+1)&0xFF)<<8 );
+      pos[0]+=2;
+      if( n==-1 ) return null;
+      byte [] a = read(pos[0],n);
+      pos[0]+=n;
+      return new String(a,"UTF-8");
+   }
+}
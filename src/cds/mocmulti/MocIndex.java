@@ -0,0 +1,275 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.mocmulti;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+import cds.moc.Moc;
+import cds.moc.Moc1D;
+import cds.moc.Range;
+
+/**
+ * Index spatial et temporel invers des MocItems d'un MultiMoc.
+ *
+ * Chaque MocItem reoit un numro d'ordre (ordinal). Pour chaque cellule HEALPix d'ordre
+ * SPACE_ORDER, et pour chaque intervalle de temps d'ordre TIME_ORDER, l'index mmorise
+ * la liste des ordinaux des MocItems qui la touchent. Une requte par MOC commence donc
+ * par dterminer les candidats (ceux qui partagent au moins une cellule grossire avec la
+ * rgion demande) et seuls ces candidats subissent le test exact (isIntersecting,
+ * isIncluding). Le rsultat est strictement identique au parcours linaire car :
+ *  - le passage  l'ordre grossier ne peut qu'agrandir les couvertures ;
+ *  - les MOCs trop tendus, vides ou non analysables sont toujours candidats ;
+ *  - un MocItem inconnu de l'index, ou dont le MOC a t remplac depuis son
+ *    indexation, est galement toujours candidat.
+ * Les suppressions librent l'ordinal sans nettoyer les listes ; l'index est reconstruit
+ * lorsque les ordinaux morts deviennent majoritaires.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class MocIndex {
+
+   /** Ordre HEALPix des cellules de l'index spatial (12288 cellules) */
+   static final int SPACE_ORDER = 5;
+
+   /** Ordre temporel des intervalles de l'index temporel (2^41 microsecondes, soit ~25 jours) */
+   static final int TIME_ORDER = 20;
+
+   /** Nombre maximal de cellules par MOC au-del duquel le MOC n'est pas index (toujours candidat) */
+   static final int MAXCELLS = 1024;
+   
+   static private final long [] ALWAYS = new long[0];
+
+   private MocItem [] items;     // MocItem associ  chaque ordinal (null si supprim)
+   private Moc [] indexed;       // MOC effectivement index pour chaque ordinal
+   private int nbOrd;            // Nombre d'ordinaux attribus
+   private int nbLive;           // Nombre de MocItems vivants
+
+   private IntList [] space;                // Listes des ordinaux par cellule spatiale
+   private HashMap<Long,IntList> time;      // Listes des ordinaux par intervalle temporel
+   private BitSet alwaysSpace;              // Ordinaux toujours candidats pour une requte spatiale
+   private BitSet alwaysTime;               // Ordinaux toujours candidats pour une requte temporelle
+   private HashMap<String,PropIndex> props; // Index des proprits, construits  la demande (cf. PropIndex)
+
+   MocIndex() { clear(); }
+
+   /** Rinitialisation complte */
+   void clear() {
+      items = new MocItem[1024];
+      indexed = new Moc[1024];
+      nbOrd = nbLive = 0;
+      space = new IntList[ 12<<(2*SPACE_ORDER) ];
+      time = new HashMap<>();
+      alwaysSpace = new BitSet();
+      alwaysTime = new BitSet();
+      props = new HashMap<>();
+   }
+
+   /** Reconstruction complte  partir d'une liste de MocItems */
+   void rebuild(Iterable<MocItem> list) {
+      clear();
+      for( MocItem mi : list ) add(mi);
+   }
+
+   /** Indexation d'un nouveau MocItem */
+   void add(MocItem mi) {
+      if( nbOrd==items.length ) {
+         MocItem [] a = new MocItem[ nbOrd*2 ];
+         System.arraycopy(items,0,a,0,nbOrd);
+         items=a;
+         Moc [] b = new Moc[ nbOrd*2 ];
+         System.arraycopy(indexed,0,b,0,nbOrd);
+         indexed=b;
+      }
+      int ord = nbOrd++;
+      items[ord] = mi;
+      indexed[ord] = mi.moc;
+      mi.ord = ord;
+      nbLive++;
+
+      // Les cellules des MOCs non encore dcods sont lues directement dans le dump
+      long [][] cells = mi instanceof DumpItem && mi.moc==null ? ((DumpItem)mi).getCells() : getCells(mi.moc);
+      if( cells==null ) return;
+      if( cells[0]!=null ) {
+         if( cells[0].length==0 ) alwaysSpace.set(ord);
+         else for( long c : cells[0] ) {
+            IntList l = space[(int)c];
+            if( l==null ) space[(int)c] = l = new IntList();
+            l.add(ord);
+         }
+      }
+      if( cells[1]!=null ) {
+         if( cells[1].length==0 ) alwaysTime.set(ord);
+         else for( long c : cells[1] ) {
+            IntList l = time.get(c);
+            if( l==null ) time.put(c, l=new IntList() );
+            l.add(ord);
+         }
+      }
+   }
+   
+   /** Cellules grossires couvertes par un MOC : [0] spatiales (ordre SPACE_ORDER),
+    * [1] temporelles (ordre TIME_ORDER). Chaque liste vaut null si le MOC n'a pas
+    * la dimension concerne, et est vide si le MOC doit toujours tre candidat
+    * (trop tendu, vide ou non analysable).
+    * @return les deux listes, ou null si le MOC est null
+    */
+   static long [][] getCells(Moc moc) {
+      if( moc==null ) return null;
+      long [][] cells = new long[2][];
+      try {
+         if( moc.isSpace() ) {
+            cells[0] = getCells( moc.getSpaceMoc(), SPACE_ORDER, MAXCELLS);
+            if( cells[0]==null ) cells[0] = ALWAYS;
+         }
+      } catch( Exception e ) { cells[0] = ALWAYS; }
+      try {
+         if( moc.isTime() ) {
+            cells[1] = getCells( moc.getTimeMoc(), TIME_ORDER, MAXCELLS);
+            if( cells[1]==null ) cells[1] = ALWAYS;
+         }
+      } catch( Exception e ) { cells[1] = ALWAYS; }
+      return cells;
+   }
+
+   /** Retrait d'un MocItem (les listes ne sont pas nettoyes, l'ordinal est simplement libr) */
+   void remove(MocItem mi) {
+      int ord = mi.ord;
+      if( ord<0 || ord>=nbOrd || items[ord]!=mi ) return;
+      items[ord]=null;
+      indexed[ord]=null;
+      alwaysSpace.clear(ord);
+      alwaysTime.clear(ord);
+      nbLive--;
+   }
+
+   /** Nombre d'ordinaux attribus */
+   int getNbOrd() { return nbOrd; }
+
+   /** MocItem associ  un ordinal, null s'il a t retir */
+   MocItem getItem(int ord) { return items[ord]; }
+
+   /** Retourne true si le MocItem est connu de l'index sous son ordinal courant */
+   boolean isIndexed(MocItem mi) {
+      int ord = mi.ord;
+      return ord>=0 && ord<nbOrd && items[ord]==mi;
+   }
+
+   /** Index de la proprit key, cr si ncessaire */
+   synchronized PropIndex getPropIndex(String key) {
+      PropIndex pi = props.get(key);
+      if( pi==null ) props.put(key, pi=new PropIndex(key) );
+      return pi;
+   }
+
+   /** Retourne true si l'index mrite d'tre reconstruit (trop d'ordinaux morts) */
+   boolean needRebuild() { return nbOrd > 2*nbLive+1024; }
+
+   /** Dtermination des ordinaux candidats pour une requte par MOC.
+    * @return l'ensemble des candidats, ou null si l'index ne peut tre utilis
+    *         (il faut alors tester tous les MocItems)
+    */
+   BitSet getCandidates(Moc moc) {
+      if( moc==null ) return null;
+      try {
+         BitSet res = null;
+         if( moc.isSpace() ) {
+            long [] cells = getCells( moc.getSpaceMoc(), SPACE_ORDER, Integer.MAX_VALUE);
+            if( cells==null || cells.length==0 ) return null;
+            res = (BitSet)alwaysSpace.clone();
+            for( long c : cells ) {
+               IntList l = space[(int)c];
+               if( l!=null ) l.setBits(res);
+            }
+         }
+         if( moc.isTime() ) {
+            long [] cells = getCells( moc.getTimeMoc(), TIME_ORDER, MAXCELLS*64);
+            if( cells==null || cells.length==0 ) return res;
+            BitSet t = (BitSet)alwaysTime.clone();
+            for( long c : cells ) {
+               IntList l = time.get(c);
+               if( l!=null ) l.setBits(t);
+            }
+            if( res==null ) res=t;
+            else res.and(t);
+         }
+         return res;
+      } catch( Exception e ) { return null; }
+   }
+
+   /** Retourne true si le MocItem doit subir le test exact, compte tenu des candidats
+    * retourns par getCandidates() */
+   boolean isCandidate(MocItem mi,BitSet cand) {
+      int ord = mi.ord;
+      if( ord<0 || ord>=nbOrd || items[ord]!=mi || indexed[ord]!=mi.moc ) return true;
+      return cand.get(ord);
+   }
+
+   /** Liste des cellules d'ordre order couvertes par le MOC
+    * @param max nombre maximal de cellules
+    * @return la liste des cellules, null si elle dpasse max
+    */
+   static private long [] getCells(Moc1D moc,int order,int max) {
+      Range r = moc.seeRangeList();
+      int shift = moc.shiftOrder()*(moc.maxOrder()-order);
+      long [] cells = new long[ Math.min(max, 16) ];
+      int n=0;
+      long last=-1;
+      for( int i=0; i<r.sz; i+=2 ) {
+         long deb = r.r[i]>>>shift;
+         long fin = (r.r[i+1]-1)>>>shift;
+         if( deb<=last ) deb=last+1;
+         for( long c=deb; c<=fin; c++ ) {
+            if( n==max ) return null;
+            if( n==cells.length ) {
+               long [] a = new long[ (int)Math.min((long)max, 2L*n) ];
+               System.arraycopy(cells,0,a,0,n);
+               cells=a;
+            }
+            cells[n++]=c;
+         }
+         if( fin>last ) last=fin;
+      }
+      if( n==cells.length ) return cells;
+      long [] a = new long[n];
+      System.arraycopy(cells,0,a,0,n);
+      return a;
+   }
+
+   /** Liste extensible d'ordinaux */
+   static private final class IntList {
+      private int [] a = new int[4];
+      private int n;
+
+      void add(int v) {
+         if( n==a.length ) {
+            int [] b = new int[ n*2 ];
+            System.arraycopy(a,0,b,0,n);
+            a=b;
+         }
+         a[n++]=v;
+      }
+
+      void setBits(BitSet bs) { for( int i=0; i<n; i++ ) bs.set(a[i]); }
+   }
+}
@@ -23,6 +23,9 @@ package cds.mocmulti;
 
 import cds.aladin.MyProperties;
 import cds.moc.Moc;
+import cds.moc.SMoc;
+import cds.moc.STMoc;
+import cds.moc.TMoc;
 
 
 public class MocItem {
@@ -30,6 +33,8 @@ public class MocItem {
    public Moc moc;
    public MyProperties prop;
    public long dateMoc,dateProp;
+   long fileDateMoc;         // Date du fichier MOC, mme si le MOC n'est pas mmoris (cf. MultiMoc.reload(...))
+   int ord=-1;               // Ordinal dans l'index du MultiMoc (cf. MocIndex)
    
    public MocItem(String id,Moc m, MyProperties p, long dMoc, long dProp) {
       mocId=id; moc=m; prop=p;
@@ -63,7 +68,28 @@ public class MocItem {
       return dateProp!=0 ? dateProp : dateMoc;
    }
    
-   public MocItem copy() { return new MocItem(mocId,moc,prop,dateMoc,dateProp); }
+   public MocItem copy() { return new MocItem(mocId,getMoc(),prop,dateMoc,dateProp); }
+   
+   /** Retourne le MOC associ, null si aucun. Un MocItem issu d'un dump binaire (cf. BinaryDump)
+    * ne dcode son MOC qu' la demande : il faut alors passer par cette mthode plutt que
+    * par le champ moc */
+   public Moc getMoc() { return moc; }
+   
+   /** Type du MOC associ (0:SMOC, 1:TMOC, 2:STMOC), -1 si aucun */
+   public int getMocType() {
+      Moc m = getMoc();
+      return m instanceof SMoc ? 0 : m instanceof TMoc ? 1 : m instanceof STMoc ? 2 : -1;
+   }
+   
+   /** Copie lgre partageant le MOC et les proprits (non modifies), afin qu'un mme
+    * enregistrement puisse figurer dans deux MultiMoc (cf. MultiMoc.reload(...)) */
+   MocItem share() {
+      MocItem mi = new MocItem(mocId,null,null,dateMoc,dateProp);
+      mi.moc=moc;
+      mi.prop=prop;
+      mi.fileDateMoc=fileDateMoc;
+      return mi;
+   }
    
    public boolean equals(MocItem m) {
       if( this==m ) return true;
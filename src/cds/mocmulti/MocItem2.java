@@ -39,4 +39,14 @@ public class MocItem2 extends MocItem {
    }
    
    public Moc getMocRef() { return mocRef; }
+   
+   /** Copie lgre conservant le type MocItem2 (cf. MocItem.share()) */
+   MocItem share() {
+      MocItem2 mi = new MocItem2(mocId,null,null,dateMoc,dateProp);
+      mi.moc=moc;
+      mi.prop=prop;
+      mi.fileDateMoc=fileDateMoc;
+      mi.mocRef=mocRef;
+      return mi;
+   }
 }
@@ -49,12 +49,17 @@ import java.io.FileReader;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Stack;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import cds.aladin.MyProperties;
 import cds.aladin.Tok;
@@ -76,6 +81,7 @@ import cds.moc.TMoc;
  * @version 1.1 Apr 2015 Lot of improvements...
  * @version 1.2 July 2017 Compatible with Aladin internal usage
  * @version 2.0 July 2021 MOC 2.0 compliante (SMOC + TMOC + STMOC support)
+ * @version 2.1 Oct 2026 Incremental reload + atomic update for concurrent readers
  */
 public class MultiMoc implements Iterable<MocItem> {
    
@@ -95,7 +101,11 @@ public class MultiMoc implements Iterable<MocItem> {
    
    final private String COORDSYS ="C";   // Coordinate system (HEALPix convention => G=galactic, C=Equatorial, E=Ecliptic)
    
-   protected HashMap<String, MocItem> map; // Liste des MocItem repr par leur ID (ex: CDS/P/2MASS/J)
+   private volatile MocIndex index;        // Index spatial et temporel des MocItems (pr-filtrage des scans)
+   protected volatile HashMap<String, MocItem> map; // Liste des MocItem repr par leur ID (ex: CDS/P/2MASS/J)
+   private HashMap<String, MocItem> files; // MocItem issu de chaque fichier lors du dernier reload (cf. reload incrmental)
+   private String exceptStamp;             // Fichier d'exceptions et sa date lors du dernier reload
+   private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock(); // Scans vs mises  jour (cf. update(...))
 //   private ArrayList<String> tri;        // Liste des IDs afin de pouvoir les parcourirs en ordre alphanumrique
    protected int mocOrder=-1;              // Better MOC order
    private ArrayList<MyProperties> except = null;   // List of exceptions and associating rewriting rules
@@ -106,6 +116,8 @@ public class MultiMoc implements Iterable<MocItem> {
    
    public MultiMoc() {
       map = new HashMap<>(30000);
+      index = new MocIndex();
+      files = new HashMap<>(30000);
 //      tri = new ArrayList<>(30000);
 //      nbThomas2Vizier=0;
       nbConvertFromGtoC=0;
@@ -147,16 +159,27 @@ public class MultiMoc implements Iterable<MocItem> {
     * @param mocId MOC identifier
     */
    public void remove(String mocId) {
-      MocItem mi = map.get(mocId);
-      if( mi==null ) return;
-      map.remove(mocId);
-//      tri.remove(mocId);
+      lock.writeLock().lock();
+      try {
+         MocItem mi = map.get(mocId);
+         if( mi==null ) return;
+         map.remove(mocId);
+         index.remove(mi);
+         if( index.needRebuild() ) index.rebuild( map.values() );
+//         tri.remove(mocId);
+      } finally { lock.writeLock().unlock(); }
    }
    
    /** Add directly a MocItem */
    public void add(MocItem mi) {
-      map.put(mi.mocId,mi);
-//      if( map.put(mi.mocId,mi)==null ) tri.add(mi.mocId);
+      lock.writeLock().lock();
+      try {
+         MocItem old = map.put(mi.mocId,mi);
+         if( old!=null ) index.remove(old);
+         index.add(mi);
+         if( index.needRebuild() ) index.rebuild( map.values() );
+//         if( map.put(mi.mocId,mi)==null ) tri.add(mi.mocId);
+      } finally { lock.writeLock().unlock(); }
    }
    
    /** Return directly a MocItem */
@@ -167,7 +190,7 @@ public class MultiMoc implements Iterable<MocItem> {
    /** Return the MOC associated to a mocId, null if not found */
    public Moc getMoc(String mocId) {
       MocItem mi = map.get(mocId);
-      return mi==null ? null : mi.moc;
+      return mi==null ? null : mi.getMoc();
    }
    
    /** Return the Properties associated to a mocId, null if not found */
@@ -263,8 +286,13 @@ public class MultiMoc implements Iterable<MocItem> {
 
    /** Clear the multiMoc */
    public void clear() {
-      map.clear();
-//      tri.clear();
+      lock.writeLock().lock();
+      try {
+         map.clear();
+         index.clear();
+         files.clear();
+//         tri.clear();
+      } finally { lock.writeLock().unlock(); }
    }
    
    static private Healpix hpx = new Healpix();
@@ -464,12 +492,70 @@ public class MultiMoc implements Iterable<MocItem> {
     * @throws Exception
     */
    public boolean reload(String [] dirs, String exceptFile, MultiMoc oMM,boolean flagWithMoc, PrintWriter out) throws Exception {
+      return reload(dirs,exceptFile,oMM,flagWithMoc,false,out);
+   }
+   
+   /**
+    * Incremental update of the MultiMoc from a dedicated directory. The new state is built
+    * aside (unchanged files are not re-read, cf. reload(...,incremental=true,...)) then atomically
+    * swapped in, so concurrent scans always see either the previous or the new state.
+    * @param dirs input directory list
+    * @param exceptFile Exception.prop file path, or null
+    * @param flagWithMoc false for avoiding to load Moc (only Prop)
+    * @param out
+    * @return true if something has been changed
+    * @throws Exception
+    */
+   public synchronized boolean update(String [] dirs, String exceptFile, boolean flagWithMoc, PrintWriter out) throws Exception {
+      MultiMoc mm = new MultiMoc();
+      boolean rep = mm.reload(dirs,exceptFile,this,flagWithMoc,true,out);
+      swap(mm);
+      return rep;
+   }
+   
+   /** Remplacement atomique de l'tat courant par celui d'un autre MultiMoc */
+   private void swap(MultiMoc mm) {
+      lock.writeLock().lock();
+      try {
+         map = mm.map;
+         index = mm.index;
+         files = mm.files;
+         exceptStamp = mm.exceptStamp;
+         except = mm.except;
+         mocOrder = mm.mocOrder;
+         nbConvertFromGtoC = mm.nbConvertFromGtoC;
+         nbReduceMem = mm.nbReduceMem;
+         example = null;
+      } finally { lock.writeLock().unlock(); }
+   }
+   
+   /**
+    * Addition/update of all MOCs of a dedicated directory with possible comparaison with previous state
+    * @param dirs input directory list
+    * @param exceptFile Exception.prop file path, or null
+    * @param oMM previous MultiMoc, or null
+    * @param flagWithMoc false for avoiding to load Moc (only Prop)
+    * @param incremental true for reusing directly the oMM entries whose MOC and properties files
+    *                    have not been modified since (same dateMoc and dateProp), without re-reading them
+    * @param out
+    * @return true if something has been changed compared to oMM
+    * @throws Exception
+    */
+   public boolean reload(String [] dirs, String exceptFile, MultiMoc oMM,boolean flagWithMoc, boolean incremental, PrintWriter out) throws Exception {
 
       String s;
       
       
       // (Re)chargement du fichiers d'exceptions
       try { loadException(exceptFile); } catch( Exception e) {}
+      exceptStamp = exceptFile==null ? null : exceptFile+" "+(new File(exceptFile)).lastModified();
+      
+      // Le mode incrmental n'a de sens que si les rgles d'exceptions n'ont pas chang
+      // (elles modifient les proprits lors du chargement)
+      if( incremental ) {
+         incremental = oMM!=null && oMM.files.size()>0
+               && (exceptStamp==null ? oMM.exceptStamp==null : exceptStamp.equals(oMM.exceptStamp));
+      }
       
       // taille originale
       int originalSize = oMM==null ? 0 : oMM.map.size();
@@ -513,22 +599,23 @@ public class MultiMoc implements Iterable<MocItem> {
       // Partage des taches, et excution en parallle
       Reader reader [] = new Reader[ nbReaders ];
       HashSet<String> listId = new HashSet<>(list.size() );
+      ExecutorService pool = Executors.newFixedThreadPool(nbReaders);
       for( int i=0; i<reader.length; i++ ) {
-         reader[i] = new Reader(oMM,flagWithMoc,out,list,listId);
-         reader[i].start();
+         reader[i] = new Reader(oMM,flagWithMoc,incremental,out,list,listId);
+         pool.execute(reader[i]);
       }
+      pool.shutdown();
       
       // Attente de la fin des travaux
       boolean encore = true;
       int oNbFiles=0;
       long t1 = System.currentTimeMillis();
       while( encore ) {
+         try { encore = !pool.awaitTermination(1,TimeUnit.SECONDS); } catch( InterruptedException e ) {}
          int nbFiles=0;
-         encore=false;
          int nth=0;
          for( Reader r : reader ) {
             if( r.running() ) nth++;
-            encore |= r.running();
             nbFiles+= r.nbFiles;
          }
          long t2 = System.currentTimeMillis();
@@ -540,7 +627,6 @@ public class MultiMoc implements Iterable<MocItem> {
             t1=t2;
             oNbFiles=nbFiles;
          }
-         try { Thread.sleep(1000); } catch( Exception e ) {}
       }
       
       if( list.size()>0 ) {
@@ -556,10 +642,12 @@ public class MultiMoc implements Iterable<MocItem> {
       int nbFiles=0;
       int nbCreation=0;
       int nbReused=0;
+      int nbUnchanged=0;
       for( Reader r : reader ) {
          nbFiles+= r.nbFiles;
          nbCreation+= r.nbCreation;
          nbReused+= r.nbReused;
+         nbUnchanged+= r.nbUnchanged;
       }
 
       double nb = nbFiles%1000;
@@ -573,7 +661,8 @@ public class MultiMoc implements Iterable<MocItem> {
       print(out,s);
 
       if( oMM!=null ) {
-         s = " => "+nbCreation+" created or updated - "+nbReused+" reused as is\n";
+         s = " => "+nbCreation+" created or updated - "+nbReused+" reused as is"
+               +(incremental ? " ("+nbUnchanged+" unchanged files not re-read)\n" : "\n");
          print(out,s);
       }
       
@@ -581,21 +670,24 @@ public class MultiMoc implements Iterable<MocItem> {
       return nbCreation>0 || nbReused!=originalSize ;
    }
 
-   /** Reader de Moc et Prop */
-   class Reader extends Thread {
+   /** Reader de Moc et Prop (tche du pool de lecture) */
+   class Reader implements Runnable {
       ConcurrentLinkedQueue<File> list; // La liste des fichiers  lire
-      boolean running;                  // true si le Thread est encore en train de travailler
+      volatile boolean running;         // true si le Reader est encore en train de travailler
       MultiMoc oMM;
       HashSet<String> listId;           // Liste des mocId dj traits
       boolean flagWithMoc;
+      boolean incremental;              // true si les fichiers non modifis ne sont pas relus
       PrintWriter out;
-      int nbFiles;                      // Nombre de fichiers traits par le reader
+      volatile int nbFiles;             // Nombre de fichiers traits par le reader
       int nbCreation,nbReused;          // Compteurs propres au reader
+      int nbUnchanged;                  // Nombre de fichiers non relus car non modifis
      
-      Reader(MultiMoc oMM,boolean flagWithMoc, PrintWriter out,
+      Reader(MultiMoc oMM,boolean flagWithMoc, boolean incremental, PrintWriter out,
             ConcurrentLinkedQueue<File> list, HashSet<String> listId) {
          this.oMM=oMM;
          this.flagWithMoc=flagWithMoc;
+         this.incremental=incremental;
          this.out=out;
          this.list = list;
          this.listId=listId;
@@ -652,8 +744,9 @@ public class MultiMoc implements Iterable<MocItem> {
       r.nbFiles=0; 
       r.nbCreation=0;
       r.nbReused=0;
+      r.nbUnchanged=0;
       String mocId=null;
-      long dateMoc,dateProp;
+      long dateMoc,dateProp,fileDateMoc;
 //      TEST=0;
 
       File f1;
@@ -665,7 +758,7 @@ public class MultiMoc implements Iterable<MocItem> {
             try {
                //            System.out.print("Loading "+f1.getName()+"...");
             filename = f1.getAbsolutePath();
-               dateMoc = (new File(filename)).lastModified();
+               fileDateMoc = dateMoc = (new File(filename)).lastModified();
                //            dateMoc = !(new File(filename)).exists() ? 0L :Files.getLastModifiedTime(FileSystems.getDefault().getPath(filename)).toMillis();
 
                // Changement d'extension => ".prop"
@@ -678,6 +771,26 @@ public class MultiMoc implements Iterable<MocItem> {
                //            dateProp = !fprop.exists() ? 0L :Files.getLastModifiedTime(FileSystems.getDefault().getPath(propname)).toMillis();
 
                mocId = getMocId( f1.getName() );
+               
+               // Mode incrmental : ni le MOC ni les proprits n'ont t modifis depuis
+               // le prcdent chargement => on reprend directement l'enregistrement
+               MocItem omi = !r.incremental ? null : r.oMM.files.get(filename);
+               if( omi!=null && omi.dateProp==dateProp && omi.fileDateMoc==fileDateMoc
+                     && omi.dateMoc==(r.flagWithMoc ? dateMoc : 0L) ) {
+                  mocId = omi.mocId;
+                  synchronized( this ) {
+                     if( r.listId.contains(mocId) ) throw new Exception("Duplicate ID");
+                     r.listId.add(mocId);
+                     MocItem mi = omi.share();
+                     add(mi);
+                     files.put(filename,mi);
+                     r.nbReused++;
+                     r.nbUnchanged++;
+                  }
+                  r.nbFiles++;
+                  continue;
+               }
+               
             prop=null;
             try {
                prop = loadProp(propname);
@@ -734,7 +847,11 @@ public class MultiMoc implements Iterable<MocItem> {
                   // Pas de changement ? => on le rutilise
                   if( (dateMoc==0L || dateMoc==mi.dateMoc) 
                         && prop!=null && mi.prop!=null && prop.equals(mi.prop) ) {
-                     add(mi);
+                     add(mi=mi.share());
+                     
+                     // Dates du fichier courant, pour une reprise directe au prochain chargement incrmental
+                     mi.dateMoc=dateMoc;
+                     mi.dateProp=dateProp;
                      flagCreation=false;
                      r.nbReused++;
 //                     System.out.println("Rutilisation de "+mocId);
@@ -750,8 +867,11 @@ public class MultiMoc implements Iterable<MocItem> {
 //                     if( mi!=null && mi.prop!=null && prop!=null ) showDiff(mocId,mi.prop,prop);
 //                  }  
                   add(mocId,moc,prop,dateMoc,dateProp);
+                  mi = map.get(mocId);
                   r.nbCreation++;
                }
+               mi.fileDateMoc=fileDateMoc;
+               files.put(filename,mi);
             }
 
             r.nbFiles++;
@@ -1259,17 +1379,21 @@ public class MultiMoc implements Iterable<MocItem> {
     * @return list of MOC identifiers
     */
    public ArrayList<String> scan(int order,long npix,String mask ) {
-      boolean match=false;
-      if( mask.charAt(0)=='!' ) { match=true; mask=mask.substring(1); }
-      ArrayList<String> res = new ArrayList<>();
-      for( MocItem mi : this ) {
-         if( mask!=null && MyProperties.matchMask(mask, mi.mocId )==match ) continue;
-         try {
-            if( mi.moc!=null && mi.moc.getSpaceMoc().isIntersecting(order, npix) ) res.add(mi.mocId);
-         } catch( Exception e ) { continue; }
-      }
-      Collections.sort(res);
-      return res;
+      lock.readLock().lock();
+      try {
+         boolean match=false;
+         if( mask.charAt(0)=='!' ) { match=true; mask=mask.substring(1); }
+         ArrayList<String> res = new ArrayList<>();
+         for( MocItem mi : this ) {
+            if( mask!=null && MyProperties.matchMask(mask, mi.mocId )==match ) continue;
+            try {
+               Moc m = mi.getMoc();
+               if( m!=null && m.getSpaceMoc().isIntersecting(order, npix) ) res.add(mi.mocId);
+            } catch( Exception e ) { continue; }
+         }
+         Collections.sort(res);
+         return res;
+      } finally { lock.readLock().unlock(); }
    }
    
    /**
@@ -1323,224 +1447,6 @@ public class MultiMoc implements Iterable<MocItem> {
       return id;
    }
    
-   private String toDebug(HashMap<String,String[]> mapFilter, String listKey) {
-      StringBuilder r=null;
-      for( String s : mapFilter.get(listKey) ) {
-         if( r==null ) r = new StringBuilder(listKey+"="+s);
-         else r.append(","+s);
-      }
-      return r.toString();
-   }
-   
-   static private final boolean DEBUGMATCH = false;
-   
-   // Retourne true si les Proprits du MocItem mi correspondent aux contraintes passes dans le mapFilter
-   private boolean match(MocItem mi, HashMap<String,String[]> mapFilter, boolean casesens, boolean andLogic) {
-      if( mapFilter==null ) return true;
-      if( mi.prop==null ) return false;
-      
-      boolean rep=andLogic;
-
-      for( String listKey : mapFilter.keySet()) {
-         
-         boolean rep1=false;
-         
-         
-         // Dtermination de la logique si le premier caractre est '!' => AndLogic sinon OrLogic
-         String [] masks = mapFilter.get( listKey );
-         boolean internalAndLogic = masks!=null && masks.length>0 && masks[0].startsWith("!");
-         
-         if( DEBUGMATCH) System.out.println("Expr: "+toDebug(mapFilter,listKey)+" => andLogic="+internalAndLogic);
-         
-         // Plusieurs keywords (genre ID,CDS=...);
-         if( listKey.indexOf(',')>0 ) {
-            if( DEBUGMATCH) System.out.println("=> plusieurs keys...");
-            Tok tok = new Tok(listKey,",");
-            while( tok.hasMoreTokens() ) {
-               String key = tok.nextToken();
-               rep1 |= matchKey(mi,mapFilter,listKey,key,casesens,internalAndLogic);
-               if( !andLogic && !internalAndLogic && rep1 ) {
-                  if( DEBUGMATCH) System.out.println("   => matchKey("+key+",...)==true (orLogic) => return true)");
-                  return true;
-               }
-            }
-            
-         // Un seul keyword
-         } else {
-            if( DEBUGMATCH) System.out.println("=> une seule key...");
-            rep1 =  matchKey(mi,mapFilter,listKey,listKey,casesens,internalAndLogic);
-         }
-         
-         // Si que des OU et que c'est ok, on peut conclure que c'est bon
-         if( !andLogic && !internalAndLogic && rep1 ) return true;
-         
-         
-         if( andLogic ) {
-            rep &= rep1;
-            if( !rep ) return false;
-         }
-         
-      }
-
-      return rep;
-   }
-   
-   private boolean matchKey(MocItem mi, HashMap<String,String[]> mapFilter, 
-         String listKey, String key, boolean casesens, boolean andLogic) {
-      
-      // Jokers sur le nom du champ ?
-      if( key.indexOf('?')>=0 || key.indexOf('*')>=0 ) {
-         if( DEBUGMATCH) System.out.println("==> jokers ? * prsents dans ["+key+"]...");
-
-         boolean rep=false;
-         for( String mask : mapFilter.get(listKey) ) {
-            rep=false;
-            
-            if( DEBUGMATCH) System.out.println("   Test sur "+mask+"...");
-            
-            Iterator<String> it = mi.prop.getKeys().iterator();
-            while( it.hasNext() && !rep ) {
-               String k1 = it.next();
-               if( !MyProperties.matchMask(key, k1) ) continue;  // forage pour le cas de l'identificateur
-               boolean cs = k1.equals(KEY_ID) ? true : casesens;
-               rep |= matchList(mask,mi.prop.get(k1),cs, andLogic);
-            }
-            
-            if( DEBUGMATCH) System.out.println("   => matchList = "+rep+(!rep?" (return dans matchKey)":""));
-            if( !rep ) return false;
-         }
-         if( !rep ) return false;           // <= Ne faudrait-il pas ausii ici une logique OR ?
-         
-      // Nom de champ explicite ?
-      } else {
-         if( DEBUGMATCH) System.out.println("==> Champ explicite ["+key+"]...");
-         if( key.equals(KEY_ID) ) casesens=true;  // forage pour le cas de l'identificateur
-         boolean rep = matchProp(mapFilter.get(listKey),mi.prop.get(key),casesens, andLogic);
-         if( DEBUGMATCH) System.out.println("   matchProp = "+rep+(!rep?" (return dans matchKey)":""));
-         if( !rep) return false;
-      }
-      
-      if( DEBUGMATCH) System.out.println("MatchList return true");
-      return true;
-   }
-   
-   private boolean matchProp(String [] listMask, String vProp, boolean casesens, boolean andLogic) {
-      
-      // Le champ n'existe pas ? la rponse est true
-      // sauf si tous les masques sont "ne contient pas..."
-      if( vProp==null ) {
-         if( DEBUGMATCH) System.out.println("      vProp==null...");
-         return andLogic;
-      }
-
-      // Le champ existe => 
-      // Logic ET : toutes les propositions et tous les masques sont vrifis par au-moins une proposition
-      if( andLogic ) {
-         
-         for( String mask : listMask ) {
-            if( !matchAndList(mask,vProp, casesens) ) {
-               if( DEBUGMATCH) System.out.println("      matchAndProp("+mask+","+vProp+")==false, andLogic => return false");
-               return false;
-            } else {
-               if( DEBUGMATCH) System.out.println("      matchAndProp("+mask+","+vProp+")==true andLogic => continue");
-            }
-         }
-         if( DEBUGMATCH) System.out.println("      matchProp(allmask,"+vProp+")==true, andLogic => return true");
-         return true;
-      }
-
-      // logic OU : toutes les propositions et tous les masques (ex: Novae, Binaries*) aient au moins
-      //            un champ qui le vrifie (ex: champ xxx \t yyy \t ...)
-      for( String mask : listMask ) {
-         if( matchOrList(mask,vProp, casesens) ) {
-            if( DEBUGMATCH) System.out.println("      matchOrList("+mask+","+vProp+")==true, ordLogic => return true");
-            return true;
-         } else {
-            if( DEBUGMATCH) System.out.println("      matchOrList("+mask+","+vProp+")==false orLogic => continue");
-         }
-      }
-      if( DEBUGMATCH) System.out.println("      matchProp(allmask,"+vProp+")==false, orLogic => return false");
-      return false;
-   }
-   
-   private boolean matchList(String mask,String vProp, boolean casesens, boolean andLogic ) {
-      if( andLogic ) return matchAndList( mask, vProp, casesens);
-      return matchOrList( mask, vProp, casesens);
-   }
-
-   private boolean matchOrList(String mask,String vProp, boolean casesens ) {
-      if( vProp==null ) return false;
-      Tok st1 = new Tok(mask,",");
-      while( st1.hasMoreTokens() ) {
-         String mask1 = st1.nextToken();
-         Tok st = new Tok(vProp,"\t");
-         while( st.hasMoreTokens() ) {
-            String v = st.nextToken();
-            if( match(mask1,v,casesens)) {
-               if( DEBUGMATCH) System.out.println("      matchOrList("+mask1+","+v+")==true => return true");
-               return true;
-            }
-         }
-      }
-      if( DEBUGMATCH) System.out.println("      matchOrList(allMask,"+vProp+")==false => return false");
-      return false;
-   }
-   
-   private boolean matchAndList(String mask,String vProp, boolean casesens ) {
-      if( vProp==null ) return false;
-      Tok st1 = new Tok(mask,",");
-      while( st1.hasMoreTokens() ) {
-         String mask1 = st1.nextToken();
-         Tok st = new Tok(vProp,"\t");
-         
-         boolean rep=false;
-         while( st.hasMoreTokens() ) {
-            if( match(mask1,st.nextToken(),casesens)) { rep=true; break; }
-         }
-         if( DEBUGMATCH) if( !rep ) System.out.println("      matchAndList(oneMask,"+vProp+")==false => return false");
-         if( !rep ) return false;
-      }
-      if( DEBUGMATCH) System.out.println("      matchAndList(allMask,"+vProp+")==true => return true");
-      return true;
-   }
-   
-   private boolean match(String mask,String value, boolean casesens) {
-      boolean match=true;
-      if( mask.length()==0 ) {
-         if( MyProperties.matchMask(mask,value) ) return true;
-         return false;
-      }
-      char c = mask.charAt(0);
-      
-      // Ingalit ?
-      if( c=='>' || c=='<' ) {
-         mask = mask.substring(1);
-         boolean strict=true;
-         if( mask.startsWith("=") ) { strict=false;  mask = mask.substring(1); }
-         return MyProperties.testInequality(c,strict,mask,value);
-      }
-      
-      // Une diffrence plutt qu'une galit ?
-      if( mask.charAt(0)=='!' ) { match=false; mask=mask.substring(1); }
-      
-      // Intervalle ?
-      int i = mask.indexOf("..");
-      if( i>0 ) {
-         try {
-            Double min = Double.parseDouble( mask.substring(0,i).trim() );
-            Double max = Double.parseDouble( mask.substring(i+2).trim() );
-            Double val = Double.parseDouble( value.trim() );
-            return (min<=val && val<=max) == match;
-            
-         } catch( Exception e ) { }
-      }
-      
-      // Prise en compte de la case ?
-      if( !casesens ) { mask=mask.toUpperCase(); value=value.toUpperCase(); }
-      
-      return MyProperties.matchMask(mask,value) == match;
-   }
-   
    /**
     * Vrifie que les properties associes  l'id pass en paramtre
     * est  jour. 
@@ -1567,34 +1473,41 @@ public class MultiMoc implements Iterable<MocItem> {
     * @return list of MOC identifiers
     */
    public ArrayList<String> scan(Moc moc,HashMap<String, String[]> mapFilter, boolean casesens, int top, int intersect ) {
-      ArrayList<String> res = new ArrayList<>();
-
-      boolean scanTime = moc!=null && moc.isTime();
-      boolean scanSpace = moc!=null && moc.isSpace();
-      
-      int n=0;
-      for( MocItem mi : this ) {
-         if( mapFilter!=null && !match(mi,mapFilter,casesens,true)) continue;
-         if( moc!=null ) {
-            if( mi.moc==null ) continue;
-            if( scanSpace && !mi.moc.isSpace() ) continue;
-            if( scanTime && !mi.moc.isTime() ) continue;
-            try {
-               if( intersect==OVERLAPS ) {
-                  if( !moc.isIntersecting(mi.moc) ) continue;
-               } else if( intersect==ENCLOSED ) {
-                  if( !mi.moc.isIncluding(moc) ) continue;
-               } else { // COVERS
-                  if( !moc.isIncluding(mi.moc) ) continue;
-               }
-            }  catch( Exception e ) { continue; }
+      lock.readLock().lock();
+      try {
+         ArrayList<String> res = new ArrayList<>();
+
+         boolean scanTime = moc!=null && moc.isTime();
+         boolean scanSpace = moc!=null && moc.isSpace();
+         BitSet cand = index.getCandidates(moc);
+         PropFilter filter = mapFilter==null ? null : new PropFilter(mapFilter,casesens,true);
+      
+         int n=0;
+         for( MocItem mi : this ) {
+            if( cand!=null && !index.isCandidate(mi,cand) ) continue;
+            if( filter!=null && !filter.match(mi) ) continue;
+            if( moc!=null ) {
+               Moc m = mi.getMoc();
+               if( m==null ) continue;
+               if( scanSpace && !m.isSpace() ) continue;
+               if( scanTime && !m.isTime() ) continue;
+               try {
+                  if( intersect==OVERLAPS ) {
+                     if( !moc.isIntersecting(m) ) continue;
+                  } else if( intersect==ENCLOSED ) {
+                     if( !m.isIncluding(moc) ) continue;
+                  } else { // COVERS
+                     if( !moc.isIncluding(m) ) continue;
+                  }
+               }  catch( Exception e ) { continue; }
+            }
+            res.add(mi.mocId);
+            if( top!=-1 && (++n)>=top ) return res;
          }
-         res.add(mi.mocId);
-         if( top!=-1 && (++n)>=top ) return res;
-      }
 
-      Collections.sort(res);
-      return res;
+         Collections.sort(res);
+         return res;
+      } finally { lock.readLock().unlock(); }
    }
    
    /**
@@ -1615,38 +1528,45 @@ public class MultiMoc implements Iterable<MocItem> {
     * @return list of IDs (keep the original MultiMoc order)
     */
    public ArrayList<String> scan( Moc moc, String expr, boolean casesens, int top, int intersect ) throws Exception {
-      ArrayList<String> res = new ArrayList<>();
-      
-      // Dtermination des IDs candidats
-      HashSet<String> candidateIds = scanExpr(expr,casesens);
-      if( candidateIds.size()==0 ) return res;
-
-      boolean scanTime = moc!=null && moc.isTime();
-      boolean scanSpace = moc!=null && moc.isSpace();
-
-      int n=0;
-      for( MocItem mi : this ) {
-         if( !candidateIds.contains(mi.mocId) ) continue;
-         if( moc!=null ) {
-            if( mi.moc==null ) continue;
-            if( scanSpace && !mi.moc.isSpace() ) continue;
-            if( scanTime && !mi.moc.isTime() ) continue;
-            try {
-            if( intersect==OVERLAPS ) {
-                  if( !moc.isIntersecting(mi.moc) ) continue;
-            } else if( intersect==ENCLOSED ) {
-               if( !mi.moc.isIncluding(moc) ) continue;
-            } else { // COVERS
-               if( !moc.isIncluding(mi.moc) ) continue;
+      checkIndex();
+      lock.readLock().lock();
+      try {
+         ArrayList<String> res = new ArrayList<>();
+      
+         // Dtermination des MocItems candidats (par leurs ordinaux)
+         BitSet candidateIds = scanExpr(expr,casesens);
+         if( candidateIds.isEmpty() ) return res;
+
+         boolean scanTime = moc!=null && moc.isTime();
+         boolean scanSpace = moc!=null && moc.isSpace();
+         BitSet cand = index.getCandidates(moc);
+
+         int n=0;
+         for( MocItem mi : this ) {
+            if( cand!=null && !index.isCandidate(mi,cand) ) continue;
+            if( !candidateIds.get(mi.ord) ) continue;
+            if( moc!=null ) {
+               Moc m = mi.getMoc();
+               if( m==null ) continue;
+               if( scanSpace && !m.isSpace() ) continue;
+               if( scanTime && !m.isTime() ) continue;
+               try {
+               if( intersect==OVERLAPS ) {
+                     if( !moc.isIntersecting(m) ) continue;
+               } else if( intersect==ENCLOSED ) {
+                  if( !m.isIncluding(moc) ) continue;
+               } else { // COVERS
+                  if( !moc.isIncluding(m) ) continue;
+               }
+               }  catch( Exception e ) { continue; }
             }
-            }  catch( Exception e ) { continue; }
+            res.add(mi.mocId);
+            if( top!=-1 && (++n)>=top ) return res;
          }
-         res.add(mi.mocId);
-         if( top!=-1 && (++n)>=top ) return res;
-      }
 
-      Collections.sort(res);
-      return res;
+         Collections.sort(res);
+         return res;
+      } finally { lock.readLock().unlock(); }
    }
    
    /**
@@ -1654,13 +1574,16 @@ public class MultiMoc implements Iterable<MocItem> {
     * @return list of IDs (keep the original MultiMoc order)
     */
    public ArrayList<String> scan() { 
-      ArrayList<String> res = new ArrayList<> (this.size() );
-      for( MocItem mi : this ) res.add(mi.mocId);
-      Collections.sort(res);
-      return res;
+      lock.readLock().lock();
+      try {
+         ArrayList<String> res = new ArrayList<> (this.size() );
+         for( MocItem mi : this ) res.add(mi.mocId);
+         Collections.sort(res);
+         return res;
 //      IDENTIQUE A L'EXPRESSION SUIVANTE QUI EST PLUS LENTE
 //      try { return scan("*"); }
 //      catch( Exception e) { return new ArrayList<String>(); }
+      } finally { lock.readLock().unlock(); }
    }
    
    /**
@@ -1682,7 +1605,7 @@ public class MultiMoc implements Iterable<MocItem> {
    // 
    private class Op {
       String expr;           // Expression de slection
-      HashSet<String> res;   // Ensemble des IDs correspondants  l'expression
+      BitSet res;            // Ensemble des ordinaux des MocItems correspondants  l'expression
       int logic;             // oprateur  appliquer: 0-Union=||, 1-Intersection=&&,  2-Soustraction=&!,    
       boolean terminal=false;// true si l'expression de slection est terminal dans l'arbre des expressions 
                              // (pas d'oprateur ni de parenthse interne)
@@ -2023,23 +1946,27 @@ public class MultiMoc implements Iterable<MocItem> {
             && val.indexOf('*')<0 && val.indexOf('?')<0 && val.indexOf(',')<0) {
 
          // Est-ce qu'il n'y a que la contrainte sur l'ID ? alors je peux y accder directement
-         op.res = new HashSet<>( 10 );   // <= je cre une Hashset petite car ce ne sera probablement 
-                                               //    jamais elle qui sera conserv lors des oprations ensemblistes 
+         op.res = new BitSet();
          MocItem mi1 = getItem(val);
-//         System.out.println("Accs direct pour "+val);
-         if( mi1!=null ) op.res.add(mi1.mocId);
+         if( mi1!=null ) op.res.set(mi1.ord);
          return;
       }
       
+      // Un seul champ explicite, en logique OU => rsolution par l'index de ce champ
+      if( key.indexOf(',')<0 && key.indexOf('*')<0 && key.indexOf('?')<0 && !val.startsWith("!") ) {
+         boolean cs = key.equals(KEY_ID) ? true : casesens;  // forage pour le cas de l'identificateur
+         op.res = index.getPropIndex(key).scan(index, new PropFilter.MaskList(val,casesens), cs);
+         return;
+      }
      
+      // Sinon, scanning du multimoc et mmorisation des lments qui correspondent
       HashMap<String, String[]> mapFilters = new HashMap<>();
       mapFilters.put( key, new String[] { val } );
-      
-      // Scanning du multimoc et mmorisation des lments qui correspondent
-      ArrayList<String> res = scan( (SMoc)null, mapFilters, casesens, -1, OVERLAPS);
-      op.res = new HashSet<>( Math.max(2*res.size(), size()) );   // <= Je cre une HashSet assez grande, car elle est susceptible
-                                                                        //    de contenir l'ensemble des rsultats. On pourrait affiner en
-      op.res.addAll( res );
+      PropFilter filter = new PropFilter(mapFilters,casesens,true);
+      op.res = new BitSet();
+      for( MocItem mi : this ) {
+         if( filter.match(mi) ) op.res.set(mi.ord);
+      }
    }
    
    /**
@@ -2048,34 +1975,40 @@ public class MultiMoc implements Iterable<MocItem> {
     * @param b     L'ensemble B
     * @param logic 0-UNION, 1-INTERSECTION, 2-EXCEPT (ex: ABC &! A => BC)
     * @return      L'ensemble rsultant (peut tre vide, mais jamais null)
-    * ATTENTION: l'ensemble retourn utilise l'un ou l'autre des ensembles initiaux
+    * ATTENTION: l'ensemble retourn est l'ensemble A modifi
     */
-   private HashSet<String> combine( HashSet<String> a, HashSet<String> b ,int logic) {
-      
-      int aSize = a.size();
-      int bSize = b.size();
-      
-      // Logique || => UNION
-      if( logic==0 ) {
-         if( bSize>aSize ) { b.addAll(a); return b; }
-         a.addAll(b);
-         return a;
-      }
-      
-      // Logique && => INTERSECTION
-      if( logic==1 ) {
-         
-         if( bSize>aSize ) { b.retainAll(a); return b; }
-         a.retainAll(b);
-         return a;
-      }
-      
-      // logique &! => EXCEPT
-      if( bSize>aSize) { b.removeAll(a); return b; }
-      a.removeAll(b);
+   private BitSet combine( BitSet a, BitSet b ,int logic) {
+      if( logic==0 ) a.or(b);          // Logique || => UNION
+      else if( logic==1 ) a.and(b);    // Logique && => INTERSECTION
+      else a.andNot(b);                // logique &! => EXCEPT
       return a;
    }
    
+   /**
+    * Les ordinaux doivent dsigner sans ambigut les MocItems (cf. scanExpr()) : si ce n'est
+    * pas le cas, l'index est reconstruit sous verrou exclusif (les autres scans concurrents
+    * travaillant sous verrou partag). Doit tre appel sans dtenir le verrou partag.
+    */
+   private void checkIndex() {
+      lock.readLock().lock();
+      try {
+         if( isIndexOk() ) return;
+      } finally { lock.readLock().unlock(); }
+
+      lock.writeLock().lock();
+      try {
+         if( !isIndexOk() ) index.rebuild( map.values() );
+      } finally { lock.writeLock().unlock(); }
+   }
+
+   // Retourne true si tous les MocItems sont correctement numrots dans l'index
+   private boolean isIndexOk() {
+      for( MocItem mi : this ) {
+         if( !index.isIndexed(mi) ) return false;
+      }
+      return true;
+   }
+
    /**
     * Scanning du Multimoc par une expression ensembliste portant sur les proprits uniquement
     * ex: (ID=CDS* || obs_title=*CDS*) && hips_*_url=* &! datatype_subtype=catalog
@@ -2083,10 +2016,10 @@ public class MultiMoc implements Iterable<MocItem> {
     *           et qui ont une URL HiPS, mais sans prendre en compte les catalogues
     * @param s  L'expression ensembliste (voir ci-dessus)
     * @param casesens case sensitive or not (default is case sensitive) - never applied for ID field
-    * @return   L'ensemble des ID qui matchent l'expression
+    * @return   L'ensemble des ordinaux (cf. MocItem.ord) des MocItems qui matchent l'expression
     * @throws Exception
     */
-   private HashSet<String> scanExpr(String s, boolean casesens ) throws Exception {
+   private BitSet scanExpr(String s, boolean casesens ) throws Exception {
       Op op = calculExpr( 0, new Stack<Op>(), s, casesens );
       return op.res;
    }
@@ -2127,10 +2060,7 @@ public class MultiMoc implements Iterable<MocItem> {
    public int size( int typeMoc ) {
       int size=0;
       for( MocItem mi : this ) {
-         if( mi.moc==null ) continue;
-         if( typeMoc==0 && mi.moc instanceof SMoc ) size++;
-         else if( typeMoc==1 && mi.moc instanceof TMoc ) size++;
-         else if( typeMoc==2 && mi.moc instanceof STMoc ) size++;
+         if( mi.getMocType()==typeMoc ) size++;
       }
       return size;
    }
@@ -56,7 +56,7 @@ public class MultiMoc2 extends MultiMoc {
    
    public MultiMoc2( MultiMoc moc ) {
       for( MocItem mo : moc ) {
-         MocItem2 mo2 = new MocItem2(mo.mocId, mo.moc, mo.prop, mo.dateMoc, mo.dateProp);
+         MocItem2 mo2 = new MocItem2(mo.mocId, mo.getMoc(), mo.prop, mo.dateMoc, mo.dateProp);
          add(mo2);
       }
    }
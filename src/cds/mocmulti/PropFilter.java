@@ -0,0 +1,287 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.mocmulti;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import cds.aladin.MyProperties;
+import cds.aladin.Tok;
+
+/**
+ * Filtre compil sur les proprits des MocItems.
+ *
+ * Le filtre (propKey="mask1,mask2..." cf. MultiMoc.scan(...)) est analys une seule fois :
+ * dcoupage des listes de cls et de masques, reprage des ingalits et des intervalles,
+ * conversion numrique des bornes, passage en majuscules pour les recherches insensibles
+ *  la casse. L'valuation sur chaque MocItem n'a plus qu' parcourir les valeurs.
+ * La smantique est celle de l'ancienne valuation directe des masques :
+ *  - entre cls : logique ET (ou OU selon le cas)
+ *  - entre masques d'une mme cl : logique OU, sauf si le premier masque commence par '!'
+ *  - entre valeurs multiples d'une proprit (spares par des TABs) : logique OU
+ *  - le champ ID est toujours sensible  la casse
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class PropFilter {
+
+   private final Clause [] clauses;   // Une contrainte par entre du filtre
+   private final boolean andLogic;    // true: toutes les contraintes doivent tre vrifies
+
+   /** Compilation d'un filtre
+    * @param mapFilter propKey="wildcard mask" list
+    * @param casesens sensibilit  la casse (jamais applique au champ ID)
+    * @param andLogic true: logique ET entre les contraintes, sinon OU
+    */
+   PropFilter(HashMap<String,String[]> mapFilter, boolean casesens, boolean andLogic) {
+      this.andLogic=andLogic;
+      clauses = new Clause[ mapFilter.size() ];
+      int i=0;
+      for( String listKey : mapFilter.keySet() ) {
+         clauses[i++] = new Clause(listKey, mapFilter.get(listKey), casesens);
+      }
+   }
+
+   /** Retourne true si les proprits du MocItem vrifient le filtre */
+   boolean match(MocItem mi) {
+      if( mi.prop==null ) return false;
+      boolean rep=andLogic;
+
+      for( Clause cl : clauses ) {
+         boolean rep1=false;
+
+         // Plusieurs keywords (genre ID,CDS=...)
+         if( cl.keys.length>1 ) {
+            for( String key : cl.keys ) {
+               rep1 |= cl.matchKey(mi,key);
+               if( !andLogic && !cl.andLogic && rep1 ) return true;
+            }
+
+         // Un seul keyword
+         } else rep1 = cl.matchKey(mi,cl.keys[0]);
+
+         // Si que des OU et que c'est ok, on peut conclure que c'est bon
+         if( !andLogic && !cl.andLogic && rep1 ) return true;
+
+         if( andLogic ) {
+            rep &= rep1;
+            if( !rep ) return false;
+         }
+      }
+      return rep;
+   }
+
+   /** Contrainte portant sur une cl, une liste de cls (spares par des virgules),
+    * ou un masque de cls */
+   static private final class Clause {
+      final String [] keys;         // Les cls concernes
+      final MaskList [] masks;      // Les listes de masques associes
+      final boolean andLogic;       // true si le premier masque commence par '!'
+      final boolean casesens;       // Sensibilit  la casse demande
+
+      Clause(String listKey,String [] m,boolean casesens) {
+         this.casesens=casesens;
+         andLogic = m!=null && m.length>0 && m[0].startsWith("!");
+         masks = new MaskList[ m==null ? 0 : m.length ];
+         for( int i=0; i<masks.length; i++ ) masks[i] = new MaskList(m[i],casesens);
+         if( listKey.indexOf(',')>0 ) keys = split(listKey,",");
+         else keys = new String[] { listKey };
+      }
+
+      boolean matchKey(MocItem mi,String key) {
+
+         // Jokers sur le nom du champ ?
+         if( key.indexOf('?')>=0 || key.indexOf('*')>=0 ) {
+            boolean rep=false;
+            for( MaskList ml : masks ) {
+               rep=false;
+               for( String k1 : mi.prop.getKeys() ) {
+                  if( rep ) break;
+                  if( !MyProperties.matchMask(key, k1) ) continue;
+                  boolean cs = k1.equals(MultiMoc.KEY_ID) ? true : casesens;  // forage pour le cas de l'identificateur
+                  rep |= andLogic ? ml.matchAnd(mi.prop.get(k1),cs) : ml.matchOr(mi.prop.get(k1),cs);
+               }
+               if( !rep ) return false;
+            }
+            return rep;
+         }
+
+         // Nom de champ explicite
+         boolean cs = key.equals(MultiMoc.KEY_ID) ? true : casesens;  // forage pour le cas de l'identificateur
+         String vProp = mi.prop.get(key);
+
+         // Le champ n'existe pas ? la rponse est true
+         // sauf si tous les masques sont "ne contient pas..."
+         if( vProp==null ) return andLogic;
+
+         // Logique ET : tous les masques sont vrifis
+         if( andLogic ) {
+            for( MaskList ml : masks ) if( !ml.matchAnd(vProp,cs) ) return false;
+            return true;
+         }
+
+         // Logique OU : au-moins un masque est vrifi
+         for( MaskList ml : masks ) if( ml.matchOr(vProp,cs) ) return true;
+         return false;
+      }
+   }
+
+   /** Dcoupage d'une chane par Tok */
+   static String [] split(String s,String sep) {
+      ArrayList<String> a = new ArrayList<>();
+      Tok tok = new Tok(s,sep);
+      while( tok.hasMoreTokens() ) a.add(tok.nextToken());
+      return a.toArray(new String[a.size()]);
+   }
+
+   /** Liste de masques spars par des virgules (ex: Novae,Binar*), compile pour
+    * la casse demande et, si ncessaire, pour la casse force (champ ID) */
+   static final class MaskList {
+      private final Mask [] sens;      // Masques compils sensibles  la casse
+      private final Mask [] insens;    // Masques compils insensibles  la casse (null si inutile)
+
+      MaskList(String mask,boolean casesens) {
+         String [] m = split(mask,",");
+         sens = new Mask[m.length];
+         for( int i=0; i<m.length; i++ ) sens[i] = new Mask(m[i],true);
+         if( casesens ) insens=null;
+         else {
+            insens = new Mask[m.length];
+            for( int i=0; i<m.length; i++ ) insens[i] = new Mask(m[i],false);
+         }
+      }
+
+      /** Retourne les masques compils selon la sensibilit  la casse */
+      Mask [] get(boolean cs) { return cs || insens==null ? sens : insens; }
+
+      /** Retourne true si au-moins une valeur vrifie au-moins un des masques */
+      boolean matchOr(String vProp,boolean cs) {
+         if( vProp==null ) return false;
+         for( Mask m : get(cs) ) {
+            Tok st = new Tok(vProp,"\t");
+            while( st.hasMoreTokens() ) {
+               if( m.match(st.nextToken()) ) return true;
+            }
+         }
+         return false;
+      }
+
+      /** Retourne true si chaque masque est vrifi par au-moins une valeur */
+      boolean matchAnd(String vProp,boolean cs) {
+         if( vProp==null ) return false;
+         for( Mask m : get(cs) ) {
+            Tok st = new Tok(vProp,"\t");
+            boolean rep=false;
+            while( st.hasMoreTokens() ) {
+               if( m.match(st.nextToken()) ) { rep=true; break; }
+            }
+            if( !rep ) return false;
+         }
+         return true;
+      }
+   }
+
+   /** Masque lmentaire compil : ingalit (>val, <=val...), intervalle (min..max),
+    * masque  jokers ventuellement ni (!mask) */
+   static final class Mask {
+      final String mask;          // Masque (en majuscules si insensible  la casse)
+      final boolean casesens;     // Sensibilit  la casse
+      final boolean negate;       // true si le masque est ni (!mask)
+      final char cmp;             // '>' ou '<' pour une ingalit, 0 sinon
+      final boolean strict;       // Ingalit stricte
+      final String ref;           // Valeur de rfrence de l'ingalit
+      final double refNum;        // Valeur numrique de la rfrence (NaN si non numrique)
+      final boolean range;        // true s'il s'agit d'un intervalle numrique valide
+      final double min,max;       // Bornes de l'intervalle
+      final boolean plain;        // true si le masque est une simple galit
+
+      Mask(String m,boolean casesens) {
+         this.casesens=casesens;
+         char c = m.length()==0 ? 0 : m.charAt(0);
+
+         // Ingalit ?
+         if( c=='>' || c=='<' ) {
+            String r = m.substring(1);
+            boolean s=true;
+            if( r.startsWith("=") ) { s=false; r=r.substring(1); }
+            double v;
+            try { v = Double.parseDouble(r.trim()); } catch( Exception e ) { v=Double.NaN; }
+            cmp=c; strict=s; ref=r; refNum=v;
+            negate=range=plain=false; min=max=0; mask=m;
+            return;
+         }
+         cmp=0; strict=false; ref=null; refNum=Double.NaN;
+
+         // Une diffrence plutt qu'une galit ?
+         negate = c=='!';
+         if( negate ) m=m.substring(1);
+
+         // Intervalle ?
+         boolean r=false;
+         double a=0,b=0;
+         int i = m.indexOf("..");
+         if( i>0 ) {
+            try {
+               a = Double.parseDouble( m.substring(0,i).trim() );
+               b = Double.parseDouble( m.substring(i+2).trim() );
+               r=true;
+            } catch( Exception e ) { }
+         }
+         range=r; min=a; max=b;
+
+         mask = casesens ? m : m.toUpperCase();
+         plain = !negate && !range && mask.indexOf('*')<0 && mask.indexOf('?')<0;
+      }
+
+      /** Retourne true s'il s'agit d'une ingalit dont la rfrence est numrique */
+      boolean isNumInequality() { return cmp!=0 && !Double.isNaN(refNum); }
+
+      /** Retourne true s'il s'agit d'un intervalle numrique non ni */
+      boolean isRange() { return range && !negate; }
+
+      /** Test d'une valeur numrique (ingalit numrique ou intervalle) */
+      boolean matchNum(double v) {
+         if( cmp=='>' ) return strict ? v>refNum : v>=refNum;
+         if( cmp=='<' ) return strict ? v<refNum : v<=refNum;
+         return (min<=v && v<=max) != negate;
+      }
+
+      /** Test d'une valeur */
+      boolean match(String value) {
+         if( cmp!=0 ) {
+            if( !Double.isNaN(refNum) && value.indexOf('T')<=0 ) {
+               try { return matchNum( Double.parseDouble(value.trim()) ); }
+               catch( Exception e ) { }
+            }
+            return MyProperties.testInequality(cmp,strict,ref,value);
+         }
+         if( range ) {
+            try { return matchNum( Double.parseDouble(value.trim()) ); }
+            catch( Exception e ) { }
+         }
+         if( !casesens ) value=value.toUpperCase();
+         if( plain ) return value.equals(mask);
+         return MyProperties.matchMask(mask,value) != negate;
+      }
+   }
+}
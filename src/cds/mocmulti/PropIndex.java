@@ -0,0 +1,244 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.mocmulti;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import cds.aladin.MyProperties;
+import cds.aladin.Tok;
+import cds.mocmulti.PropFilter.Mask;
+import cds.mocmulti.PropFilter.MaskList;
+
+/**
+ * Index invers des valeurs d'une proprit (ex: obs_regime) des MocItems d'un MultiMoc.
+ *
+ * Chaque valeur lmentaire (les valeurs multiples sont spares par des TABs) est associe
+ *  la liste des ordinaux (cf. MocIndex) des MocItems qui la possdent. Une contrainte
+ * "cl=masques" est alors rsolue :
+ *  - pour une galit, par un simple accs  la table (table en majuscules si insensible  la casse) ;
+ *  - pour une ingalit ou un intervalle numrique, par dichotomie sur les valeurs numriques tries,
+ *    les valeurs non numriques tant testes une  une ;
+ *  - pour un masque  jokers, en testant chaque valeur distincte une seule fois.
+ * L'index est construit  la premire utilisation de la cl, puis mis  jour  chaque requte
+ * pour les MocItems ajouts ou dont les proprits ont t modifies (MyProperties.getModCount()).
+ * Ces derniers, dont les anciennes valeurs restent dans l'index, sont rvalus directement.
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class PropIndex {
+
+   private final String key;                    // La cl indexe
+   private HashMap<String,IntList> dict;        // Valeur => ordinaux
+   private HashMap<String,IntList> upper;       // Valeur en majuscules => ordinaux (construit si ncessaire)
+   private double [] numVal;                    // Valeurs numriques tries (construit si ncessaire)
+   private IntList [] numOrd;                   // Ordinaux associs  chaque valeur numrique
+   private String [] other;                     // Valeurs non numriques
+   private MyProperties [] props;               // Proprits indexes pour chaque ordinal
+   private int [] mods;                         // Compteur de modifications au moment de l'indexation
+   private final BitSet indexed;                // Ordinaux dj indexs
+   private final BitSet dirty;                  // Ordinaux dont l'index peut contenir d'anciennes valeurs
+
+   PropIndex(String key) {
+      this.key=key;
+      dict = new HashMap<>();
+      props = new MyProperties[1024];
+      mods = new int[1024];
+      indexed = new BitSet();
+      dirty = new BitSet();
+   }
+
+   /** Rsolution de la contrainte key=masks (logique OU entre les masques et entre les valeurs)
+    * @param index l'index des MocItems (fournit la correspondance ordinal => MocItem)
+    * @param masks les masques compils
+    * @param cs sensibilit  la casse
+    * @return l'ensemble des ordinaux des MocItems vrifiant la contrainte
+    */
+   synchronized BitSet scan(MocIndex index,MaskList masks,boolean cs) {
+      sync(index);
+      BitSet res = new BitSet();
+      for( Mask m : masks.get(cs) ) {
+
+         // Egalit stricte => accs direct
+         if( m.plain ) {
+            if( m.casesens ) setBits( dict.get(m.mask), res);
+            else setBits( getUpper().get(m.mask), res);
+
+         // Ingalit, intervalle => dichotomie sur les valeurs numriques + test des autres valeurs
+         } else if( m.isNumInequality() || m.isRange() ) {
+            buildNum();
+            int deb=0, fin=numVal.length;
+            if( m.cmp=='>' ) deb = m.strict ? upperBound(m.refNum) : lowerBound(m.refNum);
+            else if( m.cmp=='<' ) fin = m.strict ? lowerBound(m.refNum) : upperBound(m.refNum);
+            else { deb=lowerBound(m.min); fin=Math.max(deb,upperBound(m.max)); }
+            for( int i=deb; i<fin; i++ ) numOrd[i].setBits(res);
+            for( String v : other ) if( m.match(v) ) setBits( dict.get(v), res);
+
+         // Cas gnral => chaque valeur distincte est teste une seule fois
+         } else {
+            for( Map.Entry<String,IntList> e : dict.entrySet() ) {
+               if( m.match(e.getKey()) ) e.getValue().setBits(res);
+            }
+         }
+      }
+
+      // Rvaluation directe des MocItems modifis
+      for( int ord=dirty.nextSetBit(0); ord>=0; ord=dirty.nextSetBit(ord+1) ) {
+         res.clear(ord);
+         MocItem mi = index.getItem(ord);
+         if( mi!=null && mi.prop!=null && masks.matchOr(mi.prop.get(key),cs) ) res.set(ord);
+      }
+
+      // Suppression des MocItems retirs depuis leur indexation
+      for( int ord=res.nextSetBit(0); ord>=0; ord=res.nextSetBit(ord+1) ) {
+         if( index.getItem(ord)==null ) res.clear(ord);
+      }
+      return res;
+   }
+
+   /** Prise en compte des MocItems nouveaux ou modifis */
+   private void sync(MocIndex index) {
+      int n = index.getNbOrd();
+      if( n>props.length ) {
+         int size = Math.max(n, props.length*2);
+         props = Arrays.copyOf(props,size);
+         mods = Arrays.copyOf(mods,size);
+      }
+      for( int ord=0; ord<n; ord++ ) {
+         MocItem mi = index.getItem(ord);
+         if( mi==null ) continue;
+         MyProperties p = mi.prop;
+         int m = p==null ? 0 : p.getModCount();
+         if( indexed.get(ord) ) {
+            if( props[ord]==p && mods[ord]==m ) continue;
+            dirty.set(ord);
+         }
+         indexed.set(ord);
+         props[ord]=p;
+         mods[ord]=m;
+         String v = p==null ? null : p.get(key);
+         if( v==null ) continue;
+         Tok tok = new Tok(v,"\t");
+         while( tok.hasMoreTokens() ) add( tok.nextToken(), ord);
+      }
+   }
+
+   // Ajout d'une valeur
+   private void add(String v,int ord) {
+      IntList l = dict.get(v);
+      if( l==null ) {
+         dict.put(v, l=new IntList() );
+         upper=null;
+         numVal=null;
+      }
+      l.add(ord);
+      if( upper!=null ) {
+         IntList u = upper.get( v.toUpperCase() );
+         if( u==null ) upper.put( v.toUpperCase(), u=new IntList() );
+         u.add(ord);
+      }
+   }
+
+   // Table des valeurs en majuscules
+   private HashMap<String,IntList> getUpper() {
+      if( upper!=null ) return upper;
+      upper = new HashMap<>();
+      for( Map.Entry<String,IntList> e : dict.entrySet() ) {
+         String u = e.getKey().toUpperCase();
+         IntList l = upper.get(u);
+         if( l==null ) upper.put(u, l=new IntList() );
+         l.addAll( e.getValue() );
+      }
+      return upper;
+   }
+
+   // Construction de la liste trie des valeurs numriques
+   private void buildNum() {
+      if( numVal!=null ) return;
+      ArrayList<String> num = new ArrayList<>();
+      ArrayList<String> oth = new ArrayList<>();
+      int n=0;
+      double [] val = new double[ dict.size() ];
+      for( String v : dict.keySet() ) {
+         double d=Double.NaN;
+         if( v.indexOf('T')<=0 ) {
+            try { d = Double.parseDouble(v.trim()); } catch( Exception e ) { }
+         }
+         if( Double.isNaN(d) ) oth.add(v);
+         else { num.add(v); val[n++]=d; }
+      }
+      Integer [] idx = new Integer[n];
+      for( int i=0; i<n; i++ ) idx[i]=i;
+      final double [] v1 = val;
+      Arrays.sort(idx, (a,b) -> Double.compare(v1[a],v1[b]) );
+      numVal = new double[n];
+      numOrd = new IntList[n];
+      for( int i=0; i<n; i++ ) {
+         numVal[i] = val[ idx[i] ];
+         numOrd[i] = dict.get( num.get(idx[i]) );
+      }
+      other = oth.toArray(new String[oth.size()]);
+   }
+
+   // Premier indice dont la valeur est >= v
+   private int lowerBound(double v) {
+      int lo=0, hi=numVal.length;
+      while( lo<hi ) {
+         int mid = (lo+hi)>>>1;
+         if( numVal[mid]<v ) lo=mid+1;
+         else hi=mid;
+      }
+      return lo;
+   }
+
+   // Premier indice dont la valeur est > v
+   private int upperBound(double v) {
+      int lo=0, hi=numVal.length;
+      while( lo<hi ) {
+         int mid = (lo+hi)>>>1;
+         if( numVal[mid]<=v ) lo=mid+1;
+         else hi=mid;
+      }
+      return lo;
+   }
+
+   static private void setBits(IntList l,BitSet bs) { if( l!=null ) l.setBits(bs); }
+
+   /** Liste extensible d'ordinaux */
+   static final class IntList {
+      private int [] a = new int[2];
+      private int n;
+
+      void add(int v) {
+         if( n==a.length ) a = Arrays.copyOf(a,n*2);
+         a[n++]=v;
+      }
+
+      void addAll(IntList l) { for( int i=0; i<l.n; i++ ) add(l.a[i]); }
+
+      void setBits(BitSet bs) { for( int i=0; i<n; i++ ) bs.set(a[i]); }
+   }
+}
@@ -39,18 +39,23 @@ import java.io.InputStream;
  * <h3>Buffer</h3>
  * <p>
  * 	This stream is buffered. That means that several bytes have already been read and decoded from the inner input stream.
- * 	By default the buffer size is: 8192.
+ * 	By default the buffer size is: 65536.
+ * </p>
+ * <p>
+ * 	Encoded data are fetched by blocks in a reused buffer. Groups of 4 valid characters are decoded by a fast loop,
+ * 	white-spaces, padding and invalid characters one by one. When the caller asks for at least a full buffer,
+ * 	the data are decoded directly into the caller's array, without going through the internal buffer.
  * </p>
  * <p>
  * 	<u>Warning !</u>
  * 	To fill the buffer of a Base64InputStream with N bytes, (N/3)*4 bytes must be fetched from the inner input stream.
  * 	Indeed, with the Base64 encoding, the number of encoded bytes is always greater than the number of the corresponding decoded bytes:
  * 	3 bytes will be encoded by 4 characters encoded on 6 bits (which allows an alphabet of 2^6=64 characters, hence base64).
- * 	<u>Consequently: for a buffer of 8192 bytes, 10924 bytes are needed.</u>
+ * 	<u>Consequently: for a buffer of 65536 bytes, 87384 bytes are needed.</u>
  * </p>
  * <p>
  * 	However the number of bytes stored in the buffer may be less than the size given at the initialization.
- * 	That is to say: the buffer can contain AT MOST 8192 decoded bytes.
+ * 	That is to say: the buffer can contain AT MOST 65536 decoded bytes.
  * 	Indeed some bytes coming from the inner input stream may correspond to invalid Base64 characters.
  * 	In this case, they are ignored and so they are not stored in the buffer.
  * </p>
@@ -79,11 +84,13 @@ import java.io.InputStream;
 public final class Base64InputStream extends FilterInputStream {
 
     /** Default buffer size. */
-    private static int defaultBufferSize = 8192;
+    private static int defaultBufferSize = 65536;
     /** Buffer of decoded data. */
     private byte[] buffer;
     /** The size of the block of encoded data to fetch so that filling the buffer. */
     private int fetchSize;
+    /** Block of encoded data (reused from one fetch to the next). */
+    private byte[] data;
     /** The position (in the buffer) of the next byte to read. */
     private int pos;
     /** The number of buffered decoded bytes. */
@@ -108,7 +115,6 @@ public final class Base64InputStream extends FilterInputStream {
             throw new IllegalArgumentException("bufferSize <= 0");
         }
 
-        buffer = new byte[bufferSize];
         count = 0;
         pos = 0;
 
@@ -117,7 +123,10 @@ public final class Base64InputStream extends FilterInputStream {
         if (bufferSize % 3 != 0) {
             fetchSize++;
         }
+        // the decoded buffer must be able to receive all the groups of a fetched block:
+        buffer = new byte[fetchSize * 3];
         fetchSize *= 4;
+        data = new byte[fetchSize];
     }
 
     /**
@@ -148,10 +157,50 @@ public final class Base64InputStream extends FilterInputStream {
      * @throws IOException	If the stream is closed or if the encoded message is corrupted.
      */
     private void fill() throws IOException {
-        count = pos = 0;
+        pos = 0;
+        count = decodeBlocks(buffer, 0);
+    }
+
+    /**
+     * Decodes blocks of encoded data into the given array until at least one byte is decoded.
+     * 
+     * @param dest	Array in which decoded bytes must be written.
+     * @param off	Position of the first decoded byte in <code>dest</code>.
+     * 
+     * @return	The number of decoded bytes (0 if EOF or end of message).
+     * 
+     * @throws IOException	If the stream is closed or if the encoded message is corrupted.
+     */
+    private int decodeBlocks(final byte[] dest, final int off) throws IOException {
+        int n;
+        do {
+            n = decodeBlock(dest, off);
+        } while (n == 0);
+        return (n < 0) ? 0 : n;
+    }
+
+    /**
+     * <p>Fetches one block of encoded data and decodes it into the given array.</p>
+     * 
+     * <p>
+     * 	At most <code>(fetchSize / 4) * 3</code> bytes (that is to say the size of the internal buffer)
+     * 	are written in <code>dest</code>.
+     * </p>
+     * 
+     * @param dest	Array in which decoded bytes must be written.
+     * @param off	Position of the first decoded byte in <code>dest</code>.
+     * 
+     * @return	The number of decoded bytes (0 if the block contains no full group, -1 if EOF or end of message).
+     * 
+     * @throws IOException	If the stream is closed or if the encoded message is corrupted.
+     */
+    private int decodeBlock(final byte[] dest, final int off) throws IOException {
+        int k = off;
+        if (eom) {
+            return -1;
+        }
 
         // Get a block of encoded data:
-        byte[] data = new byte[fetchSize];
         int n1 = in.read(data);
 
         // Return immediately if EOF:
@@ -159,27 +208,49 @@ public final class Base64InputStream extends FilterInputStream {
             if (nbGroupedChars > 0) {
                 throw new IOException("Encoded message corrupted: unexpected EOF !");
             } else {
-                return;
+                return -1;
             }
         }
 
         // Decode all the fetched data:
-        for (int i = 0; !eom && i < n1; i++) {
+        final int[] dec = Base64.base64decode;
+        int i = 0;
+        while (!eom && i < n1) {
+            // Fast path: full groups of 4 Base64 characters (no white-space, no padding):
+            if (nbGroupedChars == 0) {
+                while (i + 4 <= n1) {
+                    final int c0 = data[i] & 0xff, c1 = data[i + 1] & 0xff, c2 = data[i + 2] & 0xff, c3 = data[i + 3] & 0xff;
+                    final int v0 = dec[c0], v1 = dec[c1], v2 = dec[c2], v3 = dec[c3];
+                    if ((v0 | v1 | v2 | v3) < 0 || c2 == Base64.PADDING_CHAR || c3 == Base64.PADDING_CHAR || c0 == Base64.PADDING_CHAR || c1 == Base64.PADDING_CHAR) {
+                        break;
+                    }
+                    final int g = (v0 << 18) | (v1 << 12) | (v2 << 6) | v3;
+                    dest[k++] = (byte) (g >> 16);
+                    dest[k++] = (byte) (g >> 8);
+                    dest[k++] = (byte) g;
+                    i += 4;
+                }
+                if (i >= n1) {
+                    break;
+                }
+            }
+
             // If the character is in the Base64 alphabet, add it to the group, else go to the next character:
-            if (Base64.base64decode[data[i]] > -1) {
-                if (pad > 0 && data[i] != Base64.PADDING_CHAR) {
-                    throw new IOException("Encoded message corrupted: \"" + ((char) data[i]) + "\" has been encountered after a padding character (\"" + Base64.PADDING_CHAR + "\") !");
+            final int c = data[i++] & 0xff;
+            if (dec[c] > -1) {
+                if (pad > 0 && c != Base64.PADDING_CHAR) {
+                    throw new IOException("Encoded message corrupted: \"" + ((char) c) + "\" has been encountered after a padding character (\"" + Base64.PADDING_CHAR + "\") !");
                 } else {
-                    group |= ((Base64.base64decode[data[i]] & 0x3f) << (6 * (3 - nbGroupedChars)));
+                    group |= ((dec[c] & 0x3f) << (6 * (3 - nbGroupedChars)));
                     nbGroupedChars++;
-                    if (data[i] == Base64.PADDING_CHAR) {
+                    if (c == Base64.PADDING_CHAR) {
                         pad++;
                     }
                 }
             } else {
-                if (!Character.isWhitespace(data[i])) // only white-spaces are ignored !
+                if (!Character.isWhitespace(c)) // only white-spaces are ignored !
                 {
-                    System.err.println("Warning: encoded message may be corrupted: unknown base64 character encountered: \"" + ((char) data[i]) + "\" !");
+                    System.err.println("Warning: encoded message may be corrupted: unknown base64 character encountered: \"" + ((char) c) + "\" !");
                 }
             }
 
@@ -192,17 +263,18 @@ public final class Base64InputStream extends FilterInputStream {
                    throw new IOException("Encoded message corrupted: a message encoding in base64 can end with at most 2 padding characters (\"" + Base64.PADDING_CHAR + "\") !");
                 }
 
-                buffer[count++] = (byte) (group >> 16);
+                dest[k++] = (byte) (group >> 16);
                 if (pad <= 1) {
-                   buffer[count++] = (byte) (group >> 8);
+                   dest[k++] = (byte) (group >> 8);
                    if (pad <= 0) {
-                      buffer[count++] = (byte) group;
+                      dest[k++] = (byte) group;
                    }
                 }
                 group = 0;
                 nbGroupedChars = 0;
             }
         }
+        return (k == off && eom) ? -1 : k - off;
     }
 
     @Override
@@ -257,6 +329,15 @@ public final class Base64InputStream extends FilterInputStream {
         int avail, remLen, cnt;
         while (nbReadBytes < len) {
             if (pos >= count) {
+                // Enough room in the caller's array => direct decoding:
+                if (len - nbReadBytes >= buffer.length) {
+                    cnt = decodeBlocks(b, off + nbReadBytes);
+                    if (cnt <= 0) {
+                        return (nbReadBytes == 0) ? -1 : nbReadBytes;
+                    }
+                    nbReadBytes += cnt;
+                    continue;
+                }
                 fill();
             }
 
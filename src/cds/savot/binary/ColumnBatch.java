@@ -0,0 +1,386 @@
+package cds.savot.binary;
+
+//Copyright 2002-2014 - UDS/CNRS
+//The SAVOT library is distributed under the terms
+//of the GNU General Public License version 3.
+//
+//This file is part of SAVOT.
+//
+// SAVOT is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, version 3 of the License.
+//
+// SAVOT is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// The GNU General Public License is available in COPYING file
+// along with SAVOT.
+//
+//SAVOT - Simple Access to VOTable - Parser
+//
+//Author, Co-Author:  Andre Schaaff (CDS), Laurent Bourges (LAOG)
+import java.io.ByteArrayInputStream;
+
+import cds.savot.model.interpreter.BinaryFieldInterpreter;
+import cds.savot.model.interpreter.BooleanInterpreter;
+import cds.savot.model.interpreter.CharInterpreter;
+import cds.savot.model.interpreter.DoubleInterpreter;
+import cds.savot.model.interpreter.FloatInterpreter;
+import cds.savot.model.interpreter.IntegerInterpreter;
+import cds.savot.model.interpreter.LongInterpreter;
+import cds.savot.model.interpreter.ShortInterpreter;
+import cds.savot.model.interpreter.UnicodeCharInterpreter;
+import cds.savot.model.interpreter.UnsignedByteInterpreter;
+
+/**
+ * <p>Block of rows decoded column by column from a BINARY or BINARY2 stream.</p>
+ * 
+ * <p>
+ * 	Each column is stored in a primitive array according to its kind (see {@link #getKind(int)}):
+ * </p>
+ * <ul>
+ * 	<li>{@link #DOUBLE}: scalar <i>float</i> and <i>double</i> fields, in a <code>double[]</code> ({@link #getDoubles(int)}).</li>
+ * 	<li>{@link #LONG}: scalar <i>unsignedByte</i>, <i>short</i>, <i>int</i> and <i>long</i> fields, in a <code>long[]</code> ({@link #getLongs(int)}).</li>
+ * 	<li>{@link #CHAR}: <i>char</i> and <i>unicodeChar</i> fields (fixed or variable array-size): all characters of the block
+ * 		are concatenated in a <code>char[]</code> ({@link #getChars(int)}) ; the characters of the row <code>r</code>
+ * 		are between the offsets <code>r</code> and <code>r+1</code> of {@link #getCharOffsets(int)}.</li>
+ * 	<li>{@link #BOOLEAN}: scalar <i>boolean</i> fields, in a <code>byte[]</code> ({@link #getBooleans(int)}):
+ * 		1 for true, 0 for false and -1 for an undefined value.</li>
+ * 	<li>{@link #OBJECT}: all other fields (arrays of numbers, bits, complex numbers), decoded cell by cell
+ * 		by their {@link BinaryFieldInterpreter} ({@link #getObjects(int)}).</li>
+ * </ul>
+ * 
+ * <p>
+ * 	A null mask is associated with each column ({@link #getNullMask(int)}): 1 if the cell is null, 0 otherwise.
+ * 	It is set from the null flags of a BINARY2 row and for undefined boolean values.
+ * </p>
+ * 
+ * <p>
+ * 	A ColumnBatch is created by {@link DataBinaryReader#createBatch(int)} (or its BINARY2 equivalent)
+ * 	and is filled again by each call to <code>nextBatch(ColumnBatch)</code>: arrays are reused from one block to the next.
+ * </p>
+ * 
+ * @since 10/2026
+ */
+public final class ColumnBatch {
+
+    /** Column of scalar floating point numbers. */
+    public static final int DOUBLE = 0;
+    /** Column of scalar integer numbers. */
+    public static final int LONG = 1;
+    /** Column of characters. */
+    public static final int CHAR = 2;
+    /** Column of scalar booleans. */
+    public static final int BOOLEAN = 3;
+    /** Column decoded cell by cell by its interpreter. */
+    public static final int OBJECT = 4;
+
+    /** Decoders of the stream: the <code>nullBytes</code> first ones decode the BINARY2 null flags. */
+    final BinaryFieldInterpreter<?>[] decoders;
+    /** Number of bytes of null flags prefixing each row (0 for BINARY). */
+    final int nullBytes;
+    /** Maximum number of rows of a block. */
+    final int capacity;
+    /** Kind of each column. */
+    final int[] kinds;
+    /** Boxed type of each DOUBLE or LONG column ('D', 'F', 'J', 'I' or 'S'). */
+    final char[] boxes;
+    /** Values of the DOUBLE columns. */
+    final double[][] doubles;
+    /** Values of the LONG columns. */
+    final long[][] longs;
+    /** Values of the BOOLEAN columns. */
+    final byte[][] booleans;
+    /** Characters of the CHAR columns. */
+    final char[][] chars;
+    /** Offsets of the rows in the CHAR columns (capacity + 1 items). */
+    final int[][] charOffsets;
+    /** Cells of the OBJECT columns. */
+    final Object[][] objects;
+    /** Null mask of each column. */
+    final byte[][] nulls;
+    /** Raw null flags of each row (BINARY2 only). */
+    final byte[] nullFlags;
+    /** Number of rows currently in this block. */
+    int size = 0;
+
+    /**
+     * Builds an empty block of rows.
+     * 
+     * @param decoders	All decoders of the stream (null flags included).
+     * @param nullBytes	Number of decoders dedicated to the BINARY2 null flags.
+     * @param capacity	Maximum number of rows.
+     */
+    ColumnBatch(final BinaryFieldInterpreter<?>[] decoders, final int nullBytes, final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity of a ColumnBatch must be positive: " + capacity + " !");
+        }
+        this.decoders = decoders;
+        this.nullBytes = nullBytes;
+        this.capacity = capacity;
+
+        final int nCols = decoders.length - nullBytes;
+        kinds = new int[nCols];
+        boxes = new char[nCols];
+        doubles = new double[nCols][];
+        longs = new long[nCols][];
+        booleans = new byte[nCols][];
+        chars = new char[nCols][];
+        charOffsets = new int[nCols][];
+        objects = new Object[nCols][];
+        nulls = new byte[nCols][capacity];
+        nullFlags = new byte[nullBytes * capacity];
+
+        for (int c = 0; c < nCols; c++) {
+            final BinaryFieldInterpreter<?> d = decoders[c + nullBytes];
+            kinds[c] = getKind(d);
+            switch (kinds[c]) {
+                case DOUBLE:
+                    boxes[c] = (d instanceof DoubleInterpreter) ? 'D' : 'F';
+                    doubles[c] = new double[capacity];
+                    break;
+                case LONG:
+                    boxes[c] = (d instanceof LongInterpreter) ? 'J' : (d instanceof IntegerInterpreter) ? 'I' : 'S';
+                    longs[c] = new long[capacity];
+                    break;
+                case CHAR:
+                    chars[c] = new char[capacity * Math.max(1, d.getNbItems())];
+                    charOffsets[c] = new int[capacity + 1];
+                    break;
+                case BOOLEAN:
+                    booleans[c] = new byte[capacity];
+                    break;
+                default:
+                    objects[c] = new Object[capacity];
+            }
+        }
+    }
+
+    /**
+     * Gets the kind of column in which the given decoder will be decoded.
+     * 
+     * @param d	A field decoder.
+     * 
+     * @return	{@link #DOUBLE}, {@link #LONG}, {@link #CHAR}, {@link #BOOLEAN} or {@link #OBJECT}.
+     */
+    static int getKind(final BinaryFieldInterpreter<?> d) {
+        final Class<?> c = d.getClass();
+        if (c == CharInterpreter.class || c == UnicodeCharInterpreter.class) {
+            return CHAR;
+        } else if (d.getNbItems() != 1) {
+            return OBJECT;
+        } else if (c == DoubleInterpreter.class || c == FloatInterpreter.class) {
+            return DOUBLE;
+        } else if (c == LongInterpreter.class || c == IntegerInterpreter.class || c == ShortInterpreter.class || c == UnsignedByteInterpreter.class) {
+            return LONG;
+        } else if (c == BooleanInterpreter.class) {
+            return BOOLEAN;
+        } else {
+            return OBJECT;
+        }
+    }
+
+    /**
+     * Ensures that the given CHAR column can receive <code>n</code> more characters.
+     * 
+     * @param c		Index of the column.
+     * @param used	Number of characters already stored.
+     * @param n		Number of characters to add.
+     * 
+     * @return	The characters buffer of the column.
+     */
+    char[] ensureChars(final int c, final int used, final int n) {
+        char[] buf = chars[c];
+        if (used + n > buf.length) {
+            final char[] nbuf = new char[Math.max(used + n, buf.length * 2)];
+            System.arraycopy(buf, 0, nbuf, 0, used);
+            chars[c] = buf = nbuf;
+        }
+        return buf;
+    }
+
+    /**
+     * @return	The maximum number of rows of this block.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return	The number of rows currently in this block.
+     */
+    public int getRowCount() {
+        return size;
+    }
+
+    /**
+     * @return	The number of columns (BINARY2 null flags excluded).
+     */
+    public int getColumnCount() {
+        return kinds.length;
+    }
+
+    /**
+     * @param col	Index of the column.
+     * @return		{@link #DOUBLE}, {@link #LONG}, {@link #CHAR}, {@link #BOOLEAN} or {@link #OBJECT}.
+     */
+    public int getKind(final int col) {
+        return kinds[col];
+    }
+
+    /**
+     * @param col	Index of the column.
+     * @return		Values of a {@link #DOUBLE} column, <code>null</code> for another kind of column.
+     */
+    public double[] getDoubles(final int col) {
+        return doubles[col];
+    }
+
+    /**
+     * @param col	Index of the column.
+     * @return		Values of a {@link #LONG} column, <code>null</code> for another kind of column.
+     */
+    public long[] getLongs(final int col) {
+        return longs[col];
+    }
+
+    /**
+     * @param col	Index of the column.
+     * @return		Values of a {@link #BOOLEAN} column (1, 0 or -1), <code>null</code> for another kind of column.
+     */
+    public byte[] getBooleans(final int col) {
+        return booleans[col];
+    }
+
+    /**
+     * <p>WARNING: the returned buffer may be replaced by a bigger one while decoding the next block.</p>
+     * 
+     * @param col	Index of the column.
+     * @return		Characters of a {@link #CHAR} column, <code>null</code> for another kind of column.
+     */
+    public char[] getChars(final int col) {
+        return chars[col];
+    }
+
+    /**
+     * @param col	Index of the column.
+     * @return		Offsets of the rows in {@link #getChars(int)} (row count + 1 significant items),
+     * 				<code>null</code> for another kind of column.
+     */
+    public int[] getCharOffsets(final int col) {
+        return charOffsets[col];
+    }
+
+    /**
+     * @param col	Index of the column.
+     * @return		Decoded cells of an {@link #OBJECT} column, <code>null</code> for another kind of column.
+     */
+    public Object[] getObjects(final int col) {
+        return objects[col];
+    }
+
+    /**
+     * @param col	Index of the column.
+     * @return		Null mask of the column: 1 if the cell is null, 0 otherwise.
+     */
+    public byte[] getNullMask(final int col) {
+        return nulls[col];
+    }
+
+    /**
+     * @param col	Index of the column.
+     * @param row	Index of the row in this block.
+     * @return		<i>true</i> if the cell is null, <i>false</i> otherwise.
+     */
+    public boolean isNull(final int col, final int row) {
+        checkRow(row);
+        return nulls[col][row] != 0;
+    }
+
+    /**
+     * Gets the string representation of a cell, the same as the one given by the row-oriented API.
+     * 
+     * @param col	Index of the column.
+     * @param row	Index of the row in this block.
+     * @return		The string serialization of the cell value.
+     * 
+     * @see BinaryFieldInterpreter#convertToString(Object)
+     */
+    public String getString(final int col, final int row) {
+        checkRow(row);
+        switch (kinds[col]) {
+            case DOUBLE:
+                return (boxes[col] == 'D') ? Double.toString(doubles[col][row]) : Float.toString((float) doubles[col][row]);
+            case LONG:
+                return Long.toString(longs[col][row]);
+            case CHAR:
+                final int[] off = charOffsets[col];
+                return new String(chars[col], off[row], off[row + 1] - off[row]);
+            case BOOLEAN:
+                final byte b = booleans[col][row];
+                return (b < 0) ? decoders[col + nullBytes].getNullValue() : (b == 1) ? "true" : "false";
+            default:
+                return decoders[col + nullBytes].convertToString(objects[col][row]);
+        }
+    }
+
+    /**
+     * <p>Builds the boxed representation of a row, as returned by {@link SavotDataReader#getRow()}.</p>
+     * 
+     * <p>
+     * 	Each cell is an array of the type decoded by its {@link BinaryFieldInterpreter}
+     * 	(i.e. <code>Double[]</code> for a <i>double</i> field). In BINARY2, the row starts
+     * 	with the null flags (one <code>Short[]</code> per byte).
+     * </p>
+     * 
+     * @param row	Index of the row in this block.
+     * @param dest	Array to fill (its length must be equal to the number of decoders of the reader).
+     */
+    public void copyRow(final int row, final Object[] dest) {
+        checkRow(row);
+        for (int i = 0; i < nullBytes; i++) {
+            dest[i] = new Short[]{(short) (nullFlags[row * nullBytes + i] & 0xff)};
+        }
+        for (int c = 0; c < kinds.length; c++) {
+            final Object cell;
+            switch (kinds[c]) {
+                case DOUBLE:
+                    final double d = doubles[c][row];
+                    cell = (boxes[c] == 'D') ? new Double[]{d} : new Float[]{(float) d};
+                    break;
+                case LONG:
+                    final long l = longs[c][row];
+                    cell = (boxes[c] == 'J') ? new Long[]{l} : (boxes[c] == 'I') ? new Integer[]{(int) l} : new Short[]{(short) l};
+                    break;
+                case CHAR:
+                    final int[] off = charOffsets[c];
+                    final char[] buf = chars[c];
+                    final Character[] str = new Character[off[row + 1] - off[row]];
+                    for (int k = 0; k < str.length; k++) {
+                        str[k] = buf[off[row] + k];
+                    }
+                    cell = str;
+                    break;
+                case BOOLEAN:
+                    final byte b = booleans[c][row];
+                    cell = new Boolean[]{(b < 0) ? null : Boolean.valueOf(b == 1)};
+                    break;
+                default:
+                    cell = objects[c][row];
+            }
+            dest[c + nullBytes] = cell;
+        }
+    }
+
+    /**
+     * @param row	Index of a row.
+     * @throws IndexOutOfBoundsException	If the row is not in this block.
+     */
+    private void checkRow(final int row) throws IndexOutOfBoundsException {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " not in the block (" + size + " rows) !");
+        }
+    }
+}
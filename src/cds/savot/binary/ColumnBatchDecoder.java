@@ -0,0 +1,384 @@
+package cds.savot.binary;
+
+//Copyright 2002-2014 - UDS/CNRS
+//The SAVOT library is distributed under the terms
+//of the GNU General Public License version 3.
+//
+//This file is part of SAVOT.
+//
+// SAVOT is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, version 3 of the License.
+//
+// SAVOT is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// The GNU General Public License is available in COPYING file
+// along with SAVOT.
+//
+//SAVOT - Simple Access to VOTable - Parser
+//
+//Author, Co-Author:  Andre Schaaff (CDS), Laurent Bourges (LAOG)
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import cds.savot.model.interpreter.BinaryFieldInterpreter;
+import cds.savot.model.interpreter.BinaryInterpreterException;
+
+/**
+ * <p>Decodes a BINARY or BINARY2 stream by blocks of rows, column by column (see {@link ColumnBatch}).</p>
+ * 
+ * <p>
+ * 	The decoded stream is read through an internal buffer, so that scalar numbers, booleans and characters
+ * 	are decoded directly into the primitive arrays of the {@link ColumnBatch}, without any intermediate object.
+ * 	The other cells are decoded by their {@link BinaryFieldInterpreter}, as in the row-oriented API.
+ * </p>
+ * 
+ * <p>
+ * 	A block never waits for data which are not yet available: it stops at the end of a row
+ * 	if the buffer is empty and the underlying stream would block.
+ * 	If an error occurs after at least one complete row, the block is returned and the error
+ * 	is thrown by the next call to {@link #decode(ColumnBatch)}.
+ * </p>
+ * 
+ * @since 10/2026
+ */
+public final class ColumnBatchDecoder {
+
+    /** Buffered stream on the decoded binary data. */
+    private final Source data;
+    /** List of decoders: null flags (BINARY2) followed by one decoder per column. */
+    private final BinaryFieldInterpreter<?>[] decoders;
+    /** Number of bytes of null flags prefixing each row (0 for BINARY). */
+    private final int nullBytes;
+    /** Error met while decoding the last block, to throw at the next call. */
+    private IOException pending = null;
+    /** Indicates whether the end of the file has been reached. */
+    private boolean eof = false;
+
+    /**
+     * Builds a block decoder.
+     * 
+     * @param decodedData	Stream on the DECODED binary data.
+     * @param decoders		Field decoders: the <code>nullBytes</code> first ones must decode the BINARY2 null flags.
+     * @param nullBytes		Number of bytes of null flags prefixing each row (0 for BINARY).
+     */
+    public ColumnBatchDecoder(final InputStream decodedData, final BinaryFieldInterpreter<?>[] decoders, final int nullBytes) {
+        this.data = new Source(decodedData);
+        this.decoders = decoders;
+        this.nullBytes = nullBytes;
+    }
+
+    /**
+     * Creates an empty block of rows for this decoder.
+     * 
+     * @param capacity	Maximum number of rows of the block.
+     * 
+     * @return	An empty {@link ColumnBatch}.
+     */
+    public ColumnBatch createBatch(final int capacity) {
+        return new ColumnBatch(decoders, nullBytes, capacity);
+    }
+
+    /**
+     * @return	<i>true</i> if the end of the stream has been reached.
+     */
+    public boolean isEOF() {
+        return eof;
+    }
+
+    /**
+     * Decodes the next rows of the stream into the given block.
+     * 
+     * @param batch	Block created by {@link #createBatch(int)}. Its previous content is lost.
+     * 
+     * @return	The number of decoded rows, 0 if the end of the stream has been reached.
+     * 
+     * @throws IOException	If the EOF has been reached in an unexpected manner
+     * 						or if an error occurs while reading or decoding the data.
+     */
+    public int decode(final ColumnBatch batch) throws IOException {
+        if (batch.decoders != decoders) {
+            throw new IllegalArgumentException("This ColumnBatch has not been created by this decoder !");
+        }
+        batch.size = 0;
+        if (pending != null) {
+            final IOException e = pending;
+            pending = null;
+            throw e;
+        } else if (eof) {
+            return 0;
+        }
+
+        final int nCols = batch.kinds.length;
+        for (int c = 0; c < nCols; c++) {
+            if (batch.charOffsets[c] != null) {
+                batch.charOffsets[c][0] = 0;
+            }
+        }
+
+        int r = 0;
+        try {
+            while (r < batch.capacity) {
+                // Do not wait for a new row if one row at least has been decoded:
+                if (r > 0 && !data.ready()) {
+                    break;
+                }
+                if (!data.require(1)) {
+                    eof = true;
+                    break;
+                }
+                decodeRow(batch, r);
+                r++;
+            }
+        } catch (IOException e) {
+            if (r == 0) {
+                throw e;
+            }
+            pending = e;
+        } catch (RuntimeException e) {
+            if (r == 0) {
+                throw e;
+            }
+            pending = new IOException(e.getMessage(), e);
+        }
+        batch.size = r;
+        return r;
+    }
+
+    /**
+     * Decodes one row (the stream contains at least one byte of this row).
+     * 
+     * @param batch	Block to fill.
+     * @param r		Index of the row in the block.
+     * 
+     * @throws IOException	If the row can not be read completely or decoded.
+     */
+    private void decodeRow(final ColumnBatch batch, final int r) throws IOException {
+        final Source in = data;
+
+        // Null flags:
+        if (nullBytes > 0) {
+            need(nullBytes, 0);
+            System.arraycopy(in.buf, in.pos, batch.nullFlags, r * nullBytes, nullBytes);
+            in.pos += nullBytes;
+        }
+
+        final int nCols = batch.kinds.length;
+        for (int c = 0; c < nCols; c++) {
+            final BinaryFieldInterpreter<?> d = decoders[c + nullBytes];
+            byte isNull = 0;
+            if (nullBytes > 0 && (batch.nullFlags[r * nullBytes + (c >> 3)] & (0x80 >>> (c & 7))) != 0) {
+                isNull = 1;
+            }
+
+            switch (batch.kinds[c]) {
+                case ColumnBatch.DOUBLE: {
+                    final int nb = d.getNbBytes();
+                    need(nb, c);
+                    final byte[] b = in.buf;
+                    final int p = in.pos;
+                    batch.doubles[c][r] = (nb == 8) ? Double.longBitsToDouble(getLong(b, p)) : Float.intBitsToFloat(getInt(b, p));
+                    in.pos += nb;
+                    break;
+                }
+                case ColumnBatch.LONG: {
+                    final int nb = d.getNbBytes();
+                    need(nb, c);
+                    final byte[] b = in.buf;
+                    final int p = in.pos;
+                    final long v;
+                    switch (nb) {
+                        case 1:
+                            v = b[p] & 0xff;
+                            break;
+                        case 2:
+                            v = (short) ((b[p] << 8) | (b[p + 1] & 0xff));
+                            break;
+                        case 4:
+                            v = getInt(b, p);
+                            break;
+                        default:
+                            v = getLong(b, p);
+                    }
+                    batch.longs[c][r] = v;
+                    in.pos += nb;
+                    break;
+                }
+                case ColumnBatch.BOOLEAN: {
+                    need(1, c);
+                    final Object v = d.decodePrimary(in.buf, in.pos);
+                    in.pos++;
+                    if (v == null) {
+                        batch.booleans[c][r] = -1;
+                        isNull = 1;
+                    } else {
+                        batch.booleans[c][r] = (byte) (((Boolean) v) ? 1 : 0);
+                    }
+                    break;
+                }
+                case ColumnBatch.CHAR: {
+                    int n = d.getNbItems();
+                    if (n == -1) {
+                        need(4, c);
+                        n = getInt(in.buf, in.pos);
+                        in.pos += 4;
+                        if (n < 0) {
+                            throw new NegativeArraySizeException("Impossible to get negative number of characters !");
+                        }
+                    }
+                    final int nb = d.getNbBytes();
+                    need(n * nb, c);
+                    final int[] off = batch.charOffsets[c];
+                    final char[] dst = batch.ensureChars(c, off[r], n);
+                    final byte[] b = in.buf;
+                    int p = in.pos;
+                    int k = off[r];
+                    if (nb == 1) {
+                        for (int i = 0; i < n; i++) {
+                            dst[k++] = (char) (b[p++] & 0xff);
+                        }
+                    } else {
+                        for (int i = 0; i < n; i++, p += 2) {
+                            dst[k++] = (char) ((b[p] << 8) | (b[p + 1] & 0xff));
+                        }
+                    }
+                    in.pos = p;
+                    off[r + 1] = k;
+                    break;
+                }
+                default: {
+                    final Object v = d.decode(in);
+                    if (v == null) {
+                        throw unexpectedEOF(c);
+                    }
+                    batch.objects[c][r] = v;
+                }
+            }
+            batch.nulls[c][r] = isNull;
+        }
+    }
+
+    /**
+     * Ensures that <code>n</code> bytes are available in the buffer.
+     * 
+     * @param n		Number of bytes.
+     * @param col	Index of the column being read.
+     * 
+     * @throws IOException	If the EOF is reached before.
+     */
+    private void need(final int n, final int col) throws IOException {
+        if (!data.require(n)) {
+            throw unexpectedEOF(col);
+        }
+    }
+
+    private BinaryInterpreterException unexpectedEOF(final int col) {
+        final int nCols = decoders.length - nullBytes;
+        return new BinaryInterpreterException("Unexpected EOF: the row has not been read completely ; only " + col + " columns on " + nCols + " has been successfully read !");
+    }
+
+    private static int getInt(final byte[] b, final int p) {
+        return (b[p] << 24) | ((b[p + 1] & 0xff) << 16) | ((b[p + 2] & 0xff) << 8) | (b[p + 3] & 0xff);
+    }
+
+    private static long getLong(final byte[] b, final int p) {
+        return ((long) getInt(b, p) << 32) | (getInt(b, p + 4) & 0xffffffffL);
+    }
+
+    /**
+     * Input stream reading the decoded binary data through a buffer directly accessible by the decoder.
+     * It is also given to the {@link BinaryFieldInterpreter}s for the OBJECT columns.
+     */
+    private static final class Source extends InputStream {
+
+        /** Underlying stream. */
+        private final InputStream in;
+        /** Buffer. */
+        byte[] buf = new byte[64 * 1024];
+        /** Position of the next byte to read in the buffer. */
+        int pos = 0;
+        /** Number of significant bytes in the buffer. */
+        int lim = 0;
+        /** Indicates whether the end of the underlying stream has been reached. */
+        private boolean end = false;
+
+        Source(final InputStream in) {
+            this.in = in;
+        }
+
+        /**
+         * Ensures that <code>n</code> bytes are available in the buffer (from {@link #pos}).
+         * 
+         * @return	<i>false</i> if the end of the stream is reached before.
+         */
+        boolean require(final int n) throws IOException {
+            if (lim - pos >= n) {
+                return true;
+            }
+            // Move the remaining bytes at the beginning of the buffer (or of a bigger one):
+            final int rem = lim - pos;
+            if (n > buf.length) {
+                final byte[] nbuf = new byte[Math.max(n, buf.length * 2)];
+                System.arraycopy(buf, pos, nbuf, 0, rem);
+                buf = nbuf;
+            } else if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, rem);
+            }
+            pos = 0;
+            lim = rem;
+            while (lim < n && !end) {
+                final int nbRead = in.read(buf, lim, buf.length - lim);
+                if (nbRead < 0) {
+                    end = true;
+                } else {
+                    lim += nbRead;
+                }
+            }
+            return lim >= n;
+        }
+
+        /**
+         * @return	<i>true</i> if at least one byte can be read without blocking.
+         */
+        boolean ready() throws IOException {
+            return pos < lim || (!end && in.available() > 0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            return require(1) ? (buf[pos++] & 0xff) : -1;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = 0;
+            while (n < len) {
+                if (pos == lim && !require(1)) {
+                    break;
+                }
+                final int k = Math.min(len - n, lim - pos);
+                System.arraycopy(buf, pos, b, off + n, k);
+                pos += k;
+                n += k;
+            }
+            return (n == 0) ? -1 : n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (lim - pos) + (end ? 0 : in.available());
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
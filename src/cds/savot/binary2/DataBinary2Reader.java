@@ -39,6 +39,8 @@ import java.util.Date;
 import java.util.zip.GZIPInputStream;
 
 import cds.savot.binary.Base64InputStream;
+import cds.savot.binary.ColumnBatch;
+import cds.savot.binary.ColumnBatchDecoder;
 import cds.savot.binary.SavotDataReader;
 //import org.apache.commons.codec.binary.Base64InputStream;
 import cds.savot.model.FieldSet;
@@ -109,6 +111,14 @@ public final class DataBinary2Reader implements SavotDataReader {
     private boolean nextCalled = false;
     /** Indicates whether the end of the file has been reached. */
     private boolean eof = false;
+    /** Number of rows decoded at once by {@link #next()}. */
+    private static final int ROW_BATCH_SIZE = 64;
+    /** Block decoder on the binary data (created at the first read). */
+    private ColumnBatchDecoder batchDecoder = null;
+    /** Block of rows in which {@link #next()} reads the current row. */
+    private ColumnBatch rowBatch = null;
+    /** Index of the current row in {@link #rowBatch}. */
+    private int rowIndex = 0;
     /** Binary2 (VOTABLE 1.3) null management through a number of Bytes = (nb columns + 7) / 8 for each line in the stream */
     private int nullBytes = 0;
 
@@ -393,27 +403,75 @@ public final class DataBinary2Reader implements SavotDataReader {
             return false;
         }
 
-        for (int i = 0; i < row.length; i++) {
-            // Reads the value of the i-th cell:
-            row[i] = decoders[i].decode(data);
-
-            // EOF detection:
-            if (row[i] == null) {	// decode(...) must return an array. If null is returned => EOF !
-                // EOF accepted ONLY while getting the first cell of a row:
-                if (i == 0) {
-                    eof = true;
-                    nextCalled = true;
-                    return false;
-                } // otherwise an exception is thrown !
-                else {
-                    throw new IOException("Unexpected EOF: the row has not been read completely ; only " + i + " columns on " + row.length + " has been successfully read !");
-                }
+        if (rowBatch == null) {
+            rowBatch = getBatchDecoder().createBatch(ROW_BATCH_SIZE);
+        }
+        if (++rowIndex >= rowBatch.getRowCount()) {
+            rowIndex = 0;
+            // EOF accepted ONLY at the beginning of a row (otherwise an exception is thrown):
+            if (batchDecoder.decode(rowBatch) == 0) {
+                eof = true;
+                nextCalled = true;
+                return false;
             }
         }
+        rowBatch.copyRow(rowIndex, row);
         nextCalled = true;
         return true;
     }
 
+    /* COLUMN-ORIENTED READING */
+    /**
+     * Gets the block decoder, creating it if needed.
+     * 
+     * @return	The block decoder on the binary data.
+     */
+    private ColumnBatchDecoder getBatchDecoder() {
+        if (batchDecoder == null) {
+            batchDecoder = new ColumnBatchDecoder(data, decoders, nullBytes);
+        }
+        return batchDecoder;
+    }
+
+    /**
+     * <p>Creates an empty block of rows to fill with {@link #nextBatch(ColumnBatch)}.</p>
+     * 
+     * @param capacity	Maximum number of rows of the block.
+     * 
+     * @return	An empty {@link ColumnBatch} whose columns match the fields of this reader.
+     */
+    public ColumnBatch createBatch(final int capacity) {
+        return getBatchDecoder().createBatch(capacity);
+    }
+
+    /**
+     * <p>Reads the next rows, column by column, in the given block.</p>
+     * 
+     * <p>
+     * 	WARNING: the rows already decoded ahead by {@link #next()} must have been consumed
+     * 	before switching to this method.
+     * </p>
+     * 
+     * @param batch	A block created by {@link #createBatch(int)}. Its previous content is lost.
+     * 
+     * @return	The number of rows read, 0 if the end of the stream has been reached.
+     * 
+     * @throws IOException				If the reader is closed or if an error occurs while reading the data.
+     * @throws IllegalStateException	If some rows decoded by {@link #next()} have not yet been consumed.
+     */
+    public int nextBatch(final ColumnBatch batch) throws IOException, IllegalStateException {
+        if (row == null) {
+            throw new IOException("Reader closed !");
+        } else if (rowBatch != null && rowIndex + 1 < rowBatch.getRowCount()) {
+            throw new IllegalStateException("Some rows already decoded by next() have not yet been consumed !");
+        }
+        final int n = getBatchDecoder().decode(batch);
+        if (n == 0) {
+            eof = true;
+        }
+        return n;
+    }
+
     /**
      * <p>Ensures that:</p>
      * <ul>
@@ -535,5 +593,7 @@ public final class DataBinary2Reader implements SavotDataReader {
         data = null;
         row = null;
         decoders = null;
+        batchDecoder = null;
+        rowBatch = null;
     }
 }
@@ -164,6 +164,33 @@ public abstract class BinaryFieldInterpreter<T> {
         }
     }
 
+    /**
+     * Gets the total number of items of one cell, all dimensions confounded.
+     * 
+     * @return	<code>-1</code> if the array-size is variable, else the number of items of type T of one cell.
+     */
+    public final int getNbItems() {
+        return nbItems;
+    }
+
+    /**
+     * Gets the number of bytes occupied by one item of type T.
+     * 
+     * @return	Number of bytes of a primary data type.
+     */
+    public final int getNbBytes() {
+        return NB_BYTES;
+    }
+
+    /**
+     * Gets the string representation of a <code>null</code> value.
+     * 
+     * @return	The string returned by {@link #convertToString(Object)} for a <code>null</code> value.
+     */
+    public final String getNullValue() {
+        return strNullValue;
+    }
+
     /**
      * <p>
      * 	Reads <code>length</code> data of type T from the given input stream considering
@@ -0,0 +1,329 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.tools.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/** Version compile d'une expression du Parser.
+ * L'arbre des oprateurs est aplati en un programme postfix ( pile) : les variables sont
+ * remplaces par leur indice, les sous-expressions constantes sont pr-calcules.
+ *
+ * L'valuation peut se faire pour un jeu de valeurs (cf. eval(double[],double[])) ou
+ * colonne par colonne pour un intervalle de lignes (cf. eval(double[][],int,int,double[])),
+ * chaque instruction tant alors applique  toute la tranche avant de passer  la suivante.
+ *
+ * Un CompiledExpr est immuable et peut tre partag par plusieurs threads.
+ *
+ * @see Parser#compile()
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+public final class CompiledExpr {
+
+   // Codes des instructions
+   static private final byte CST     = 0;
+   static private final byte VAR     = 1;
+   static private final byte ADD     = 2;
+   static private final byte SUB     = 3;
+   static private final byte MUL     = 4;
+   static private final byte DIV     = 5;
+   static private final byte POW     = 6;
+   static private final byte SIN     = 7;
+   static private final byte COS     = 8;
+   static private final byte TAN     = 9;
+   static private final byte LOG     = 10;
+   static private final byte LN      = 11;
+   static private final byte ABS     = 12;
+   static private final byte DEG2RAD = 13;
+   static private final byte RAD2DEG = 14;
+   static private final byte SQRT    = 15;
+   static private final byte EXP     = 16;
+   static private final byte ATAN    = 17;
+
+   private byte [] code;       // Les instructions
+   private double [] cst;      // La valeur de la constante pour les instructions CST
+   private int [] slot;        // L'indice de la variable pour les instructions VAR
+   private String [] vars;     // Les noms des variables ("{col}" ou "[ucd]") par indice
+   private int depth;          // Profondeur de pile ncessaire
+
+   /** Compilation de l'arbre des oprateurs d'un Parser
+    * @param root l'oprateur racine
+    * @param varsOp les variables du Parser (nom -> VariableOp)
+    */
+   CompiledExpr(AbstractOperateur root, Map<?,?> varsOp) {
+      IdentityHashMap<AbstractOperateur,Integer> index = new IdentityHashMap<>();
+      vars = new String[ varsOp.size() ];
+      int n=0;
+      for( Map.Entry<?,?> e : varsOp.entrySet() ) {
+         vars[n] = (String)e.getKey();
+         index.put( (AbstractOperateur)e.getValue(), n++ );
+      }
+
+      Program p = new Program(index);
+      p.compile(root);
+      n = p.code.size();
+      code = new byte[n];
+      cst = new double[n];
+      slot = new int[n];
+      for( int i=0; i<n; i++ ) {
+         code[i] = p.code.get(i);
+         cst[i] = p.cst.get(i);
+         slot[i] = p.slot.get(i);
+      }
+      depth = p.depth;
+   }
+
+   /** Retourne les noms des variables, dans l'ordre des indices attendus par eval(...) */
+   public String [] getVariables() { return vars; }
+
+   /** Retourne le nombre de variables */
+   public int getNbVariables() { return vars.length; }
+
+   /** Retourne la taille de pile ncessaire pour eval(double[],double[]) */
+   public int getStackSize() { return depth; }
+
+   /** Retourne true si l'expression se rduit  une constante (ventuellement indpendante de variables dclares) */
+   public boolean isConstant() { return code.length==1 && code[0]==CST; }
+
+   /** Retourne le nombre d'instructions du programme */
+   public int size() { return code.length; }
+
+   /** Programme en cours de compilation */
+   static private final class Program {
+      ArrayList<Byte> code = new ArrayList<>();
+      ArrayList<Double> cst = new ArrayList<>();
+      ArrayList<Integer> slot = new ArrayList<>();
+      IdentityHashMap<AbstractOperateur,Integer> index;
+      int sp=0,depth=0;
+
+      Program(IdentityHashMap<AbstractOperateur,Integer> index) { this.index=index; }
+
+      // Ajoute une instruction
+      private void emit(byte op,double val,int var) {
+         code.add(op);
+         cst.add(val);
+         slot.add(var);
+         if( op==CST || op==VAR ) { sp++; if( sp>depth ) depth=sp; }
+         else if( op<=POW ) sp--;
+      }
+
+      // Supprime la dernire instruction (ncessairement une constante)
+      private double popConstant() {
+         int i = code.size()-1;
+         double val = cst.get(i);
+         code.remove(i); cst.remove(i); slot.remove(i);
+         sp--;
+         return val;
+      }
+
+      // Retourne true si la dernire instruction est une constante
+      private boolean lastIsConstant() {
+         return code.size()>0 && code.get(code.size()-1)==CST;
+      }
+
+      // Compilation rcursive d'un oprateur, avec pr-calcul des sous-expressions constantes
+      void compile(AbstractOperateur op) {
+         if( op instanceof VariableOp ) {
+            Integer i = index.get(op);
+            if( i==null ) throw new ParserException("CompiledExpr: unknown variable !!!");
+            emit(VAR,0,i);
+            return;
+         }
+         if( op instanceof ConstantValOp ) {
+            emit(CST,op.compute(),-1);
+            return;
+         }
+
+         byte b = getCode(op);
+         if( op instanceof BinaryOperateur ) {
+            compile(op.ops[0]);
+            boolean cst1 = lastIsConstant();
+            compile(op.ops[1]);
+            if( cst1 && lastIsConstant() ) {
+               double val2 = popConstant();
+               double val1 = popConstant();
+               emit(CST,apply(b,val1,val2),-1);
+            } else emit(b,0,-1);
+
+         } else {
+            compile(op.ops[0]);
+            if( lastIsConstant() ) emit(CST,apply(b,popConstant()),-1);
+            else emit(b,0,-1);
+         }
+      }
+   }
+
+   // Retourne le code de l'instruction correspondant  l'oprateur
+   static private byte getCode(AbstractOperateur op) {
+      if( op instanceof AdditionOp ) return ADD;
+      if( op instanceof SubtractOp ) return SUB;
+      if( op instanceof MultOp )     return MUL;
+      if( op instanceof DivideOp )   return DIV;
+      if( op instanceof PowerOp )    return POW;
+      if( op instanceof SinOp )      return SIN;
+      if( op instanceof CosOp )      return COS;
+      if( op instanceof TanOp )      return TAN;
+      if( op instanceof LogOp )      return LOG;
+      if( op instanceof NepLogOp )   return LN;
+      if( op instanceof AbsOp )      return ABS;
+      if( op instanceof Deg2RadOp )  return DEG2RAD;
+      if( op instanceof Rad2DegOp )  return RAD2DEG;
+      if( op instanceof SqrtOp )     return SQRT;
+      if( op instanceof ExpOp )      return EXP;
+      if( op instanceof AtanOp )     return ATAN;
+      throw new ParserException("CompiledExpr: unsupported operator "+(op==null?"null":op.getClass().getName()));
+   }
+
+   // Oprateurs binaires (mme calcul que les classes XxxOp correspondantes)
+   static private double apply(byte op,double a,double b) {
+      switch( op ) {
+         case ADD: return a+b;
+         case SUB: return a-b;
+         case MUL: return a*b;
+         case DIV: return a/b;
+         default:  return Math.pow(a,b);
+      }
+   }
+
+   // Fonctions (mme calcul que les classes XxxOp correspondantes)
+   static private double apply(byte op,double a) {
+      switch( op ) {
+         case SIN:     return Math.sin(a);
+         case COS:     return Math.cos(a);
+         case TAN:     return Math.tan(a);
+         case LOG:     return Math.log(a)/Math.log(10.0);
+         case LN:      return Math.log(a);
+         case ABS:     return Math.abs(a);
+         case DEG2RAD: return Math.PI*a/180.0;
+         case RAD2DEG: return 180.0*a/Math.PI;
+         case SQRT:    return Math.sqrt(a);
+         case EXP:     return Math.exp(a);
+         default:      return Math.atan(a);
+      }
+   }
+
+   // Fonctions appliques aux n premiers lments d'une tranche
+   static private void apply(byte op,double [] a,int n) {
+      switch( op ) {
+         case SIN:     for( int i=0; i<n; i++ ) a[i]=Math.sin(a[i]); break;
+         case COS:     for( int i=0; i<n; i++ ) a[i]=Math.cos(a[i]); break;
+         case TAN:     for( int i=0; i<n; i++ ) a[i]=Math.tan(a[i]); break;
+         case LOG:     for( int i=0; i<n; i++ ) a[i]=Math.log(a[i])/Math.log(10.0); break;
+         case LN:      for( int i=0; i<n; i++ ) a[i]=Math.log(a[i]); break;
+         case ABS:     for( int i=0; i<n; i++ ) a[i]=Math.abs(a[i]); break;
+         case DEG2RAD: for( int i=0; i<n; i++ ) a[i]=Math.PI*a[i]/180.0; break;
+         case RAD2DEG: for( int i=0; i<n; i++ ) a[i]=180.0*a[i]/Math.PI; break;
+         case SQRT:    for( int i=0; i<n; i++ ) a[i]=Math.sqrt(a[i]); break;
+         case EXP:     for( int i=0; i<n; i++ ) a[i]=Math.exp(a[i]); break;
+         default:      for( int i=0; i<n; i++ ) a[i]=Math.atan(a[i]);
+      }
+   }
+
+   /** Evaluation pour un jeu de valeurs des variables
+    * @param val les valeurs des variables, dans l'ordre de getVariables()
+    * @param stack pile de travail d'au moins getStackSize() lments
+    * @return le rsultat
+    */
+   public double eval(double [] val, double [] stack) {
+      int sp=-1;
+      for( int pc=0; pc<code.length; pc++ ) {
+         byte op = code[pc];
+         switch( op ) {
+            case CST: stack[++sp] = cst[pc];        break;
+            case VAR: stack[++sp] = val[ slot[pc] ]; break;
+            case ADD: sp--; stack[sp] += stack[sp+1]; break;
+            case SUB: sp--; stack[sp] -= stack[sp+1]; break;
+            case MUL: sp--; stack[sp] *= stack[sp+1]; break;
+            case DIV: sp--; stack[sp] /= stack[sp+1]; break;
+            case POW: sp--; stack[sp] = Math.pow(stack[sp],stack[sp+1]); break;
+            default:  stack[sp] = apply(op,stack[sp]);
+         }
+      }
+      return stack[0];
+   }
+
+   /** Evaluation pour un jeu de valeurs des variables (allocation de la pile  chaque appel) */
+   public double eval(double [] val) {
+      return eval(val, new double[depth]);
+   }
+
+   /** Evaluation vectorise sur l'intervalle de lignes [deb,fin[. Chaque instruction
+    * est applique  toute la tranche. Sans effet de bord, peut tre appele en parallle
+    * sur des intervalles distincts.
+    * @param col les colonnes de valeurs des variables (col[i][ligne]), dans l'ordre de getVariables()
+    * @param deb premire ligne
+    * @param fin dernire ligne (exclue)
+    * @param out en retour, les rsultats (out[ligne])
+    */
+   public void eval(double [][] col, int deb, int fin, double [] out) {
+      int n = fin-deb;
+      if( n<=0 ) return;
+
+      // Cas simples : constante ou variable seule
+      if( code.length==1 ) {
+         if( code[0]==CST ) Arrays.fill(out,deb,fin,cst[0]);
+         else System.arraycopy(col[ slot[0] ],deb,out,deb,n);
+         return;
+      }
+
+      double [][] stack = new double[depth][n];
+      int sp=-1;
+      for( int pc=0; pc<code.length; pc++ ) {
+         byte op = code[pc];
+         double [] a,b;
+         switch( op ) {
+            case CST:
+               Arrays.fill(stack[++sp],cst[pc]);
+               break;
+            case VAR:
+               System.arraycopy(col[ slot[pc] ],deb,stack[++sp],0,n);
+               break;
+            case ADD:
+               b=stack[sp--]; a=stack[sp];
+               for( int i=0; i<n; i++ ) a[i]+=b[i];
+               break;
+            case SUB:
+               b=stack[sp--]; a=stack[sp];
+               for( int i=0; i<n; i++ ) a[i]-=b[i];
+               break;
+            case MUL:
+               b=stack[sp--]; a=stack[sp];
+               for( int i=0; i<n; i++ ) a[i]*=b[i];
+               break;
+            case DIV:
+               b=stack[sp--]; a=stack[sp];
+               for( int i=0; i<n; i++ ) a[i]/=b[i];
+               break;
+            case POW:
+               b=stack[sp--]; a=stack[sp];
+               for( int i=0; i<n; i++ ) a[i]=Math.pow(a[i],b[i]);
+               break;
+            default:
+               apply(op,stack[sp],n);
+         }
+      }
+      System.arraycopy(stack[0],0,out,deb,n);
+   }
+}
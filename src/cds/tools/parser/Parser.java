@@ -394,6 +394,15 @@ public final class Parser {
 		return rootOperator.compute();
 	}
 
+	/** Retourne la version compile (programme  pile, variables indexes, constantes pr-calcules)
+	 * de l'expression, pour des valuations massives par colonnes
+	 * @see CompiledExpr
+	 */
+	public CompiledExpr compile() {
+		if( rootOperator==null ) throw new ParserException("method compile : expression not parsed !!!");
+		return new CompiledExpr(rootOperator, varsOp);
+	}
+
 	// pour des tests uniquement
 //	public final double eval2() {
 //		return rootOperator.compute();
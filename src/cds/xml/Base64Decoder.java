@@ -0,0 +1,138 @@
+// Copyright 1999-2022 - Universite de Strasbourg/CNRS
+// The Aladin Desktop program is developped by the Centre de Donnees
+// astronomiques de Strasbourgs (CDS).
+// The Aladin Desktop program is distributed under the terms
+// of the GNU General Public License version 3.
+//
+//This file is part of Aladin Desktop.
+//
+//    Aladin Desktop is free software: you can redistribute it and/or modify
+//    it under the terms of the GNU General Public License as published by
+//    the Free Software Foundation, version 3 of the License.
+//
+//    Aladin Desktop is distributed in the hope that it will be useful,
+//    but WITHOUT ANY WARRANTY; without even the implied warranty of
+//    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+//    GNU General Public License for more details.
+//
+//    The GNU General Public License is available in COPYING file
+//    along with Aladin Desktop.
+//
+
+package cds.xml;
+
+import cds.aladin.Aladin;
+
+/**
+ * Dcodeur BASE64 par blocs pour les STREAMs VOTable.
+ *
+ * Les caractres BASE64 sont dcods directement depuis le buffer de caractres
+ * du parser XML vers un buffer d'octets rutilis d'un appel  l'autre. Les quadruplets
+ * complets sans blanc sont traits par une boucle rapide, les autres caractres
+ * (blancs, fins de ligne, caractres invalides, bourrage '=') un par un.
+ * Le quadruplet en cours est mmoris entre deux appels, ce qui permet de dcouper
+ * le flux BASE64 n'importe o (pas ncessairement en fin de ligne).
+ *
+ * @author P. Fernique [CDS]
+ * @version 1.0 - oct 2026 - cration
+ */
+final class Base64Decoder {
+
+   static private final String B64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+   // Valeur de chaque caractre ASCII : 0..63, ou -1 si ce n'est pas un caractre BASE64
+   static private final int [] DEC = new int[128];
+   static {
+      for( int i=0; i<DEC.length; i++ ) DEC[i]=-1;
+      for( int i=0; i<B64.length(); i++ ) DEC[ B64.charAt(i) ] = i;
+   }
+
+   private byte [] buf = new byte[64*1024];   // Octets dcods (rutilis)
+   private int group;       // Bits du quadruplet en cours
+   private int nbChar;      // Nombre de caractres du quadruplet en cours
+   private int nbPad;       // Nombre de caractres de bourrage '=' rencontrs
+   private boolean end;     // true si la fin du message (bourrage) a t atteinte
+
+   /** Buffer contenant les octets dcods (attention, il peut changer  chaque appel de decode()) */
+   byte [] getBuffer() { return buf; }
+
+   /** Rinitialisation pour un nouveau flux */
+   void reset() { group=nbChar=nbPad=0; end=false; }
+
+   /** Recopie d'octets en dbut de buffer (typiquement le reste non trait du bloc prcdent)
+    * @return le nombre d'octets recopis, c'est--dire la position de la suite du dcodage
+    */
+   int prefix(byte [] b) {
+      if( b==null ) return 0;
+      ensure(b.length);
+      System.arraycopy(b,0,buf,0,b.length);
+      return b.length;
+   }
+
+   /** Dcodage d'un segment de caractres BASE64
+    * @param ch le tableau de caractres
+    * @param start la position du premier caractre
+    * @param length le nombre de caractres
+    * @param offset la position dans le buffer des octets dcods (cf. prefix())
+    * @return la position qui suit le dernier octet dcod dans le buffer
+    */
+   int decode(char [] ch,int start,int length,int offset) {
+      ensure( offset + (length/4+1)*3 );
+      byte [] b = buf;
+      int k = offset;
+      int i = start;
+      int n = start+length;
+
+      while( i<n && !end ) {
+
+         // Boucle rapide : quadruplets complets de caractres BASE64
+         if( nbChar==0 ) {
+            while( i+4<=n ) {
+               char c0=ch[i], c1=ch[i+1], c2=ch[i+2], c3=ch[i+3];
+               if( ((c0|c1|c2|c3) & 0xFF80)!=0 ) break;
+               int v0=DEC[c0], v1=DEC[c1], v2=DEC[c2], v3=DEC[c3];
+               if( (v0|v1|v2|v3)<0 ) break;
+               int g = v0<<18 | v1<<12 | v2<<6 | v3;
+               b[k++]=(byte)(g>>>16);
+               b[k++]=(byte)(g>>>8);
+               b[k++]=(byte)g;
+               i+=4;
+            }
+            if( i>=n ) break;
+         }
+
+         // Traitement caractre par caractre
+         char c = ch[i++];
+         int v = c<128 ? DEC[c] : -1;
+         if( v<0 ) {
+            if( c=='=' ) { nbPad++; v=0; }
+            else {
+               if( c!=' ' && c!='\n' && c!='\r' && c!='\t' && Aladin.levelTrace>=3 ) {
+                  System.err.println("****Bad BASE64 input char "+c+" => ignored");
+               }
+               continue;
+            }
+         } else if( nbPad>0 ) {
+            if( Aladin.levelTrace>=3 ) System.err.println("****BASE64 char "+c+" after padding => ignored");
+            continue;
+         }
+         group = group<<6 | v;
+         if( ++nbChar==4 ) {
+            b[k++]=(byte)(group>>>16);
+            if( nbPad<2 ) b[k++]=(byte)(group>>>8);
+            if( nbPad<1 ) b[k++]=(byte)group;
+            if( nbPad>0 ) end=true;
+            group=nbChar=0;
+         }
+      }
+      return k;
+   }
+
+   // Agrandissement du buffer si ncessaire (les octets dj prsents sont conservs)
+   private void ensure(int size) {
+      if( size<=buf.length ) return;
+      byte [] b = new byte[ Math.max(size, buf.length*2) ];
+      System.arraycopy(buf,0,b,0,buf.length);
+      buf=b;
+   }
+}
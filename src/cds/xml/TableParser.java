@@ -30,7 +30,6 @@ import java.util.Vector;
 import cds.aladin.Aladin;
 import cds.aladin.MyInputStream;
 import cds.aladin.Pcat;
-import cds.aladin.Save;
 import cds.astro.Astrocoo;
 import cds.astro.Astroframe;
 import cds.astro.Astropos;
@@ -129,6 +128,7 @@ final public class TableParser implements XMLConsumer {
    private boolean inLinkField=false; // true si on est dans un tag <FIELD><LINK>
    private boolean inFieldDesc=false; // true si on est dans un tag <FIELD><DESCRIPTION>
    private boolean inEncode64=false;  // true si on est dans un tag <STREAM encode="base64">
+   private Base64Decoder b64=null;    // Dcodeur BASE64 des STREAMs (buffer rutilis)
    private boolean inBinary=false;    // true si on est dans un tag <BINARY>
    private boolean inBinary2=false;   // true si on est dans un tag <BINARY2>
    private boolean inFits=false;      // true si on est dans un tag <FITS>
@@ -341,16 +341,13 @@ final public class TableParser implements XMLConsumer {
     */
    private void parseBase64(char ch[],int pos, int len,boolean inBinary2) throws Exception {
       if( memoField!=null ) consumer.tableParserInfo("\nParsing VOTable data from a"+(inBinary2?" BINARY2":" BINARY")+" base64 stream");
-      byte b[] = new byte[len];   // un peu grand mais bon !
-      int offset = 0;
-      if( memoB!=null ) {
-         //         System.out.println("memoB!=null !! memoB.length="+memoB.length);
-         b = new byte[len+memoB.length];
-         System.arraycopy(memoB,0,b,0,offset=memoB.length);
-         memoB=null;
-      } else b = new byte[len];
-      int n = Save.get64(b,offset,ch,pos,len);
-      parseBin(b,0,n,inBinary2);
+
+      // Le reste non trait du segment prcdent est recopi en dbut du buffer de dcodage
+      // qui est rutilis d'un segment  l'autre
+      int offset = b64.prefix(memoB);
+      memoB=null;
+      int n = b64.decode(ch,pos,len,offset);
+      parseBin(b64.getBuffer(),0,n,inBinary2);
    }
 
    // Variables d'instance en cas de parseBin conscutifs
@@ -1394,7 +1391,12 @@ final public class TableParser implements XMLConsumer {
             if( name.equalsIgnoreCase("TR") ) { row=0; }
             else if( name.equalsIgnoreCase("STREAM") ) {
                att = (String)atts.get("encoding");
-               if( att!=null && att.equalsIgnoreCase("base64") ) inEncode64=true;
+               if( att!=null && att.equalsIgnoreCase("base64") ) {
+                  inEncode64=true;
+                  if( b64==null ) b64 = new Base64Decoder();
+                  else b64.reset();
+                  xmlparser.setSplitText(true);
+               }
                else {
                   att = (String)atts.get("href");
                   try { hrefCall(att); }
@@ -2466,7 +2468,7 @@ final public class TableParser implements XMLConsumer {
          valueInTD=false;
          row++;
       } else if( depth==6 && name.equalsIgnoreCase("TR")  )         consumeRecord(record,-1);
-      else if( depth==6 && name.equalsIgnoreCase("STREAM") )      inEncode64=false;
+      else if( depth==6 && name.equalsIgnoreCase("STREAM") )      { inEncode64=false; xmlparser.setSplitText(false); }
       else if( depth==3 && name.equalsIgnoreCase("TABLE") )     {
          if( !flagPosChooser ) posChooser();
          fieldSub=tableSub=null;
@@ -73,6 +73,8 @@ public final class XMLParser {
    private String endTag;	    // Contient le tag de fin de parsing (siHparsing partiel)
    private int line;            // Ligne courante (en cas d'erreur)
    private boolean flagInterrupt; // true si on demande une interruption de parsing
+   private boolean splitText;   // true si le texte peut tre transmis par morceaux sans attendre une fin de ligne
+   private char [] splitBuf;    // Buffer rutilis pour la transmission par morceaux
 
    static final int BUFSIZE = 64*1024;  // Reader buffer size
    static final int MAXBUF  = BUFSIZE-1024; // number of chars before a flush
@@ -153,6 +155,13 @@ public final class XMLParser {
    /** Demande d'interruption d'un parsing en cours */
    public void interrupt() throws Exception { flagInterrupt=true; }
 
+   /** Autorise (ou non) la transmission du texte courant au consommateur par morceaux de taille fixe,
+    * sans attendre une fin de ligne (ex: BASE64 sur une seule ligne). Dans ce mode, le tableau
+    * de caractres transmis est rutilis d'un morceau  l'autre.
+    * Le consommateur doit alors accepter un texte dcoup n'importe o.
+    */
+   public void setSplitText(boolean flag) { splitText=flag; }
+
    private void setTestBeforeXML(MyInputStream dis) throws Exception {
       beforeXML = (dis.getType() & MyInputStream.VOTABLE) ==0;
    }
@@ -411,8 +420,18 @@ public final class XMLParser {
             case 1: encore=(c!='>'); break;
             case 2: encore=(c!='<');
 
+            // Flush par morceaux sans recopie intermdiaire, y compris en milieu de ligne
+            if( l>=MAXBUF && splitText && macro.length()==0 ) {
+               int n = curString.length();
+               if( splitBuf==null || splitBuf.length<n ) splitBuf = new char[n];
+               curString.getChars(0,n,splitBuf,0);
+               ch=splitBuf;
+               ac.characters(ch,0,n);
+               Util.resetString(curString);
+               ol=l=0;
+
             // Flush temporaire pour eviter les out of mem
-            if( l>=MAXBUF && flagNL ) {
+            } else if( l>=MAXBUF && flagNL ) {
                ch=curString.toString().toCharArray();
                ac.characters(ch,0,ch.length-1);
                Util.resetString(curString);